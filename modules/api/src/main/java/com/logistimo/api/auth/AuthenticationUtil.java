@@ -25,6 +25,7 @@ package com.logistimo.api.auth;
 
 import com.logistimo.auth.SecurityMgr;
 import com.logistimo.auth.service.AuthenticationService;
+import com.logistimo.auth.service.TokenAuthenticationService;
 import com.logistimo.auth.utils.SecurityUtils;
 import com.logistimo.constants.Constants;
 import com.logistimo.constants.SourceConstants;
@@ -36,7 +37,6 @@ import com.logistimo.services.ServiceException;
 import com.logistimo.services.utils.ConfigUtil;
 import com.logistimo.users.entity.IUserAccount;
 import com.logistimo.users.entity.IUserToken;
-import com.logistimo.users.service.UsersService;
 
 import org.springframework.util.StringUtils;
 
@@ -53,27 +53,26 @@ public class AuthenticationUtil {
 
   public static IUserAccount authenticateToken(String authtoken, Integer actionInitiator)
       throws ServiceException, ObjectNotFoundException {
-    AuthenticationService aus = StaticApplicationContext.getBean(AuthenticationService.class);
+    TokenAuthenticationService aus =
+        StaticApplicationContext.getBean(TokenAuthenticationService.class);
     IUserToken token = aus.authenticateToken(authtoken, actionInitiator);
-    UsersService usersService = StaticApplicationContext.getBean(UsersService.class);
-    return usersService.getUserAccount(token.getUserId());
+    return aus.getUserAccount(token);
   }
 
   public static void authenticateTokenAndSetSession(HttpServletRequest req,
                                                     HttpServletResponse response)
       throws ServiceException {
     String authToken = getToken(req);
-    AuthenticationService aus = StaticApplicationContext.getBean(AuthenticationService.class);
+    TokenAuthenticationService aus =
+        StaticApplicationContext.getBean(TokenAuthenticationService.class);
     try {
       IUserToken token = aus.authenticateToken(authToken, getSource(req));
 
-      UsersService usersService = StaticApplicationContext.getBean(UsersService.class);
-      SecurityMgr.setSessionDetails(usersService.getUserAccount(token.getUserId()));
+      SecurityMgr.setSessionDetails(aus.getUserAccount(token));
       SecureUserDetails userDetails = SecurityUtils.getUserDetails();
       if (!token.hasAccessKey()) {
         Long requestDomainId = getRequestDomain(req);
-        if (requestDomainId != null && usersService
-            .hasAccessToDomain(userDetails.getUsername(), requestDomainId)) {
+        if (requestDomainId != null && aus.hasAccessToDomain(token, requestDomainId)) {
           userDetails.setCurrentDomainId(requestDomainId);
         } else {
           userDetails.setCurrentDomainId(token.getDomainId());
@@ -93,6 +92,16 @@ public class AuthenticationUtil {
     return StringUtils.isEmpty(sourceParam) ? SourceConstants.WEB : Integer.parseInt(sourceParam);
   }
 
+  /**
+   * Logs out the token of the request, if any
+   */
+  public static void revokeToken(HttpServletRequest req) {
+    String authToken = getToken(req);
+    if (StringUtils.hasText(authToken)) {
+      StaticApplicationContext.getBean(AuthenticationService.class).revokeToken(authToken);
+    }
+  }
+
   public static boolean hasAccessToken(HttpServletRequest req) {
     return StringUtils.hasText(getToken(req));
   }
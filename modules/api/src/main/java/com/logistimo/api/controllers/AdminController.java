@@ -35,6 +35,7 @@ import com.logistimo.config.service.ConfigurationMgmtService;
 import com.logistimo.constants.CharacterConstants;
 import com.logistimo.constants.Constants;
 import com.logistimo.events.handlers.EventHandler;
+import com.logistimo.exception.ForbiddenAccessException;
 import com.logistimo.exception.InvalidServiceException;
 import com.logistimo.exception.TaskSchedulingException;
 import com.logistimo.exception.ValidationException;
@@ -45,6 +46,7 @@ import com.logistimo.logger.XLog;
 import com.logistimo.security.SecureUserDetails;
 import com.logistimo.services.ServiceException;
 import com.logistimo.services.cache.MemcacheService;
+import com.logistimo.services.cache.ReferenceLevel2Cache;
 import com.logistimo.services.impl.PMF;
 import com.logistimo.services.taskqueue.ITaskService;
 import com.logistimo.users.entity.IUserDevice;
@@ -159,6 +161,26 @@ public class AdminController {
     }
   }
 
+  @RequestMapping(value = "/l2cache", method = RequestMethod.GET)
+  public
+  @ResponseBody
+  Map<String, Map<String, Long>> getLevel2CacheStatistics() {
+    checkSuperUser();
+    return ReferenceLevel2Cache.getStatistics();
+  }
+
+  @RequestMapping(value = "/l2cache/evict", method = RequestMethod.GET)
+  public
+  @ResponseBody
+  void evictLevel2Cache(@RequestParam String cls, @RequestParam(required = false) String id) {
+    SecureUserDetails sUser = checkSuperUser();
+    xLogger.info("User {0} requested level 2 cache eviction of {1} {2}", sUser.getUsername(), cls,
+        id);
+    if (!ReferenceLevel2Cache.evict(cls, id)) {
+      throw new ValidationException("Class " + cls + " is not in the level 2 cache");
+    }
+  }
+
   @RequestMapping(value = "/batchNotify", method = RequestMethod.GET)
   public
   @ResponseBody
@@ -323,6 +345,14 @@ public class AdminController {
     notificationConfigAction.invoke();
   }
 
+  private SecureUserDetails checkSuperUser() {
+    SecureUserDetails sUser = SecurityUtils.getUserDetails();
+    if (!SecurityConstants.ROLE_SUPERUSER.equals(sUser.getRole())) {
+      throw new ForbiddenAccessException("Permission denied");
+    }
+    return sUser;
+  }
+
   public ITaskService getTaskService() {
     return AppFactory.get().getTaskService();
   }
@@ -243,6 +243,7 @@ public class AuthController {
     if (session != null) {
       SessionMgr.cleanupSession(session);
     }
+    AuthenticationUtil.revokeToken(request);
     //clear cookies
     SecurityUtils.clearTokenCookie(request,response);
     return constructAuthModel(0, null);
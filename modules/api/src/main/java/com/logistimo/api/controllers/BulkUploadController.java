@@ -53,6 +53,7 @@ import com.logistimo.services.blobstore.BlobstoreService;
 import com.logistimo.services.mapred.IMapredService;
 import com.logistimo.services.taskqueue.ITaskService;
 import com.logistimo.users.service.UsersService;
+import com.logistimo.utils.JobUtil;
 import com.logistimo.utils.LocalDateUtil;
 import com.logistimo.utils.NumberUtil;
 
@@ -320,8 +321,10 @@ public class BulkUploadController {
     params.put(BulkImportMapperContants.DOMAINID, domainId.toString());
     params.put(IMapredService.PARAM_DONECALLBACK,
         DONE_CALLBACK_URL); // callback to notify on completion
-    params.put(IMapredService.PARAM_SHARDCOUNT, "8");
+    // Rows can refer to rows imported before them (e.g. kiosks to users), so import in file order
+    params.put(IMapredService.PARAM_SHARDCOUNT, "1");
     params.put(IMapredService.PARAM_INPUTPROCESSINGRATE, "100");
+    JobUtil.createMapredJob(domainId, userId, CONFIGNAME_BULKIMPORTER, params);
     String jobId = mapredService.startJob(CONFIGNAME_BULKIMPORTER, params);
     xLogger.fine("Exiting startBulkImport");
     return jobId;
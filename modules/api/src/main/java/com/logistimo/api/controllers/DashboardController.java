@@ -40,7 +40,9 @@ import com.logistimo.logger.XLog;
 import com.logistimo.security.SecureUserDetails;
 import com.logistimo.services.Resources;
 import com.logistimo.services.ServiceException;
+import com.logistimo.services.cache.CoalescingCacheLoader;
 import com.logistimo.services.cache.MemcacheService;
+import com.logistimo.services.utils.ConfigUtil;
 import com.logistimo.utils.LocalDateUtil;
 import com.logistimo.utils.MsgUtil;
 
@@ -55,7 +57,10 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
@@ -77,6 +82,13 @@ public class DashboardController {
   private DashboardBuilder dashboardBuilder;
   private static final String ENT_INV_DASHBOARD = "en_inv";
   private static final String ENT_TEMP_DASHBOARD = "en_temp";
+  private static final String[] MAIN_DASHBOARD_QUERIES =
+      {"inv", "all_inv", "activity", "all_activity", "temperature"};
+  private static final CoalescingCacheLoader mainDashboardLoader =
+      new CoalescingCacheLoader("dashboard",
+          ConfigUtil.getInt("dashboard.cache.refresh.ahead.seconds", 300),
+          ConfigUtil.getInt("dashboard.cache.wait.seconds", 300),
+          ConfigUtil.getInt("dashboard.cache.refresh.threads", 2));
 
   private IDashboardService dashboardService;
 
@@ -148,7 +160,6 @@ public class DashboardController {
     Long domainId = sUser.getCurrentDomainId();
     MainDashboardModel model;
     try {
-      MemcacheService cache = AppFactory.get().getMemcacheService();
       DomainConfig dc = DomainConfig.getInstance(domainId);
       if (dc.getCountry() == null) {
         return new MainDashboardModel();
@@ -195,139 +206,137 @@ public class DashboardController {
         cacheKey += "_" + date;
       }
 
-      if (cache != null && !skipCache) {
-        model = (MainDashboardModel) cache.get(cacheKey);
-        if (model != null) {
-          model.ut = LocalDateUtil.getFormattedTimeStamp(model.ut, sUser.getLocale(),
-              sUser.getTimezone(), domainId);
-          return model;
-        }
-      }
-      Map<String, String> filters = new HashMap<>(1);
-      if (StringUtils.isBlank(filter) && districtFilter != null) {
-        filters.put("district", districtFilter);
-        filters.put("state", stateFilter);
-      } else if (StringUtils.isBlank(filter) && stateFilter != null) {
-        filters.put("state", stateFilter);
-        boolean noDistrict = !SearchUtil.isDistrictAvailable(dc.getCountry(), stateFilter);
-        if (noDistrict) {
-          level = "district";
-          filters.put("district", "");
-          districtFilter = stateFilter;
-        }
-      } else if ("state".equals(level)) {
-        filters.put("state", filter);
-        boolean noDistrict = !SearchUtil.isDistrictAvailable(dc.getCountry(), filter);
-        if (noDistrict) {
-          level = "district";
-          filters.put("district", "");
-        }
-      } else if ("district".equals(level)) {
-        String[] f = filter.split("_");
-        filters.put("state", f[0]);
-        filters.put("district", f[1]);
-      }
-      filters.put("country", countryFilter);
-      if (StringUtils.isNotEmpty(extraFilter)) {
-        filters.put(exType, extraFilter);
-      }
-      if (StringUtils.isNotEmpty(period)) {
-        filters.put("period", period);
-      }
-      if (StringUtils.isNotEmpty(tPeriod)) {
-        filters.put("tPeriod", tPeriod);
-      }
-      if (StringUtils.isNotEmpty(aType)) {
-        filters.put("type", aType);
-      }
-      if (StringUtils.isNotEmpty(eTag)) {
-        filters.put("eTag", eTag);
-      }
-      if (StringUtils.isNotEmpty(excludeETag)) {
-        filters.put("eeTag", excludeETag);
-      }
-      if (StringUtils.isNotBlank(date)) {
-        try {
-          SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-          Date startDate = LocalDateUtil.parseCustom(date, Constants.DATE_FORMAT, dc.getTimezone());
-          //Increment date to use less than queries
-          Calendar calendar;
-          if (dc.getTimezone() != null) {
-            calendar = GregorianCalendar.getInstance(TimeZone.getTimeZone(dc.getTimezone()));
-          } else {
-            calendar = GregorianCalendar.getInstance();
-          }
-          calendar.setTime(startDate);
-          calendar.add(Calendar.DAY_OF_MONTH, 1);
-          calendar.add(Calendar.MILLISECOND, -1);
-          filters.put("date", sdf.format(calendar.getTime()));
-        } catch (Exception e) {
-          xLogger.warn("Dashboard: Exception when parsing start date {0} , domain: {1}", date,
-              domainId, e);
-          throw new InvalidServiceException("Unable to parse date " + date);
-        }
-      }
+      final String finalStateFilter = stateFilter;
+      final String finalDistrictFilter = districtFilter;
+      model = mainDashboardLoader.get(cacheKey, 1800, skipCache,
+          () -> buildMainDashboard(domainId, dc, filter, level, extraFilter, exType, period,
+              tPeriod, eTag, aType, date, excludeETag, finalStateFilter, finalDistrictFilter));
+      model.ut = LocalDateUtil.getFormattedTimeStamp(model.ut, sUser.getLocale(),
+          sUser.getTimezone(), domainId);
+      return model;
+    } catch (Exception e) {
+      xLogger.warn("Error in getting main Dashboard for domain {0}", domainId, e);
+      throw new InvalidServiceException("Error in getting main Dashboard for domain " + domainId);
+    }
+  }
 
-      ResultSet predRes = null;
-      try (
-          ResultSet eventRes = dashboardService.getMainDashboardResults(domainId, filters, "inv");
-          ResultSet invRes = dashboardService.getMainDashboardResults(domainId, filters, "all_inv");
-          ResultSet actRes =
-              dashboardService.getMainDashboardResults(domainId, filters, "activity");
-          ResultSet entRes =
-              dashboardService.getMainDashboardResults(domainId, filters, "all_activity");
-          ResultSet tempRes =
-              dashboardService.getMainDashboardResults(domainId, filters, "temperature");
-      ) {
-        if (dc.getInventoryConfig() != null && dc.getInventoryConfig().showPredictions()) {
-          predRes = dashboardService.getMainDashboardResults(domainId, filters, "all_predictive");
-        }
-        String colFilter;
-        if ("district".equals(level) || districtFilter != null) {
-          colFilter = "NAME";
-        } else if ("state".equals(level) || stateFilter != null) {
-          colFilter = "DISTRICT";
+  /**
+   * Runs the main dashboard queries in parallel and builds the model. Also invoked from the
+   * background refresh, so it must only depend on its arguments.
+   */
+  private MainDashboardModel buildMainDashboard(Long domainId, DomainConfig dc, String filter,
+                                                String level, String extraFilter,
+                                                String exType, String period, String tPeriod,
+                                                String eTag, String aType, String date,
+                                                String excludeETag, String stateFilter,
+                                                String districtFilter) throws SQLException {
+    MainDashboardModel model;
+    Map<String, String> filters = new HashMap<>(1);
+    if (StringUtils.isBlank(filter) && districtFilter != null) {
+      filters.put("district", districtFilter);
+      filters.put("state", stateFilter);
+    } else if (StringUtils.isBlank(filter) && stateFilter != null) {
+      filters.put("state", stateFilter);
+      boolean noDistrict = !SearchUtil.isDistrictAvailable(dc.getCountry(), stateFilter);
+      if (noDistrict) {
+        level = "district";
+        filters.put("district", "");
+        districtFilter = stateFilter;
+      }
+    } else if ("state".equals(level)) {
+      filters.put("state", filter);
+      boolean noDistrict = !SearchUtil.isDistrictAvailable(dc.getCountry(), filter);
+      if (noDistrict) {
+        level = "district";
+        filters.put("district", "");
+      }
+    } else if ("district".equals(level)) {
+      String[] f = filter.split("_");
+      filters.put("state", f[0]);
+      filters.put("district", f[1]);
+    }
+    filters.put("country", dc.getCountry());
+    if (StringUtils.isNotEmpty(extraFilter)) {
+      filters.put(exType, extraFilter);
+    }
+    if (StringUtils.isNotEmpty(period)) {
+      filters.put("period", period);
+    }
+    if (StringUtils.isNotEmpty(tPeriod)) {
+      filters.put("tPeriod", tPeriod);
+    }
+    if (StringUtils.isNotEmpty(aType)) {
+      filters.put("type", aType);
+    }
+    if (StringUtils.isNotEmpty(eTag)) {
+      filters.put("eTag", eTag);
+    }
+    if (StringUtils.isNotEmpty(excludeETag)) {
+      filters.put("eeTag", excludeETag);
+    }
+    if (StringUtils.isNotBlank(date)) {
+      try {
+        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        Date startDate = LocalDateUtil.parseCustom(date, Constants.DATE_FORMAT, dc.getTimezone());
+        //Increment date to use less than queries
+        Calendar calendar;
+        if (dc.getTimezone() != null) {
+          calendar = GregorianCalendar.getInstance(TimeZone.getTimeZone(dc.getTimezone()));
         } else {
-          colFilter = "STATE";
-        }
-        model =
-            dashboardBuilder
-                .getMainDashBoardData(eventRes, invRes, actRes, entRes, tempRes, predRes,
-                    colFilter);
-      } finally {
-        if (predRes != null) {
-          predRes.close();
+          calendar = GregorianCalendar.getInstance();
         }
+        calendar.setTime(startDate);
+        calendar.add(Calendar.DAY_OF_MONTH, 1);
+        calendar.add(Calendar.MILLISECOND, -1);
+        filters.put("date", sdf.format(calendar.getTime()));
+      } catch (Exception e) {
+        xLogger.warn("Dashboard: Exception when parsing start date {0} , domain: {1}", date,
+            domainId, e);
+        throw new InvalidServiceException("Unable to parse date " + date);
       }
-      if (StringUtils.isBlank(filter) && stateFilter == null) {
-        model.mTy = dc.getCountry();
-        model.mLev = "country";
-      } else if (StringUtils.isBlank(filter) && districtFilter == null) {
-        model.mTyNm = dc.getState();
-        model.mTy = dc.getState().replace(" ", "");
-        model.mPTy = dc.getCountry();
-        model.mLev = "state";
+    }
+
+    List<String> types = new ArrayList<>(Arrays.asList(MAIN_DASHBOARD_QUERIES));
+    if (dc.getInventoryConfig() != null && dc.getInventoryConfig().showPredictions()) {
+      types.add("all_predictive");
+    }
+    Map<String, ResultSet> results =
+        dashboardService.getMainDashboardResults(domainId, filters, types);
+    try {
+      String colFilter;
+      if ("district".equals(level) || districtFilter != null) {
+        colFilter = "NAME";
+      } else if ("state".equals(level) || stateFilter != null) {
+        colFilter = "DISTRICT";
       } else {
-        model.mTyNm = filter != null ? filter : districtFilter;
-        model.mTy = model.mTyNm.replace(" ", "");
-        model.mPTy = dc.getCountry(); // Required only for state level, rest ignored
-        model.mLev = level != null ? level : "district";
+        colFilter = "STATE";
       }
-      model.ut = getGeneratedTimestamp();
-      try {
-        if (cache != null) {
-          cache.put(cacheKey, model, 1800); // 30 min expiry
-        }
-      } catch (Exception e) {
-        xLogger.warn("Error in caching dashboard data", e);
+      model =
+          dashboardBuilder
+              .getMainDashBoardData(results.get("inv"), results.get("all_inv"),
+                  results.get("activity"), results.get("all_activity"),
+                  results.get("temperature"), results.get("all_predictive"), colFilter);
+    } finally {
+      for (ResultSet resultSet : results.values()) {
+        resultSet.close();
       }
-      model.ut = LocalDateUtil.getFormattedTimeStamp(model.ut, sUser.getLocale(),
-          sUser.getTimezone(), domainId);
-      return model;
-    } catch (Exception e) {
-      xLogger.warn("Error in getting main Dashboard for domain {0}", domainId, e);
-      throw new InvalidServiceException("Error in getting main Dashboard for domain " + domainId);
     }
+    if (StringUtils.isBlank(filter) && stateFilter == null) {
+      model.mTy = dc.getCountry();
+      model.mLev = "country";
+    } else if (StringUtils.isBlank(filter) && districtFilter == null) {
+      model.mTyNm = dc.getState();
+      model.mTy = dc.getState().replace(" ", "");
+      model.mPTy = dc.getCountry();
+      model.mLev = "state";
+    } else {
+      model.mTyNm = filter != null ? filter : districtFilter;
+      model.mTy = model.mTyNm.replace(" ", "");
+      model.mPTy = dc.getCountry(); // Required only for state level, rest ignored
+      model.mLev = level != null ? level : "district";
+    }
+    model.ut = getGeneratedTimestamp();
+    return model;
   }
 
   @RequestMapping(value = "/predictive", method = RequestMethod.GET)
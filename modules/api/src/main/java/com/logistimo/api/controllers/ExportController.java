@@ -118,7 +118,7 @@ public class ExportController {
   @ResponseBody
   void downloadFile(@RequestParam String key, @RequestParam(required = false) boolean isBlobKey,
                     @RequestParam(required = false) String fileName,
-                    HttpServletResponse response) {
+                    HttpServletRequest request, HttpServletResponse response) {
     SecureUserDetails sUser = SecurityUtils.getUserDetails();
     Locale locale = sUser.getLocale();
     ResourceBundle backendMessages = Resources.get().getBundle(BACKEND_MESSAGES, locale);
@@ -139,7 +139,7 @@ public class ExportController {
       response.addHeader("Content-Disposition", "attachment; filename=" + downloadFileName);
       response.setBufferSize(32 * 1024);
       if (blobKeyStr != null) {
-        AppFactory.get().getBlobstoreService().serve(blobKeyStr, response);
+        AppFactory.get().getBlobstoreService().serve(blobKeyStr, request, response);
       }
       response.flushBuffer();
     } catch (ServiceException | ObjectNotFoundException | IOException e) {
@@ -181,9 +181,10 @@ public class MediaController {
 
   @RequestMapping(value = "/media", method = RequestMethod.GET)
   @ResponseBody
-  public void serveImageURL(@RequestParam String url, HttpServletResponse response) {
+  public void serveImageURL(@RequestParam String url, HttpServletRequest request,
+                            HttpServletResponse response) {
     try {
-      AppFactory.get().getBlobstoreService().serve(url, response);
+      AppFactory.get().getBlobstoreService().serve(url, request, response);
     } catch (IOException e) {
       xLogger.warn("Error in serving image with key:" + url, e);
     }
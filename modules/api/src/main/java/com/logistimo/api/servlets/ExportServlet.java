@@ -55,6 +55,7 @@ import com.logistimo.entity.IJobStatus;
 import com.logistimo.entity.IUploaded;
 import com.logistimo.exports.BulkExportMgr;
 import com.logistimo.exports.BulkExportMgr.ExportParams;
+import com.logistimo.exports.ExportSink;
 import com.logistimo.exports.handlers.OrderExportHandler;
 import com.logistimo.exports.pagination.processor.ExportProcessor;
 import com.logistimo.logger.XLog;
@@ -1056,7 +1057,7 @@ public class ExportServlet extends SgServlet {
         notFound = true;
       } else {
         // Serve the blob
-        blobstoreService.serve(blobKeyStr, resp);
+        blobstoreService.serve(blobKeyStr, req, resp);
       }
     } catch (ObjectNotFoundException e) {
       notFound = true;
@@ -1157,7 +1158,8 @@ public class ExportServlet extends SgServlet {
           "<p>" + messages.getString(type) + ("powerdata".equals(type) ? "" : " data")
               + " is attached" + "</p>";
       svc.sendWithAttachmentStream(addresses, message, MessageService.NORMAL, subject, is,
-          EmailService.MIME_CSV, filename);
+          filename.endsWith(ExportSink.GZIP_EXTENSION) ? EmailService.MIME_GZIP
+              : EmailService.MIME_CSV, filename);
     } catch (Exception e) {
       xLogger.warn("{0} when trying to get send email with attachement to {1}: {2}",
           e.getClass().getName(), addressCSV, e.getMessage(), e);
@@ -25,18 +25,25 @@ package com.logistimo.api.servlets;
 
 import com.logistimo.proto.JsonBean;
 import com.logistimo.proto.ProtocolException;
+import com.logistimo.services.utils.ConfigUtil;
 import com.logistimo.utils.ParamChecker;
 
 import org.apache.commons.io.IOUtils;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -50,6 +57,9 @@ public abstract class JsonRestServlet extends SgServlet {
   protected static final String XML_UTF8 = "application/xml" + UTF8_CHARSET;
 
   protected static final String TEXT_UTF8 = "text/plain" + UTF8_CHARSET;
+  private static final String GZIP = "gzip";
+  private static final boolean GZIP_ENABLED = ConfigUtil.getBoolean("api.response.gzip", true);
+  private static final int STREAM_BUFFER_SIZE = 8192;
   protected RestResource[] resources;
 
   protected JsonRestServlet(RestResource... resources) {
@@ -99,6 +109,40 @@ public abstract class JsonRestServlet extends SgServlet {
     pw.close();
   }
 
+  /**
+   * Opens a writer on the response body for JSON that is streamed as it is generated, instead of
+   * being built as one String first. The body is gzip compressed when the client accepts it.
+   * Closing the writer completes the response.
+   */
+  protected Writer openJsonStream(HttpServletRequest request, HttpServletResponse response,
+                                  int statusCode) throws IOException {
+    response.setStatus(statusCode);
+    response.setContentType(JSON_UTF8);
+    response.addHeader("Vary", "Accept-Encoding");
+    OutputStream out = response.getOutputStream();
+    if (GZIP_ENABLED && acceptsGzip(request)) {
+      response.setHeader("Content-Encoding", GZIP);
+      out = new GZIPOutputStream(out, STREAM_BUFFER_SIZE);
+    }
+    return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8),
+        STREAM_BUFFER_SIZE);
+  }
+
+  static boolean acceptsGzip(HttpServletRequest request) {
+    String acceptEncoding = request.getHeader("Accept-Encoding");
+    if (acceptEncoding == null) {
+      return false;
+    }
+    for (String coding : acceptEncoding.split(",")) {
+      String[] parts = coding.split(";");
+      if (GZIP.equalsIgnoreCase(parts[0].trim())) {
+        // "gzip;q=0" means the client refuses it
+        return parts.length < 2 || !parts[1].replace(" ", "").matches("q=0(\\.0*)?");
+      }
+    }
+    return false;
+  }
+
   protected void sendJsonResponse(HttpServletResponse response, int statusCode, JSONObject jsonObj)
       throws IOException, JSONException {
     response.setStatus(statusCode);
@@ -27,6 +27,7 @@ import com.logistimo.AppFactory;
 import com.logistimo.logger.XLog;
 import com.logistimo.services.mapred.IMapredService;
 import com.logistimo.services.mapred.MapReduceConstants;
+import com.logistimo.utils.JobUtil;
 
 import java.io.IOException;
 import java.util.HashMap;
@@ -107,6 +108,9 @@ public class MapReduceStarterServlet extends HttpServlet {
     if (rerun != null) {
       params.put(MapReduceConstants.RERUN, rerun);
     }
+    if (domainId != null) {
+      JobUtil.createMapredJob(Long.parseLong(domainId), null, configName, params);
+    }
     // Start the MR job
     AppFactory.get().getMapredService().startJob(configName, params);
     xLogger.fine("Exiting startJob");
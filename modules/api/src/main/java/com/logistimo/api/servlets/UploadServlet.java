@@ -46,6 +46,7 @@ import com.logistimo.services.blobstore.BlobstoreService;
 import com.logistimo.services.impl.UploadServiceImpl;
 import com.logistimo.services.mapred.IMapredService;
 import com.logistimo.services.taskqueue.ITaskService;
+import com.logistimo.utils.JobUtil;
 import com.logistimo.utils.NumberUtil;
 
 import java.io.IOException;
@@ -283,8 +284,10 @@ public class UploadServlet extends SgServlet {
     params.put(IMapredService.PARAM_DONECALLBACK,
         DONE_CALLBACK_URL); // callback to notify on completion
     // Params. to control input processing rate
-    params.put(IMapredService.PARAM_SHARDCOUNT, "8");
+    // Rows can refer to rows imported before them (e.g. kiosks to users), so import in file order
+    params.put(IMapredService.PARAM_SHARDCOUNT, "1");
     params.put(IMapredService.PARAM_INPUTPROCESSINGRATE, "3");
+    JobUtil.createMapredJob(domainId, userId, CONFIGNAME_BULKIMPORTER, params);
     // Start the MR job
     String jobId = AppFactory.get().getMapredService().startJob(CONFIGNAME_BULKIMPORTER, params);
     xLogger.fine("Exiting startBulkImport");
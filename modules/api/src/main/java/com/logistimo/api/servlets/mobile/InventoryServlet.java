@@ -34,6 +34,7 @@ import com.logistimo.api.servlets.mobile.builders.MobileTransactionsBuilder;
 import com.logistimo.api.servlets.mobile.json.GetInventoryBatchesOutput;
 import com.logistimo.api.servlets.mobile.json.JsonOutput;
 import com.logistimo.api.util.GsonUtil;
+import com.logistimo.api.util.JsonResponseStream;
 import com.logistimo.api.util.RESTUtil;
 import com.logistimo.config.models.DomainConfig;
 import com.logistimo.config.models.InventoryConfig;
@@ -305,7 +306,6 @@ public class InventoryServlet extends JsonRestServlet {
     String errMessage = null;
     Long kioskId = null;
     boolean status = true;
-    Vector<Hashtable<String, Object>> inventoryList = null;
     String currency = null;
     Locale locale = new Locale(Constants.LANG_DEFAULT, "");
     String timezone = null;
@@ -412,44 +412,56 @@ public class InventoryServlet extends JsonRestServlet {
       status = false;
       statusCode = HttpServletResponse.SC_UNAUTHORIZED;
     }
-    int numInv = 0;
     Date lastModified = new Date();
     // Get inventory list
     if (status) {
       modifiedSinceDate = HttpUtil.getModifiedDate(req);
-      try {
-        // Get domain config
-        DomainConfig dc = DomainConfig.getInstance(domainId);
-        // FOR BACKWARD COMPATIBILITY: determine whether Integer has to be forced
-        boolean forceIntegerForStock = RESTUtil.forceIntegerForStock(appVersion);
-        if (startDateStr != null && !startDateStr.isEmpty()) {
-          // Convert the start string to a Date format.
-          try {
-            start = LocalDateUtil.parseCustom(startDateStr, Constants.DATETIME_FORMAT, timezone);
-          } catch (ParseException pe) {
-            status = false;
-            errMessage = backendMessages.getString("error.invalidstartdate");
-            xLogger.severe("Exception while parsing start date. Exception: {0}, Message: {1}",
-                pe.getClass().getName(), pe.getMessage());
+      // Get domain config
+      DomainConfig dc = DomainConfig.getInstance(domainId);
+      // FOR BACKWARD COMPATIBILITY: determine whether Integer has to be forced
+      boolean forceIntegerForStock = RESTUtil.forceIntegerForStock(appVersion);
+      if (startDateStr != null && !startDateStr.isEmpty()) {
+        // Convert the start string to a Date format.
+        try {
+          start = LocalDateUtil.parseCustom(startDateStr, Constants.DATETIME_FORMAT, timezone);
+        } catch (ParseException pe) {
+          status = false;
+          errMessage = backendMessages.getString("error.invalidstartdate");
+          xLogger.severe("Exception while parsing start date. Exception: {0}, Message: {1}",
+              pe.getClass().getName(), pe.getMessage());
+        }
+      }
+      if (status) {
+        // Materials are written to the response as they are built
+        final int okStatusCode = statusCode;
+        HttpUtil.setLastModifiedHeader(resp, lastModified);
+        JsonResponseStream output =
+            GsonUtil.getInventoryOutputStream(() -> openJsonStream(req, resp, okStatusCode),
+                currency, RESTUtil.VERSION_01);
+        try {
+          Results
+              results =
+              RESTUtil.getInventoryData(kioskId, locale, timezone, onlyStock, dc,
+                  forceIntegerForStock, start, modifiedSinceDate, pageParams, output);
+          output.property(JsonTagsZ.NUMBER_OF_INVENTORY, results.getNumFound()).finish();
+          return;
+        } catch (ServiceException | IOException | RuntimeException e) {
+          xLogger.severe("InventoryServlet Exception: {0}", e.getMessage(), e);
+          if (output.isStarted()) {
+            // Part of the materials are already sent, leave the response incomplete
+            return;
           }
+          status = false;
+          errMessage = backendMessages.getString("error.nomaterials");
+        } finally {
+          output.close();
         }
-        Results
-            results =
-            RESTUtil.getInventoryData(kioskId, locale, timezone, onlyStock, dc,
-                forceIntegerForStock, start, modifiedSinceDate, pageParams);
-        xLogger.fine("results: {0}", results);
-        inventoryList = (Vector<Hashtable<String, Object>>) results.getResults();
-        numInv = results.getNumFound();
-      } catch (ServiceException e) {
-        xLogger.severe("InventoryServlet Exception: {0}", e.getMessage());
-        status = false;
-        errMessage = backendMessages.getString("error.nomaterials");
       }
     }
     try {
       String
           jsonOutput =
-          GsonUtil.getInventoryOutputToJson(status, inventoryList, currency, errMessage, numInv,
+          GsonUtil.getInventoryOutputToJson(status, null, currency, errMessage, 0,
               RESTUtil.VERSION_01);
       HttpUtil.setLastModifiedHeader(resp, lastModified);
       sendJsonResponse(resp, statusCode, jsonOutput);
@@ -478,16 +478,27 @@ public class OrderServlet extends JsonRestServlet {
 
     // For the JSON output and send
     try {
-      String
-          jsonOutput =
-          GsonUtil.buildGetOrdersResponseModel(status, mom, message, RESTUtil.VERSION_01);
-      if (modifiedSinceDate.isPresent() && status) {
-        HttpUtil.setLastModifiedHeader(resp, lastModified);
+      if (status) {
+        if (modifiedSinceDate.isPresent()) {
+          HttpUtil.setLastModifiedHeader(resp, lastModified);
+        }
+        final int okStatusCode = statusCode;
+        GsonUtil.writeGetOrdersResponseModel(() -> openJsonStream(req, resp, okStatusCode), mom,
+            RESTUtil.VERSION_01);
+      } else {
+        String
+            jsonOutput =
+            GsonUtil.buildGetOrdersResponseModel(status, mom, message, RESTUtil.VERSION_01);
+        sendJsonResponse(resp, statusCode, jsonOutput);
       }
-      sendJsonResponse(resp, statusCode, jsonOutput);
     } catch (Exception e) {
       xLogger.severe("Protocol exception when sending orders for kiosk {0}: {1}", kioskId,
           e.getMessage());
+      if (resp.isCommitted()) {
+        // Orders were already being streamed, an error response can no longer be sent
+        xLogger.fine("Exiting getOrders");
+        return;
+      }
       status = false;
       message = backendMessages.getString(SYSTEM_ERROR) + " [2]";
       try {
@@ -517,15 +517,22 @@ public class TransDataServlet extends JsonRestServlet {
           mobileTransactionsBuilder.build(transactions, kioskId, locale, timezone);
     } finally {
       try {
-        String
-            jsonOutputString =
-            GsonUtil
-                .buildGetTransactionsResponseModel(isValid,
-                    mobileTransactionsModel, errMessage, RESTUtil.VERSION_01);
-        if (HttpUtil.getModifiedDate(req).isPresent() && isValid) {
-          HttpUtil.setLastModifiedHeader(resp, lastModified);
+        if (isValid) {
+          if (HttpUtil.getModifiedDate(req).isPresent()) {
+            HttpUtil.setLastModifiedHeader(resp, lastModified);
+          }
+          final int okStatusCode = statusCode;
+          GsonUtil.writeGetTransactionsResponseModel(
+              () -> openJsonStream(req, resp, okStatusCode), mobileTransactionsModel,
+              RESTUtil.VERSION_01);
+        } else {
+          String
+              jsonOutputString =
+              GsonUtil
+                  .buildGetTransactionsResponseModel(isValid,
+                      mobileTransactionsModel, errMessage, RESTUtil.VERSION_01);
+          sendJsonResponse(resp, statusCode, jsonOutputString);
         }
-        sendJsonResponse(resp, statusCode, jsonOutputString);
       } catch (Exception e1) {
         xLogger.severe("TransDataServlet Exception: {0}", e1);
         resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
@@ -52,6 +52,7 @@ import com.logistimo.utils.LocalDateUtil;
 
 import org.apache.commons.lang.StringUtils;
 
+import java.io.IOException;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
@@ -203,6 +204,22 @@ public class GsonUtil {
     return jsonString;
   }
 
+  /**
+   * Streaming counterpart of {@link #getInventoryOutputToJson} for a successful response. Materials
+   * are written as they are passed to the returned stream; the inventory count follows them.
+   */
+  public static JsonResponseStream getInventoryOutputStream(JsonResponseStream.WriterSource source,
+                                                            String currency, String version) {
+    Gson
+        gson =
+        new GsonBuilder().setDateFormat(Constants.DATE_FORMAT)
+            .excludeFieldsWithoutExposeAnnotation().create();
+    return new JsonResponseStream(gson, source, JsonTagsZ.MATERIALS)
+        .property(JsonTagsZ.VERSION, version)
+        .property(JsonTagsZ.STATUS, "0")
+        .property(JsonTagsZ.CURRENCY, currency);
+  }
+
   public static String basicOutputToJson(boolean status, String errMsg, List errMsgs, String locale,
                                          String version) {
 
@@ -571,6 +588,26 @@ public class GsonUtil {
     return gson.toJson(jsonObject);
   }
 
+  /**
+   * Streams a successful get orders response, one order at a time.
+   */
+  public static void writeGetOrdersResponseModel(JsonResponseStream.WriterSource source,
+                                                 MobileOrdersModel mom, String version)
+      throws IOException {
+    JsonResponseStream stream = new JsonResponseStream(new Gson(), source, JsonTagsZ.ORDERS);
+    try {
+      if (mom.os != null) {
+        stream.beginList();
+        mom.os.forEach(stream);
+      }
+      stream.property(JsonTagsZ.VERSION, version)
+          .property(JsonTagsZ.STATUS, "0")
+          .finish();
+    } finally {
+      stream.close();
+    }
+  }
+
   /**
    * Method to build the response
    *
@@ -635,6 +672,31 @@ public class GsonUtil {
     return gson.toJson(jsonObject);
   }
 
+  /**
+   * Streams a successful get transactions response, one transaction at a time.
+   */
+  public static void writeGetTransactionsResponseModel(JsonResponseStream.WriterSource source,
+                                                       MobileTransactionsModel mtm,
+                                                       String version) throws IOException {
+    JsonResponseStream stream = new JsonResponseStream(new Gson(), source, JsonTagsZ.TRANSACTIONS)
+        .property(JsonTagsZ.VERSION, version)
+        .property(JsonTagsZ.STATUS, "0");
+    try {
+      if (mtm != null) {
+        if (mtm.kid != null) {
+          stream.property(JsonTagsZ.KIOSK_ID, mtm.kid);
+        }
+        if (mtm.trn != null) {
+          stream.beginList();
+          mtm.trn.forEach(stream);
+        }
+      }
+      stream.finish();
+    } finally {
+      stream.close();
+    }
+  }
+
   public static String getFormsAsJson(Status status, List<String> formConfigs, String
       errMsg, String version) {
     Gson gson = new GsonBuilder().disableHtmlEscaping().create();
@@ -0,0 +1,160 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.api.util;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Writes a mobile JSON response of the form {@code {<properties>, <listTag>: [<records>]}} record
+ * by record, so the response is never held in memory as a whole. The underlying writer is opened
+ * lazily on the first write, which lets callers fall back to a regular error response as long as
+ * nothing has been streamed yet.
+ *
+ * Properties added before the first record are written ahead of the list, the rest after it.
+ */
+public class JsonResponseStream implements Consumer<Object>, Closeable {
+
+  private final Gson gson;
+  private final WriterSource source;
+  private final String listTag;
+  private final Map<String, Object> pending = new LinkedHashMap<>();
+  private JsonWriter writer;
+  private boolean inList;
+  private boolean listWritten;
+  private int count;
+
+  public JsonResponseStream(Gson gson, WriterSource source, String listTag) {
+    this.gson = gson;
+    this.source = source;
+    this.listTag = listTag;
+  }
+
+  public JsonResponseStream property(String name, Object value) {
+    pending.put(name, value);
+    return this;
+  }
+
+  /**
+   * Starts the list even if no record follows, so that an empty list is sent as {@code []}
+   * instead of being left out.
+   */
+  public JsonResponseStream beginList() throws IOException {
+    if (!inList) {
+      if (listWritten) {
+        throw new IllegalStateException("List " + listTag + " is already written");
+      }
+      start();
+      writer.name(listTag).beginArray();
+      inList = true;
+    }
+    return this;
+  }
+
+  @Override
+  public void accept(Object record) {
+    try {
+      beginList();
+      gson.toJson(record, record.getClass(), writer);
+      count++;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  public boolean isStarted() {
+    return writer != null;
+  }
+
+  public int getCount() {
+    return count;
+  }
+
+  /**
+   * Closes the list, writes the remaining properties and completes the response.
+   */
+  public void finish() throws IOException {
+    start();
+    if (inList) {
+      writer.endArray();
+      inList = false;
+      listWritten = true;
+    }
+    writeProperties();
+    writer.endObject();
+    writer.close();
+  }
+
+  /**
+   * Releases the response without completing the JSON, so that a client never mistakes a
+   * partially streamed list for a complete one.
+   */
+  @Override
+  public void close() {
+    if (writer != null) {
+      try {
+        writer.close();
+      } catch (IOException ignored) {
+        // an incomplete document is expected here
+      }
+    }
+  }
+
+  private void start() throws IOException {
+    if (writer == null) {
+      writer = gson.newJsonWriter(source.open());
+      writer.beginObject();
+      writeProperties();
+    }
+  }
+
+  private void writeProperties() throws IOException {
+    for (Map.Entry<String, Object> property : pending.entrySet()) {
+      writer.name(property.getKey());
+      Object value = property.getValue();
+      if (value == null) {
+        writer.nullValue();
+      } else if (value instanceof Number) {
+        writer.value((Number) value);
+      } else if (value instanceof Boolean) {
+        writer.value((Boolean) value);
+      } else {
+        writer.value(value.toString());
+      }
+    }
+    pending.clear();
+  }
+
+  public interface WriterSource {
+    Writer open() throws IOException;
+  }
+}
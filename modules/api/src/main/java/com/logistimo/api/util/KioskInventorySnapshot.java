@@ -0,0 +1,153 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.api.util;
+
+import com.logistimo.context.StaticApplicationContext;
+import com.logistimo.inventory.entity.IInvntry;
+import com.logistimo.inventory.entity.IInvntryBatch;
+import com.logistimo.inventory.service.InventoryManagementService;
+import com.logistimo.inventory.service.impl.InventoryManagementServiceImpl;
+import com.logistimo.logger.XLog;
+import com.logistimo.materials.entity.IMaterial;
+import com.logistimo.materials.entity.IMaterialManufacturers;
+import com.logistimo.materials.model.HandlingUnitModel;
+import com.logistimo.materials.service.IHandlingUnitService;
+import com.logistimo.materials.service.MaterialCatalogService;
+import com.logistimo.materials.service.impl.HandlingUnitServiceImpl;
+import com.logistimo.materials.service.impl.MaterialCatalogServiceImpl;
+import com.logistimo.pagination.PageParams;
+import com.logistimo.utils.BigUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Materials, manufacturers, batches and handling units referenced by a page of a kiosk's
+ * inventory. Each is loaded with one set based query and joined in memory, instead of a few
+ * queries per inventory item.
+ */
+public class KioskInventorySnapshot {
+
+  private static final XLog xLogger = XLog.getLog(KioskInventorySnapshot.class);
+
+  private final Map<Long, IMaterial> materials = new HashMap<>();
+  private final Map<Long, HandlingUnitModel> handlingUnits = new HashMap<>();
+  private Map<Long, List<IMaterialManufacturers>> manufacturers = new HashMap<>();
+  private Map<Long, List<IInvntryBatch>> batches = new HashMap<>();
+
+  private KioskInventorySnapshot() {
+  }
+
+  /**
+   * Loads the snapshot for the given inventory items of a kiosk. Batches are loaded only if the
+   * kiosk is batch management enabled.
+   */
+  public static KioskInventorySnapshot load(Long kioskId, List<IInvntry> inventories,
+                                            boolean isBatchMgmtEnabled) {
+    KioskInventorySnapshot snapshot = new KioskInventorySnapshot();
+    if (inventories == null || inventories.isEmpty()) {
+      return snapshot;
+    }
+    List<Long> materialIds = new ArrayList<>(inventories.size());
+    for (IInvntry inv : inventories) {
+      materialIds.add(inv.getMaterialId());
+    }
+    MaterialCatalogService mcs = StaticApplicationContext.getBean(MaterialCatalogServiceImpl.class);
+    try {
+      for (IMaterial m : mcs.getMaterials(materialIds)) {
+        snapshot.materials.put(m.getMaterialId(), m);
+      }
+      snapshot.manufacturers = mcs.getMaterialManufacturers(materialIds);
+    } catch (Exception e) {
+      xLogger.warn("{0} when getting materials of kiosk {1}: {2}", e.getClass().getName(),
+          kioskId, e.getMessage(), e);
+    }
+    if (isBatchMgmtEnabled) {
+      try {
+        InventoryManagementService ims =
+            StaticApplicationContext.getBean(InventoryManagementServiceImpl.class);
+        snapshot.batches = ims.getValidOrNonZeroBatches(kioskId, materialIds);
+      } catch (Exception e) {
+        xLogger.warn("{0} when trying to get batch info. for kiosk {1}: {2}",
+            e.getClass().getName(), kioskId, e.getMessage(), e);
+      }
+    }
+    IHandlingUnitService hus = StaticApplicationContext.getBean(HandlingUnitServiceImpl.class);
+    List<HandlingUnitModel> units = hus.getHandlingUnitDataByMaterialIds(materialIds);
+    if (units != null) {
+      for (HandlingUnitModel hu : units) {
+        snapshot.handlingUnits.putIfAbsent(hu.getMaterialId(), hu);
+      }
+    }
+    return snapshot;
+  }
+
+  public IMaterial getMaterial(Long materialId) {
+    return materials.get(materialId);
+  }
+
+  public List<IMaterialManufacturers> getManufacturers(Long materialId) {
+    List<IMaterialManufacturers> list = manufacturers.get(materialId);
+    return list != null ? list : Collections.emptyList();
+  }
+
+  /**
+   * Valid batches of the material, up to the first page in expiry order
+   */
+  public List<IInvntryBatch> getValidBatches(Long materialId) {
+    List<IInvntryBatch> valid = new ArrayList<>();
+    for (IInvntryBatch batch : getBatches(materialId)) {
+      if (Boolean.TRUE.equals(batch.getVld()) && valid.size() < PageParams.DEFAULT_SIZE) {
+        valid.add(batch);
+      }
+    }
+    return valid;
+  }
+
+  /**
+   * Batches of the material with non-zero stock, up to the first page in expiry order
+   */
+  public List<IInvntryBatch> getNonZeroBatches(Long materialId) {
+    List<IInvntryBatch> nonZero = new ArrayList<>();
+    for (IInvntryBatch batch : getBatches(materialId)) {
+      if (BigUtil.greaterThanZero(batch.getQuantity())
+          && nonZero.size() < PageParams.DEFAULT_SIZE) {
+        nonZero.add(batch);
+      }
+    }
+    return nonZero;
+  }
+
+  public HandlingUnitModel getHandlingUnit(Long materialId) {
+    return handlingUnits.get(materialId);
+  }
+
+  private List<IInvntryBatch> getBatches(Long materialId) {
+    List<IInvntryBatch> list = batches.get(materialId);
+    return list != null ? list : Collections.emptyList();
+  }
+}
@@ -90,12 +90,10 @@ import com.logistimo.inventory.models.InventoryFilters;
 import com.logistimo.inventory.service.InventoryManagementService;
 import com.logistimo.inventory.service.impl.InventoryManagementServiceImpl;
 import com.logistimo.logger.XLog;
-import com.logistimo.materials.entity.IHandlingUnit;
 import com.logistimo.materials.entity.IMaterial;
 import com.logistimo.materials.entity.IMaterialManufacturers;
-import com.logistimo.materials.service.IHandlingUnitService;
+import com.logistimo.materials.model.HandlingUnitModel;
 import com.logistimo.materials.service.MaterialCatalogService;
-import com.logistimo.materials.service.impl.HandlingUnitServiceImpl;
 import com.logistimo.materials.service.impl.MaterialCatalogServiceImpl;
 import com.logistimo.models.AuthRequest;
 import com.logistimo.models.users.UserDetails;
@@ -150,6 +148,7 @@ import java.util.Optional;
 import java.util.ResourceBundle;
 import java.util.Set;
 import java.util.Vector;
+import java.util.function.Consumer;
 
 import javax.jdo.JDOObjectNotFoundException;
 import javax.jdo.PersistenceManager;
@@ -175,17 +174,34 @@ public class RESTUtil {
 
   private static final String MINIMUM_RESPONSE_CODE_TWO = "2";
 
-  @SuppressWarnings("unchecked")
   public static Results getInventoryData(Long kioskId, Locale locale,
                                          String timezone, boolean onlyStock,
                                          DomainConfig dc, boolean forceIntegerForStock, Date start,
                                          Optional<Date> modifiedSince,
                                          PageParams pageParams) throws ServiceException {
+    Vector<Hashtable<String, Object>> invData = new Vector<>();
+    Results results = getInventoryData(kioskId, locale, timezone, onlyStock, dc,
+        forceIntegerForStock, start, modifiedSince, pageParams, invData::add);
+    return new Results(invData, results.getCursor(), results.getNumFound(), results.getOffset());
+  }
+
+  /**
+   * Same as {@link #getInventoryData(Long, Locale, String, boolean, DomainConfig, boolean, Date,
+   * Optional, PageParams)}, but hands each material over to {@code consumer} as soon as it is
+   * built instead of collecting them. The returned results carry only the cursor and counts.
+   */
+  @SuppressWarnings("unchecked")
+  public static Results getInventoryData(Long kioskId, Locale locale,
+                                         String timezone, boolean onlyStock,
+                                         DomainConfig dc, boolean forceIntegerForStock, Date start,
+                                         Optional<Date> modifiedSince,
+                                         PageParams pageParams,
+                                         Consumer<Hashtable<String, Object>> consumer)
+      throws ServiceException {
     xLogger.fine("Entered getInventoryData");
     // Get the services
     InventoryManagementService ims =
         StaticApplicationContext.getBean(InventoryManagementServiceImpl.class);
-    MaterialCatalogService mcs = StaticApplicationContext.getBean(MaterialCatalogServiceImpl.class);
     // Get optimization config
     OptimizerConfig oc = dc.getOptimizerConfig();
     InventoryConfig ic = dc.getInventoryConfig();
@@ -202,20 +218,18 @@ public class RESTUtil {
     List<IInvntry> inventories = (List<IInvntry>) results.getResults();
     String cursor = results.getCursor();
     boolean isBatchMgmtEnabled = kiosk.isBatchMgmtEnabled();
-    Vector<Hashtable<String, Object>> invData = new Vector<>();
+    // Materials, manufacturers, batches and handling units of all the items, in a query each
+    KioskInventorySnapshot snapshot =
+        KioskInventorySnapshot.load(kioskId, inventories, isBatchMgmtEnabled);
     for (IInvntry inv : inventories) {
       // Get the material data
-      IMaterial m;
-      List<IMaterialManufacturers> manufacturers;
-      try {
-        m = mcs.getMaterial(inv.getMaterialId());
-        manufacturers = mcs.getMaterialManufacturers(m.getMaterialId());
-      } catch (Exception e) {
-        xLogger
-            .warn("{0} when getting material {1}: {2}", e.getClass().getName(), inv.getMaterialId(),
-                e.getMessage());
+      IMaterial m = snapshot.getMaterial(inv.getMaterialId());
+      if (m == null) {
+        xLogger.warn("Material {0} not found for inventory of kiosk {1}", inv.getMaterialId(),
+            kioskId);
         continue;
       }
+      List<IMaterialManufacturers> manufacturers = snapshot.getManufacturers(m.getMaterialId());
       // Create a material data hashtable
       Hashtable<String, Object> material = new Hashtable<>();
       material.put(JsonTagsZ.MATERIAL_ID, m.getMaterialId().toString());
@@ -247,14 +261,16 @@ public class RESTUtil {
       // Add batches metadata, if any
       Vector<Hashtable<String, String>>
           batches =
-          getBatchData(inv, locale, timezone, ims, isBatchMgmtEnabled, dc.autoGI());
-      if (batches != null && !batches.isEmpty()) {
+          getBatchData(snapshot.getValidBatches(inv.getMaterialId()), locale, timezone,
+              dc.autoGI());
+      if (!batches.isEmpty()) {
         material.put(JsonTagsZ.BATCHES, batches);
       }
       Vector<Hashtable<String, String>>
           expiredBatches =
-          getExpiredBatchData(inv, locale, timezone, ims, isBatchMgmtEnabled, dc.autoGI());
-      if (expiredBatches != null && !expiredBatches.isEmpty()) {
+          getExpiredBatchData(snapshot.getNonZeroBatches(inv.getMaterialId()), locale, timezone,
+              dc.autoGI());
+      if (!expiredBatches.isEmpty()) {
         material.put(JsonTagsZ.EXPIRED_NONZERO_BATCHES, expiredBatches);
       }
       // If metadata in addition to stock is required, add those here
@@ -346,13 +362,14 @@ public class RESTUtil {
       if (inv.getShortId() != null) {
         material.put(JsonTagsZ.SHORT_MATERIAL_ID, String.valueOf(inv.getShortId()));
       }
-      Vector<Hashtable<String, String>> handlingUnit = getHandlingUnits(inv.getMaterialId());
+      Vector<Hashtable<String, String>> handlingUnit =
+          getHandlingUnits(snapshot.getHandlingUnit(inv.getMaterialId()));
       if (handlingUnit != null && !handlingUnit.isEmpty()) {
         material.put(JsonTagsZ.ENFORCE_HANDLING_UNIT_CONSTRAINT, "yes");
         material.put(JsonTagsZ.HANDLING_UNIT, handlingUnit);
       }
       material.put(JsonTagsZ.MANUFACTURERS, getManufacturerList(manufacturers));
-      // If start date is specified, then check and add the material to invData only if the it was created or updated on or after the start date.
+      // If start date is specified, then check and send the material only if the it was created or updated on or after the start date.
       Date materialCreatedOn = m.getTimeStamp();
       Date materialLastUpdatedOn = m.getLastUpdated();
 
@@ -361,16 +378,14 @@ public class RESTUtil {
           m.getName(), start, hasStartDate, materialCreatedOn, materialLastUpdatedOn);
       if (hasStartDate && ((materialCreatedOn != null && materialCreatedOn.compareTo(start) >= 0)
           || (materialLastUpdatedOn != null && materialLastUpdatedOn.compareTo(start) >= 0))) {
-        // Add to vector
-        invData.add(material);
+        consumer.accept(material);
       } else if (!hasStartDate) {
-        // If start date is not specified, add the material to the vector
-        invData.add(material);
+        // If start date is not specified, send the material anyway
+        consumer.accept(material);
       }
     }
-    xLogger.fine("Exiting getInventoryData: {0} inventory items, invData: {1}", inventories.size(),
-        invData);
-    return new Results(invData, cursor, results.getNumFound(), results.getOffset());
+    xLogger.fine("Exiting getInventoryData: {0} inventory items", inventories.size());
+    return new Results(null, cursor, results.getNumFound(), results.getOffset());
   }
 
   public static Hashtable<String, Object> getConsumptionRate(InventoryConfig ic, IInvntry inv,
@@ -409,19 +424,17 @@ public class RESTUtil {
     return material;
   }
 
-  private static Vector<Hashtable<String, String>> getHandlingUnits(Long materialId) {
+  private static Vector<Hashtable<String, String>> getHandlingUnits(HandlingUnitModel hum) {
+    if (hum == null) {
+      return null;
+    }
     Vector<Hashtable<String, String>> hu = new Vector<>(1);
-    IHandlingUnitService hus = StaticApplicationContext.getBean(HandlingUnitServiceImpl.class);
-    Map<String, String> huMap = hus.getHandlingUnitDataByMaterialId(materialId);
-    if (huMap != null) {
-      Hashtable<String, String> h = new Hashtable<>();
-      h.put(JsonTagsZ.HANDLING_UNIT_ID, huMap.get(IHandlingUnit.HUID));
-      h.put(JsonTagsZ.HANDLING_UNIT_NAME, huMap.get(IHandlingUnit.NAME));
-      h.put(JsonTagsZ.QUANTITY, huMap.get(IHandlingUnit.QUANTITY));
-      hu.add(h);
-      return hu;
-    }
-    return null;
+    Hashtable<String, String> h = new Hashtable<>();
+    h.put(JsonTagsZ.HANDLING_UNIT_ID, hum.getHandlingUnitId());
+    h.put(JsonTagsZ.HANDLING_UNIT_NAME, hum.getName());
+    h.put(JsonTagsZ.QUANTITY, hum.getQuantity().stripTrailingZeros().toPlainString());
+    hu.add(h);
+    return hu;
   }
 
 
@@ -2023,12 +2036,8 @@ public class RESTUtil {
             ims.getValidBatches(inv.getMaterialId(), inv.getKioskId(), new PageParams(null,
                 PageParams.DEFAULT_SIZE)); // NOTE: Get only up to the 50 last batches
         if (results != null && results.getResults() != null) {
-          batches = new Vector<>();
-          for (IInvntryBatch batch : results.getResults()) {
-            if (!batch.isExpired()) {
-              batches.add(batch.toMapZ(locale, timezone, isAutoPostingIssuesEnabled));
-            }
-          }
+          batches = getBatchData(results.getResults(), locale, timezone,
+              isAutoPostingIssuesEnabled);
         }
       } catch (Exception e) {
         xLogger.warn("{0} when trying to get batch info. for inv. {1}-{2} in domain {3}: {4}",
@@ -2055,12 +2064,8 @@ public class RESTUtil {
             ims.getBatches(inv.getMaterialId(), inv.getKioskId(), new PageParams(null,
                 PageParams.DEFAULT_SIZE)); // NOTE: Get only up to the 50 last batches
         if (results != null && results.getResults() != null) {
-          expiredBatches = new Vector<>();
-          for (IInvntryBatch batch : results.getResults()) {
-            if (batch.isExpired() && BigUtil.greaterThanZero(batch.getQuantity())) {
-              expiredBatches.add(batch.toMapZ(locale, timezone, isAutoPostingIssuesEnabled));
-            }
-          }
+          expiredBatches = getExpiredBatchData(results.getResults(), locale, timezone,
+              isAutoPostingIssuesEnabled);
         }
       } catch (Exception e) {
         xLogger.warn("{0} when trying to get batch info. for inv. {1}-{2} in domain {3}: {4}",
@@ -2072,6 +2077,32 @@ public class RESTUtil {
     return expiredBatches;
   }
 
+  // Non expired batches among the given valid batches
+  private static Vector<Hashtable<String, String>> getBatchData(List<IInvntryBatch> validBatches,
+                                                                Locale locale, String timezone,
+                                                                boolean isAutoPostingIssuesEnabled) {
+    Vector<Hashtable<String, String>> batches = new Vector<>();
+    for (IInvntryBatch batch : validBatches) {
+      if (!batch.isExpired()) {
+        batches.add(batch.toMapZ(locale, timezone, isAutoPostingIssuesEnabled));
+      }
+    }
+    return batches;
+  }
+
+  // Expired batches with stock among the given batches
+  private static Vector<Hashtable<String, String>> getExpiredBatchData(
+      List<IInvntryBatch> nonZeroBatches, Locale locale, String timezone,
+      boolean isAutoPostingIssuesEnabled) {
+    Vector<Hashtable<String, String>> expiredBatches = new Vector<>();
+    for (IInvntryBatch batch : nonZeroBatches) {
+      if (batch.isExpired() && BigUtil.greaterThanZero(batch.getQuantity())) {
+        expiredBatches.add(batch.toMapZ(locale, timezone, isAutoPostingIssuesEnabled));
+      }
+    }
+    return expiredBatches;
+  }
+
   protected static Map<String, Map<String, String>> getReasonsByTag(InventoryConfig ic) {
     Map<String, Map<String, String>> rsnsByMtag = new HashMap<>(1,1);
     if (MapUtils.isNotEmpty(ic.getImTransReasons())) {
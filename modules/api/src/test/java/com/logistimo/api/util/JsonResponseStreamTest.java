@@ -0,0 +1,81 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.api.util;
+
+import com.google.gson.Gson;
+import com.logistimo.proto.JsonTagsZ;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Hashtable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class JsonResponseStreamTest {
+
+  @Test
+  public void testStreamsRecordsBetweenProperties() throws Exception {
+    StringWriter out = new StringWriter();
+    JsonResponseStream stream = new JsonResponseStream(new Gson(), () -> out, "mt")
+        .property("v", "01").property("st", "0").property("cu", null);
+    Arrays.asList(Collections.singletonMap("mid", "1"), Collections.singletonMap("mid", "2"))
+        .forEach(stream);
+    stream.property("nInv", 2).finish();
+    assertEquals("{\"v\":\"01\",\"st\":\"0\",\"mt\":[{\"mid\":\"1\"},{\"mid\":\"2\"}],\"nInv\":2}",
+        out.toString());
+    assertEquals(2, stream.getCount());
+  }
+
+  @Test
+  public void testLeavesOutEmptyListUnlessBegun() throws Exception {
+    StringWriter out = new StringWriter();
+    JsonResponseStream stream = new JsonResponseStream(new Gson(), () -> out, "mt");
+    assertFalse(stream.isStarted());
+    stream.property("st", "0").finish();
+    assertEquals("{\"st\":\"0\"}", out.toString());
+
+    StringWriter listOut = new StringWriter();
+    new JsonResponseStream(new Gson(), () -> listOut, "trn").beginList().finish();
+    assertEquals("{\"trn\":[]}", listOut.toString());
+  }
+
+  @Test
+  public void testMatchesTreeSerialization() throws Exception {
+    Hashtable<String, Object> material = new Hashtable<>();
+    material.put("mid", "1");
+    material.put("bt", Collections.singletonList(Collections.singletonMap("bid", "<b&1>")));
+    String expected = GsonUtil.getInventoryOutputToJson(true,
+        Collections.singletonList(material), "INR", null, 1, "01");
+    StringWriter out = new StringWriter();
+    JsonResponseStream stream = GsonUtil.getInventoryOutputStream(() -> out, "INR", "01");
+    stream.accept(material);
+    stream.property(JsonTagsZ.NUMBER_OF_INVENTORY, 1).finish();
+    assertEquals(new Gson().fromJson(expected, Object.class),
+        new Gson().fromJson(out.toString(), Object.class));
+  }
+}
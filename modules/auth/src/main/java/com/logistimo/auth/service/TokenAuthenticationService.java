@@ -0,0 +1,47 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.auth.service;
+
+import com.logistimo.services.ObjectNotFoundException;
+import com.logistimo.services.ServiceException;
+import com.logistimo.users.entity.IUserAccount;
+import com.logistimo.users.entity.IUserToken;
+
+/**
+ * Authentication of a request token, with the user details looked up for it. Kept apart from
+ * {@link AuthenticationService}, which cannot refer to user accounts.
+ */
+public interface TokenAuthenticationService extends AuthenticationService {
+
+  /**
+   * Account of the user of an authenticated token, cached along with the token
+   */
+  IUserAccount getUserAccount(IUserToken token) throws ObjectNotFoundException;
+
+  /**
+   * Whether the user of an authenticated token has access to the domain, cached along with the token
+   */
+  boolean hasAccessToDomain(IUserToken token, Long domainId)
+      throws ServiceException, ObjectNotFoundException;
+}
@@ -28,7 +28,7 @@ import com.logistimo.auth.SecurityUtil;
 import com.logistimo.auth.action.AuditAction;
 import com.logistimo.auth.command.VerifyCaptchaCommand;
 import com.logistimo.auth.service.AuthProvider;
-import com.logistimo.auth.service.AuthenticationService;
+import com.logistimo.auth.service.TokenAuthenticationService;
 import com.logistimo.auth.utils.SecurityUtils;
 import com.logistimo.communications.MessageHandlingException;
 import com.logistimo.communications.service.EmailManager;
@@ -109,7 +109,7 @@ import javax.jdo.PersistenceManager;
 import javax.jdo.Query;
 
 @Service
-public class AuthenticationServiceImpl implements AuthenticationService {
+public class AuthenticationServiceImpl implements TokenAuthenticationService {
 
   private static final XLog xLogger = XLog.getLog(AuthenticationServiceImpl.class);
   private static final String UPDATE_LAST_ACCESSED_TASK = "/s2/api/users/update/mobileaccessed";
@@ -142,6 +142,16 @@ public class AuthenticationServiceImpl implements AuthenticationService {
 
   private TwoFactorAuthenticationService twoFactorAuthenticationService;
 
+  private final ValidatedTokenCache tokenCache =
+      new ValidatedTokenCache(ConfigUtil.getInt(PropertyConstants.TOKEN_CACHE_SIZE, 10_000),
+          ConfigUtil.getInt(PropertyConstants.TOKEN_CACHE_SECONDS, 300) * 1000L);
+
+  public AuthenticationServiceImpl() {
+    tokenCache.startFlushing(
+        ConfigUtil.getInt(PropertyConstants.TOKEN_ACCESS_FLUSH_SECONDS, 60) * 1000L,
+        this::flushWebAccessTimes, this::flushMobileAccessTimes);
+  }
+
   @Autowired
   public void setCacheService(MemcacheService memcacheService) {
     this.memcacheService = memcacheService;
@@ -241,43 +251,80 @@ public class AuthenticationServiceImpl implements AuthenticationService {
     if (StringUtils.isEmpty(token)) {
       throw new UnauthorizedException("Token is empty or null");
     }
+    String tokenKey = PasswordEncoder.MD5(token);
+    long now = System.currentTimeMillis();
+    ValidatedTokenCache.Entry entry = tokenCache.get(tokenKey);
+    if (entry == null || !entry.isActive(WEB_TOKEN_INACTIVITY_MILLIS, now)) {
+      entry = validateToken(token, tokenKey, now);
+    }
+    IUserToken iUserToken = entry.getToken();
+    try {
+      if(SourceConstants.BULLETIN_BOARD != accessInitiator.intValue() && iUserToken.hasAccessKey()) {
+        throw new UnauthorizedException("G002", new Object[]{});
+      }
+      if (iUserToken.getExpires() == null) {
+        entry.setLastAccess(now);
+        tokenCache.recordWebAccess(TOKEN_ACCESS_PREFIX + token, now);
+      } else {
+        checkTokenExpiry(iUserToken);
+        updateLastAccessTime(accessInitiator, iUserToken, now);
+      }
+    } catch (UnauthorizedException e) {
+      tokenCache.evictToken(tokenKey);
+      throw e;
+    }
+    return iUserToken;
+  }
+
+  /**
+   * Looks up the token and checks the inactivity of web tokens, caching it if valid
+   */
+  private ValidatedTokenCache.Entry validateToken(String token, String tokenKey, long now) {
+    long epoch = tokenCache.getEpoch();
     IUserToken iUserToken;
     PersistenceManager pm = PMF.get().getPersistenceManager();
     try {
-      iUserToken = JDOUtils.getObjectById(IUserToken.class, PasswordEncoder.MD5(token), pm);
+      iUserToken = JDOUtils.getObjectById(IUserToken.class, tokenKey, pm);
     } catch (JDOObjectNotFoundException e) {
+      tokenCache.evictToken(tokenKey);
       throw new UnauthorizedException("Invalid token");
     } finally {
       pm.close();
     }
-
-    if (iUserToken != null) {
-      if(SourceConstants.BULLETIN_BOARD != accessInitiator.intValue() && iUserToken.hasAccessKey()) {
-        throw new UnauthorizedException("G002", new Object[]{});
-      }
-      if (iUserToken.getExpires() == null) {
+    if (iUserToken == null) {
+      throw new UnauthorizedException("Invalid Token " + token);
+    }
+    if (iUserToken.getExpires() == null) {
+      try {
         checkWebTokenExpiry(token);
-        updateWebAccessTime(token);
-      } else {
-        checkTokenExpiry(iUserToken);
-        updateLastAccessTime(accessInitiator, iUserToken);
+      } catch (UnauthorizedException e) {
+        tokenCache.evictToken(tokenKey);
+        throw e;
       }
-      return iUserToken;
-    } else {
-      throw new UnauthorizedException("Invalid Token " + token);
     }
+    return tokenCache.put(tokenKey, iUserToken, now, epoch);
   }
 
   private void updateWebAccessTime(String token) {
     memcacheService.put(TOKEN_ACCESS_PREFIX + token, System.currentTimeMillis());
   }
 
-  private void updateLastAccessTime(Integer accessInitiator, IUserToken iUserToken) {
+  private void updateLastAccessTime(Integer accessInitiator, IUserToken iUserToken, long now) {
     if (!Objects.equals(accessInitiator, Constants.LAST_ACCESSED_BY_SYSTEM)) {
-      String userId = iUserToken.getUserId();
+      tokenCache.recordMobileAccess(iUserToken.getUserId(), now);
+    }
+  }
+
+  private void flushWebAccessTimes(Map<String, Long> accessTimes) {
+    memcacheService.putMulti(new HashMap<>(accessTimes), null);
+  }
+
+  private void flushMobileAccessTimes(Map<String, Long> accessTimes) {
+    for (Map.Entry<String, Long> accessTime : accessTimes.entrySet()) {
+      String userId = accessTime.getKey();
       Map<String, String> params = new HashMap<>(2);
       params.put("userId", userId);
-      params.put("aTime", String.valueOf(System.currentTimeMillis()));
+      params.put("aTime", String.valueOf(accessTime.getValue()));
       try {
         taskService.schedule(ITaskService.QUEUE_DEFAULT, UPDATE_LAST_ACCESSED_TASK, params,
             ITaskService.METHOD_POST);
@@ -288,6 +335,33 @@ public class AuthenticationServiceImpl implements AuthenticationService {
     }
   }
 
+  @Override
+  public IUserAccount getUserAccount(IUserToken token) throws ObjectNotFoundException {
+    ValidatedTokenCache.Entry entry = tokenCache.get(token.getToken());
+    IUserAccount account = entry != null ? entry.getAccount() : null;
+    if (account == null) {
+      account = usersService.getUserAccount(token.getUserId());
+      if (entry != null) {
+        entry.setAccount(account);
+      }
+    }
+    return account;
+  }
+
+  @Override
+  public boolean hasAccessToDomain(IUserToken token, Long domainId)
+      throws ServiceException, ObjectNotFoundException {
+    ValidatedTokenCache.Entry entry = tokenCache.get(token.getToken());
+    Boolean hasAccess = entry != null ? entry.hasAccessToDomain(domainId) : null;
+    if (hasAccess == null) {
+      hasAccess = usersService.hasAccessToDomain(token.getUserId(), domainId);
+      if (entry != null) {
+        entry.setAccessToDomain(domainId, hasAccess);
+      }
+    }
+    return hasAccess;
+  }
+
   private void checkTokenExpiry(IUserToken iUserToken) {
     Date expires = iUserToken.getExpires();
     Calendar calendar = Calendar.getInstance();
@@ -335,6 +409,7 @@ public class AuthenticationServiceImpl implements AuthenticationService {
         List<IUserToken> tokensList = (List<IUserToken>) q.execute(userId);
         if (CollectionUtils.isNotEmpty(tokensList)) {
           pm.deletePersistentAll(tokensList);
+          tokenCache.revokeUser(userId);
           return true;
         }
       } catch (JDOObjectNotFoundException ignored) {
@@ -355,6 +430,24 @@ public class AuthenticationServiceImpl implements AuthenticationService {
     return false;
   }
 
+  @Override
+  public void revokeToken(String token) {
+    if (StringUtils.isEmpty(token)) {
+      return;
+    }
+    String tokenKey = PasswordEncoder.MD5(token);
+    PersistenceManager pm = PMF.get().getPersistenceManager();
+    try {
+      pm.deletePersistent(JDOUtils.getObjectById(IUserToken.class, tokenKey, pm));
+    } catch (JDOObjectNotFoundException ignored) {
+      //do nothing
+    } finally {
+      pm.close();
+    }
+    memcacheService.delete(TOKEN_ACCESS_PREFIX + token);
+    tokenCache.revokeToken(tokenKey);
+  }
+
   @Override
   public String getUserToken(String userId) {
     if (StringUtils.isNotEmpty(userId)) {
@@ -879,6 +972,7 @@ public class AuthenticationServiceImpl implements AuthenticationService {
   @Override
   public void removeUserFromCache(String userId) {
     memcacheService.delete(Constants.USER_KEY + CharacterConstants.HASH + userId);
+    tokenCache.revokeUser(userId);
   }
 
   @Override
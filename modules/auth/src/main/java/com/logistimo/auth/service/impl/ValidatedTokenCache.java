@@ -0,0 +1,258 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.auth.service.impl;
+
+import com.logistimo.logger.XLog;
+import com.logistimo.services.cache.InvalidationBus;
+import com.logistimo.users.entity.IUserAccount;
+import com.logistimo.users.entity.IUserToken;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * In-process cache of validated tokens along with the account of their user, so that a request
+ * with a known token is authenticated without any remote call. An entry lives until its token
+ * expires, at most {@code ttlMillis}, and is revoked on all nodes through the
+ * {@link InvalidationBus} when the tokens or the account of its user change.
+ *
+ * Token access times, which used to be written on every request, are buffered here and handed to
+ * the flusher every {@code flushMillis}, latest time per key.
+ */
+public class ValidatedTokenCache {
+
+  private static final XLog xLogger = XLog.getLog(ValidatedTokenCache.class);
+
+  private static final String MESSAGE_PREFIX = "TOKEN:";
+  private static final String USER_PREFIX = "U:";
+  private static final String TOKEN_PREFIX = "T:";
+
+  private final int maxSize;
+  private final long ttlMillis;
+  private final Map<String, Entry> entries;
+  // Bumped on every revocation, a token read before it must not be cached after it
+  private long epoch;
+  private final Map<String, Long> webAccessTimes = new ConcurrentHashMap<>();
+  private final Map<String, Long> mobileAccessTimes = new ConcurrentHashMap<>();
+
+  ValidatedTokenCache(int maxSize, long ttlMillis) {
+    this.maxSize = maxSize;
+    this.ttlMillis = ttlMillis;
+    this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        return size() > ValidatedTokenCache.this.maxSize;
+      }
+    };
+    InvalidationBus.register(MESSAGE_PREFIX, new InvalidationBus.Listener() {
+      @Override
+      public void onMessage(String message) {
+        if (message.startsWith(USER_PREFIX)) {
+          evictUser(message.substring(USER_PREFIX.length()));
+        } else if (message.startsWith(TOKEN_PREFIX)) {
+          evictToken(message.substring(TOKEN_PREFIX.length()));
+        }
+      }
+
+      @Override
+      public void onReset() {
+        clear();
+      }
+    });
+  }
+
+  /**
+   * Hands the buffered access times to the given consumers every {@code flushMillis}
+   *
+   * @param webFlusher    web token access times by key
+   * @param mobileFlusher mobile access times by user id
+   */
+  void startFlushing(long flushMillis, Consumer<Map<String, Long>> webFlusher,
+                     Consumer<Map<String, Long>> mobileFlusher) {
+    ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "token-access-flusher");
+      thread.setDaemon(true);
+      return thread;
+    });
+    flusher.scheduleWithFixedDelay(() -> {
+      try {
+        flush(webAccessTimes, webFlusher);
+        flush(mobileAccessTimes, mobileFlusher);
+      } catch (Exception e) {
+        xLogger.warn("Failed to flush token access times", e);
+      }
+    }, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * @return the entry of the token with the given key, or null if unknown or expired
+   */
+  public synchronized Entry get(String tokenKey) {
+    Entry entry = entries.get(tokenKey);
+    if (entry != null && entry.validUntil < System.currentTimeMillis()) {
+      entries.remove(tokenKey);
+      return null;
+    }
+    return entry;
+  }
+
+  public synchronized long getEpoch() {
+    return epoch;
+  }
+
+  /**
+   * Caches a validated token, unless tokens were revoked since {@code readEpoch}
+   *
+   * @param lastAccess last access time of a web token
+   * @return the entry, cached or not
+   */
+  public synchronized Entry put(String tokenKey, IUserToken token, long lastAccess,
+                                long readEpoch) {
+    long validUntil = System.currentTimeMillis() + ttlMillis;
+    if (token.getExpires() != null) {
+      validUntil = Math.min(validUntil, token.getExpires().getTime());
+    }
+    Entry entry = new Entry(token, validUntil, lastAccess);
+    if (readEpoch == epoch) {
+      entries.put(tokenKey, entry);
+    }
+    return entry;
+  }
+
+  /**
+   * Revokes the cached tokens of the user on all nodes
+   */
+  public void revokeUser(String userId) {
+    evictUser(userId);
+    InvalidationBus.publish(MESSAGE_PREFIX, USER_PREFIX + userId);
+  }
+
+  /**
+   * Revokes the cached token with the given key on all nodes
+   */
+  public void revokeToken(String tokenKey) {
+    evictToken(tokenKey);
+    InvalidationBus.publish(MESSAGE_PREFIX, TOKEN_PREFIX + tokenKey);
+  }
+
+  public void recordWebAccess(String accessKey, long time) {
+    webAccessTimes.merge(accessKey, time, Math::max);
+  }
+
+  public void recordMobileAccess(String userId, long time) {
+    mobileAccessTimes.merge(userId, time, Math::max);
+  }
+
+  synchronized void evictUser(String userId) {
+    epoch++;
+    Iterator<Entry> it = entries.values().iterator();
+    while (it.hasNext()) {
+      if (userId.equals(it.next().token.getUserId())) {
+        it.remove();
+      }
+    }
+  }
+
+  synchronized void evictToken(String tokenKey) {
+    epoch++;
+    entries.remove(tokenKey);
+  }
+
+  synchronized void clear() {
+    epoch++;
+    entries.clear();
+  }
+
+  synchronized int size() {
+    return entries.size();
+  }
+
+  private static void flush(Map<String, Long> accessTimes, Consumer<Map<String, Long>> flusher) {
+    if (accessTimes.isEmpty()) {
+      return;
+    }
+    Map<String, Long> batch = new HashMap<>(accessTimes.size());
+    for (String key : accessTimes.keySet()) {
+      Long time = accessTimes.remove(key);
+      if (time != null) {
+        batch.put(key, time);
+      }
+    }
+    flusher.accept(batch);
+  }
+
+  public static class Entry {
+
+    private final IUserToken token;
+    private final long validUntil;
+    private volatile long lastAccess;
+    private volatile IUserAccount account;
+    private final Map<Long, Boolean> domainAccess = new ConcurrentHashMap<>();
+
+    Entry(IUserToken token, long validUntil, long lastAccess) {
+      this.token = token;
+      this.validUntil = validUntil;
+      this.lastAccess = lastAccess;
+    }
+
+    public IUserToken getToken() {
+      return token;
+    }
+
+    /**
+     * @return true if the web token was used on this node within {@code inactivityMillis}. Use on
+     * other nodes only extends it, so false has to be confirmed from the shared access time.
+     */
+    public boolean isActive(long inactivityMillis, long now) {
+      return token.getExpires() != null || now <= lastAccess + inactivityMillis;
+    }
+
+    public void setLastAccess(long lastAccess) {
+      this.lastAccess = lastAccess;
+    }
+
+    public IUserAccount getAccount() {
+      return account;
+    }
+
+    public void setAccount(IUserAccount account) {
+      this.account = account;
+    }
+
+    public Boolean hasAccessToDomain(Long domainId) {
+      return domainAccess.get(domainId);
+    }
+
+    public void setAccessToDomain(Long domainId, boolean hasAccess) {
+      domainAccess.put(domainId, hasAccess);
+    }
+  }
+}
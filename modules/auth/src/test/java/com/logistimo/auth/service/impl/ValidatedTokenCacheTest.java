@@ -0,0 +1,99 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.auth.service.impl;
+
+import com.logistimo.services.cache.InvalidationBus;
+import com.logistimo.users.entity.IUserToken;
+
+import org.testng.annotations.Test;
+
+import java.util.Date;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+
+public class ValidatedTokenCacheTest {
+
+  @Test
+  public void testEntryExpires() throws InterruptedException {
+    ValidatedTokenCache cache = new ValidatedTokenCache(10, 20);
+    cache.put("t1", getToken("u1", null), 0, cache.getEpoch());
+    assertNotNull(cache.get("t1"));
+    Thread.sleep(50);
+    assertNull(cache.get("t1"));
+    assertEquals(cache.size(), 0);
+
+    // A token that expires before the cache TTL is not kept past its own expiry
+    cache = new ValidatedTokenCache(10, 60000);
+    cache.put("t2", getToken("u1", new Date(System.currentTimeMillis() - 1)), 0,
+        cache.getEpoch());
+    assertNull(cache.get("t2"));
+  }
+
+  @Test
+  public void testRevocation() {
+    ValidatedTokenCache cache = new ValidatedTokenCache(10, 60000);
+    cache.put("t1", getToken("u1", null), 0, cache.getEpoch());
+    cache.put("t2", getToken("u1", null), 0, cache.getEpoch());
+    cache.put("t3", getToken("u2", null), 0, cache.getEpoch());
+    cache.put("t4", getToken("u3", null), 0, cache.getEpoch());
+
+    cache.revokeUser("u1");
+    assertNull(cache.get("t1"));
+    assertNull(cache.get("t2"));
+    assertNotNull(cache.get("t3"));
+
+    cache.revokeToken("t3");
+    assertNull(cache.get("t3"));
+
+    // Revoked on another node
+    InvalidationBus.dispatch("TOKEN:U:u3");
+    assertNull(cache.get("t4"));
+    assertEquals(cache.size(), 0);
+  }
+
+  @Test
+  public void testTokenReadBeforeRevocationIsNotCached() {
+    ValidatedTokenCache cache = new ValidatedTokenCache(10, 60000);
+    IUserToken token = getToken("u1", null);
+    long epoch = cache.getEpoch();
+    // The token is revoked while it is being validated
+    cache.revokeToken("t1");
+    assertNotNull(cache.put("t1", token, 0, epoch));
+    assertNull(cache.get("t1"));
+
+    cache.put("t1", token, 0, cache.getEpoch());
+    assertNotNull(cache.get("t1"));
+  }
+
+  private static IUserToken getToken(String userId, Date expires) {
+    IUserToken token = mock(IUserToken.class);
+    when(token.getUserId()).thenReturn(userId);
+    when(token.getExpires()).thenReturn(expires);
+    return token;
+  }
+}
@@ -41,6 +41,7 @@ import com.logistimo.inventory.dao.ITransDao;
 import com.logistimo.inventory.entity.IInvntry;
 import com.logistimo.inventory.entity.IInvntryEvntLog;
 import com.logistimo.inventory.entity.ITransaction;
+import com.logistimo.inventory.models.InventoryContext;
 import com.logistimo.inventory.service.InventoryManagementService;
 import com.logistimo.inventory.service.impl.InventoryManagementServiceImpl;
 import com.logistimo.logger.XLog;
@@ -394,6 +395,8 @@ public class MnlTransactionUtil {
   private static boolean saveTransactionRowList(List<TransactionRow> transRowList, String type) {
     xLogger.fine("Entering saveTransactionRowList. transRowList.size: {0}", transRowList.size());
     boolean hasSaveError = false;
+    // Tags resolved for a row are reused for the rest of the upload
+    InventoryContext context = new InventoryContext();
     for (TransactionRow aTransRowList : transRowList) {
       BulkUploadMgr.EntityContainer ec = new BulkUploadMgr.EntityContainer();
       ITransaction transaction = aTransRowList.transaction;
@@ -402,7 +405,8 @@ public class MnlTransactionUtil {
       try {
         InventoryManagementService ims =
             StaticApplicationContext.getBean(InventoryManagementServiceImpl.class);
-        ITransaction transactionInError = ims.updateInventoryTransaction(domainId, transaction);
+        ITransaction transactionInError =
+            ims.updateInventoryTransaction(domainId, transaction, context);
         if (transactionInError != null) {
           xLogger.warn(
               "Failed to create the Transaction. type: {0}, domainId: {1}, kioskId: {2}, materialId: {3}, sourceUserId: {4}",
@@ -32,6 +32,7 @@ import com.logistimo.models.ICounter;
 import com.logistimo.reports.dao.IReportsDao;
 import com.logistimo.services.IBackendService;
 import com.logistimo.services.blobstore.BlobstoreService;
+import com.logistimo.services.cache.LockService;
 import com.logistimo.services.cache.MemcacheService;
 import com.logistimo.services.http.URLFetchService;
 import com.logistimo.services.mapred.IMapredService;
@@ -51,6 +52,7 @@ public abstract class AppFactory {
   protected StorageUtil storageUtil;
   protected IMapredService mapredService;
   protected MemcacheService memCacheService;
+  protected LockService lockService;
   protected BlobstoreService blobStoreService;
   protected URLFetchService urlFetchService;
   protected IBackendService backendService;
@@ -84,6 +86,8 @@ public abstract class AppFactory {
 
   public abstract MemcacheService getMemcacheService();
 
+  public abstract LockService getLockService();
+
   public abstract BlobstoreService getBlobstoreService();
 
   public abstract URLFetchService getURLFetchService();
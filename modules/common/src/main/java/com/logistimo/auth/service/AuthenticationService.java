@@ -46,6 +46,11 @@ public interface AuthenticationService {
 
   String getUserIdByToken(String token);
 
+  /**
+   * Logs out the given token, on all nodes
+   */
+  void revokeToken(String token);
+
   Boolean clearUserTokens(String userId, boolean removeAccessKeys);
 
   /**
@@ -33,4 +33,7 @@ public class PropertyConstants {
   public static final String DEFAULT_REPORT_FREQUENCY = "default.report.frequency";
   public static final String TOKEN_EXPIRY = "token.expiry.minutes";
   public static final String TOKEN_EXPIRE_WEB = "token.expiry.web.minutes";
+  public static final String TOKEN_CACHE_SIZE = "auth.token.cache.size";
+  public static final String TOKEN_CACHE_SECONDS = "auth.token.cache.seconds";
+  public static final String TOKEN_ACCESS_FLUSH_SECONDS = "auth.token.access.flush.seconds";
 }
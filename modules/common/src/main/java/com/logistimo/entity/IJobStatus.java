@@ -37,6 +37,7 @@ public interface IJobStatus {
 
   String TYPE_EXPORT = "export";
   String TYPE_CUSTOMREPORT = "customreport";
+  String TYPE_MAPRED = "mapred";
 
   Long getJobId();
 
@@ -45,6 +45,7 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.net.URLEncoder;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
@@ -65,7 +66,7 @@ public class PagedExec {
   // Logger
   private static final XLog xLogger = XLog.getLog(PagedExec.class);
   // Task URL
-  private static final String TASK_URL = "/task/pagedexec";
+  private static final String TASK_URL = PagedExecTaskHandler.TASK_URL;
 
   // Execute a procedure on entities of class 'clazz' with filtering on key-values params.
   // NOTE: The key names in 'params' should be same as method names in the entity class 'clazz'; 'prevOutput' is the previous output of processor.process(), if any
@@ -145,7 +146,16 @@ public class PagedExec {
       try {
         // Get results
         Query q;
-        if (QueryParams.QTYPE.SQL.equals(qp.qType)) {
+        List<Object> sqlParams = null;
+        boolean seek = qp.seekKey != null && QueryParams.QTYPE.SQL.equals(qp.qType);
+        if (seek) {
+          // Continue after the last row seen, instead of re-scanning the skipped rows
+          sqlParams = qp.listParams != null ? new ArrayList<>(qp.listParams) : new ArrayList<>();
+          String query = qp.seekKey.apply(qp.query, sqlParams,
+              pageParams != null ? pageParams.getSize() : null);
+          q = pm.newQuery("javax.jdo.query.SQL", query);
+          q.setClass(JDOUtils.getImplClass(qp.qClazz));
+        } else if (QueryParams.QTYPE.SQL.equals(qp.qType)) {
           String query = qp.query;
           if (query != null && pageParams != null && !query.contains(" LIMIT ")) {
             query +=
@@ -163,9 +173,17 @@ public class PagedExec {
         List results = null;
         int size = 0;
         try {
-          results = execute(qp, q);
+          if (seek) {
+            results = sqlParams.isEmpty() ? (List) q.execute()
+                : (List) q.executeWithArray(sqlParams.toArray());
+          } else {
+            results = execute(qp, q);
+          }
           if (results != null) {
             size = results.size();
+            if (seek && size > 0) {
+              qp.seekKey.advance(results.get(size - 1));
+            }
             if (incrementOffset) {
               offset += size;
             }
@@ -240,6 +258,10 @@ public class PagedExec {
         if (listParamsStr != null) {
           taskParams.put("lParams", URLEncoder.encode(listParamsStr, "UTF-8"));
         }
+        String seekKeyStr = qp.toSeekKeyString();
+        if (seekKeyStr != null) {
+          taskParams.put("sk", URLEncoder.encode(seekKeyStr, "UTF-8"));
+        }
         if (finalizer != null) {
           taskParams.put("furl", URLEncoder.encode(finalizer.url, "UTF-8"));
           taskParams.put("fqueue", finalizer.queue);
@@ -0,0 +1,154 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.pagination;
+
+import com.logistimo.logger.XLog;
+import com.logistimo.pagination.PagedExec.Finalizer;
+import com.logistimo.services.taskqueue.ITaskHandler;
+
+import org.apache.commons.lang.StringUtils;
+import org.springframework.stereotype.Component;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs a page of a paged execution from the task parameters. Used both by the task queue (in-process)
+ * and by PagedExecServlet.
+ */
+@Component
+public class PagedExecTaskHandler implements ITaskHandler {
+
+  public static final String TASK_URL = "/task/pagedexec";
+  private static final XLog xLogger = XLog.getLog(PagedExecTaskHandler.class);
+
+  private static String getParameter(Map<String, List<String>> params, String name) {
+    List<String> values = params.get(name);
+    return values != null && !values.isEmpty() ? values.get(0) : null;
+  }
+
+  private static String decode(String value) throws UnsupportedEncodingException {
+    return value != null ? URLDecoder.decode(value, "UTF-8") : null;
+  }
+
+  @Override
+  public List<String> getUrls() {
+    return Collections.singletonList(TASK_URL);
+  }
+
+  @Override
+  public void handle(Map<String, List<String>> params, Map<String, String> headers,
+                     byte[] payload, String contentType) throws Exception {
+    xLogger.fine("Entered handle");
+    String query = getParameter(params, "q");
+    String qTypeStr = getParameter(params, "qt");
+    String qClazzStr = getParameter(params, "qc");
+    String processorClass = getParameter(params, "proc");
+    String domainIdStr = getParameter(params, "domainid");
+    String sizeStr = getParameter(params, "s");
+    String cursor = getParameter(params, "c");
+    String offsetStr = getParameter(params, "o");
+    String incrementOffsetStr = getParameter(params, "io");
+    String prevOutput = getParameter(params, "output");
+    String paramsStr = getParameter(params, "params");
+    String listParamsStr = getParameter(params, "lParams");
+    String seekKeyStr = getParameter(params, "sk");
+    String finalizerUrl = getParameter(params, "furl");
+    String finalizerQueue = getParameter(params, "fqueue");
+    String taskIntervalSecondsStr = getParameter(params, "taskinterval");
+    int secondsBetweenTasks = 0;
+    if (taskIntervalSecondsStr != null && !taskIntervalSecondsStr.isEmpty()) {
+      try {
+        secondsBetweenTasks = Integer.parseInt(taskIntervalSecondsStr);
+      } catch (Exception e) {
+        xLogger.warn("{0} when trying to parse taskinterval {1} in domain {2}: {3}",
+            e.getClass().getName(), taskIntervalSecondsStr, domainIdStr, e.getMessage());
+      }
+    }
+    xLogger.info(
+        "q: {0}, proc: {1}, s: {2}, c: {3}, output: {4}, params: {5}, task-interval-secs.: {6}",
+        query, processorClass, sizeStr, cursor, prevOutput, paramsStr, taskIntervalSecondsStr);
+    query = decode(query);
+    prevOutput = decode(prevOutput);
+    paramsStr = decode(paramsStr);
+    listParamsStr = decode(listParamsStr);
+    seekKeyStr = decode(seekKeyStr);
+    Long domainId = null;
+    if (domainIdStr != null && !domainIdStr.isEmpty()) {
+      domainId = Long.valueOf(domainIdStr);
+    }
+
+    int offset = 1;
+    if (offsetStr != null && !offsetStr.isEmpty()) {
+      offset = Integer.valueOf(offsetStr);
+    }
+    boolean incrementOffset = true;
+    if (StringUtils.isNotEmpty(incrementOffsetStr)) {
+      incrementOffset = Boolean.parseBoolean(incrementOffsetStr);
+    }
+    int size = 0;
+    if (sizeStr != null && !sizeStr.isEmpty()) {
+      size = Integer.parseInt(sizeStr);
+    }
+    Finalizer finalizer = null;
+    if (finalizerUrl != null && !finalizerUrl.isEmpty()) {
+      finalizer = new Finalizer();
+      finalizer.url = decode(finalizerUrl);
+      if (finalizerQueue != null && !finalizerQueue.isEmpty()) {
+        finalizer.queue = finalizerQueue;
+      }
+    }
+
+    QueryParams.QTYPE qType = null;
+    Class qClazz = null;
+    if (qTypeStr != null) {
+      qType = QueryParams.QTYPE.valueOf(qTypeStr);
+      if (qType == QueryParams.QTYPE.SQL) {
+        try {
+          qClazz = Class.forName(qClazzStr);
+        } catch (ClassNotFoundException e) {
+          xLogger.severe("Class sent for qClazz is invalid in PagedExec {0}", qClazzStr, e);
+          return;
+        }
+      }
+    }
+    // Form the query params
+    QueryParams qp = new QueryParams(query, paramsStr, listParamsStr, qType, qClazz);
+    if (StringUtils.isNotEmpty(seekKeyStr)) {
+      qp.seekKey = (SeekKey) PagedExec.deserialize(seekKeyStr);
+    }
+    xLogger.info("Params: {0}", qp.params);
+    PageParams pageParams = new PageParams(cursor, offset, size);
+    try {
+      PagedExec.exec(domainId, qp, pageParams, processorClass, prevOutput, finalizer,
+          secondsBetweenTasks, false, incrementOffset);
+    } catch (Exception e) {
+      xLogger.severe("Exception {0} : {1}", e.getClass().getName(), e.getMessage());
+    }
+    xLogger.fine("Exiting handle");
+  }
+}
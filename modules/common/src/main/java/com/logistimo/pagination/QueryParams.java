@@ -37,6 +37,8 @@ public class QueryParams {
   public Class qClazz;
   public Map<String, Object> params;
   public List<String> listParams;
+  // Optional keyset position for SQL queries; when set, pages seek past the last row instead of using an offset
+  public SeekKey seekKey;
 
   public QueryParams(String query, List<String> listParams, QTYPE qType, Class qClazz) {
     this.query = query;
@@ -113,5 +115,13 @@ public class QueryParams {
     return PagedExec.serialize(listParams);
   }
 
+  // Get the seek key serialized string (a serialized base-64 string is returned)
+  public String toSeekKeyString() {
+    if (seekKey == null) {
+      return null;
+    }
+    return PagedExec.serialize(seekKey);
+  }
+
   public enum QTYPE {JQL, SQL, CQL}
 }
@@ -0,0 +1,221 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.pagination;
+
+import com.logistimo.constants.CharacterConstants;
+import com.logistimo.logger.XLog;
+
+import java.io.Serializable;
+import java.lang.reflect.Method;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Keyset (seek) position for paging SQL queries. Instead of skipping {@code offset} rows, each page
+ * continues after the last row seen, e.g. {@code (T, KEY) < (lastT, lastKey)} for a query ordered
+ * by T descending. The columns must uniquely order the rows, so the last one is typically the
+ * primary key.
+ * <p>
+ * It is serialized along with the query params between the tasks of a paged execution. Only plain
+ * row queries can be paged this way, not grouped or combined ones.
+ */
+public class SeekKey implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+  private static final XLog xLogger = XLog.getLog(SeekKey.class);
+  private static final String ORDER_BY = " ORDER BY ";
+
+  private final List<String> columns;
+  private final List<String> properties;
+  private final boolean descending;
+  private List<Object> lastValues;
+
+  /**
+   * @param columns    SQL columns in sort order, quoted if required (e.g. T, `KEY`)
+   * @param properties bean properties of the result objects holding those columns (e.g. timestamp,
+   *                   key)
+   * @param descending whether the query pages in descending order
+   */
+  public SeekKey(List<String> columns, List<String> properties, boolean descending) {
+    if (columns == null || properties == null || columns.isEmpty()
+        || columns.size() != properties.size()) {
+      throw new IllegalArgumentException("Seek columns and properties should match");
+    }
+    this.columns = columns;
+    this.properties = properties;
+    this.descending = descending;
+  }
+
+  public boolean isStarted() {
+    return lastValues != null;
+  }
+
+  public List<Object> getLastValues() {
+    return lastValues;
+  }
+
+  /**
+   * Rewrites the query to continue after the last row seen and to order by the seek columns. Any
+   * existing ORDER BY of the query is replaced, an existing LIMIT is kept. Seek parameters are
+   * added to {@code params}, dates as timestamps so that the driver converts them as it read them.
+   */
+  public String apply(String query, List<Object> params) {
+    return apply(query, params, null);
+  }
+
+  /**
+   * Same as {@link #apply(String, List)}, also limiting the rows to {@code limit} unless the query
+   * has a LIMIT of its own
+   */
+  public String apply(String query, List<Object> params, Integer limit) {
+    if (indexOfClause(query, "GROUP") != -1 || indexOfClause(query, "HAVING") != -1
+        || indexOfClause(query, "UNION") != -1) {
+      throw new IllegalArgumentException("Seek paging needs a plain row query: " + query);
+    }
+    int where = indexOfClause(query, "WHERE");
+    int orderBy = indexOfClause(query, "ORDER");
+    int existingLimit = indexOfClause(query, "LIMIT");
+    int end = query.length();
+    if (orderBy != -1) {
+      end = orderBy;
+    }
+    if (existingLimit != -1 && existingLimit < end) {
+      end = existingLimit;
+    }
+    String base = query.substring(0, end).trim();
+    StringBuilder sql = new StringBuilder();
+    if (lastValues == null) {
+      sql.append(base);
+    } else if (where == -1) {
+      sql.append(base).append(" WHERE ");
+      appendSeekCondition(sql, params);
+    } else {
+      // Keep the existing condition together, it may contain a top level OR
+      sql.append(base, 0, where).append("WHERE (").append(base.substring(where + 5).trim())
+          .append(") AND ");
+      appendSeekCondition(sql, params);
+    }
+    sql.append(ORDER_BY);
+    for (int i = 0; i < columns.size(); i++) {
+      if (i > 0) {
+        sql.append(CharacterConstants.COMMA);
+      }
+      sql.append(columns.get(i)).append(descending ? " DESC" : " ASC");
+    }
+    if (existingLimit != -1) {
+      sql.append(CharacterConstants.SPACE).append(query.substring(existingLimit).trim());
+    } else if (limit != null) {
+      sql.append(" LIMIT ").append(limit);
+    }
+    return sql.toString();
+  }
+
+  private void appendSeekCondition(StringBuilder sql, List<Object> params) {
+    String comparator = descending ? " < " : " > ";
+    sql.append(CharacterConstants.O_BRACKET);
+    for (int i = 0; i < columns.size(); i++) {
+      if (i > 0) {
+        sql.append(" OR ");
+      }
+      sql.append(CharacterConstants.O_BRACKET);
+      for (int j = 0; j < i; j++) {
+        sql.append(columns.get(j)).append(" = ? AND ");
+        params.add(toParam(lastValues.get(j)));
+      }
+      sql.append(columns.get(i)).append(comparator).append(CharacterConstants.QUESTION)
+          .append(CharacterConstants.C_BRACKET);
+      params.add(toParam(lastValues.get(i)));
+    }
+    sql.append(CharacterConstants.C_BRACKET);
+  }
+
+  /**
+   * Moves the position to the given row, typically the last row of the page just processed.
+   */
+  public void advance(Object row) {
+    List<Object> values = new ArrayList<>(properties.size());
+    for (String property : properties) {
+      values.add(getProperty(row, property));
+    }
+    lastValues = values;
+  }
+
+  private static Object toParam(Object value) {
+    if (value instanceof Date && !(value instanceof Timestamp)) {
+      return new Timestamp(((Date) value).getTime());
+    }
+    return value;
+  }
+
+  /**
+   * @return the start of the first occurrence of the keyword as a word of the query itself, outside
+   * brackets and quotes, -1 if there is none
+   */
+  static int indexOfClause(String query, String keyword) {
+    int depth = 0;
+    char quote = 0;
+    for (int i = 0; i < query.length(); i++) {
+      char c = query.charAt(i);
+      if (quote != 0) {
+        if (c == quote) {
+          quote = 0;
+        }
+      } else if (c == '\'' || c == '"' || c == '`') {
+        quote = c;
+      } else if (c == '(') {
+        depth++;
+      } else if (c == ')') {
+        depth--;
+      } else if (depth == 0 && query.regionMatches(true, i, keyword, 0, keyword.length())
+          && (i == 0 || !isWordChar(query.charAt(i - 1)))
+          && (i + keyword.length() == query.length()
+          || !isWordChar(query.charAt(i + keyword.length())))) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static boolean isWordChar(char c) {
+    return Character.isLetterOrDigit(c) || c == '_';
+  }
+
+  private static Object getProperty(Object row, String property) {
+    try {
+      Method getter = row.getClass().getMethod(
+          "get" + Character.toUpperCase(property.charAt(0)) + property.substring(1));
+      return getter.invoke(row);
+    } catch (Exception e) {
+      xLogger.warn("Unable to read seek property {0} from {1}", property, row.getClass(), e);
+      throw new IllegalArgumentException("Invalid seek property " + property, e);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "{ columns=" + columns + ", last=" + lastValues + "}";
+  }
+}
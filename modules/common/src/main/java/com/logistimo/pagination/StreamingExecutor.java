@@ -34,6 +34,7 @@ import com.logistimo.services.utils.ConfigUtil;
 
 import org.springframework.util.CollectionUtils;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 
@@ -99,8 +100,17 @@ public class StreamingExecutor {
             pm = PMF.get().getPersistenceManager();
           }
           Query q;
+          List<?> sqlParams = qp.listParams;
           if (QueryParams.QTYPE.SQL.equals(qp.qType)) {
-            q = pm.newQuery("javax.jdo.query.SQL", qp.query);
+            String query = qp.query;
+            if (qp.seekKey != null) {
+              // Streams in one query, the seek key only gives the rows a stable order
+              List<Object> seekParams =
+                  qp.listParams != null ? new ArrayList<>(qp.listParams) : new ArrayList<>();
+              query = qp.seekKey.apply(query, seekParams);
+              sqlParams = seekParams;
+            }
+            q = pm.newQuery("javax.jdo.query.SQL", query);
             if (!qp.query.toLowerCase().contains("fdreasons")) {
               q.setClass(JDOUtils.getImplClass(qp.qClazz));
             }
@@ -117,9 +127,9 @@ public class StreamingExecutor {
               results = (List) q.executeWithMap(qp.params);
             } else if (QueryParams.QTYPE.CQL.equals(qp.qType)) {
               results = AppFactory.get().getReportsDao().getResults(qp.query);
-            } else if (qp.listParams != null && !qp.listParams.isEmpty()
+            } else if (sqlParams != null && !sqlParams.isEmpty()
                 && QueryParams.QTYPE.SQL.equals(qp.qType)) {
-              results = (List) q.executeWithArray(qp.listParams.toArray());
+              results = (List) q.executeWithArray(sqlParams.toArray());
             } else {
               results = (List) q.execute();
             }
@@ -41,6 +41,14 @@ public interface BlobstoreService {
 
   void serve(String blobKeyStr, HttpServletResponse resp) throws IOException;
 
+  /**
+   * Serve a blob, honouring the conditional and range headers of {@code req} where supported.
+   */
+  default void serve(String blobKeyStr, HttpServletRequest req, HttpServletResponse resp)
+      throws IOException {
+    serve(blobKeyStr, resp);
+  }
+
   String createUploadUrl(String url);
 
   InputStream getInputStream(String blobKey);
@@ -0,0 +1,353 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.services.cache;
+
+import com.logistimo.logger.XLog;
+import com.logistimo.services.utils.ConfigUtil;
+import com.logistimo.utils.MetricsUtil;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lock service on top of three store operations: lock, unlock and renew. Waiting threads are
+ * parked until the store reports a release of one of their keys through {@link #onReleased}, or
+ * until the lease blocking them expires. Held leases are renewed in the background, but never past
+ * lock.lease.max.millis from when they were acquired, so a lock that is never released is freed
+ * as the fixed expiry of the cache based locks did.
+ *
+ * Wait time, hold time, contention and timeouts are recorded per key prefix, i.e. the key without
+ * its trailing id (TX, TX_O, TX_OA and kiosk for plain kiosk ids).
+ */
+public abstract class AbstractLockService implements LockService {
+
+  private static final XLog xLogger = XLog.getLog(AbstractLockService.class);
+  private static final String KIOSK_PREFIX = "kiosk";
+
+  protected final long leaseMillis;
+  private final long maxHoldMillis;
+  private final long maxWaitSliceMillis;
+  private final Map<String, Set<Waiter>> waiters = new ConcurrentHashMap<>();
+  private final ScheduledExecutorService renewer;
+
+  protected AbstractLockService() {
+    this(ConfigUtil.getInt("lock.lease.millis", 30000),
+        ConfigUtil.getInt("lock.lease.max.millis", 60000),
+        ConfigUtil.getInt("lock.wait.slice.millis", 2000));
+  }
+
+  protected AbstractLockService(long leaseMillis, long maxHoldMillis, long maxWaitSliceMillis) {
+    this.leaseMillis = leaseMillis;
+    this.maxHoldMillis = maxHoldMillis;
+    this.maxWaitSliceMillis = maxWaitSliceMillis;
+    renewer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "lock-lease-renewer");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Locks all the keys with a new token, or none of them.
+   *
+   * @return the token when locked, else the negated milliseconds until the blocking lock expires,
+   * 0 when unknown
+   */
+  protected abstract long tryLock(List<String> keys, long leaseMillis);
+
+  /**
+   * Locks each key independently, with the same result per key as {@link #tryLock}.
+   */
+  protected List<Long> tryLockEach(List<String> keys, long leaseMillis) {
+    List<Long> results = new ArrayList<>(keys.size());
+    for (String key : keys) {
+      List<String> singleKey = new ArrayList<>(1);
+      singleKey.add(key);
+      results.add(tryLock(singleKey, leaseMillis));
+    }
+    return results;
+  }
+
+  /**
+   * Deletes the keys still locked with the token and reports the release to waiters.
+   */
+  protected abstract boolean unlock(List<String> keys, long token);
+
+  /**
+   * Deletes the keys whoever holds them and reports the release to waiters.
+   */
+  protected abstract boolean forceUnlock(List<String> keys);
+
+  /**
+   * Extends the keys still locked with the token.
+   *
+   * @return false when any of the keys is no longer locked with the token
+   */
+  protected abstract boolean renew(List<String> keys, long token, long leaseMillis);
+
+  @Override
+  public LockLease acquire(List<String> keys, long waitMillis) {
+    String prefix = getPrefix(keys.get(0));
+    long start = System.nanoTime();
+    long deadline = start + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+    boolean contended = false;
+    Waiter waiter = new Waiter();
+    register(keys, waiter);
+    try {
+      while (true) {
+        long result = tryLock(keys, leaseMillis);
+        if (result > 0) {
+          recordWait(prefix, start, contended);
+          return grant(keys, result);
+        }
+        contended = true;
+        long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (remaining <= 0) {
+          recordTimeout(prefix, start);
+          return null;
+        }
+        waiter.await(getWaitSlice(remaining, -result));
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      recordTimeout(prefix, start);
+      return null;
+    } finally {
+      unregister(keys, waiter);
+    }
+  }
+
+  @Override
+  public Map<String, LockLease> acquireEach(Collection<String> keys, long waitMillis) {
+    Map<String, LockLease> leases = new HashMap<>(keys.size());
+    if (keys.isEmpty()) {
+      return leases;
+    }
+    List<String> pending = new ArrayList<>(keys);
+    String prefix = getPrefix(pending.get(0));
+    long start = System.nanoTime();
+    long deadline = start + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+    boolean contended = false;
+    Waiter waiter = new Waiter();
+    register(pending, waiter);
+    try {
+      while (true) {
+        List<Long> results = tryLockEach(pending, leaseMillis);
+        List<String> blocked = new ArrayList<>();
+        long minExpiry = 0;
+        for (int i = 0; i < pending.size(); i++) {
+          long result = results.get(i);
+          if (result > 0) {
+            List<String> singleKey = new ArrayList<>(1);
+            singleKey.add(pending.get(i));
+            leases.put(pending.get(i), grant(singleKey, result));
+          } else {
+            blocked.add(pending.get(i));
+            if (result < 0 && (minExpiry == 0 || -result < minExpiry)) {
+              minExpiry = -result;
+            }
+          }
+        }
+        if (blocked.isEmpty()) {
+          recordWait(prefix, start, contended);
+          return leases;
+        }
+        contended = true;
+        pending = blocked;
+        long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (remaining <= 0) {
+          recordTimeout(prefix, start);
+          return leases;
+        }
+        waiter.await(getWaitSlice(remaining, minExpiry));
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      recordTimeout(prefix, start);
+      return leases;
+    } finally {
+      unregister(keys, waiter);
+    }
+  }
+
+  @Override
+  public boolean release(LockLease lease) {
+    if (lease.renewal != null) {
+      lease.renewal.cancel(false);
+    }
+    MetricsUtil.getTimer(LockService.class, "lock." + getPrefix(lease.getKeys().get(0)) + ".hold")
+        .update(System.nanoTime() - lease.getAcquiredAt(), TimeUnit.NANOSECONDS);
+    try {
+      return unlock(lease.getKeys(), lease.getToken());
+    } catch (Exception e) {
+      xLogger.warn("Failed to release lock {0} with token {1}", lease.getKeys(),
+          lease.getToken(), e);
+      return false;
+    }
+  }
+
+  @Override
+  public boolean forceRelease(List<String> keys) {
+    try {
+      return forceUnlock(keys);
+    } catch (Exception e) {
+      xLogger.warn("Failed to release lock {0}", keys, e);
+      return false;
+    }
+  }
+
+  @Override
+  public void close() {
+    renewer.shutdownNow();
+    signalAll();
+  }
+
+  /**
+   * Wakes up threads waiting on any of the keys.
+   */
+  protected void onReleased(Collection<String> keys) {
+    for (String key : keys) {
+      Set<Waiter> keyWaiters = waiters.get(key);
+      if (keyWaiters != null) {
+        keyWaiters.forEach(Waiter::signal);
+      }
+    }
+  }
+
+  /**
+   * Wakes up all waiting threads, when releases may have been missed.
+   */
+  protected void signalAll() {
+    waiters.values().forEach(keyWaiters -> keyWaiters.forEach(Waiter::signal));
+  }
+
+  private LockLease grant(List<String> keys, long token) {
+    LockLease lease = new LockLease(keys, token);
+    long period = Math.max(leaseMillis / 3, 1);
+    lease.renewal =
+        renewer.scheduleAtFixedRate(() -> renewLease(lease), period, period, TimeUnit.MILLISECONDS);
+    return lease;
+  }
+
+  private void renewLease(LockLease lease) {
+    long heldMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lease.getAcquiredAt());
+    long remainingMillis = maxHoldMillis - heldMillis;
+    if (remainingMillis <= 0) {
+      lease.renewal.cancel(false);
+      return;
+    }
+    if (remainingMillis < leaseMillis) {
+      xLogger.warn("Lock {0} held for {1} ms, letting the lease expire in {2} ms", lease.getKeys(),
+          heldMillis, remainingMillis);
+      lease.renewal.cancel(false);
+    }
+    try {
+      if (!renew(lease.getKeys(), lease.getToken(), Math.min(leaseMillis, remainingMillis))) {
+        xLogger.warn("Lock {0} with token {1} is lost", lease.getKeys(), lease.getToken());
+        lease.setLost();
+        lease.renewal.cancel(false);
+      }
+    } catch (Exception e) {
+      xLogger.warn("Failed to renew lock {0} with token {1}", lease.getKeys(), lease.getToken(),
+          e);
+    }
+  }
+
+  private long getWaitSlice(long remainingMillis, long expiryMillis) {
+    long slice = Math.min(remainingMillis, maxWaitSliceMillis);
+    return expiryMillis > 0 ? Math.min(slice, expiryMillis) : slice;
+  }
+
+  private void register(Collection<String> keys, Waiter waiter) {
+    for (String key : keys) {
+      waiters.compute(key, (k, keyWaiters) -> {
+        if (keyWaiters == null) {
+          keyWaiters = ConcurrentHashMap.newKeySet();
+        }
+        keyWaiters.add(waiter);
+        return keyWaiters;
+      });
+    }
+  }
+
+  private void unregister(Collection<String> keys, Waiter waiter) {
+    for (String key : keys) {
+      waiters.computeIfPresent(key, (k, keyWaiters) -> {
+        keyWaiters.remove(waiter);
+        return keyWaiters.isEmpty() ? null : keyWaiters;
+      });
+    }
+  }
+
+  private void recordWait(String prefix, long start, boolean contended) {
+    MetricsUtil.getTimer(LockService.class, "lock." + prefix + ".wait")
+        .update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    if (contended) {
+      MetricsUtil.getMeter(LockService.class, "lock." + prefix + ".contention").mark();
+    }
+  }
+
+  private void recordTimeout(String prefix, long start) {
+    MetricsUtil.getTimer(LockService.class, "lock." + prefix + ".wait")
+        .update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    MetricsUtil.getMeter(LockService.class, "lock." + prefix + ".contention").mark();
+    MetricsUtil.getMeter(LockService.class, "lock." + prefix + ".timeouts").mark();
+  }
+
+  static String getPrefix(String key) {
+    int end = key.length();
+    while (end > 0 && Character.isDigit(key.charAt(end - 1))) {
+      end--;
+    }
+    while (end > 0 && key.charAt(end - 1) == '_') {
+      end--;
+    }
+    return end > 0 ? key.substring(0, end) : KIOSK_PREFIX;
+  }
+
+  private static class Waiter {
+
+    private boolean signalled;
+
+    synchronized void signal() {
+      signalled = true;
+      notifyAll();
+    }
+
+    synchronized void await(long millis) throws InterruptedException {
+      if (!signalled && millis > 0) {
+        wait(millis);
+      }
+      signalled = false;
+    }
+  }
+}
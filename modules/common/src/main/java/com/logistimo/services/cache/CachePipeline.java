@@ -0,0 +1,55 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.services.cache;
+
+/**
+ * Commands queued for a single round trip through {@link MemcacheService#pipeline}. Each command
+ * adds one result to the list returned by pipeline, in the order the commands were queued.
+ */
+public interface CachePipeline {
+
+  /**
+   * Result is the cached value, or null if the key is not in cache
+   */
+  void get(String cacheKey);
+
+  /**
+   * Result is Boolean.TRUE once the value is set
+   *
+   * @param expiry in seconds
+   */
+  void put(String cacheKey, Object obj, int expiry);
+
+  /**
+   * Result is a Boolean, true if the value was set, false if the key already exists
+   *
+   * @param expiry in seconds
+   */
+  void putIfNotExist(String cacheKey, Object obj, int expiry);
+
+  /**
+   * Result is a Boolean, true if the key existed
+   */
+  void delete(String cacheKey);
+}
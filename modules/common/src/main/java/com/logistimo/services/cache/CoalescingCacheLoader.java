@@ -0,0 +1,182 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.services.cache;
+
+import com.logistimo.AppFactory;
+import com.logistimo.logger.XLog;
+import com.logistimo.utils.MetricsUtil;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Loads expensive cache entries with single-flight semantics: concurrent misses on the same key
+ * in this JVM share one computation. Entries are refreshed in the background once they are within
+ * {@code refreshAheadSeconds} of expiry, so readers keep getting the cached value while it is
+ * recomputed. A short lived claim key ensures only one node refreshes an entry.
+ */
+public class CoalescingCacheLoader {
+
+  private static final XLog xLogger = XLog.getLog(CoalescingCacheLoader.class);
+  private static final String FRESH_SUFFIX = "_FRESH";
+  private static final String REFRESH_CLAIM_SUFFIX = "_REFRESHING";
+
+  private final String name;
+  private final int refreshAheadSeconds;
+  private final long waitSeconds;
+  private final Supplier<MemcacheService> cacheSupplier;
+  private final Map<String, CompletableFuture<Object>> inflight = new ConcurrentHashMap<>();
+  private final ThreadPoolExecutor refresher;
+
+  public CoalescingCacheLoader(String name, int refreshAheadSeconds, long waitSeconds,
+                               int refreshThreads) {
+    this(name, refreshAheadSeconds, waitSeconds, refreshThreads,
+        () -> AppFactory.get().getMemcacheService());
+  }
+
+  CoalescingCacheLoader(String name, int refreshAheadSeconds, long waitSeconds,
+                        int refreshThreads, Supplier<MemcacheService> cacheSupplier) {
+    this.name = name;
+    this.refreshAheadSeconds = refreshAheadSeconds;
+    this.waitSeconds = waitSeconds;
+    this.cacheSupplier = cacheSupplier;
+    AtomicInteger count = new AtomicInteger();
+    // Refreshes are best effort; drop them when the queue is full instead of blocking readers
+    this.refresher = new ThreadPoolExecutor(refreshThreads, refreshThreads, 60, TimeUnit.SECONDS,
+        new ArrayBlockingQueue<>(100), runnable -> {
+      Thread thread = new Thread(runnable, name + "-refresh-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }, new ThreadPoolExecutor.DiscardPolicy());
+    this.refresher.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Returns the cached value for {@code cacheKey}, computing it with {@code loader} on a miss.
+   *
+   * @param cacheKey  the cache key
+   * @param expiry    expiry of the cached value in seconds
+   * @param skipCache when true the cached value is ignored and recomputed
+   * @param loader    computes the value; it may also run on a background thread for refresh-ahead,
+   *                  so it must not depend on request scoped state
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T get(String cacheKey, int expiry, boolean skipCache, Callable<T> loader)
+      throws Exception {
+    MemcacheService cache = cacheSupplier.get();
+    if (cache != null && !skipCache) {
+      Map<String, Object> cached = cache.getMulti(Arrays.asList(cacheKey, cacheKey + FRESH_SUFFIX));
+      Object value = cached.get(cacheKey);
+      if (value != null) {
+        if (refreshAheadSeconds > 0 && cached.get(cacheKey + FRESH_SUFFIX) == null
+            && cache.putIfNotExist(cacheKey + REFRESH_CLAIM_SUFFIX, Boolean.TRUE)) {
+          refreshAhead(cacheKey, expiry, loader);
+        }
+        return (T) value;
+      }
+    }
+    return (T) load(cacheKey, expiry, loader, cache);
+  }
+
+  private void refreshAhead(String cacheKey, int expiry, Callable<?> loader) {
+    MetricsUtil.getMeter(CoalescingCacheLoader.class, "cache." + name + ".refresh").mark();
+    refresher.execute(() -> {
+      MemcacheService cache = cacheSupplier.get();
+      try {
+        load(cacheKey, expiry, loader, cache);
+      } catch (Exception e) {
+        xLogger.warn("Failed to refresh cache entry {0}", cacheKey, e);
+      } finally {
+        if (cache != null) {
+          cache.delete(cacheKey + REFRESH_CLAIM_SUFFIX);
+        }
+      }
+    });
+  }
+
+  private Object load(String cacheKey, int expiry, Callable<?> loader, MemcacheService cache)
+      throws Exception {
+    CompletableFuture<Object> flight = new CompletableFuture<>();
+    CompletableFuture<Object> existing = inflight.putIfAbsent(cacheKey, flight);
+    if (existing != null) {
+      MetricsUtil.getMeter(CoalescingCacheLoader.class, "cache." + name + ".coalesced").mark();
+      Object value = await(cacheKey, existing);
+      // Read back the published value so each caller gets its own copy to decorate
+      Object cached = cache != null ? cache.get(cacheKey) : null;
+      return cached != null ? cached : value;
+    }
+    try {
+      Object value = loader.call();
+      if (cache != null && value != null) {
+        try {
+          Map<String, Object> objects = new HashMap<>(2);
+          objects.put(cacheKey, value);
+          objects.put(cacheKey + FRESH_SUFFIX, Boolean.TRUE);
+          Map<String, Integer> expiries = new HashMap<>(2);
+          expiries.put(cacheKey, expiry);
+          expiries.put(cacheKey + FRESH_SUFFIX, Math.max(1, expiry - refreshAheadSeconds));
+          cache.putMulti(objects, expiries);
+        } catch (Exception e) {
+          xLogger.warn("Failed to cache entry {0}", cacheKey, e);
+        }
+      }
+      flight.complete(value);
+      return value;
+    } catch (Exception e) {
+      flight.completeExceptionally(e);
+      throw e;
+    } finally {
+      inflight.remove(cacheKey, flight);
+    }
+  }
+
+  private Object await(String cacheKey, CompletableFuture<Object> flight) throws Exception {
+    try {
+      return flight.get(waitSeconds, TimeUnit.SECONDS);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof Exception) {
+        throw (Exception) e.getCause();
+      }
+      throw e;
+    } catch (TimeoutException e) {
+      xLogger.warn("Timed out waiting for in flight load of {0}", cacheKey);
+      throw e;
+    }
+  }
+
+  public void close() {
+    refresher.shutdownNow();
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.services.cache;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lock service for a single JVM, for tests and single node setups.
+ */
+public class InMemoryLockService extends AbstractLockService {
+
+  private final Map<String, Holder> holders = new HashMap<>();
+  private long lastToken;
+
+  public InMemoryLockService() {
+  }
+
+  InMemoryLockService(long leaseMillis, long maxHoldMillis) {
+    super(leaseMillis, maxHoldMillis, leaseMillis);
+  }
+
+  @Override
+  protected synchronized long tryLock(List<String> keys, long leaseMillis) {
+    long now = System.currentTimeMillis();
+    for (String key : keys) {
+      Holder holder = holders.get(key);
+      if (holder != null && holder.expiresAt > now) {
+        return -(holder.expiresAt - now);
+      }
+    }
+    long token = ++lastToken;
+    for (String key : keys) {
+      holders.put(key, new Holder(token, now + leaseMillis));
+    }
+    return token;
+  }
+
+  @Override
+  protected boolean unlock(List<String> keys, long token) {
+    boolean released = false;
+    synchronized (this) {
+      for (String key : keys) {
+        Holder holder = holders.get(key);
+        if (holder != null && holder.token == token) {
+          holders.remove(key);
+          released = true;
+        }
+      }
+    }
+    if (released) {
+      onReleased(keys);
+    }
+    return released;
+  }
+
+  @Override
+  protected boolean forceUnlock(List<String> keys) {
+    boolean released = false;
+    synchronized (this) {
+      for (String key : keys) {
+        released |= holders.remove(key) != null;
+      }
+    }
+    if (released) {
+      onReleased(keys);
+    }
+    return released;
+  }
+
+  @Override
+  protected synchronized boolean renew(List<String> keys, long token, long leaseMillis) {
+    long now = System.currentTimeMillis();
+    boolean renewed = true;
+    for (String key : keys) {
+      Holder holder = holders.get(key);
+      if (holder != null && holder.token == token) {
+        holder.expiresAt = now + leaseMillis;
+      } else {
+        renewed = false;
+      }
+    }
+    return renewed;
+  }
+
+  private static class Holder {
+
+    private final long token;
+    private long expiresAt;
+
+    Holder(long token, long expiresAt) {
+      this.token = token;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
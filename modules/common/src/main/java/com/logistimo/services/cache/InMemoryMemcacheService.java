@@ -0,0 +1,242 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.services.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Memcache service backed by a local map, for tests and single node setups. Expired entries are
+ * removed when read.
+ */
+public class InMemoryMemcacheService implements MemcacheService {
+
+  private static final int DEFAULT_EXPIRY = 86400;
+  private static final int LOCK_EXPIRY = 60;
+  private static final int PAIR_LOCK_EXPIRY = 30;
+
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+  @Override
+  public Object get(String cacheKey) {
+    Entry entry = entries.get(cacheKey);
+    if (entry == null) {
+      return null;
+    }
+    if (entry.isExpired()) {
+      entries.remove(cacheKey, entry);
+      return null;
+    }
+    return entry.value;
+  }
+
+  @Override
+  public Map<String, Object> getMulti(Collection<String> cacheKeys) {
+    Map<String, Object> values = new HashMap<>(cacheKeys.size());
+    for (String cacheKey : cacheKeys) {
+      Object value = get(cacheKey);
+      if (value != null) {
+        values.put(cacheKey, value);
+      }
+    }
+    return values;
+  }
+
+  @Override
+  public void put(String cacheKey, Object obj) {
+    put(cacheKey, obj, DEFAULT_EXPIRY);
+  }
+
+  @Override
+  public void put(String cacheKey, Object obj, int expiry) {
+    entries.put(cacheKey, new Entry(obj, expiry));
+  }
+
+  @Override
+  public void putMulti(Map<String, Object> objects, Map<String, Integer> expiries) {
+    objects.forEach((cacheKey, obj) -> {
+      Integer expiry = expiries != null ? expiries.get(cacheKey) : null;
+      put(cacheKey, obj, expiry != null ? expiry : DEFAULT_EXPIRY);
+    });
+  }
+
+  @Override
+  public List<Object> pipeline(Consumer<CachePipeline> commands) {
+    List<Object> results = new ArrayList<>();
+    commands.accept(new CachePipeline() {
+      @Override
+      public void get(String cacheKey) {
+        results.add(InMemoryMemcacheService.this.get(cacheKey));
+      }
+
+      @Override
+      public void put(String cacheKey, Object obj, int expiry) {
+        InMemoryMemcacheService.this.put(cacheKey, obj, expiry);
+        results.add(Boolean.TRUE);
+      }
+
+      @Override
+      public void putIfNotExist(String cacheKey, Object obj, int expiry) {
+        results.add(InMemoryMemcacheService.this.putIfNotExist(cacheKey, obj, expiry));
+      }
+
+      @Override
+      public void delete(String cacheKey) {
+        results.add(InMemoryMemcacheService.this.delete(cacheKey));
+      }
+    });
+    return results;
+  }
+
+  @Override
+  public boolean putIfNotExist(String cacheKey, Object obj) {
+    return putIfNotExist(cacheKey, obj, LOCK_EXPIRY);
+  }
+
+  private boolean putIfNotExist(String cacheKey, Object obj, int expiry) {
+    Entry entry = new Entry(obj, expiry);
+    Entry existing = entries.putIfAbsent(cacheKey, entry);
+    if (existing != null && existing.isExpired() && entries.replace(cacheKey, existing, entry)) {
+      return true;
+    }
+    return existing == null;
+  }
+
+  @Override
+  public synchronized boolean putMultiIfNotExists(String cacheKey1, Object obj1,
+                                                  String cacheKey2, Object obj2) {
+    if (get(cacheKey1) != null || get(cacheKey2) != null) {
+      return false;
+    }
+    put(cacheKey1, obj1, PAIR_LOCK_EXPIRY);
+    put(cacheKey2, obj2, PAIR_LOCK_EXPIRY);
+    return true;
+  }
+
+  @Override
+  public synchronized List<LimitVerdict> incrementWithinLimits(String sharedKey, int sharedLimit,
+                                                               List<String> memberKeys,
+                                                               int memberLimit,
+                                                               List<String> dedupKeys,
+                                                               int dedupExpiry,
+                                                               int counterExpiry) {
+    List<LimitVerdict> verdicts = new ArrayList<>(memberKeys.size());
+    int shared = getCount(sharedKey);
+    for (int i = 0; i < memberKeys.size(); i++) {
+      int count = getCount(memberKeys.get(i));
+      if (count >= memberLimit) {
+        verdicts.add(LimitVerdict.MEMBER_LIMIT);
+      } else if (shared >= sharedLimit) {
+        verdicts.add(LimitVerdict.SHARED_LIMIT);
+      } else if (dedupExpiry > 0 && get(dedupKeys.get(i)) != null) {
+        verdicts.add(LimitVerdict.DUPLICATE);
+      } else {
+        put(memberKeys.get(i), count + 1, counterExpiry);
+        put(sharedKey, ++shared, counterExpiry);
+        if (dedupExpiry > 0) {
+          put(dedupKeys.get(i), Boolean.TRUE, dedupExpiry);
+        }
+        verdicts.add(LimitVerdict.ALLOWED);
+      }
+    }
+    return verdicts;
+  }
+
+  @Override
+  public synchronized void decrementLimits(String sharedKey, List<String> memberKeys,
+                                           List<String> dedupKeys) {
+    for (int i = 0; i < memberKeys.size(); i++) {
+      decrement(memberKeys.get(i));
+      decrement(sharedKey);
+      entries.remove(dedupKeys.get(i));
+    }
+  }
+
+  private int getCount(String key) {
+    Object count = get(key);
+    return count != null ? (Integer) count : 0;
+  }
+
+  private void decrement(String key) {
+    Entry entry = entries.get(key);
+    if (entry != null && !entry.isExpired() && (Integer) entry.value > 0) {
+      entries.put(key, new Entry((Integer) entry.value - 1, entry.expiresAt));
+    }
+  }
+
+  @Override
+  public boolean delete(String key) {
+    Entry entry = entries.remove(key);
+    return entry != null && !entry.isExpired();
+  }
+
+  @Override
+  public void deleteByPattern(String key) {
+    Pattern pattern = Pattern.compile(Pattern.quote(key).replace("*", "\\E.*\\Q"));
+    entries.keySet().removeIf(cacheKey -> pattern.matcher(cacheKey).matches());
+  }
+
+  @Override
+  public boolean deleteMulti(String... keys) {
+    for (String key : keys) {
+      entries.remove(key);
+    }
+    return true;
+  }
+
+  @Override
+  public void close() {
+    entries.clear();
+  }
+
+  @Override
+  public boolean check() {
+    return true;
+  }
+
+  private static class Entry {
+
+    private final Object value;
+    private final long expiresAt;
+
+    Entry(Object value, int expiry) {
+      this(value, System.currentTimeMillis() + expiry * 1000L);
+    }
+
+    Entry(Object value, long expiresAt) {
+      this.value = value;
+      this.expiresAt = expiresAt;
+    }
+
+    boolean isExpired() {
+      return System.currentTimeMillis() >= expiresAt;
+    }
+  }
+}
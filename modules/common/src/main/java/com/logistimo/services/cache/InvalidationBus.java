@@ -0,0 +1,104 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.services.cache;
+
+import com.logistimo.logger.XLog;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Carries cache invalidation messages between the nodes of a cluster. Local caches register a
+ * listener under a message prefix; the transport (Redis pub/sub in RedisMemcacheService) sets the
+ * publisher and hands every received message to {@link #dispatch(String)}. Without a publisher,
+ * as on a single node, published messages are dropped.
+ */
+public final class InvalidationBus {
+
+  /**
+   * Identifies this JVM, so that listeners can ignore the messages they published themselves.
+   */
+  public static final String NODE_ID = UUID.randomUUID().toString();
+
+  private static final XLog xLogger = XLog.getLog(InvalidationBus.class);
+  private static final Map<String, Listener> listeners = new ConcurrentHashMap<>();
+  private static volatile Consumer<String> publisher;
+
+  private InvalidationBus() {
+  }
+
+  public static void register(String prefix, Listener listener) {
+    listeners.put(prefix, listener);
+  }
+
+  public static boolean hasListeners() {
+    return !listeners.isEmpty();
+  }
+
+  public static void setPublisher(Consumer<String> publisher) {
+    InvalidationBus.publisher = publisher;
+  }
+
+  public static void publish(String prefix, String message) {
+    Consumer<String> p = publisher;
+    if (p != null) {
+      p.accept(prefix + message);
+    }
+  }
+
+  /**
+   * @return true if the message belongs to a registered listener
+   */
+  public static boolean dispatch(String message) {
+    for (Map.Entry<String, Listener> entry : listeners.entrySet()) {
+      if (message.startsWith(entry.getKey())) {
+        try {
+          entry.getValue().onMessage(message.substring(entry.getKey().length()));
+        } catch (Exception e) {
+          xLogger.warn("Failed to apply cache invalidation {0}", message, e);
+        }
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Messages may have been missed, typically after the transport reconnected.
+   */
+  public static void reset() {
+    for (Listener listener : listeners.values()) {
+      listener.onReset();
+    }
+  }
+
+  public interface Listener {
+
+    void onMessage(String message);
+
+    void onReset();
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.services.cache;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.factories.SerializerFactory;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.pool.KryoPool;
+import com.esotericsoftware.kryo.serializers.CompatibleFieldSerializer;
+import com.esotericsoftware.kryo.serializers.JavaSerializer;
+import com.logistimo.logger.XLog;
+
+import org.objenesis.strategy.StdInstantiatorStrategy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Kryo based binary serialization. Each entry starts with a format byte so that the format can
+ * evolve, followed by the kryo output.
+ *
+ * Objects are written field by field with their field names ({@link CompatibleFieldSerializer}),
+ * so entries written before a field was added or removed are still read correctly by either
+ * version during a rolling deploy. Classes with custom java serialization (writeObject,
+ * readObject, writeReplace or readResolve) are written with java serialization inside the kryo
+ * output, so their hooks keep working. Entries of the first format, written with plain field
+ * serialization, are still readable.
+ *
+ * Registered classes are written as small integer ids instead of class names. Ids are assigned by
+ * position in the list of registered classes, so the list must be the same on all nodes and must
+ * only be appended to. Unregistered classes are still written, by name.
+ */
+public class KryoCacheCodec implements CacheCodec {
+
+  public static final byte FORMAT_V1 = 0x01;
+  public static final byte FORMAT_V2 = 0x02;
+  // Ids below are used by kryo for its default registrations
+  private static final int FIRST_REGISTRATION_ID = 100;
+
+  private static final XLog xLogger = XLog.getLog(KryoCacheCodec.class);
+  private static final List<Class<?>> DEFAULT_CLASSES = Collections.unmodifiableList(
+      Arrays.<Class<?>>asList(HashMap.class, LinkedHashMap.class, ArrayList.class,
+          HashSet.class, Date.class));
+  private static final String[] SERIALIZATION_HOOKS =
+      {"writeObject", "readObject", "writeReplace", "readResolve"};
+
+  private final KryoPool pool;
+  private final KryoPool legacyPool;
+
+  public KryoCacheCodec(String... registeredClassNames) {
+    final List<Class<?>> registeredClasses = new ArrayList<>(DEFAULT_CLASSES);
+    for (String className : registeredClassNames) {
+      try {
+        registeredClasses.add(Class.forName(className.trim()));
+      } catch (ClassNotFoundException e) {
+        // Keeps the ids of the following classes stable
+        registeredClasses.add(null);
+        xLogger.warn("Class {0} registered for cache codec not found", className);
+      }
+    }
+    pool = new KryoPool.Builder(() -> {
+      Kryo kryo = newKryo();
+      kryo.setDefaultSerializer(new SerializerFactory() {
+        @Override
+        public Serializer makeSerializer(Kryo kryo, Class<?> type) {
+          return hasSerializationHooks(type) ? new JavaSerializer()
+              : new CompatibleFieldSerializer<>(kryo, type);
+        }
+      });
+      register(kryo, registeredClasses);
+      return kryo;
+    }).softReferences().build();
+    legacyPool = new KryoPool.Builder(() -> {
+      Kryo kryo = newKryo();
+      register(kryo, registeredClasses);
+      return kryo;
+    }).softReferences().build();
+  }
+
+  private static Kryo newKryo() {
+    Kryo kryo = new Kryo();
+    kryo.setRegistrationRequired(false);
+    kryo.setInstantiatorStrategy(
+        new Kryo.DefaultInstantiatorStrategy(new StdInstantiatorStrategy()));
+    return kryo;
+  }
+
+  private static void register(Kryo kryo, List<Class<?>> registeredClasses) {
+    for (int i = 0; i < registeredClasses.size(); i++) {
+      if (registeredClasses.get(i) != null) {
+        kryo.register(registeredClasses.get(i), FIRST_REGISTRATION_ID + i);
+      }
+    }
+  }
+
+  /**
+   * @return true if the class or one of its super classes customises java serialization
+   */
+  static boolean hasSerializationHooks(Class<?> type) {
+    for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+      for (Method method : c.getDeclaredMethods()) {
+        for (String hook : SERIALIZATION_HOOKS) {
+          if (hook.equals(method.getName())) {
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public byte[] encode(Object obj) throws IOException {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    bos.write(FORMAT_V2);
+    Kryo kryo = pool.borrow();
+    try (Output output = new Output(bos)) {
+      kryo.writeClassAndObject(output, obj);
+    } catch (RuntimeException e) {
+      throw new IOException(e);
+    } finally {
+      pool.release(kryo);
+    }
+    return bos.toByteArray();
+  }
+
+  @Override
+  public Object decode(byte[] bytes) throws IOException {
+    if (bytes == null) {
+      return null;
+    }
+    if (bytes.length == 0 || (bytes[0] != FORMAT_V2 && bytes[0] != FORMAT_V1)) {
+      throw new IOException("Unknown cache entry format");
+    }
+    KryoPool readPool = bytes[0] == FORMAT_V2 ? pool : legacyPool;
+    Kryo kryo = readPool.borrow();
+    try (Input input = new Input(bytes, 1, bytes.length - 1)) {
+      return kryo.readClassAndObject(input);
+    } catch (RuntimeException e) {
+      throw new IOException(e);
+    } finally {
+      readPool.release(kryo);
+    }
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.services.cache;
+
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * A lock held on one or more keys. The token increases with every lock granted, so it can be used
+ * as a fencing token by stores that have to reject writes from a stale owner.
+ */
+public class LockLease {
+
+  private final List<String> keys;
+  private final long token;
+  private final long acquiredAt;
+  private volatile boolean lost;
+  ScheduledFuture<?> renewal;
+
+  LockLease(List<String> keys, long token) {
+    this.keys = keys;
+    this.token = token;
+    this.acquiredAt = System.nanoTime();
+  }
+
+  public List<String> getKeys() {
+    return keys;
+  }
+
+  public long getToken() {
+    return token;
+  }
+
+  long getAcquiredAt() {
+    return acquiredAt;
+  }
+
+  /**
+   * @return true when the lease could not be renewed and the lock may now be held by another owner
+   */
+  public boolean isLost() {
+    return lost;
+  }
+
+  void setLost() {
+    this.lost = true;
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.services.cache;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Distributed locks with fencing tokens. Leases are renewed while held, and waiters are woken up
+ * when a lock is released instead of polling for it.
+ */
+public interface LockService {
+
+  /**
+   * Acquires all the keys together, waiting up to waitMillis for them to be released.
+   *
+   * @return the lease, or null when the keys could not be locked in time
+   */
+  LockLease acquire(List<String> keys, long waitMillis);
+
+  /**
+   * Acquires as many of the keys as possible, each with its own lease, waiting up to waitMillis.
+   *
+   * @return leases of the keys that were locked
+   */
+  Map<String, LockLease> acquireEach(Collection<String> keys, long waitMillis);
+
+  /**
+   * Releases the lease, if it is still owned by it.
+   */
+  boolean release(LockLease lease);
+
+  /**
+   * Releases the keys whoever holds them, for locks taken by another thread or task.
+   *
+   * @return true when any of the keys was locked
+   */
+  boolean forceRelease(List<String> keys);
+
+  void close();
+}
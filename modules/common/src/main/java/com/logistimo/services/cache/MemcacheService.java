@@ -23,10 +23,22 @@
 
 package com.logistimo.services.cache;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
 public interface MemcacheService {
 
   Object get(String cacheKey);
 
+  /**
+   * Get cache objects for all the given keys in a single round trip
+   *
+   * @return cache objects by key, keys not in cache are not present in the map
+   */
+  Map<String, Object> getMulti(Collection<String> cacheKeys);
+
   /**
    * Set cache object, default expiry 24 hours
    */
@@ -39,10 +51,45 @@ public interface MemcacheService {
    */
   void put(String cacheKey, Object obj, int expiry);
 
+  /**
+   * Set cache objects for all the given keys in a single round trip
+   *
+   * @param expiries expiry in seconds by key, keys not present use the default expiry
+   */
+  void putMulti(Map<String, Object> objects, Map<String, Integer> expiries);
+
+  /**
+   * Run all the commands queued by the given consumer in a single round trip
+   *
+   * @return results of the commands, in the order they were queued
+   */
+  List<Object> pipeline(Consumer<CachePipeline> commands);
+
   boolean putIfNotExist(String cacheKey, Object obj);
 
   boolean putMultiIfNotExists(String cacheKey1, Object obj1, String cacheKey2, Object obj2);
 
+  /**
+   * Checks and increments counters for a batch of members in a single atomic step. A member is
+   * rejected if its own counter reached memberLimit, the shared counter reached sharedLimit or
+   * its dedup key exists. Otherwise both counters are incremented and its dedup key is set.
+   * Counters hold plain numbers, they are not readable through {@link #get}.
+   *
+   * @param dedupKeys     one per member, not checked when dedupExpiry is not positive
+   * @param dedupExpiry   expiry of the dedup keys in seconds
+   * @param counterExpiry expiry of the counters in seconds
+   * @return verdict for each member in order, null if the limits could not be checked
+   */
+  List<LimitVerdict> incrementWithinLimits(String sharedKey, int sharedLimit,
+                                           List<String> memberKeys, int memberLimit,
+                                           List<String> dedupKeys, int dedupExpiry,
+                                           int counterExpiry);
+
+  /**
+   * Reverts {@link #incrementWithinLimits} for members that were allowed, but not served
+   */
+  void decrementLimits(String sharedKey, List<String> memberKeys, List<String> dedupKeys);
+
   boolean delete(String key);
 
   void deleteByPattern(String key);
@@ -0,0 +1,392 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.services.cache;
+
+import com.codahale.metrics.Meter;
+import com.logistimo.logger.XLog;
+import com.logistimo.services.utils.ConfigUtil;
+import com.logistimo.utils.MetricsUtil;
+
+import org.datanucleus.NucleusContext;
+import org.datanucleus.PropertyNames;
+import org.datanucleus.cache.AbstractLevel2Cache;
+import org.datanucleus.cache.CachedPC;
+import org.datanucleus.identity.SingleFieldId;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * DataNucleus level 2 cache for rarely changing reference entities such as materials, kiosks and
+ * domains. It is registered as the {@code logistimo} level 2 cache type in plugin.xml, and only
+ * caches the classes listed in {@code datanucleus.cache.level2.classes}.
+ *
+ * Entries are held in a size bounded LRU map per persistence manager factory, and expire after
+ * {@code datanucleus.cache.level2.expirySeconds} as a safety net for changes made outside JDO.
+ * DataNucleus puts the objects changed by a transaction into the cache when it commits, so those
+ * keys, along with every eviction, are invalidated on the other nodes through the
+ * {@link InvalidationBus}.
+ *
+ * Listed classes are cached even when marked {@code @Cacheable("false")}, which keeps them out of
+ * the other level 2 cache types.
+ */
+public class ReferenceLevel2Cache extends AbstractLevel2Cache {
+
+  static final String MESSAGE_PREFIX = "L2:";
+
+  private static final long serialVersionUID = 1L;
+  private static final XLog xLogger = XLog.getLog(ReferenceLevel2Cache.class);
+  private static final int DEFAULT_MAX_SIZE = 10000;
+  private static final char KEY_SEPARATOR = '#';
+  private static final char NODE_SEPARATOR = '|';
+  private static final String KEYS_SEPARATOR = "\n";
+  private static final String ALL_MESSAGE = "*";
+  private static final String CLASS_MESSAGE = "C:";
+
+  private static final Set<String> CLASS_NAMES = Collections.unmodifiableSet(new LinkedHashSet<>(
+      Arrays.asList(ConfigUtil.getCSVArray("datanucleus.cache.level2.classes", new String[0]))));
+  private static final List<ReferenceLevel2Cache> instances = new CopyOnWriteArrayList<>();
+  private static final Map<String, ClassStatistics> statistics = new ConcurrentHashMap<>();
+
+  static {
+    InvalidationBus.register(MESSAGE_PREFIX, new InvalidationBus.Listener() {
+      @Override
+      public void onMessage(String message) {
+        applyMessage(message);
+      }
+
+      @Override
+      public void onReset() {
+        instances.forEach(ReferenceLevel2Cache::clear);
+      }
+    });
+  }
+
+  private final long expiryMillis;
+  private final transient Map<String, Entry> entries;
+
+  public ReferenceLevel2Cache(NucleusContext nucleusCtx) {
+    super(nucleusCtx);
+    final int capacity = maxSize > 0 ? maxSize : DEFAULT_MAX_SIZE;
+    expiryMillis = ConfigUtil.getInt("datanucleus.cache.level2.expirySeconds", 86400) * 1000L;
+    entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        return size() > capacity;
+      }
+    };
+    // Classes such as Config are marked @Cacheable("false") so that the other cache types skip
+    // them. This cache keeps only the listed classes, so let DataNucleus offer it every class.
+    nucleusCtx.getConfiguration().setProperty(PropertyNames.PROPERTY_CACHE_L2_MODE, "ALL");
+    instances.add(this);
+    xLogger.info("Level 2 cache {0} caching {1} with at most {2} objects", cacheName, CLASS_NAMES,
+        capacity);
+  }
+
+  @Override
+  public CachedPC get(Object oid) {
+    String key = getKey(oid);
+    if (key == null) {
+      return null;
+    }
+    Entry entry;
+    synchronized (this) {
+      entry = entries.get(key);
+      if (entry != null && entry.expiresAt < System.currentTimeMillis()) {
+        entries.remove(key);
+        entry = null;
+      }
+    }
+    ClassStatistics classStatistics = getStatistics(((SingleFieldId) oid).getTargetClassName());
+    if (entry == null) {
+      classStatistics.misses.mark();
+      return null;
+    }
+    classStatistics.hits.mark();
+    return entry.pc;
+  }
+
+  @Override
+  public CachedPC put(Object oid, CachedPC pc) {
+    String key = getKey(oid);
+    if (key == null || pc == null) {
+      return null;
+    }
+    Entry previous;
+    synchronized (this) {
+      previous = entries.put(key, new Entry(pc, System.currentTimeMillis() + expiryMillis));
+    }
+    return previous != null ? previous.pc : null;
+  }
+
+  /**
+   * DataNucleus uses this to store the objects written by a transaction when it commits, so copies
+   * elsewhere are stale from here on.
+   */
+  @Override
+  public void putAll(Map<Object, CachedPC> objs) {
+    List<String> keys = new ArrayList<>(objs.size());
+    for (Map.Entry<Object, CachedPC> obj : objs.entrySet()) {
+      String key = getKey(obj.getKey());
+      if (key != null && obj.getValue() != null) {
+        put(obj.getKey(), obj.getValue());
+        keys.add(key);
+      }
+    }
+    if (!keys.isEmpty()) {
+      for (ReferenceLevel2Cache instance : instances) {
+        if (instance != this) {
+          instance.removeKeys(keys);
+        }
+      }
+      publish(String.join(KEYS_SEPARATOR, keys));
+    }
+  }
+
+  @Override
+  public boolean containsOid(Object oid) {
+    String key = getKey(oid);
+    if (key == null) {
+      return false;
+    }
+    synchronized (this) {
+      return entries.containsKey(key);
+    }
+  }
+
+  @Override
+  public void evict(Object oid) {
+    evictAll(Collections.singletonList(oid));
+  }
+
+  @Override
+  public void evictAll(Object[] oids) {
+    evictAll(Arrays.asList(oids));
+  }
+
+  @Override
+  public void evictAll(Collection oids) {
+    List<String> keys = new ArrayList<>(oids.size());
+    for (Object oid : oids) {
+      String key = getKey(oid);
+      if (key != null) {
+        keys.add(key);
+      }
+    }
+    if (!keys.isEmpty()) {
+      instances.forEach(instance -> instance.removeKeys(keys));
+      publish(String.join(KEYS_SEPARATOR, keys));
+    }
+  }
+
+  @Override
+  public void evictAll(Class pcClass, boolean subclasses) {
+    for (String className : CLASS_NAMES) {
+      if (className.equals(pcClass.getName()) || (subclasses && isSubclass(className, pcClass))) {
+        evictClass(className);
+      }
+    }
+  }
+
+  @Override
+  public void evictAll() {
+    instances.forEach(ReferenceLevel2Cache::clear);
+    publish(ALL_MESSAGE);
+  }
+
+  @Override
+  public synchronized int getSize() {
+    return entries.size();
+  }
+
+  @Override
+  public void close() {
+    if (clearAtClose) {
+      clear();
+    }
+    instances.remove(this);
+  }
+
+  /**
+   * Evicts a cached class, or a single object of it, on all the nodes.
+   *
+   * @param className fully qualified or simple name of a cached class
+   * @param id        the object id, or null to evict every object of the class
+   * @return false if the class is not cached
+   */
+  public static boolean evict(String className, String id) {
+    String cachedClassName = getCachedClassName(className);
+    if (cachedClassName == null) {
+      return false;
+    }
+    if (id == null) {
+      evictClass(cachedClassName);
+    } else {
+      List<String> keys = Collections.singletonList(cachedClassName + KEY_SEPARATOR + id);
+      instances.forEach(instance -> instance.removeKeys(keys));
+      publish(keys.get(0));
+    }
+    return true;
+  }
+
+  /**
+   * @return hits, misses and number of objects cached on this node, by class
+   */
+  public static Map<String, Map<String, Long>> getStatistics() {
+    Map<String, Map<String, Long>> result = new TreeMap<>();
+    for (String className : CLASS_NAMES) {
+      ClassStatistics classStatistics = getStatistics(className);
+      Map<String, Long> values = new LinkedHashMap<>();
+      values.put("hits", classStatistics.hits.getCount());
+      values.put("misses", classStatistics.misses.getCount());
+      long size = 0;
+      for (ReferenceLevel2Cache instance : instances) {
+        size += instance.countClass(className);
+      }
+      values.put("size", size);
+      result.put(className, values);
+    }
+    return result;
+  }
+
+  static Set<String> getCachedClassNames() {
+    return CLASS_NAMES;
+  }
+
+  static void applyMessage(String message) {
+    int separator = message.indexOf(NODE_SEPARATOR);
+    if (separator < 0) {
+      xLogger.warn("Unknown level 2 cache message {0}", message);
+      return;
+    }
+    if (InvalidationBus.NODE_ID.equals(message.substring(0, separator))) {
+      return;
+    }
+    String body = message.substring(separator + 1);
+    if (ALL_MESSAGE.equals(body)) {
+      instances.forEach(ReferenceLevel2Cache::clear);
+    } else if (body.startsWith(CLASS_MESSAGE)) {
+      String className = body.substring(CLASS_MESSAGE.length());
+      instances.forEach(instance -> instance.removeClass(className));
+    } else {
+      List<String> keys = Arrays.asList(body.split(KEYS_SEPARATOR));
+      instances.forEach(instance -> instance.removeKeys(keys));
+    }
+  }
+
+  private static void evictClass(String className) {
+    instances.forEach(instance -> instance.removeClass(className));
+    publish(CLASS_MESSAGE + className);
+  }
+
+  private static void publish(String body) {
+    InvalidationBus.publish(MESSAGE_PREFIX, InvalidationBus.NODE_ID + NODE_SEPARATOR + body);
+  }
+
+  private static String getKey(Object oid) {
+    if (!(oid instanceof SingleFieldId)) {
+      return null;
+    }
+    SingleFieldId id = (SingleFieldId) oid;
+    if (!CLASS_NAMES.contains(id.getTargetClassName())) {
+      return null;
+    }
+    return id.getTargetClassName() + KEY_SEPARATOR + id.getKeyAsObject();
+  }
+
+  private static String getCachedClassName(String className) {
+    for (String cachedClassName : CLASS_NAMES) {
+      if (cachedClassName.equals(className)
+          || cachedClassName.endsWith("." + className)) {
+        return cachedClassName;
+      }
+    }
+    return null;
+  }
+
+  private static boolean isSubclass(String className, Class pcClass) {
+    try {
+      return pcClass.isAssignableFrom(Class.forName(className, false, pcClass.getClassLoader()));
+    } catch (ClassNotFoundException e) {
+      return false;
+    }
+  }
+
+  private static ClassStatistics getStatistics(String className) {
+    return statistics.computeIfAbsent(className, ClassStatistics::new);
+  }
+
+  private synchronized void removeKeys(Collection<String> keys) {
+    for (String key : keys) {
+      entries.remove(key);
+    }
+  }
+
+  private synchronized void removeClass(String className) {
+    String prefix = className + KEY_SEPARATOR;
+    entries.keySet().removeIf(key -> key.startsWith(prefix));
+  }
+
+  private synchronized long countClass(String className) {
+    String prefix = className + KEY_SEPARATOR;
+    return entries.keySet().stream().filter(key -> key.startsWith(prefix)).count();
+  }
+
+  private synchronized void clear() {
+    entries.clear();
+  }
+
+  private static class Entry {
+
+    private final CachedPC pc;
+    private final long expiresAt;
+
+    Entry(CachedPC pc, long expiresAt) {
+      this.pc = pc;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  private static class ClassStatistics {
+
+    private final Meter hits;
+    private final Meter misses;
+
+    ClassStatistics(String className) {
+      String name = className.substring(className.lastIndexOf('.') + 1);
+      hits = MetricsUtil.getMeter(ReferenceLevel2Cache.class, name + ".hits");
+      misses = MetricsUtil.getMeter(ReferenceLevel2Cache.class, name + ".misses");
+    }
+  }
+}
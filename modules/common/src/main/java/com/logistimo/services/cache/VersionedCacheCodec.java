@@ -0,0 +1,93 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.services.cache;
+
+import com.logistimo.logger.XLog;
+
+import java.io.IOException;
+
+/**
+ * Writes entries with the configured codec and reads entries written by any of the supported
+ * codecs, detected from the first bytes of the entry. This allows switching the codec on a running
+ * cluster: entries written in the old format remain readable until they expire.
+ *
+ * With kryo, an entry is read back before it is handed out, and objects kryo can not write or
+ * read back are written with java serialization instead. An entry that still fails to decode,
+ * e.g. written by a node with an incompatible version of a class, fails with an IOException and
+ * is read as a cache miss.
+ */
+public class VersionedCacheCodec implements CacheCodec {
+
+  public static final String JAVA = "java";
+  public static final String KRYO = "kryo";
+
+  private static final XLog xLogger = XLog.getLog(VersionedCacheCodec.class);
+  private static final byte JAVA_STREAM_MAGIC_0 = (byte) 0xAC;
+  private static final byte JAVA_STREAM_MAGIC_1 = (byte) 0xED;
+
+  private final JavaCacheCodec javaCodec = new JavaCacheCodec();
+  private final KryoCacheCodec kryoCodec;
+  private final CacheCodec writer;
+
+  /**
+   * @param format                codec used for writing, java or kryo
+   * @param kryoRegisteredClasses classes registered with kryo, see {@link KryoCacheCodec}
+   */
+  public VersionedCacheCodec(String format, String... kryoRegisteredClasses) {
+    kryoCodec = new KryoCacheCodec(kryoRegisteredClasses);
+    writer = KRYO.equalsIgnoreCase(format) ? kryoCodec : javaCodec;
+  }
+
+  @Override
+  public byte[] encode(Object obj) throws IOException {
+    if (writer == kryoCodec) {
+      try {
+        byte[] bytes = kryoCodec.encode(obj);
+        kryoCodec.decode(bytes);
+        return bytes;
+      } catch (IOException e) {
+        // Object graph not supported by kryo, java serialization is always readable
+        xLogger.fine("Falling back to java serialization for {0}: {1}",
+            obj != null ? obj.getClass().getName() : null, e.getMessage());
+        return javaCodec.encode(obj);
+      }
+    }
+    return javaCodec.encode(obj);
+  }
+
+  @Override
+  public Object decode(byte[] bytes) throws IOException {
+    if (bytes == null) {
+      return null;
+    }
+    if (bytes.length > 1 && bytes[0] == JAVA_STREAM_MAGIC_0 && bytes[1] == JAVA_STREAM_MAGIC_1) {
+      return javaCodec.decode(bytes);
+    }
+    if (bytes.length > 0
+        && (bytes[0] == KryoCacheCodec.FORMAT_V2 || bytes[0] == KryoCacheCodec.FORMAT_V1)) {
+      return kryoCodec.decode(bytes);
+    }
+    throw new IOException("Unknown cache entry format");
+  }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.services.http;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.logistimo.logger.XLog;
+import com.logistimo.services.utils.ConfigUtil;
+import com.logistimo.utils.MetricsUtil;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.conn.ssl.TrustAllStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.ssl.SSLContexts;
+import org.apache.http.util.EntityUtils;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared HTTP client for outbound calls (task callbacks, temperature service, other integrations).
+ * Connections are pooled and kept alive per host, so repeated calls to the same service reuse
+ * sockets and TLS sessions. The number of connections per host is capped by
+ * {@code http.client.pool.max.per.route}; callers beyond that wait up to
+ * {@code http.client.connection.request.timeout} ms for a free connection.
+ */
+public class HttpClientPool {
+
+  private static final XLog xLogger = XLog.getLog(HttpClientPool.class);
+
+  private static volatile HttpClientPool instance;
+  private static volatile HttpClientPool taskInstance;
+
+  private final PoolingHttpClientConnectionManager connectionManager;
+  private final CloseableHttpClient client;
+  private final RequestConfig defaultRequestConfig;
+
+  HttpClientPool(int maxTotal, int maxPerRoute, int connectTimeout, int socketTimeout,
+                 int connectionRequestTimeout, long keepAliveMillis, long maxIdleMillis,
+                 boolean trustAll) {
+    connectionManager = new PoolingHttpClientConnectionManager(socketFactories(trustAll));
+    connectionManager.setMaxTotal(maxTotal);
+    connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+    connectionManager.setValidateAfterInactivity(2000);
+    defaultRequestConfig = RequestConfig.custom()
+        .setConnectTimeout(connectTimeout)
+        .setSocketTimeout(socketTimeout)
+        .setConnectionRequestTimeout(connectionRequestTimeout)
+        .build();
+    client = HttpClients.custom()
+        .setConnectionManager(connectionManager)
+        .setDefaultRequestConfig(defaultRequestConfig)
+        .setKeepAliveStrategy(keepAliveStrategy(keepAliveMillis))
+        .evictExpiredConnections()
+        .evictIdleConnections(maxIdleMillis, TimeUnit.MILLISECONDS)
+        .build();
+  }
+
+  public static HttpClientPool getInstance() {
+    if (instance == null) {
+      synchronized (HttpClientPool.class) {
+        if (instance == null) {
+          instance = create(ConfigUtil.getBoolean("http.client.ssl.trust.all", false), "");
+        }
+      }
+    }
+    return instance;
+  }
+
+  /**
+   * Client for internal task and cron callbacks. Unless {@code http.client.task.ssl.trust.all}
+   * is set, this is the shared pool and certificates are verified. When set, callbacks go through
+   * a separate pool that accepts any certificate and host name, so that self-signed internal
+   * endpoints work without relaxing checks for other outbound calls.
+   */
+  public static HttpClientPool getTaskInstance() {
+    if (!ConfigUtil.getBoolean("http.client.task.ssl.trust.all", false)) {
+      return getInstance();
+    }
+    if (taskInstance == null) {
+      synchronized (HttpClientPool.class) {
+        if (taskInstance == null) {
+          taskInstance = create(true, "task");
+        }
+      }
+    }
+    return taskInstance;
+  }
+
+  private static HttpClientPool create(boolean trustAll, String name) {
+    HttpClientPool pool = new HttpClientPool(
+        ConfigUtil.getInt("http.client.pool.max.total", 100),
+        ConfigUtil.getInt("http.client.pool.max.per.route", 20),
+        ConfigUtil.getInt("http.client.connect.timeout", 10000),
+        ConfigUtil.getInt("http.client.socket.timeout", 0),
+        ConfigUtil.getInt("http.client.connection.request.timeout", 60000),
+        ConfigUtil.getInt("http.client.keepalive.ms", 30000),
+        ConfigUtil.getInt("http.client.idle.evict.ms", 60000),
+        trustAll);
+    pool.registerGauges(MetricsUtil.getRegistry(), name);
+    return pool;
+  }
+
+  private static Registry<ConnectionSocketFactory> socketFactories(boolean trustAll) {
+    SSLConnectionSocketFactory sslFactory = SSLConnectionSocketFactory.getSocketFactory();
+    if (trustAll) {
+      try {
+        sslFactory = new SSLConnectionSocketFactory(
+            SSLContexts.custom().loadTrustMaterial(TrustAllStrategy.INSTANCE).build(),
+            NoopHostnameVerifier.INSTANCE);
+      } catch (Exception e) {
+        xLogger.warn("Unable to create trust all SSL context, using system default", e);
+      }
+    }
+    return RegistryBuilder.<ConnectionSocketFactory>create()
+        .register("http", PlainConnectionSocketFactory.getSocketFactory())
+        .register("https", sslFactory)
+        .build();
+  }
+
+  /**
+   * Honours the server's Keep-Alive header, but never keeps an idle connection longer than
+   * {@code keepAliveMillis}, so that connections closed by load balancers are not reused.
+   */
+  private static ConnectionKeepAliveStrategy keepAliveStrategy(long keepAliveMillis) {
+    return (response, context) -> {
+      long duration = DefaultConnectionKeepAliveStrategy.INSTANCE
+          .getKeepAliveDuration(response, context);
+      return duration > 0 ? Math.min(duration, keepAliveMillis) : keepAliveMillis;
+    };
+  }
+
+  private void registerGauges(MetricRegistry registry, String name) {
+    try {
+      registry.register(MetricRegistry.name(HttpClientPool.class, name, "leased"),
+          (Gauge<Integer>) () -> connectionManager.getTotalStats().getLeased());
+      registry.register(MetricRegistry.name(HttpClientPool.class, name, "available"),
+          (Gauge<Integer>) () -> connectionManager.getTotalStats().getAvailable());
+      registry.register(MetricRegistry.name(HttpClientPool.class, name, "pending"),
+          (Gauge<Integer>) () -> connectionManager.getTotalStats().getPending());
+    } catch (IllegalArgumentException e) {
+      xLogger.warn("HTTP client pool gauges already registered", e);
+    }
+  }
+
+  public CloseableHttpClient getClient() {
+    return client;
+  }
+
+  /**
+   * Request config with the pool defaults and the given socket timeout.
+   *
+   * @param timeoutMillis read timeout in milliseconds, also used as the wait for a pooled connection
+   */
+  public RequestConfig getRequestConfig(int timeoutMillis) {
+    return RequestConfig.copy(defaultRequestConfig)
+        .setSocketTimeout(timeoutMillis)
+        .setConnectionRequestTimeout(timeoutMillis)
+        .build();
+  }
+
+  /**
+   * Executes the request and reads the whole response body. The connection is released back to
+   * the pool before returning.
+   */
+  public com.logistimo.services.http.HttpResponse execute(HttpUriRequest request)
+      throws IOException {
+    return execute(request, response -> new com.logistimo.services.http.HttpResponse(
+        response.getStatusLine().getStatusCode(), toByteArray(response.getEntity())));
+  }
+
+  /**
+   * Executes the request, hands the response to the given handler and releases the connection
+   * back to the pool. Each call is timed per target host.
+   */
+  public <T> T execute(HttpUriRequest request, ResponseHandler<T> handler) throws IOException {
+    String host = getHostName(request);
+    Timer.Context timer = MetricsUtil.getTimer(HttpClientPool.class, host).time();
+    try (CloseableHttpResponse response = client.execute(request)) {
+      return handler.handle(response);
+    } catch (IOException | RuntimeException e) {
+      MetricsUtil.getMeter(HttpClientPool.class, host + ".errors").mark();
+      if (request instanceof HttpRequestBase) {
+        ((HttpRequestBase) request).abort();
+      }
+      throw e;
+    } finally {
+      timer.stop();
+    }
+  }
+
+  public PoolStats getStats() {
+    return connectionManager.getTotalStats();
+  }
+
+  public void shutdown() {
+    try {
+      client.close();
+    } catch (IOException e) {
+      xLogger.warn("Error while closing HTTP client pool", e);
+    }
+  }
+
+  private static String getHostName(HttpUriRequest request) {
+    HttpHost target = URIUtils.extractHost(request.getURI());
+    return target != null ? target.getHostName() : "unknown";
+  }
+
+  private static byte[] toByteArray(HttpEntity entity) throws IOException {
+    return entity != null ? EntityUtils.toByteArray(entity) : new byte[0];
+  }
+
+  @FunctionalInterface
+  public interface ResponseHandler<T> {
+    T handle(HttpResponse response) throws IOException;
+  }
+}
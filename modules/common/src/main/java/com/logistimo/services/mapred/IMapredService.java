@@ -35,6 +35,7 @@ public interface IMapredService {
   String PARAM_DONECALLBACK = "mapreduce.appengine.donecallback.url";
   String PARAM_SHARDCOUNT = "mapreduce.mapper.shardcount";
   String PARAM_INPUTPROCESSINGRATE = "mapreduce.mapper.inputprocessingrate";
+  String PARAM_JOBSTATUS_ID = "mapreduce.jobstatus.id";
   String JOBID_PARAM = "job_id";
   String JOB_STATUS = "job_status";
 
@@ -0,0 +1,177 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.services.storage;
+
+import com.logistimo.AppFactory;
+import com.logistimo.logger.XLog;
+import com.logistimo.services.blobstore.BlobKey;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * {@link StorageUtil} over a directory of the local file system, for tests and single node
+ * deployments without HDFS. Buckets are sub directories of the root path.
+ */
+public class LocalStorageUtil implements StorageUtil {
+
+  private static final XLog LOGGER = XLog.getLog(LocalStorageUtil.class);
+
+  private final Path root;
+
+  public LocalStorageUtil(String rootPath) {
+    this.root = Paths.get(rootPath);
+  }
+
+  @Override
+  public byte[] read(String blobKey) {
+    return AppFactory.get().getBlobstoreService().read(blobKey);
+  }
+
+  @Override
+  public InputStream readAsBlobstoreInputStream(BlobKey blobKey) throws IOException {
+    return AppFactory.get().getBlobstoreService().getInputStream(blobKey.getKeyString());
+  }
+
+  @Override
+  public OutputStream getOutputStream(String bucketName, String filename, boolean append)
+      throws IOException {
+    Path path = getPath(bucketName, filename);
+    Files.createDirectories(path.getParent());
+    return Files.newOutputStream(path, StandardOpenOption.CREATE,
+        append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING,
+        StandardOpenOption.WRITE);
+  }
+
+  @Override
+  public OutputStream getOutputStream(String bucketName, String filename) throws IOException {
+    return getOutputStream(bucketName, filename, true);
+  }
+
+  @Override
+  public InputStream getInputStream(String bucketName, String filename) throws IOException {
+    try {
+      return Files.newInputStream(getPath(bucketName, filename));
+    } catch (NoSuchFileException e) {
+      throw new IOException("File not found in bucket " + bucketName + " fileName " + filename, e);
+    }
+  }
+
+  @Override
+  public long getFileSizeInBytes(String bucketName, String filename) throws IOException {
+    try {
+      return Files.size(getPath(bucketName, filename));
+    } catch (NoSuchFileException e) {
+      throw new IOException("File not found in bucket " + bucketName + " fileName " + filename, e);
+    }
+  }
+
+  @Override
+  public void removeFile(String bucketName, String fileName) throws IOException {
+    if (!Files.deleteIfExists(getPath(bucketName, fileName))) {
+      LOGGER.warn("File requested for delete doesn't exist bucket {0} and file {1}", bucketName,
+          fileName);
+    }
+  }
+
+  @Override
+  public String getApplicationName() {
+    return System.getProperty("name", "logistimo-dev");
+  }
+
+  @Override
+  public String getQualifiedBucketName(String simpleBucketName) {
+    return simpleBucketName;
+  }
+
+  @Override
+  public void write(String bucketName, String filename, String data) throws IOException {
+    write(bucketName, filename, data.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Override
+  public void write(String bucketName, String filename, String data, String mimeType)
+      throws IOException {
+    write(bucketName, filename, data);
+  }
+
+  @Override
+  public void append(String bucketName, String filename, String data) throws IOException {
+    append(bucketName, filename, data.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Override
+  public void write(String bucketName, String filename, byte[] data) throws IOException {
+    write(bucketName, filename, data, false);
+  }
+
+  @Override
+  public void write(String bucketName, String filename, byte[] data, String mimeType)
+      throws IOException {
+    write(bucketName, filename, data, false);
+  }
+
+  @Override
+  public void append(String bucketName, String filename, byte[] data) throws IOException {
+    write(bucketName, filename, data, true);
+  }
+
+  private void write(String bucketName, String filename, byte[] data, boolean append)
+      throws IOException {
+    try (OutputStream outputStream = getOutputStream(bucketName, filename, append)) {
+      outputStream.write(data);
+    }
+  }
+
+  @Override
+  public byte[] readFile(String bucketName, String fileName) throws IOException {
+    Path path = getPath(bucketName, fileName);
+    if (!Files.exists(path)) {
+      LOGGER.warn("Store file in bucket {0} with name {1} not found", bucketName, fileName);
+      return null;
+    }
+    return Files.readAllBytes(path);
+  }
+
+  @Override
+  public String getExternalUrl(String bucketName, String fileName) {
+    return getPath(bucketName, fileName).toUri().toString();
+  }
+
+  private Path getPath(String bucketName, String filename) {
+    Path bucket = root.resolve(bucketName).normalize();
+    Path path = bucket.resolve(filename).normalize();
+    if (!path.startsWith(bucket)) {
+      throw new IllegalArgumentException("Invalid file name " + filename);
+    }
+    return path;
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.services.taskqueue;
+
+import com.logistimo.context.StaticApplicationContext;
+import com.logistimo.logger.XLog;
+import com.logistimo.services.utils.ConfigUtil;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps task URL paths to {@link ITaskHandler} beans, so that the task consumer can execute
+ * registered tasks directly on its own thread. Tasks whose URL is not registered continue to be
+ * executed over HTTP.
+ */
+@Component
+public class TaskHandlerRegistry {
+
+  private static final XLog xLogger = XLog.getLog(TaskHandlerRegistry.class);
+  private static final String INPROCESS_ENABLED = "task.inprocess.enabled";
+
+  private final Map<String, ITaskHandler> handlers = new HashMap<>();
+
+  @Autowired(required = false)
+  public void setHandlers(List<ITaskHandler> taskHandlers) {
+    for (ITaskHandler handler : taskHandlers) {
+      for (String url : handler.getUrls()) {
+        ITaskHandler existing = handlers.put(url, handler);
+        if (existing != null) {
+          xLogger.warn("Task handler {0} for url {1} replaced by {2}",
+              existing.getClass().getName(), url, handler.getClass().getName());
+        }
+      }
+    }
+    xLogger.info("Registered in-process task handlers for urls {0}", handlers.keySet());
+  }
+
+  /**
+   * Returns the registry from the web application context, or null if the context is not
+   * available (e.g. in a standalone task consumer) or in-process execution is disabled.
+   */
+  public static TaskHandlerRegistry getInstance() {
+    if (StaticApplicationContext.getApplicationContext() == null
+        || !ConfigUtil.getBoolean(INPROCESS_ENABLED, true)) {
+      return null;
+    }
+    return StaticApplicationContext.getBean(TaskHandlerRegistry.class);
+  }
+
+  /**
+   * @param url absolute task URL (as in TaskOptions) or the task path
+   * @return the handler registered for the path of the url, or null if none
+   */
+  public ITaskHandler getHandler(String url) {
+    if (url == null || handlers.isEmpty()) {
+      return null;
+    }
+    try {
+      String path = new URI(url).getPath();
+      return path != null ? handlers.get(path) : null;
+    } catch (URISyntaxException e) {
+      xLogger.warn("Invalid task url {0}", url, e);
+      return null;
+    }
+  }
+}
@@ -28,15 +28,23 @@ package com.logistimo.utils;
 
 import com.logistimo.constants.Constants;
 import com.logistimo.logger.XLog;
+import com.logistimo.services.http.HttpClientPool;
 import com.logistimo.services.utils.ConfigUtil;
 import com.logistimo.services.utils.SSLUtilities;
 
 import org.apache.commons.lang.StringUtils;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.util.EntityUtils;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
@@ -131,53 +139,35 @@ public class HttpUtil {
       ///	queryString = url.substring( url.indexOf( '?' ) + 1, url.length() );
       ///}
       xLogger.fine("HttpUtil.connect: URL = {0}, query string = {1}", url, queryString);
-      SSLUtilities.trustAllHostnames();
-      SSLUtilities.trustAllHttpsCertificates();
-      // Open the URL connection
-      URL urlObj = new URL(url);
-      HttpURLConnection connection = (HttpURLConnection) urlObj.openConnection();
-      connection.setRequestMethod(method);
-      connection.setConnectTimeout(10000); // 10 seconds max. in GAE (default is 5 seconds)
-
-      // Set the properties, if present
-      if (requestProperties != null) {
-        Iterator<String> it = requestProperties.keySet().iterator();
-        while (it.hasNext()) {
-          String prop = it.next();
-          String val = requestProperties.get(prop);
-          if (val != null) {
-            connection.setRequestProperty(prop, val);
+      // Requests with a body are always sent as POST, as HttpURLConnection did earlier
+      HttpUriRequest request;
+      if (!queryString.isEmpty() || payload != null) {
+        HttpPost post = new HttpPost(url);
+        if (!queryString.isEmpty()) {
+          post.setEntity(new StringEntity(queryString, ContentType.APPLICATION_FORM_URLENCODED));
+        } else {
+          post.setEntity(new ByteArrayEntity(payload));
+          if (contentType != null) {
+            post.setHeader("Content-Type", contentType);
           }
         }
+        request = post;
+      } else if (POST.equals(method)) {
+        request = new HttpPost(url);
+      } else {
+        request = new HttpGet(url);
       }
-      connection.setRequestProperty(Constants.X_APP_ENGINE_TASK_NAME, Constants.INTERNAL_TASK);
-      // Get the output stream for writing param data
-      if (!queryString.isEmpty()) {
-        connection.setDoOutput(true);
-        OutputStreamWriter out = new OutputStreamWriter(connection.getOutputStream());
-        out.write(queryString);
-        out.close();
-      } else if (payload != null) {
-        if (contentType != null) {
-          connection.setRequestProperty("Content-Type", contentType);
-        }
-        connection.setDoOutput(true);
-        OutputStream os = connection.getOutputStream();
-        os.write(payload);
-        os.close();
-      }
-      // Read returned value
-      BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-      String decodedString = null;
-      int i = 0;
-      while ((decodedString = in.readLine()) != null) {
-        if (i > 0) {
-          returnVal += "\n";
+      // Set the properties, if present
+      if (requestProperties != null) {
+        for (Map.Entry<String, String> prop : requestProperties.entrySet()) {
+          if (prop.getValue() != null) {
+            request.setHeader(prop.getKey(), prop.getValue());
+          }
         }
-        returnVal += decodedString;
-        ++i;
       }
-      in.close();
+      request.setHeader(Constants.X_APP_ENGINE_TASK_NAME, Constants.INTERNAL_TASK);
+      // only task and cron callbacks come through here
+      returnVal = HttpClientPool.getTaskInstance().execute(request, HttpUtil::readLines);
       isSuccess = true;
     } catch (UnsupportedEncodingException e) {
       xLogger.warn("UnsupportedCodingException: {0}", e.getMessage());
@@ -189,6 +179,30 @@ public class HttpUtil {
     return returnVal;
   }
 
+  private static String readLines(org.apache.http.HttpResponse response) throws IOException {
+    int status = response.getStatusLine().getStatusCode();
+    if (status >= HttpStatus.SC_BAD_REQUEST) {
+      EntityUtils.consumeQuietly(response.getEntity());
+      throw new IOException("Server returned HTTP response code: " + status);
+    }
+    StringBuilder returnVal = new StringBuilder();
+    if (response.getEntity() != null) {
+      try (BufferedReader in = new BufferedReader(
+          new InputStreamReader(response.getEntity().getContent()))) {
+        String decodedString;
+        int i = 0;
+        while ((decodedString = in.readLine()) != null) {
+          if (i > 0) {
+            returnVal.append("\n");
+          }
+          returnVal.append(decodedString);
+          ++i;
+        }
+      }
+    }
+    return returnVal.toString();
+  }
+
   // Do a HTTP get or post
   public static String connect(String method, String url, Map<String, String> params,
                                Map<String, String> requestProperties)
@@ -34,6 +34,7 @@ import com.logistimo.pagination.PageParams;
 import com.logistimo.pagination.Results;
 import com.logistimo.services.ServiceException;
 import com.logistimo.services.impl.PMF;
+import com.logistimo.services.mapred.IMapredService;
 import com.logistimo.services.utils.ConfigUtil;
 
 import org.apache.commons.lang.StringUtils;
@@ -85,6 +86,19 @@ public class JobUtil {
     return job.getJobId();
   }
 
+  /**
+   * Creates the status of a map-reduce job and adds its id to the job {@code params}, so that the
+   * job reports its progress and outcome to it.
+   */
+  public static long createMapredJob(long domainId, String userName, String configName,
+                                     Map<String, String> params) {
+    Map<String, String> metadataMap = new HashMap<>(1);
+    metadataMap.put("config", configName);
+    long jobId = createJob(domainId, userName, configName, IJobStatus.TYPE_MAPRED, configName,
+        metadataMap);
+    params.put(IMapredService.PARAM_JOBSTATUS_ID, String.valueOf(jobId));
+    return jobId;
+  }
 
   @SuppressWarnings("unchecked")
   public static Results getRecentJobs(String type, String createdBy, Long domainId,
@@ -172,10 +186,27 @@ public class JobUtil {
   }
 
   public static void setNumberOfRecordsCompleted(Long jobId, int numberOfRecords) {
+    setNumberOfRecordsCompleted(jobId, numberOfRecords, null);
+  }
+
+  /**
+   * Updates the number of records completed, merging {@code metadataMap} (e.g. progress
+   * statistics) into the existing job metadata in the same write.
+   */
+  public static void setNumberOfRecordsCompleted(Long jobId, int numberOfRecords,
+                                                 Map<String, String> metadataMap) {
     PersistenceManager pm = PMF.get().getPersistenceManager();
     try {
       IJobStatus job = JDOUtils.getObjectById(IJobStatus.class, jobId, pm);
       job.setNumberOfRecordsCompleted(numberOfRecords);
+      if (metadataMap != null && !metadataMap.isEmpty()) {
+        Map<String, String> merged = new HashMap<>();
+        if (job.getMetadataMap() != null) {
+          merged.putAll(job.getMetadataMap());
+        }
+        merged.putAll(metadataMap);
+        job.setMetadata(getMetadataString(merged));
+      }
       job.setUpdatedTime(new Date());
       pm.makePersistent(job);
     } catch (Exception e) {
@@ -187,6 +218,22 @@ public class JobUtil {
 
   }
 
+  // Update the job status to completed, for jobs without an output file.
+  public static void setJobCompleted(Long jobId) {
+    PersistenceManager pm = PMF.get().getPersistenceManager();
+    try {
+      IJobStatus jobStatus = JDOUtils.getObjectById(IJobStatus.class, jobId, pm);
+      jobStatus.setStatus(IJobStatus.COMPLETED);
+      jobStatus.setUpdatedTime(new Date());
+      pm.makePersistent(jobStatus);
+    } catch (Exception e) {
+      xLogger.warn("{0} when updating job with ID {1}: {2}", e.getClass().getName(), jobId,
+          e.getMessage());
+    } finally {
+      pm.close();
+    }
+  }
+
   // Update the job status to completed, in case where there is exported data and also when there is no data to export.
   public static void setJobCompleted(Long jobId, String jobType, int size, String fileName,
                                      ResourceBundle backendMessages) {
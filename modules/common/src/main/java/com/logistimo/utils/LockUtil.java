@@ -25,30 +25,39 @@ package com.logistimo.utils;
 
 import com.logistimo.AppFactory;
 import com.logistimo.constants.CharacterConstants;
-import com.logistimo.constants.Constants;
-import com.logistimo.services.cache.MemcacheService;
+import com.logistimo.services.cache.LockLease;
+import com.logistimo.services.cache.LockService;
 
 import org.apache.commons.lang.StringUtils;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 /**
+ * Locks held by the current thread, on top of the {@link LockService}. The retry count and delay
+ * of the callers only bound the total wait, waiting threads are woken up as soon as the lock is
+ * released.
+ *
  * @author Mohan Raja
  */
 public class LockUtil {
 
   private static final int DEFAULT_RETRY_COUNT = 50;
   private static final int DEFAULT_WAIT_TIME_IN_MILLIS = 500;
-  private static MemcacheService cache;
+  private static LockService lockService;
 
-  private static MemcacheService getMemcacheService() {
-    if(cache == null) {
-      cache = AppFactory.get().getMemcacheService();
+  private static LockService getLockService() {
+    if (lockService == null) {
+      lockService = AppFactory.get().getLockService();
     }
-    return cache;
+    return lockService;
   }
 
   public static boolean isLocked(LockStatus lockStatus) {
@@ -68,57 +77,67 @@ public class LockUtil {
   }
 
   public static LockStatus lock(String key, int retryCount, int retryDelayInMillis) {
-    while (retryCount-- > 0) {
-      if (ThreadLocalUtil.get().locks.contains(key)) {
-        return LockStatus.ALREADY_LOCKED;
-      }
-      if (getMemcacheService().putIfNotExist(key, Constants.EMPTY)) {
-        ThreadLocalUtil.get().locks.add(key);
-        return LockStatus.NEW_LOCK;
-      }
-      if (retryCount > 0) {
-        try {
-          Thread.sleep(retryDelayInMillis);
-        } catch (InterruptedException ignored) {
-          // ignored
-        }
-      }
+    if (ThreadLocalUtil.get().locks.contains(key)) {
+      return LockStatus.ALREADY_LOCKED;
     }
-    return LockStatus.FAILED_TO_LOCK;
+    LockLease lease = getLockService()
+        .acquire(Collections.singletonList(key), getWaitTime(retryCount, retryDelayInMillis));
+    if (lease == null) {
+      return LockStatus.FAILED_TO_LOCK;
+    }
+    hold(key, lease);
+    return LockStatus.NEW_LOCK;
   }
 
   public static boolean release(String key) {
-    ThreadLocalUtil.get().locks.remove(key);
-    return getMemcacheService().delete(key);
+    return release(new String[]{key});
   }
 
+  /**
+   * Releases the keys. Keys locked by the current thread are released through their lease. Other
+   * keys are released whoever holds them, as before leases, for callers that release a lock taken
+   * by another thread or task.
+   */
   public static boolean release(String... keys) {
-    ThreadLocalUtil.get().locks.removeAll(Arrays.asList(keys));
-    return getMemcacheService().deleteMulti(keys);
+    Set<LockLease> leases = new LinkedHashSet<>(keys.length);
+    List<String> otherKeys = new ArrayList<>(0);
+    ThreadContext context = ThreadLocalUtil.get();
+    for (String key : keys) {
+      context.locks.remove(key);
+      LockLease lease = context.leases.remove(key);
+      if (lease != null) {
+        leases.add(lease);
+      } else {
+        otherKeys.add(key);
+      }
+    }
+    boolean released = true;
+    for (LockLease lease : leases) {
+      // A lease on two keys is released only when neither of them is held any more
+      if (Collections.disjoint(lease.getKeys(), context.leases.keySet())) {
+        released &= getLockService().release(lease);
+      }
+    }
+    if (!otherKeys.isEmpty()) {
+      released &= getLockService().forceRelease(otherKeys);
+    }
+    return released;
   }
 
   public static LockStatus doubleLock(String lockKey, String lockKey2, int retryCount,
                                       int retryDelayInMillis) {
-    while (retryCount-- > 0) {
-      if (ThreadLocalUtil.get().locks.contains(lockKey) && ThreadLocalUtil.get().locks
-          .contains(lockKey2)) {
-        return LockStatus.ALREADY_LOCKED;
-      }
-      if (getMemcacheService().putMultiIfNotExists(lockKey, Constants.EMPTY, lockKey2,
-          Constants.EMPTY)) {
-        ThreadLocalUtil.get().locks.add(lockKey);
-        ThreadLocalUtil.get().locks.add(lockKey2);
-        return LockStatus.NEW_LOCK;
-      }
-      if (retryCount > 0) {
-        try {
-          Thread.sleep(retryDelayInMillis);
-        } catch (InterruptedException ignored) {
-          // ignored
-        }
-      }
+    if (ThreadLocalUtil.get().locks.contains(lockKey) && ThreadLocalUtil.get().locks
+        .contains(lockKey2)) {
+      return LockStatus.ALREADY_LOCKED;
     }
-    return LockStatus.FAILED_TO_LOCK;
+    LockLease lease = getLockService().acquire(Arrays.asList(lockKey, lockKey2),
+        getWaitTime(retryCount, retryDelayInMillis));
+    if (lease == null) {
+      return LockStatus.FAILED_TO_LOCK;
+    }
+    hold(lockKey, lease);
+    hold(lockKey2, lease);
+    return LockStatus.NEW_LOCK;
   }
 
   /**
@@ -132,14 +151,30 @@ public class LockUtil {
       return null;
     }
     Map<Long, LockStatus> objIdLockStatusMap = new HashMap<>(objectIds.size());
-    objectIds.stream().forEach(objectId -> {
-          String
-              key =
-              (StringUtils.isNotEmpty(prefix) ? prefix : CharacterConstants.EMPTY) + objectId;
-          LockStatus lockStatus = lock(key, retryCount, retryDelayInMillis);
-          objIdLockStatusMap.put(objectId, lockStatus);
+    Map<String, Long> pendingKeys = new LinkedHashMap<>(objectIds.size());
+    for (Long objectId : objectIds) {
+      String
+          key =
+          (StringUtils.isNotEmpty(prefix) ? prefix : CharacterConstants.EMPTY) + objectId;
+      if (ThreadLocalUtil.get().locks.contains(key)) {
+        objIdLockStatusMap.put(objectId, LockStatus.ALREADY_LOCKED);
+      } else {
+        pendingKeys.put(key, objectId);
+      }
+    }
+    if (!pendingKeys.isEmpty()) {
+      Map<String, LockLease> leases = getLockService()
+          .acquireEach(pendingKeys.keySet(), getWaitTime(retryCount, retryDelayInMillis));
+      pendingKeys.forEach((key, objectId) -> {
+        LockLease lease = leases.get(key);
+        if (lease != null) {
+          hold(key, lease);
+          objIdLockStatusMap.put(objectId, LockStatus.NEW_LOCK);
+        } else {
+          objIdLockStatusMap.put(objectId, LockStatus.FAILED_TO_LOCK);
         }
-    );
+      });
+    }
     return objIdLockStatusMap;
   }
 
@@ -161,6 +196,23 @@ public class LockUtil {
     });
   }
 
+  /**
+   * @return the fencing token of the lock held by the current thread on the key, or null
+   */
+  public static Long getFencingToken(String key) {
+    LockLease lease = ThreadLocalUtil.get().leases.get(key);
+    return lease != null ? lease.getToken() : null;
+  }
+
+  private static void hold(String key, LockLease lease) {
+    ThreadLocalUtil.get().locks.add(key);
+    ThreadLocalUtil.get().leases.put(key, lease);
+  }
+
+  private static long getWaitTime(int retryCount, int retryDelayInMillis) {
+    return (long) Math.max(retryCount - 1, 0) * retryDelayInMillis;
+  }
+
   public enum LockStatus {
     NEW_LOCK, ALREADY_LOCKED, FAILED_TO_LOCK
   }
@@ -24,8 +24,11 @@
 package com.logistimo.utils;
 
 import com.logistimo.security.SecureUserDetails;
+import com.logistimo.services.cache.LockLease;
 
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -35,6 +38,8 @@ public class ThreadContext {
 
   public Set<String> locks = new HashSet<>(1);
 
+  public Map<String, LockLease> leases = new HashMap<>(1);
+
   private SecureUserDetails secureUserDetails;
 
   public SecureUserDetails getSecureUserDetails() {
@@ -0,0 +1,121 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.pagination;
+
+import org.junit.Test;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SeekKeyTest {
+
+  @Test
+  public void testFirstPageOnlyOrders() {
+    SeekKey seekKey = getSeekKey();
+    List<Object> params = new ArrayList<>(Collections.singletonList("1"));
+    String query = seekKey.apply("SELECT * FROM TRANSACTION WHERE KID = ? ORDER BY T DESC", params);
+    assertEquals("SELECT * FROM TRANSACTION WHERE KID = ? ORDER BY T DESC,`KEY` DESC", query);
+    assertEquals(1, params.size());
+  }
+
+  @Test
+  public void testSeekAfterLastRow() {
+    SeekKey seekKey = getSeekKey();
+    Date timestamp = new Date(0);
+    seekKey.advance(new Row(timestamp, 42L));
+    seekKey = (SeekKey) PagedExec.deserialize(PagedExec.serialize(seekKey));
+    List<Object> params = new ArrayList<>(Collections.singletonList("1"));
+    String query = seekKey.apply("SELECT * FROM TRANSACTION WHERE KID = ? ORDER BY T DESC", params);
+    assertEquals("SELECT * FROM TRANSACTION WHERE (KID = ?) AND ((T < ?) OR "
+        + "(T = ? AND `KEY` < ?)) ORDER BY T DESC,`KEY` DESC", query);
+    assertEquals(4, params.size());
+    assertEquals(new Timestamp(0), params.get(1));
+    assertEquals(params.get(1), params.get(2));
+    assertEquals(42L, params.get(3));
+    assertTrue(seekKey.isStarted());
+  }
+
+  @Test
+  public void testSeekKeepsConditionTogether() {
+    SeekKey seekKey = getSeekKey();
+    seekKey.advance(new Row(new Date(0), 42L));
+    List<Object> params = new ArrayList<>();
+    // WHERE of a subquery, top level OR and keywords in quotes
+    String query = seekKey.apply("SELECT * FROM TRANSACTION T1 WHERE KID IN (SELECT "
+        + "KIOSKID_OID FROM KIOSK_DOMAINS WHERE DOMAIN_ID = ?) OR RS = 'order by' ORDER BY T DESC",
+        params);
+    assertEquals("SELECT * FROM TRANSACTION T1 WHERE (KID IN (SELECT KIOSKID_OID FROM "
+        + "KIOSK_DOMAINS WHERE DOMAIN_ID = ?) OR RS = 'order by') AND ((T < ?) OR "
+        + "(T = ? AND `KEY` < ?)) ORDER BY T DESC,`KEY` DESC", query);
+
+    params.clear();
+    query = seekKey.apply("SELECT * FROM TRANSACTION", params, 50);
+    assertEquals("SELECT * FROM TRANSACTION WHERE ((T < ?) OR (T = ? AND `KEY` < ?)) "
+        + "ORDER BY T DESC,`KEY` DESC LIMIT 50", query);
+    assertEquals(3, params.size());
+  }
+
+  @Test
+  public void testKeepsExistingLimit() {
+    SeekKey seekKey = getSeekKey();
+    String query = seekKey.apply("SELECT * FROM TRANSACTION WHERE KID = ? ORDER BY T DESC LIMIT 10",
+        new ArrayList<>(), 50);
+    assertEquals("SELECT * FROM TRANSACTION WHERE KID = ? ORDER BY T DESC,`KEY` DESC LIMIT 10",
+        query);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsGroupedQuery() {
+    getSeekKey().apply("SELECT KID, COUNT(1) FROM TRANSACTION GROUP BY KID", new ArrayList<>());
+  }
+
+  private static SeekKey getSeekKey() {
+    return new SeekKey(Arrays.asList("T", "`KEY`"), Arrays.asList("timestamp", "key"), true);
+  }
+
+  public static class Row {
+    private final Date timestamp;
+    private final Long key;
+
+    Row(Date timestamp, Long key) {
+      this.timestamp = timestamp;
+      this.key = key;
+    }
+
+    public Date getTimestamp() {
+      return timestamp;
+    }
+
+    public Long getKey() {
+      return key;
+    }
+  }
+}
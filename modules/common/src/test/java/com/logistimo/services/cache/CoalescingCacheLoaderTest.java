@@ -0,0 +1,91 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.services.cache;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CoalescingCacheLoaderTest {
+
+  @Test
+  public void testConcurrentMissesShareOneLoad() throws Exception {
+    MemcacheService cache = new InMemoryMemcacheService();
+    CoalescingCacheLoader loader = new CoalescingCacheLoader("test", 0, 10, 1, () -> cache);
+    AtomicInteger loads = new AtomicInteger();
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      Future<?>[] futures = new Future[4];
+      for (int i = 0; i < futures.length; i++) {
+        futures[i] = executor.submit(() -> loader.get("DB_1", 60, false, () -> {
+          loads.incrementAndGet();
+          release.await(5, TimeUnit.SECONDS);
+          return "model";
+        }));
+      }
+      Thread.sleep(200);
+      release.countDown();
+      for (Future<?> future : futures) {
+        assertEquals("model", future.get(5, TimeUnit.SECONDS));
+      }
+      assertEquals(1, loads.get());
+      assertEquals("model", cache.get("DB_1"));
+    } finally {
+      executor.shutdownNow();
+      loader.close();
+    }
+  }
+
+  @Test
+  public void testStaleEntryRefreshedInBackground() throws Exception {
+    MemcacheService cache = new InMemoryMemcacheService();
+    CoalescingCacheLoader loader = new CoalescingCacheLoader("test", 300, 10, 1, () -> cache);
+    try {
+      // Entry without the fresh marker is within the refresh-ahead window
+      cache.put("DB_2", "old", 60);
+      CountDownLatch refreshed = new CountDownLatch(1);
+      assertEquals("old", loader.get("DB_2", 60, false, () -> {
+        refreshed.countDown();
+        return "new";
+      }));
+      assertTrue(refreshed.await(5, TimeUnit.SECONDS));
+      for (int i = 0; i < 50 && !"new".equals(cache.get("DB_2")); i++) {
+        Thread.sleep(20);
+      }
+      assertEquals("new", cache.get("DB_2"));
+      assertEquals("new", loader.get("DB_2", 60, false, () -> "newer"));
+    } finally {
+      loader.close();
+    }
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.services.cache;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LockServiceTest {
+
+  @Test
+  public void testTokensIncrease() {
+    LockService lockService = new InMemoryLockService();
+    LockLease first = lockService.acquire(Collections.singletonList("TX1"), 0);
+    assertNotNull(first);
+    assertTrue(lockService.release(first));
+    LockLease second = lockService.acquire(Collections.singletonList("TX1"), 0);
+    assertNotNull(second);
+    assertTrue(second.getToken() > first.getToken());
+    assertFalse(lockService.release(first));
+    assertTrue(lockService.release(second));
+  }
+
+  @Test
+  public void testAcquireAllOrNone() {
+    LockService lockService = new InMemoryLockService();
+    LockLease held = lockService.acquire(Collections.singletonList("TX2"), 0);
+    assertNull(lockService.acquire(Arrays.asList("TX1", "TX2"), 0));
+    Map<String, LockLease> leases = lockService.acquireEach(Arrays.asList("TX1", "TX2"), 0);
+    assertEquals(1, leases.size());
+    assertNotNull(leases.get("TX1"));
+    lockService.release(held);
+    lockService.release(leases.get("TX1"));
+    assertNotNull(lockService.acquire(Arrays.asList("TX1", "TX2"), 0));
+  }
+
+  @Test
+  public void testWaiterWokenOnRelease() throws Exception {
+    LockService lockService = new InMemoryLockService();
+    LockLease held = lockService.acquire(Collections.singletonList("TX_O_1"), 0);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      CountDownLatch waiting = new CountDownLatch(1);
+      Future<LockLease> waiter = executor.submit(() -> {
+        waiting.countDown();
+        return lockService.acquire(Collections.singletonList("TX_O_1"), 60000);
+      });
+      waiting.await();
+      Thread.sleep(100);
+      long released = System.nanoTime();
+      lockService.release(held);
+      LockLease lease = waiter.get(10, TimeUnit.SECONDS);
+      assertNotNull(lease);
+      assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - released) < 1000);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testForceReleaseFromAnotherThread() throws Exception {
+    LockService lockService = new InMemoryLockService();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      assertNotNull(executor.submit(
+          () -> lockService.acquire(Collections.singletonList("TX3"), 0)).get());
+      assertNull(lockService.acquire(Collections.singletonList("TX3"), 0));
+      assertTrue(lockService.forceRelease(Collections.singletonList("TX3")));
+      assertNotNull(lockService.acquire(Collections.singletonList("TX3"), 0));
+      assertFalse(lockService.forceRelease(Collections.singletonList("TX4")));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testLeaseNotRenewedPastMaxHold() throws Exception {
+    LockService lockService = new InMemoryLockService(100, 300);
+    LockLease lease = lockService.acquire(Collections.singletonList("TX5"), 0);
+    assertNotNull(lease);
+    Thread.sleep(200);
+    assertNull("Lease should be renewed while within the max hold time",
+        lockService.acquire(Collections.singletonList("TX5"), 0));
+    assertNotNull("Lease should expire at the max hold time",
+        lockService.acquire(Collections.singletonList("TX5"), 1000));
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lease.getAcquiredAt()) < 600);
+  }
+
+  @Test
+  public void testPrefix() {
+    assertEquals("TX", AbstractLockService.getPrefix("TX123"));
+    assertEquals("TX_O", AbstractLockService.getPrefix("TX_O_123"));
+    assertEquals("TX_OA", AbstractLockService.getPrefix("TX_OA123"));
+    assertEquals("kiosk", AbstractLockService.getPrefix("123"));
+  }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.services.cache;
+
+import org.datanucleus.Configuration;
+import org.datanucleus.NucleusContext;
+import org.datanucleus.cache.CachedPC;
+import org.datanucleus.identity.LongId;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ReferenceLevel2CacheTest {
+
+  private static final String MATERIAL = "com.logistimo.materials.entity.Material";
+
+  private final List<ReferenceLevel2Cache> caches = new ArrayList<>();
+
+  @After
+  public void tearDown() {
+    InvalidationBus.setPublisher(null);
+    caches.forEach(ReferenceLevel2Cache::close);
+  }
+
+  @Test
+  public void testCachesOnlyConfiguredClasses() {
+    assertTrue(ReferenceLevel2Cache.getCachedClassNames().contains(MATERIAL));
+    ReferenceLevel2Cache cache = newCache(10);
+    Object uncached = new LongId(Object.class, 1L);
+    cache.put(uncached, newPC());
+    assertNull(cache.get(uncached));
+    assertEquals(0, cache.getSize());
+
+    long misses = getStatistic("misses");
+    assertNull(cache.get(materialId(1L)));
+    cache.put(materialId(1L), newPC());
+    assertNotNull(cache.get(materialId(1L)));
+    assertEquals(misses + 1, getStatistic("misses"));
+    assertEquals(1L, (long) ReferenceLevel2Cache.getStatistics().get(MATERIAL).get("size"));
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsed() {
+    ReferenceLevel2Cache cache = newCache(2);
+    cache.put(materialId(1L), newPC());
+    cache.put(materialId(2L), newPC());
+    cache.get(materialId(1L));
+    cache.put(materialId(3L), newPC());
+    assertTrue(cache.containsOid(materialId(1L)));
+    assertFalse(cache.containsOid(materialId(2L)));
+    assertTrue(cache.containsOid(materialId(3L)));
+  }
+
+  @Test
+  public void testCommitInvalidatesOtherCaches() {
+    List<String> published = new ArrayList<>();
+    InvalidationBus.setPublisher(published::add);
+    ReferenceLevel2Cache cache = newCache(10);
+    ReferenceLevel2Cache other = newCache(10);
+    other.put(materialId(1L), newPC());
+
+    cache.putAll(Collections.singletonMap(materialId(1L), newPC()));
+    assertTrue(cache.containsOid(materialId(1L)));
+    assertFalse(other.containsOid(materialId(1L)));
+    assertEquals(1, published.size());
+
+    // Own messages are ignored, the ones from other nodes evict
+    assertTrue(InvalidationBus.dispatch(published.get(0)));
+    assertTrue(cache.containsOid(materialId(1L)));
+    ReferenceLevel2Cache.applyMessage("node2|" + MATERIAL + "#1");
+    assertFalse(cache.containsOid(materialId(1L)));
+  }
+
+  @Test
+  public void testEvictByClassAndId() {
+    List<String> published = new ArrayList<>();
+    InvalidationBus.setPublisher(published::add);
+    ReferenceLevel2Cache cache = newCache(10);
+    cache.put(materialId(1L), newPC());
+    cache.put(materialId(2L), newPC());
+
+    assertTrue(ReferenceLevel2Cache.evict("Material", "1"));
+    assertFalse(cache.containsOid(materialId(1L)));
+    assertTrue(cache.containsOid(materialId(2L)));
+    assertTrue(ReferenceLevel2Cache.evict("Material", null));
+    assertEquals(0, cache.getSize());
+    assertFalse(ReferenceLevel2Cache.evict("Order", null));
+    assertEquals(2, published.size());
+  }
+
+  @Test
+  public void testOffersAllClassesToListedClassFilter() {
+    Configuration configuration = mock(Configuration.class);
+    newCache(configuration);
+    verify(configuration).setProperty("datanucleus.cache.level2.mode", "ALL");
+  }
+
+  private ReferenceLevel2Cache newCache(int maxSize) {
+    Configuration configuration = mock(Configuration.class);
+    when(configuration.getIntProperty("datanucleus.cache.level2.maxSize")).thenReturn(maxSize);
+    when(configuration.getStringProperty("datanucleus.cache.level2.cacheName")).thenReturn("test");
+    return newCache(configuration);
+  }
+
+  private ReferenceLevel2Cache newCache(Configuration configuration) {
+    NucleusContext nucleusContext = mock(NucleusContext.class);
+    when(nucleusContext.getConfiguration()).thenReturn(configuration);
+    ReferenceLevel2Cache cache = new ReferenceLevel2Cache(nucleusContext);
+    caches.add(cache);
+    return cache;
+  }
+
+  private static long getStatistic(String name) {
+    Map<String, Long> statistics = ReferenceLevel2Cache.getStatistics().get(MATERIAL);
+    return statistics.get(name);
+  }
+
+  private static Object materialId(Long id) {
+    return new LongId(Object.class, id) {
+      {
+        targetClassName = MATERIAL;
+      }
+    };
+  }
+
+  private static CachedPC newPC() {
+    return new CachedPC(Object.class, new boolean[0], null);
+  }
+}
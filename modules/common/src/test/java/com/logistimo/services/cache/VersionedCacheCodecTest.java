@@ -0,0 +1,195 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.services.cache;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Output;
+
+import org.junit.Test;
+import org.objenesis.strategy.StdInstantiatorStrategy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class VersionedCacheCodecTest {
+
+  private static Sample sample() {
+    Sample sample = new Sample();
+    sample.name = "Sample";
+    sample.count = 42;
+    sample.created = new Date(1539000000000L);
+    for (int i = 0; i < 50; i++) {
+      sample.tags.add("tag" + i);
+      sample.limits.put("material" + i, (double) i);
+    }
+    return sample;
+  }
+
+  @Test
+  public void testKryoRoundTrip() throws IOException {
+    VersionedCacheCodec codec = new VersionedCacheCodec(VersionedCacheCodec.KRYO,
+        Sample.class.getName());
+    byte[] bytes = codec.encode(sample());
+    assertEquals(KryoCacheCodec.FORMAT_V2, bytes[0]);
+    assertEquals(sample(), codec.decode(bytes));
+  }
+
+  @Test
+  public void testReadsJavaSerializedEntries() throws IOException {
+    byte[] legacy = new JavaCacheCodec().encode(sample());
+    VersionedCacheCodec codec = new VersionedCacheCodec(VersionedCacheCodec.KRYO);
+    assertEquals(sample(), codec.decode(legacy));
+  }
+
+  @Test
+  public void testJavaWriterReadsKryoEntries() throws IOException {
+    byte[] kryo = new VersionedCacheCodec(VersionedCacheCodec.KRYO).encode(sample());
+    VersionedCacheCodec codec = new VersionedCacheCodec(VersionedCacheCodec.JAVA);
+    assertArrayEquals(new JavaCacheCodec().encode(sample()), codec.encode(sample()));
+    assertEquals(sample(), codec.decode(kryo));
+  }
+
+  @Test
+  public void testKryoIsSmaller() throws IOException {
+    int javaSize = new JavaCacheCodec().encode(sample()).length;
+    int kryoSize = new VersionedCacheCodec(VersionedCacheCodec.KRYO, Sample.class.getName())
+        .encode(sample()).length;
+    assertTrue(kryoSize < javaSize);
+  }
+
+  @Test
+  public void testReadsEntriesAcrossFieldChanges() throws IOException {
+    // Same registration id, as for one class before and after a deploy
+    VersionedCacheCodec oldCodec = new VersionedCacheCodec(VersionedCacheCodec.KRYO,
+        Version1.class.getName());
+    VersionedCacheCodec newCodec = new VersionedCacheCodec(VersionedCacheCodec.KRYO,
+        Version2.class.getName());
+    Version1 v1 = new Version1();
+    v1.name = "Sample";
+    v1.removed = 7;
+    v1.count = 42;
+    Version2 v2 = (Version2) newCodec.decode(oldCodec.encode(v1));
+    assertEquals("Sample", v2.name);
+    assertEquals(42, v2.count);
+    assertNull(v2.added);
+
+    v2.added = "new";
+    Version1 back = (Version1) oldCodec.decode(newCodec.encode(v2));
+    assertEquals("Sample", back.name);
+    assertEquals(42, back.count);
+    assertEquals(0, back.removed);
+  }
+
+  @Test
+  public void testKeepsJavaSerializationHooks() throws IOException {
+    VersionedCacheCodec codec = new VersionedCacheCodec(VersionedCacheCodec.KRYO);
+    byte[] bytes = codec.encode(Singleton.INSTANCE);
+    assertEquals(KryoCacheCodec.FORMAT_V2, bytes[0]);
+    assertSame(Singleton.INSTANCE, codec.decode(bytes));
+  }
+
+  @Test
+  public void testReadsFirstKryoFormat() throws IOException {
+    Kryo kryo = new Kryo();
+    kryo.setRegistrationRequired(false);
+    kryo.setInstantiatorStrategy(
+        new Kryo.DefaultInstantiatorStrategy(new StdInstantiatorStrategy()));
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    bos.write(KryoCacheCodec.FORMAT_V1);
+    try (Output output = new Output(bos)) {
+      kryo.writeClassAndObject(output, sample());
+    }
+    assertEquals(sample(),
+        new VersionedCacheCodec(VersionedCacheCodec.KRYO).decode(bos.toByteArray()));
+  }
+
+  @Test
+  public void testNull() throws IOException {
+    assertNull(new VersionedCacheCodec(VersionedCacheCodec.KRYO).decode(null));
+  }
+
+  @Test(expected = IOException.class)
+  public void testUnknownFormat() throws IOException {
+    new VersionedCacheCodec(VersionedCacheCodec.KRYO).decode(new byte[]{0x7f, 0x01});
+  }
+
+  private static class Version1 {
+
+    private String name;
+    private int removed;
+    private int count;
+  }
+
+  private static class Version2 {
+
+    private String name;
+    private int count;
+    private String added;
+  }
+
+  private static class Singleton implements Serializable {
+
+    private static final Singleton INSTANCE = new Singleton();
+
+    private Object readResolve() {
+      return INSTANCE;
+    }
+  }
+
+  private static class Sample implements Serializable {
+
+    private String name;
+    private int count;
+    private Date created;
+    private List<String> tags = new ArrayList<>();
+    private Map<String, Double> limits = new HashMap<>();
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Sample)) {
+        return false;
+      }
+      Sample other = (Sample) o;
+      return name.equals(other.name) && count == other.count && created.equals(other.created)
+          && tags.equals(other.tags) && limits.equals(other.limits);
+    }
+
+    @Override
+    public int hashCode() {
+      return name.hashCode();
+    }
+  }
+}
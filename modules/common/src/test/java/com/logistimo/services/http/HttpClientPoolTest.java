@@ -0,0 +1,81 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.services.http;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.apache.http.client.methods.HttpGet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.assertEquals;
+
+public class HttpClientPoolTest {
+
+  private HttpServer server;
+  private HttpClientPool pool;
+  private final Set<Integer> clientPorts = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+  @Before
+  public void setUp() throws Exception {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/ping", exchange -> {
+      clientPorts.add(exchange.getRemoteAddress().getPort());
+      byte[] body = "pong".getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream os = exchange.getResponseBody()) {
+        os.write(body);
+      }
+    });
+    server.start();
+    pool = new HttpClientPool(10, 2, 1000, 1000, 1000, 30000, 60000, false);
+  }
+
+  @After
+  public void tearDown() {
+    pool.shutdown();
+    server.stop(0);
+  }
+
+  @Test
+  public void testConnectionIsReused() throws Exception {
+    String url = "http://localhost:" + server.getAddress().getPort() + "/ping";
+    for (int i = 0; i < 3; i++) {
+      HttpResponse response = pool.execute(new HttpGet(url));
+      assertEquals(200, response.getResponseCode());
+      assertEquals("pong", new String(response.getContent(), StandardCharsets.UTF_8));
+    }
+    assertEquals(1, clientPorts.size());
+    assertEquals(0, pool.getStats().getLeased());
+    assertEquals(1, pool.getStats().getAvailable());
+  }
+}
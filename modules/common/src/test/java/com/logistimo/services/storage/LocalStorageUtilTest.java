@@ -0,0 +1,71 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.services.storage;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class LocalStorageUtilTest {
+
+  private static final String BUCKET = "dataexport";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private LocalStorageUtil storageUtil;
+
+  @Before
+  public void setUp() {
+    storageUtil = new LocalStorageUtil(folder.getRoot().getAbsolutePath());
+  }
+
+  @Test
+  public void testWriteAndAppend() throws IOException {
+    storageUtil.write(BUCKET, "users.csv", "header");
+    storageUtil.append(BUCKET, "users.csv", "\nrow");
+    assertEquals("header\nrow",
+        new String(storageUtil.readFile(BUCKET, "users.csv"), StandardCharsets.UTF_8));
+    assertEquals(10, storageUtil.getFileSizeInBytes(BUCKET, "users.csv"));
+
+    storageUtil.write(BUCKET, "users.csv", "new");
+    assertEquals("new",
+        new String(storageUtil.readFile(BUCKET, "users.csv"), StandardCharsets.UTF_8));
+
+    storageUtil.removeFile(BUCKET, "users.csv");
+    assertNull(storageUtil.readFile(BUCKET, "users.csv"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsPathOutsideBucket() throws IOException {
+    storageUtil.write(BUCKET, "../users.csv", "header");
+  }
+}
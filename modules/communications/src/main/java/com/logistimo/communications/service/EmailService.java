@@ -62,6 +62,7 @@ public class EmailService extends MessageService {
   // Mime types
   public static final String MIME_HTML = "text/html";
   public static final String MIME_CSV = "text/csv";
+  public static final String MIME_GZIP = "application/gzip";
   // Logger
   private static final XLog xLogger = XLog.getLog(EmailService.class);
   // Properties parameter names
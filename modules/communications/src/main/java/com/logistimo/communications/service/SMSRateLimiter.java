@@ -0,0 +1,130 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.communications.service;
+
+import com.logistimo.constants.CharacterConstants;
+import com.logistimo.services.cache.LimitVerdict;
+import com.logistimo.services.cache.MemcacheService;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Enforces the daily SMS limits per user and per domain, along with de-duplication of the same
+ * message to an address. Limits of a batch of addresses are checked and counted in one atomic
+ * cache operation, so concurrent senders cannot exceed them.
+ */
+public class SMSRateLimiter {
+
+  static final String COUNTER_PREFIX = "SMSC_";
+  static final String DEDUP_PREFIX = "SMSD_";
+  // Counters outlive their day by an hour
+  private static final int COUNTER_GRACE_SECONDS = 3600;
+
+  private final MemcacheService cache;
+
+  public SMSRateLimiter(MemcacheService cache) {
+    this.cache = cache;
+  }
+
+  /**
+   * Counts the message against the limits of every address that is allowed to receive it.
+   *
+   * @param addresses    formatted mobile numbers
+   * @param dedupMinutes   same message to an address within these many minutes is a duplicate
+   * @return one of SMS_VALID_KEY, SMS_MAX_USER_KEY, SMS_MAX_DOMAIN_KEY or SMS_DUPLICATE_KEY for each
+   * address in order, null if the limits could not be checked
+   */
+  public List<String> acquire(Long domainId, String message, List<String> addresses,
+                              int maxPerUser, int maxPerDomain, int dedupMinutes) {
+    Date now = new Date();
+    String date = new SimpleDateFormat(SMSService.SMS_DATE_FORMAT).format(now);
+    List<LimitVerdict> verdicts = cache.incrementWithinLimits(getCounterKey(domainId, date),
+        maxPerDomain, getCounterKeys(addresses, date), maxPerUser,
+        getDedupKeys(message, addresses), dedupMinutes * 60, getCounterExpiry(now));
+    if (verdicts == null) {
+      return null;
+    }
+    List<String> keys = new ArrayList<>(verdicts.size());
+    for (LimitVerdict verdict : verdicts) {
+      switch (verdict) {
+        case MEMBER_LIMIT:
+          keys.add(SMSService.SMS_MAX_USER_KEY);
+          break;
+        case SHARED_LIMIT:
+          keys.add(SMSService.SMS_MAX_DOMAIN_KEY);
+          break;
+        case DUPLICATE:
+          keys.add(SMSService.SMS_DUPLICATE_KEY);
+          break;
+        default:
+          keys.add(SMSService.SMS_VALID_KEY);
+      }
+    }
+    return keys;
+  }
+
+  /**
+   * Returns the quota of addresses that were allowed, but to which the message could not be sent
+   */
+  public void release(Long domainId, String message, List<String> addresses) {
+    String date = new SimpleDateFormat(SMSService.SMS_DATE_FORMAT).format(new Date());
+    cache.decrementLimits(getCounterKey(domainId, date), getCounterKeys(addresses, date),
+        getDedupKeys(message, addresses));
+  }
+
+  private static String getCounterKey(Object id, String date) {
+    return COUNTER_PREFIX + id + CharacterConstants.UNDERSCORE + date;
+  }
+
+  private static List<String> getCounterKeys(List<String> addresses, String date) {
+    List<String> keys = new ArrayList<>(addresses.size());
+    for (String address : addresses) {
+      keys.add(getCounterKey(address, date));
+    }
+    return keys;
+  }
+
+  private static List<String> getDedupKeys(String message, List<String> addresses) {
+    List<String> keys = new ArrayList<>(addresses.size());
+    for (String address : addresses) {
+      keys.add(DEDUP_PREFIX + message.hashCode() + CharacterConstants.UNDERSCORE + address);
+    }
+    return keys;
+  }
+
+  private static int getCounterExpiry(Date now) {
+    Calendar endOfDay = Calendar.getInstance();
+    endOfDay.setTime(now);
+    endOfDay.add(Calendar.DATE, 1);
+    endOfDay.set(Calendar.HOUR_OF_DAY, 0);
+    endOfDay.set(Calendar.MINUTE, 0);
+    endOfDay.set(Calendar.SECOND, 0);
+    endOfDay.set(Calendar.MILLISECOND, 0);
+    return (int) ((endOfDay.getTimeInMillis() - now.getTime()) / 1000) + COUNTER_GRACE_SECONDS;
+  }
+}
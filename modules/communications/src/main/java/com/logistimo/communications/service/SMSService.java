@@ -27,18 +27,12 @@ import com.logistimo.AppFactory;
 import com.logistimo.communications.MessageHandlingException;
 import com.logistimo.communications.ServiceResponse;
 import com.logistimo.communications.utils.TwilioUtils;
-import com.logistimo.config.entity.IConfig;
 import com.logistimo.config.models.ConfigurationException;
 import com.logistimo.config.models.GeneralConfig;
 import com.logistimo.config.models.SMSConfig;
 import com.logistimo.config.models.SMSConfig.ProviderConfig;
-import com.logistimo.config.service.ConfigurationMgmtService;
-import com.logistimo.config.service.impl.ConfigurationMgmtServiceImpl;
-import com.logistimo.constants.CharacterConstants;
 import com.logistimo.constants.Constants;
-import com.logistimo.context.StaticApplicationContext;
 import com.logistimo.services.Resources;
-import com.logistimo.services.cache.MemcacheService;
 import com.logistimo.utils.HttpUtil;
 import com.logistimo.utils.MessageUtil;
 import com.twilio.rest.api.v2010.account.Message;
@@ -194,6 +188,7 @@ public class SMSService extends MessageService {
     List<String> formattedNumbers = address.get(SMS_VALID_KEY).get(FORMATTED);
     List<Message> messages = TwilioUtils.send(provider, formattedNumbers, message);
     if (messages == null) {
+      releaseCounters(domainId, message, formattedNumbers);
       return;
     }
     svcResp.setMethod(ServiceResponse.METHOD_ID);
@@ -201,7 +196,6 @@ public class SMSService extends MessageService {
     for (int i = 0; i < messages.size(); i++) {
       svcResp.addResponse(messages.get(i).getSid(), Collections.singletonList(addresses.get(i)));
     }
-    incrementCounters(domainId, message, formattedNumbers);
   }
 
   private void sendSMS(String message, int messageType, String wapUrl, String port, Long domainId, String userId,
@@ -213,8 +207,14 @@ public class SMSService extends MessageService {
       List<String> addressList = addressLists.get(i);
       String addressesCSV = MessageUtil.getCSV(addressList);
       url = replaceVariables(url, userId, password, senderId, addressesCSV, messageType, message, wapUrl, port);
-      invokeService(url, unfAddressLists.get(i), svcResp);
-      incrementCounters(domainId, message, addressList);
+      try {
+        invokeService(url, unfAddressLists.get(i), svcResp);
+      } catch (IOException | RuntimeException e) {
+        for (int j = i; j < addressLists.size(); j++) {
+          releaseCounters(domainId, message, addressLists.get(j));
+        }
+        throw e;
+      }
     }
   }
 
@@ -232,40 +232,19 @@ public class SMSService extends MessageService {
     filteredAddress.put(SMS_DUPLICATE_KEY, new HashMap<>(getTemplate()));
     filteredAddress.put(SMS_VALID_KEY, new HashMap<>(getTemplate()));
     try {
-      SimpleDateFormat df = new SimpleDateFormat(SMS_DATE_FORMAT);
-      String date = df.format(new Date());
-      ConfigurationMgmtService cms = StaticApplicationContext.getBean(
-          ConfigurationMgmtServiceImpl.class);
-      IConfig c = cms.getConfiguration(IConfig.GENERALCONFIG);
-      GeneralConfig config = new GeneralConfig(c.getConfig());
-      MemcacheService cache = AppFactory.get().getMemcacheService();
+      GeneralConfig config = GeneralConfig.getInstance();
+      List<String> verdicts = new SMSRateLimiter(AppFactory.get().getMemcacheService())
+          .acquire(domainId, message, addresses, config.getSmsMaxCountUser(),
+              config.getSmsMaxCountDomain(), config.getSmsDedupDuration());
+      if (verdicts == null) {
+        throw new IllegalStateException("SMS limits could not be checked");
+      }
       for (int i = 0; i < addresses.size(); i++) {
-        String address = addresses.get(i);
-        String noFormatAddress = noFormatAddresses.get(i);
-        boolean found = false;
-        Integer
-            cnt =
-            (Integer) cache.get(SMS_PREFIX + address + CharacterConstants.UNDERSCORE + date);
-        if (cnt != null && cnt >= config.getSmsMaxCountUser()) {
-          filteredAddress.get(SMS_MAX_USER_KEY).get(UNFORMATTED).add(noFormatAddress);
-          found = true;
-        }
-        if (!found) {
-          cnt = (Integer) cache.get(SMS_PREFIX + domainId + CharacterConstants.UNDERSCORE + date);
-          if (cnt != null && cnt >= config.getSmsMaxCountDomain()) {
-            filteredAddress.get(SMS_MAX_DOMAIN_KEY).get(UNFORMATTED).add(noFormatAddress);
-            found = true;
-          }
-        }
-        if (!found
-            && cache.get(message.hashCode() + CharacterConstants.UNDERSCORE + address) != null) {
-          filteredAddress.get(SMS_DUPLICATE_KEY).get(UNFORMATTED).add(noFormatAddress);
-          found = true;
-        }
-        if (!found) {
-          filteredAddress.get(SMS_VALID_KEY).get(FORMATTED).add(address);
-          filteredAddress.get(SMS_VALID_KEY).get(UNFORMATTED).add(noFormatAddress);
+        Map<String, List<String>> filtered = filteredAddress.get(verdicts.get(i));
+        if (SMS_VALID_KEY.equals(verdicts.get(i))) {
+          filtered.get(FORMATTED).add(addresses.get(i));
         }
+        filtered.get(UNFORMATTED).add(noFormatAddresses.get(i));
       }
     } catch (Exception e) {
       xLogger.warn("Error in limiting SMS and deduplication check allowing all to send", e);
@@ -285,27 +264,15 @@ public class SMSService extends MessageService {
     return template;
   }
 
-  private void incrementCounters(Long domainId, String message, Iterable<String> addresses) {
+  /**
+   * Returns the SMS quota of the given addresses, as the message was not sent to them
+   */
+  private void releaseCounters(Long domainId, String message, List<String> addresses) {
     try {
-      SimpleDateFormat df = new SimpleDateFormat(SMS_DATE_FORMAT);
-      String date = df.format(new Date());
-      MemcacheService cache = AppFactory.get().getMemcacheService();
-      ConfigurationMgmtService cms = StaticApplicationContext.getBean(
-          ConfigurationMgmtServiceImpl.class);
-      IConfig c = cms.getConfiguration(IConfig.GENERALCONFIG);
-      GeneralConfig config = new GeneralConfig(c.getConfig());
-      String domainKey = SMS_PREFIX + domainId + CharacterConstants.UNDERSCORE + date;
-      for (String address : addresses) {
-        String userKey = SMS_PREFIX + address + CharacterConstants.UNDERSCORE + date;
-        Integer cnt = (Integer) cache.get(userKey);
-        cache.put(userKey, (cnt == null ? 0 : cnt) + 1);
-        cnt = (Integer) cache.get(domainKey);
-        cache.put(domainKey, (cnt == null ? 0 : cnt) + 1);
-        cache.put(message.hashCode() + CharacterConstants.UNDERSCORE + address, true,
-            config.getSmsDedupDuration() * 60); // Expiry in seconds
-      }
+      new SMSRateLimiter(AppFactory.get().getMemcacheService())
+          .release(domainId, message, addresses);
     } catch (Exception e) {
-      xLogger.warn("Error while incrementing SMS and deduplication counters. Skipping the counters",
+      xLogger.warn("Error while reverting SMS and deduplication counters. Skipping the counters",
           e);
     }
   }
@@ -0,0 +1,77 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.communications.service;
+
+import com.logistimo.services.cache.InMemoryMemcacheService;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class SMSRateLimiterTest {
+
+  private static final Long DOMAIN_ID = 1L;
+
+  private SMSRateLimiter limiter;
+
+  @Before
+  public void setUp() {
+    limiter = new SMSRateLimiter(new InMemoryMemcacheService());
+  }
+
+  @Test
+  public void testUserAndDomainLimits() {
+    assertEquals(Arrays.asList(SMSService.SMS_VALID_KEY, SMSService.SMS_VALID_KEY),
+        limiter.acquire(DOMAIN_ID, "first", Arrays.asList("911", "912"), 2, 3, 0));
+    assertEquals(Arrays.asList(SMSService.SMS_VALID_KEY, SMSService.SMS_MAX_DOMAIN_KEY),
+        limiter.acquire(DOMAIN_ID, "second", Arrays.asList("911", "912"), 2, 3, 0));
+    assertEquals(Collections.singletonList(SMSService.SMS_MAX_USER_KEY),
+        limiter.acquire(DOMAIN_ID, "third", Collections.singletonList("911"), 2, 3, 0));
+  }
+
+  @Test
+  public void testDuplicateMessage() {
+    List<String> addresses = Arrays.asList("911", "912", "911");
+    assertEquals(Arrays.asList(SMSService.SMS_VALID_KEY, SMSService.SMS_VALID_KEY,
+        SMSService.SMS_DUPLICATE_KEY), limiter.acquire(DOMAIN_ID, "hello", addresses, 5, 10, 10));
+    assertEquals(Collections.singletonList(SMSService.SMS_VALID_KEY),
+        limiter.acquire(DOMAIN_ID, "bye", Collections.singletonList("911"), 5, 10, 10));
+  }
+
+  @Test
+  public void testReleaseRestoresQuota() {
+    List<String> address = Collections.singletonList("911");
+    assertEquals(address.size(), limiter.acquire(DOMAIN_ID, "hello", address, 1, 10, 10).size());
+    limiter.release(DOMAIN_ID, "hello", address);
+    assertEquals(Collections.singletonList(SMSService.SMS_VALID_KEY),
+        limiter.acquire(DOMAIN_ID, "hello", address, 1, 10, 10));
+    assertEquals(Collections.singletonList(SMSService.SMS_MAX_USER_KEY),
+        limiter.acquire(DOMAIN_ID, "hello", address, 1, 10, 10));
+  }
+}
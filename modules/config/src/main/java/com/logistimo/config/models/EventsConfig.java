@@ -32,6 +32,7 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -230,6 +231,35 @@ public class EventsConfig implements Serializable {
     return null;
   }
 
+  // Check if any param. spec. is configured for an event, without needing its parameters.
+  // Used to skip loading the event object when nothing can match.
+  public boolean isEventConfigured(String objectType, int eventId) {
+    EventSpec es = eventSpecs.get(createKey(eventId, objectType));
+    return es != null && es.getParamSpecs() != null && !es.getParamSpecs().isEmpty();
+  }
+
+  // Check if any param. spec. configured for an event uses at least one of the given params.
+  // Used to skip resolving event object attributes (e.g. tags) that no spec. compares against.
+  public boolean isEventParamConfigured(String objectType, int eventId,
+                                        Collection<String> paramNames) {
+    EventSpec es = eventSpecs.get(createKey(eventId, objectType));
+    if (es == null || es.getParamSpecs() == null) {
+      return false;
+    }
+    for (EventSpec.ParamSpec paramSpec : es.getParamSpecs().values()) {
+      Map<String, Object> params = paramSpec.getParams();
+      if (params == null || params.isEmpty()) {
+        continue;
+      }
+      for (String paramName : paramNames) {
+        if (params.containsKey(paramName)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
   // Match an event (i.e. is configured) and its parameters; use a ParamComparator in case the parameter matching criteria is not equal-to.
   // Returns the matched event param. spec.
   public EventSpec.ParamSpec matchEvent(String objectType, int eventId, Map<String, Object> params,
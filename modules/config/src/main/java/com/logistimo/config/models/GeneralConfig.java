@@ -81,6 +81,7 @@ public class GeneralConfig {
   private int rememberDeviceInMinutes;
   private String storeAppFeedbackText;
   private String monitoringAppFeedbackText;
+  private static volatile CachedConfig cachedConfig;
 
 
   public GeneralConfig() {
@@ -185,18 +186,35 @@ public class GeneralConfig {
         supportEmail, supportPhone, applicationUrls);
   }
 
-  // Get an instance of the GeneralConfig
+  /**
+   * Get an instance of the GeneralConfig. The parsed configuration is shared for
+   * {@code config.general.cache.seconds}, and is parsed again only if the stored json changed.
+   */
   public static GeneralConfig getInstance() throws ConfigurationException {
+    CachedConfig current = cachedConfig;
+    if (current != null && current.expiresAt > System.currentTimeMillis()) {
+      return current.config;
+    }
     try {
       ConfigurationMgmtService cms = StaticApplicationContext
           .getBean(ConfigurationMgmtServiceImpl.class);
       IConfig c = cms.getConfiguration(IConfig.GENERALCONFIG);
-      return new GeneralConfig(c.getConfig());
+      GeneralConfig config = current != null && current.json.equals(c.getConfig())
+          ? current.config : new GeneralConfig(c.getConfig());
+      cachedConfig = new CachedConfig(c.getConfig(), config);
+      return config;
     } catch (ObjectNotFoundException | ServiceException e) {
       throw new ConfigurationException(e.getMessage());
     }
   }
 
+  /**
+   * Drops the shared instance, called when the general configuration is updated on this node
+   */
+  public static void invalidate() {
+    cachedConfig = null;
+  }
+
   public String getSupportEmail() {
     return this.supportEmail;
   }
@@ -259,4 +277,17 @@ public class GeneralConfig {
   public String getMonitoringAppFeedbackText() {
     return monitoringAppFeedbackText;
   }
+
+  private static class CachedConfig {
+    private final String json;
+    private final GeneralConfig config;
+    private final long expiresAt;
+
+    CachedConfig(String json, GeneralConfig config) {
+      this.json = json;
+      this.config = config;
+      this.expiresAt = System.currentTimeMillis()
+          + ConfigUtil.getInt("config.general.cache.seconds", 60) * 1000L;
+    }
+  }
 }
@@ -31,6 +31,7 @@ import com.logistimo.config.entity.Config;
 import com.logistimo.config.entity.IConfig;
 import com.logistimo.config.models.ConfigurationException;
 import com.logistimo.config.models.DomainConfig;
+import com.logistimo.config.models.GeneralConfig;
 import com.logistimo.config.models.LocationConfig;
 import com.logistimo.config.service.ConfigurationMgmtService;
 import com.logistimo.dao.JDOUtils;
@@ -209,6 +210,8 @@ public class ConfigurationMgmtServiceImpl implements ConfigurationMgmtService {
       // whenever there is a change in the location configuration, re-initialize it
       if (c.getKey().equals(IConfig.LOCATIONS)) {
         LocationConfig.initialize();
+      } else if (c.getKey().equals(IConfig.GENERALCONFIG)) {
+        GeneralConfig.invalidate();
       }
     } catch (Exception e) {
       xLogger
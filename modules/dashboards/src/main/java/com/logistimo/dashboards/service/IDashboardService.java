@@ -29,6 +29,7 @@ import com.logistimo.services.ServiceException;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -65,6 +66,14 @@ public interface IDashboardService {
   ResultSet getMainDashboardResults(Long domainId, Map<String, String> filters, String type,
                                     boolean isCountOnly, String groupby);
 
+  /**
+   * Runs the main dashboard queries of the given types in parallel against the read replica.
+   *
+   * @return result sets by type, the caller is responsible for closing them
+   */
+  Map<String, ResultSet> getMainDashboardResults(Long domainId, Map<String, String> filters,
+                                                 Collection<String> types);
+
   Integer getInvTotalCount(Map<String, String> filters) throws SQLException;
 
 }
@@ -52,9 +52,19 @@ import java.sql.SQLException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.jdo.PersistenceManager;
 import javax.jdo.Query;
@@ -67,6 +77,27 @@ import javax.jdo.datastore.JDOConnection;
 public class DashboardService implements IDashboardService {
   private static final XLog xLogger = XLog.getLog(DashboardService.class);
   private static final int PREDICTIVE_PERIOD = ConfigUtil.getInt("predictive.period", 7);
+  private static final int QUERY_THREADS = ConfigUtil.getInt("dashboard.query.threads", 4);
+  private static final int QUERY_TIMEOUT_SECONDS =
+      ConfigUtil.getInt("dashboard.query.timeout.seconds", 300);
+  /**
+   * Bounded pool for the main dashboard fan-out, each query takes its own read replica connection.
+   * When saturated the requesting thread runs the query itself.
+   */
+  private static final ThreadPoolExecutor QUERY_EXECUTOR = createQueryExecutor();
+
+  private static ThreadPoolExecutor createQueryExecutor() {
+    AtomicInteger count = new AtomicInteger();
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(QUERY_THREADS, QUERY_THREADS, 60,
+        TimeUnit.SECONDS, new ArrayBlockingQueue<>(ConfigUtil.getInt("dashboard.query.queue", 50)),
+        runnable -> {
+          Thread thread = new Thread(runnable, "dashboard-query-" + count.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
 
   @Override
   public void createDashboard(IDashboard ds) throws ServiceException {
@@ -355,6 +386,51 @@ public class DashboardService implements IDashboardService {
 
   }
 
+  @Override
+  public Map<String, ResultSet> getMainDashboardResults(Long domainId, Map<String, String> filters,
+                                                        Collection<String> types) {
+    Map<String, CompletableFuture<ResultSet>> futures = new LinkedHashMap<>(types.size());
+    AtomicBoolean abandoned = new AtomicBoolean();
+    for (String type : types) {
+      futures.put(type, CompletableFuture.supplyAsync(
+          () -> abandoned.get() ? null : getMainDashboardResults(domainId, filters, type),
+          QUERY_EXECUTOR));
+    }
+    Map<String, ResultSet> results = new HashMap<>(types.size());
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(QUERY_TIMEOUT_SECONDS);
+    try {
+      for (Map.Entry<String, CompletableFuture<ResultSet>> entry : futures.entrySet()) {
+        results.put(entry.getKey(),
+            entry.getValue().get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS));
+      }
+      return results;
+    } catch (Exception e) {
+      // Queries not started yet are skipped. Results already in, or still to come from running
+      // queries, are closed as they are not handed out.
+      abandoned.set(true);
+      futures.values().forEach(future -> future.thenAccept(DashboardService::closeQuietly));
+      if (e instanceof InterruptedException) {
+        Thread.currentThread().interrupt();
+      }
+      Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      xLogger.warn("Error running dashboard queries {0} for domain {1}", types, domainId, cause);
+      throw new SystemException("Error running dashboard queries for domain " + domainId, cause);
+    }
+  }
+
+  private static void closeQuietly(ResultSet resultSet) {
+    if (resultSet != null) {
+      try {
+        resultSet.close();
+      } catch (SQLException e) {
+        xLogger.warn("Exception while closing dashboard results", e);
+      }
+    }
+  }
+
   private PreparedStatementModel getPredictiveStockOutQuery(Long domainId, Map<String, String> filters) {
     PreparedStatementModel model = new PreparedStatementModel();
     StringBuilder query = new StringBuilder();
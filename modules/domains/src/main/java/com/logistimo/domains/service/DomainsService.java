@@ -33,6 +33,7 @@ import com.logistimo.services.ServiceException;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 import javax.jdo.PersistenceManager;
 
@@ -93,6 +94,11 @@ public interface DomainsService {
    */
   List<IDomainLink> getAllDomainLinks(Long domainId, int linkType) throws ServiceException;
 
+  /**
+   * Get the ids of all domains linked to the given domain, directly or not (entire subtree)
+   */
+  Set<Long> getLinkedDomainIds(Long domainId, int linkType);
+
   /**
    * Check if links of a certain type exist
    */
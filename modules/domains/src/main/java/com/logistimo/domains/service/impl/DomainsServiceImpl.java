@@ -35,6 +35,7 @@ import com.logistimo.domains.entity.IDomain;
 import com.logistimo.domains.entity.IDomainLink;
 import com.logistimo.domains.entity.IDomainPermission;
 import com.logistimo.domains.service.DomainsService;
+import com.logistimo.domains.utils.DomainGraph;
 import com.logistimo.domains.utils.EntityRemover;
 import com.logistimo.exception.InvalidServiceException;
 import com.logistimo.exception.TaskSchedulingException;
@@ -54,7 +55,6 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
@@ -63,6 +63,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.Set;
 
 import javax.jdo.JDOObjectNotFoundException;
 import javax.jdo.PersistenceManager;
@@ -169,83 +170,27 @@ public class DomainsServiceImpl implements DomainsService {
    * Get the linked domains of the given domain (returns a list of DomainLink)
    * NOTE: depth of -1 gets the entire subtree
    */
-  @SuppressWarnings("unchecked")
   public List<IDomainLink> getDomainLinks(Long domainId, int linkType, int depth)
       throws ServiceException {
-    xLogger.fine("Entered getLinkedDomains");
-    List<IDomainLink>
-        links =
-        getDomainLinks(domainId, linkType, null)
-            .getResults(); // get the next level of links for this domain
-    if (links == null || links.isEmpty()) {
-      return null;
-    }
-    List<IDomainLink> allLinks = new ArrayList<>(links.size());
-    allLinks.addAll(links);
-    if (depth == 0) {
-      return allLinks;
-    }
-    // Get the next level of links
-    for (IDomainLink dl : links) {
-      List<IDomainLink> nextLinks = getDomainLinks(dl.getLinkedDomainId(), linkType, depth--);
-      if (nextLinks != null && !nextLinks.isEmpty()) {
-        allLinks.addAll(nextLinks);
-      }
-    }
-    xLogger.fine("Exiting getLinkedDomains");
-    return allLinks;
+    List<IDomainLink> links = DomainGraph.get().getLinks(domainId, linkType, depth);
+    return links.isEmpty() ? null : new ArrayList<>(links);
   }
 
   public List<IDomainLink> getAllDomainLinks(Long domainId, int linkType) throws ServiceException {
     return getDomainLinks(domainId, linkType, -1);
   }
 
+  @Override
+  public Set<Long> getLinkedDomainIds(Long domainId, int linkType) {
+    return DomainGraph.get().getLinkedDomainIds(domainId, linkType);
+  }
+
   @Override
   public boolean hasAncestor(Long childDomainId, Collection<Long> ancestorDomainIds) {
     if (childDomainId == null) {
       throw new IllegalArgumentException("Invalid domain Id");
     }
-    Long currentDomainId = childDomainId;
-    String
-        queryStr =
-        "SELECT FROM " + JDOUtils.getImplClass(IDomainLink.class).getName()
-            + " WHERE dId == dIdParam && ty == tyParam PARAMETERS Long dIdParam, Integer tyParam"; // sorted by linked domain name
-    PersistenceManager pm = getPersistenceManager();
-    try {
-      IDomainLink parentLink;
-      int count = 1;
-      do {
-        Query q = null;
-        try {
-          parentLink = null;
-          q = pm.newQuery(queryStr);
-          QueryUtil.setPageParams(q, new PageParams(1));
-          q.setClass(JDOUtils.getImplClass(IDomainLink.class));
-          List<IDomainLink> parentLinks =
-              (List<IDomainLink>) q.execute(currentDomainId, IDomainLink.TYPE_PARENT);
-          if (parentLinks != null && !parentLinks.isEmpty()) {
-            parentLink = parentLinks.get(0);
-            if (ancestorDomainIds.contains(parentLink.getLinkedDomainId())) {
-              return true;
-            }
-            currentDomainId = parentLink.getLinkedDomainId();
-          }
-        } finally {
-          if (q != null) {
-            q.closeAll();
-          }
-        }
-        if (count > 10) {
-          xLogger.warn(
-              "Ancestor check looped for {0} times, current domain Id {1} while checking for "
-                  + "childDomain {2} in ancestor Domains {3} ", count, currentDomainId,
-              childDomainId, Arrays.toString(ancestorDomainIds.toArray()));
-        }
-      } while (parentLink != null && count++ < 100);
-    } finally {
-      pm.close();
-    }
-    return false;
+    return DomainGraph.get().hasAncestor(childDomainId, ancestorDomainIds);
   }
 
   /**
@@ -294,34 +239,11 @@ public class DomainsServiceImpl implements DomainsService {
   /**
    * Check if links of a certain type exist
    */
-  @SuppressWarnings("unchecked")
   public boolean hasDomainLinks(Long domainId, int linkType) throws ServiceException {
-    xLogger.fine("Entered hasLinkedDomains");
     if (domainId == null) {
       throw new IllegalArgumentException("Invalid domain ID");
     }
-    boolean has = false;
-    PersistenceManager pm = getPersistenceManager();
-    String
-        queryStr =
-        "SELECT key FROM " + JDOUtils.getImplClass(IDomainLink.class).getName()
-            + " WHERE dId == dIdParam && ty == tyParam PARAMETERS Long dIdParam, Integer tyParam ORDER BY nldnm ASC";
-    Query q = pm.newQuery(queryStr);
-    QueryUtil.setPageParams(q, new PageParams(null, 1));
-    try {
-      List<String> keys = (List<String>) q.execute(domainId, linkType);
-      xLogger.fine("Got keys: {0}", keys);
-      has = keys != null && !keys.isEmpty();
-    } finally {
-      try {
-        q.closeAll();
-      } catch (Exception ignored) {
-        xLogger.warn("Exception while closing query", ignored);
-      }
-      pm.close();
-    }
-    xLogger.fine("Exiting hasLinkedDomains");
-    return has;
+    return DomainGraph.get().hasLinks(domainId, linkType);
   }
 
   /**
@@ -413,6 +335,7 @@ public class DomainsServiceImpl implements DomainsService {
       pm.detachCopyAll(allLinks);
     } finally {
       pm.close();
+      DomainGraph.invalidate();
     }
     // Perform the post-commit tasks, if any, for copying domain data/config. to the linked domains
     try {
@@ -460,6 +383,7 @@ public class DomainsServiceImpl implements DomainsService {
       pm.deletePersistentAll(links);
     } finally {
       pm.close();
+      DomainGraph.invalidate();
     }
     xLogger.fine("Exiting removeDoaminLinks");
   }
@@ -539,6 +463,7 @@ public class DomainsServiceImpl implements DomainsService {
       throw new ServiceException("Error in deleting domain link");
     } finally {
       pm.close();
+      DomainGraph.invalidate();
     }
     xLogger.fine("Exiting removeDomainLinks");
   }
@@ -0,0 +1,233 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.domains.utils;
+
+import com.logistimo.dao.JDOUtils;
+import com.logistimo.domains.entity.IDomainLink;
+import com.logistimo.logger.XLog;
+import com.logistimo.services.cache.InvalidationBus;
+import com.logistimo.services.impl.PMF;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import javax.jdo.PersistenceManager;
+import javax.jdo.Query;
+
+/**
+ * Immutable view of the domain hierarchy, built from all domain links along with the closure of
+ * every domain in both directions, so that ancestry and sub-tree lookups need no query. The graph
+ * is loaded on first use and dropped as a whole, on all nodes, whenever links are added or
+ * removed; the next lookup loads a new one.
+ */
+public final class DomainGraph {
+
+  private static final XLog xLogger = XLog.getLog(DomainGraph.class);
+
+  private static final String MESSAGE_PREFIX = "DOMAIN_GRAPH:";
+
+  // Bumped on every invalidation, a graph loaded before it must not be kept after it
+  private static final AtomicLong version = new AtomicLong();
+  private static volatile DomainGraph current;
+
+  static {
+    InvalidationBus.register(MESSAGE_PREFIX, new InvalidationBus.Listener() {
+      @Override
+      public void onMessage(String message) {
+        if (!InvalidationBus.NODE_ID.equals(message)) {
+          discard();
+        }
+      }
+
+      @Override
+      public void onReset() {
+        discard();
+      }
+    });
+  }
+
+  // link type -> domain -> direct links, sorted by linked domain name
+  private final Map<Integer, Map<Long, List<IDomainLink>>> links = new HashMap<>(2);
+  // link type -> domain -> links of the entire sub-tree (upwards or downwards), in getLinks order
+  private final Map<Integer, Map<Long, List<IDomainLink>>> closures = new HashMap<>(2);
+  // link type -> domain -> domain ids of the entire sub-tree
+  private final Map<Integer, Map<Long, Set<Long>>> closureIds = new HashMap<>(2);
+
+  private DomainGraph(List<IDomainLink> allLinks) {
+    for (IDomainLink link : allLinks) {
+      links.computeIfAbsent(link.getType(), type -> new HashMap<>())
+          .computeIfAbsent(link.getDomainId(), domainId -> new ArrayList<>()).add(link);
+    }
+    for (Map.Entry<Integer, Map<Long, List<IDomainLink>>> typeLinks : links.entrySet()) {
+      Map<Long, List<IDomainLink>> typeClosures = new HashMap<>(typeLinks.getValue().size());
+      Map<Long, Set<Long>> typeClosureIds = new HashMap<>(typeLinks.getValue().size());
+      for (Long domainId : typeLinks.getValue().keySet()) {
+        List<IDomainLink> closure = new ArrayList<>();
+        collect(typeLinks.getValue(), domainId, -1, newVisited(domainId), closure);
+        Set<Long> ids = new LinkedHashSet<>(closure.size());
+        for (IDomainLink link : closure) {
+          ids.add(link.getLinkedDomainId());
+        }
+        typeClosures.put(domainId, Collections.unmodifiableList(closure));
+        typeClosureIds.put(domainId, Collections.unmodifiableSet(ids));
+      }
+      closures.put(typeLinks.getKey(), typeClosures);
+      closureIds.put(typeLinks.getKey(), typeClosureIds);
+    }
+  }
+
+  /**
+   * @return the current graph, loading it if required
+   */
+  public static DomainGraph get() {
+    DomainGraph graph = current;
+    return graph != null ? graph : load(DomainGraph::readLinks);
+  }
+
+  /**
+   * Drops the graph on all nodes, to be called once domain links are added or removed
+   */
+  public static void invalidate() {
+    discard();
+    InvalidationBus.publish(MESSAGE_PREFIX, InvalidationBus.NODE_ID);
+  }
+
+  private static void discard() {
+    version.incrementAndGet();
+    current = null;
+  }
+
+  static synchronized DomainGraph load(Supplier<List<IDomainLink>> linkReader) {
+    if (current != null) {
+      return current;
+    }
+    long loadVersion = version.get();
+    DomainGraph graph = new DomainGraph(linkReader.get());
+    if (version.get() == loadVersion) {
+      current = graph;
+    }
+    return graph;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<IDomainLink> readLinks() {
+    PersistenceManager pm = PMF.get().getPersistenceManager();
+    Query q = pm.newQuery("SELECT FROM " + JDOUtils.getImplClass(IDomainLink.class).getName()
+        + " ORDER BY nldnm ASC");
+    try {
+      List<IDomainLink> allLinks = (List<IDomainLink>) q.execute();
+      allLinks = new ArrayList<>(pm.detachCopyAll(allLinks));
+      xLogger.info("Loaded domain graph with {0} links", allLinks.size());
+      return allLinks;
+    } finally {
+      try {
+        q.closeAll();
+      } catch (Exception ignored) {
+        xLogger.warn("Exception while closing query", ignored);
+      }
+      pm.close();
+    }
+  }
+
+  /**
+   * Get the links of the given domain: its direct links sorted by linked domain name, then the
+   * links below each of those in turn, the same way
+   *
+   * @param depth levels below the first one to include, -1 for the entire sub-tree
+   * @return the links, empty if none
+   */
+  public List<IDomainLink> getLinks(Long domainId, int linkType, int depth) {
+    if (depth < 0) {
+      return getMap(closures, linkType).getOrDefault(domainId, Collections.emptyList());
+    }
+    List<IDomainLink> domainLinks = new ArrayList<>();
+    collect(getMap(links, linkType), domainId, depth, newVisited(domainId), domainLinks);
+    return domainLinks;
+  }
+
+  /**
+   * @return ids of all domains linked to the given domain, directly or not, in getLinks order
+   */
+  public Set<Long> getLinkedDomainIds(Long domainId, int linkType) {
+    return getMap(closureIds, linkType).getOrDefault(domainId, Collections.emptySet());
+  }
+
+  public boolean hasLinks(Long domainId, int linkType) {
+    return getMap(links, linkType).containsKey(domainId);
+  }
+
+  /**
+   * @return true if one of the given domains is an ancestor of the child domain
+   */
+  public boolean hasAncestor(Long childDomainId, Collection<Long> ancestorDomainIds) {
+    Set<Long> ancestors = getLinkedDomainIds(childDomainId, IDomainLink.TYPE_PARENT);
+    for (Long ancestorDomainId : ancestorDomainIds) {
+      if (ancestors.contains(ancestorDomainId)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static <T> Map<Long, T> getMap(Map<Integer, Map<Long, T>> byType, int linkType) {
+    return byType.getOrDefault(linkType, Collections.emptyMap());
+  }
+
+  private static Set<Long> newVisited(Long domainId) {
+    Set<Long> visited = new HashSet<>();
+    visited.add(domainId);
+    return visited;
+  }
+
+  // Adds the direct links of the domain, then those of each linked domain, skipping cycles
+  private static void collect(Map<Long, List<IDomainLink>> adjacency, Long domainId, int depth,
+                              Set<Long> visited, List<IDomainLink> out) {
+    List<IDomainLink> direct = adjacency.get(domainId);
+    if (direct == null) {
+      return;
+    }
+    List<IDomainLink> next = new ArrayList<>(direct.size());
+    for (IDomainLink link : direct) {
+      if (visited.add(link.getLinkedDomainId())) {
+        out.add(link);
+        next.add(link);
+      }
+    }
+    if (depth == 0) {
+      return;
+    }
+    for (IDomainLink link : next) {
+      collect(adjacency, link.getLinkedDomainId(), depth - 1, visited, out);
+    }
+  }
+}
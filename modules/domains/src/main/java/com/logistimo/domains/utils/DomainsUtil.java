@@ -43,7 +43,6 @@ import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 import javax.jdo.PersistenceManager;
 
@@ -151,16 +150,9 @@ public class DomainsUtil {
   // Add an object to all linked domains
   private static List<Long> getLinkedDomains(Long domainId, int linkType) throws ServiceException {
     xLogger.fine("Entered addOrRemoveFromLinkedDomains: domainId: {0}", domainId);
-    List<Long> domainIds = new ArrayList<>();
     DomainsService ds = StaticApplicationContext.getBean(DomainsServiceImpl.class);
-    List<IDomainLink>
-        domainLinks =
-        ds.getAllDomainLinks(domainId, linkType); // entire sub-tree (upwards or downwards)
-    // Add/remove the object to/from all parent domains
-    if (domainLinks != null && !domainLinks.isEmpty()) {
-      domainIds.addAll(
-          domainLinks.stream().map(IDomainLink::getLinkedDomainId).collect(Collectors.toList()));
-    }
+    // entire sub-tree (upwards or downwards)
+    List<Long> domainIds = new ArrayList<>(ds.getLinkedDomainIds(domainId, linkType));
     xLogger.fine("Exiting addOrRemoveFromLinkedDomains");
     return domainIds;
   }
@@ -221,21 +213,12 @@ public class DomainsUtil {
   public static Set<Long> getDomainLinks(Long domainId, int type, boolean includeSource)
       throws ServiceException {
     DomainsService as = StaticApplicationContext.getBean(DomainsServiceImpl.class);
-    List<IDomainLink> domainLinks = as.getAllDomainLinks(domainId, type);
-    Set<Long> parents;
-    if (domainLinks == null) {
-      parents = new HashSet<>(0);
-    } else {
-      parents = new HashSet<>(domainLinks.size());
-    }
+    Set<Long> linkedDomainIds = as.getLinkedDomainIds(domainId, type);
+    Set<Long> parents = new HashSet<>(linkedDomainIds.size() + 1);
     if (includeSource) {
       parents.add(domainId);
     }
-    if (domainLinks != null) {
-      for (IDomainLink domainLink : domainLinks) {
-        parents.add(domainLink.getLinkedDomainId());
-      }
-    }
+    parents.addAll(linkedDomainIds);
     return parents;
   }
 
@@ -272,8 +255,7 @@ public class DomainsUtil {
    */
   public static boolean isLinkAvailable(Long domainId, int linkType) throws ServiceException {
     DomainsService as = StaticApplicationContext.getBean(DomainsServiceImpl.class);
-    List<IDomainLink> domainLinks = as.getDomainLinks(domainId, linkType, 1);
-    return domainLinks != null;
+    return as.hasDomainLinks(domainId, linkType);
   }
 
   /**
@@ -0,0 +1,157 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.domains.utils;
+
+import com.logistimo.domains.entity.IDomainLink;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class DomainGraphTest {
+
+  // 1 -> 2 -> 4 -> 6
+  //   -> 3 -> 5
+  private static final long[][] TREE = {{1, 2}, {1, 3}, {2, 4}, {3, 5}, {4, 6}};
+
+  @BeforeMethod
+  public void setUp() {
+    DomainGraph.invalidate();
+  }
+
+  @Test
+  public void testSubTree() {
+    DomainGraph graph = DomainGraph.load(() -> getLinks(TREE));
+    assertEquals(getLinkedIds(graph.getLinks(1L, IDomainLink.TYPE_CHILD, -1)),
+        Arrays.asList(2L, 3L, 4L, 6L, 5L));
+    assertEquals(new ArrayList<>(graph.getLinkedDomainIds(1L, IDomainLink.TYPE_CHILD)),
+        Arrays.asList(2L, 3L, 4L, 6L, 5L));
+    assertEquals(new ArrayList<>(graph.getLinkedDomainIds(3L, IDomainLink.TYPE_CHILD)),
+        Collections.singletonList(5L));
+    assertTrue(graph.hasLinks(2L, IDomainLink.TYPE_CHILD));
+    assertFalse(graph.hasLinks(6L, IDomainLink.TYPE_CHILD));
+    assertTrue(graph.getLinks(6L, IDomainLink.TYPE_CHILD, -1).isEmpty());
+    assertTrue(graph.getLinkedDomainIds(7L, IDomainLink.TYPE_CHILD).isEmpty());
+  }
+
+  @Test
+  public void testDepthLimitedLinks() {
+    DomainGraph graph = DomainGraph.load(() -> getLinks(TREE));
+    assertEquals(getLinkedIds(graph.getLinks(1L, IDomainLink.TYPE_CHILD, 0)),
+        Arrays.asList(2L, 3L));
+    assertEquals(getLinkedIds(graph.getLinks(1L, IDomainLink.TYPE_CHILD, 1)),
+        Arrays.asList(2L, 3L, 4L, 5L));
+    assertEquals(getLinkedIds(graph.getLinks(1L, IDomainLink.TYPE_CHILD, 2)),
+        Arrays.asList(2L, 3L, 4L, 6L, 5L));
+  }
+
+  @Test
+  public void testAncestors() {
+    DomainGraph graph = DomainGraph.load(() -> getLinks(TREE));
+    assertEquals(new ArrayList<>(graph.getLinkedDomainIds(6L, IDomainLink.TYPE_PARENT)),
+        Arrays.asList(4L, 2L, 1L));
+    assertTrue(graph.hasAncestor(6L, Arrays.asList(3L, 1L)));
+    assertTrue(graph.hasAncestor(5L, Collections.singletonList(3L)));
+    assertFalse(graph.hasAncestor(5L, Arrays.asList(2L, 4L)));
+    assertFalse(graph.hasAncestor(1L, Collections.singletonList(2L)));
+  }
+
+  @Test
+  public void testCycles() {
+    // 6 -> 1 closes the loop 1 -> 2 -> 4 -> 6 -> 1
+    long[][] cyclic = {{1, 2}, {1, 3}, {2, 4}, {3, 5}, {4, 6}, {6, 1}};
+    DomainGraph graph = DomainGraph.load(() -> getLinks(cyclic));
+    assertEquals(new ArrayList<>(graph.getLinkedDomainIds(1L, IDomainLink.TYPE_CHILD)),
+        Arrays.asList(2L, 3L, 4L, 6L, 5L));
+    assertEquals(new ArrayList<>(graph.getLinkedDomainIds(6L, IDomainLink.TYPE_CHILD)),
+        Arrays.asList(1L, 2L, 3L, 4L, 5L));
+    assertTrue(graph.hasAncestor(1L, Collections.singletonList(6L)));
+    assertEquals(getLinkedIds(graph.getLinks(4L, IDomainLink.TYPE_CHILD, 10)),
+        Arrays.asList(6L, 1L, 2L, 3L, 5L));
+  }
+
+  @Test
+  public void testGraphKeptUntilInvalidated() {
+    DomainGraph graph = DomainGraph.load(() -> getLinks(TREE));
+    assertSame(DomainGraph.load(() -> {
+      throw new AssertionError("Graph should not be loaded again");
+    }), graph);
+    DomainGraph.invalidate();
+    assertNotSame(DomainGraph.load(() -> getLinks(TREE)), graph);
+  }
+
+  @Test
+  public void testGraphInvalidatedDuringLoadIsNotKept() {
+    DomainGraph stale = DomainGraph.load(() -> {
+      // Links change while the old ones are being read
+      DomainGraph.invalidate();
+      return getLinks(TREE);
+    });
+    assertEquals(stale.getLinkedDomainIds(1L, IDomainLink.TYPE_CHILD).size(), 5);
+
+    long[][] changed = {{1, 2}};
+    DomainGraph graph = DomainGraph.load(() -> getLinks(changed));
+    assertNotSame(graph, stale);
+    assertEquals(new ArrayList<>(graph.getLinkedDomainIds(1L, IDomainLink.TYPE_CHILD)),
+        Collections.singletonList(2L));
+  }
+
+  // Child links for the given parent-child pairs, along with the reverse parent links
+  private static List<IDomainLink> getLinks(long[][] pairs) {
+    List<IDomainLink> links = new ArrayList<>(pairs.length * 2);
+    for (long[] pair : pairs) {
+      links.add(getLink(pair[0], pair[1], IDomainLink.TYPE_CHILD));
+      links.add(getLink(pair[1], pair[0], IDomainLink.TYPE_PARENT));
+    }
+    return links;
+  }
+
+  private static IDomainLink getLink(long domainId, long linkedDomainId, int type) {
+    IDomainLink link = mock(IDomainLink.class);
+    when(link.getDomainId()).thenReturn(domainId);
+    when(link.getLinkedDomainId()).thenReturn(linkedDomainId);
+    when(link.getType()).thenReturn(type);
+    return link;
+  }
+
+  private static List<Long> getLinkedIds(List<IDomainLink> links) {
+    List<Long> ids = new ArrayList<>(links.size());
+    for (IDomainLink link : links) {
+      ids.add(link.getLinkedDomainId());
+    }
+    return ids;
+  }
+}
@@ -82,6 +82,9 @@ public class EventGenerator {
 
   // Logger
   protected static final XLog xLogger = XLog.getLog(EventGenerator.class);
+  private static final List<String> TAG_EXCLUSION_PARAMS = Arrays.asList(
+      EventConstants.PARAM_ENTITYTAGSTOEXCLUDE, EventConstants.PARAM_MATERIALTAGSTOEXCLUDE,
+      EventConstants.PARAM_ORDERTAGSTOEXCLUDE);
   protected Long domainId = null;
   protected String objectType = null; // class name of object on which the event occurs
   private static Set<Integer> vldTransEventTypes = new HashSet<>(Arrays.asList(IEvent.STOCK_COUNTED, IEvent.STOCK_ISSUED, IEvent.STOCK_RECEIVED, IEvent.STOCK_TRANSFERRED, IEvent.STOCK_WASTED, IEvent.INCOMING_RETURN_ENTERED, IEvent.OUTGOING_RETURN_ENTERED));
@@ -431,12 +434,22 @@ public class EventGenerator {
   public void generate(int eventId, Map<String, Object> params, String objectId,
                        CustomOptions customOptions) throws EventGenerationException {
     try {
-      Map<String, Object> tagParams = EventHandler.getTagParams(objectType, objectId);
-      if(params == null){
-        params = tagParams;
-      }else {
-        if (tagParams != null) {
-          params.putAll(tagParams);
+      // Most events have no spec. configured; check before loading the object for its tags
+      DomainConfig dc = DomainConfig.getInstance(domainId);
+      if (dc == null || !dc.getEventsConfig().isEventConfigured(objectType, eventId)) {
+        xLogger.fine("No event spec. configured for {0}:{1} in domain {2}", objectType, eventId,
+            domainId);
+        return;
+      }
+      // Tags are only compared against exclusions; load the object only if a spec. has them
+      if (dc.getEventsConfig().isEventParamConfigured(objectType, eventId, TAG_EXCLUSION_PARAMS)) {
+        Map<String, Object> tagParams = EventHandler.getTagParams(objectType, objectId);
+        if (params == null) {
+          params = tagParams;
+        } else {
+          if (tagParams != null) {
+            params.putAll(tagParams);
+          }
         }
       }
       ParamSpec paramSpec = match(eventId, params);
@@ -865,8 +865,9 @@ public class EventHandler {
         try {
             OrderManagementService oms = StaticApplicationContext.getBean(
                 OrderManagementServiceImpl.class);
-            eTags = oms.getOrder(((IShipment) eventObject).getOrderId()).getTags(TagUtil.TYPE_ENTITY);
-            oTags = oms.getOrder(((IShipment) eventObject).getOrderId()).getTags(TagUtil.TYPE_ORDER);
+            IOrder order = oms.getOrder(((IShipment) eventObject).getOrderId());
+            eTags = order.getTags(TagUtil.TYPE_ENTITY);
+            oTags = order.getTags(TagUtil.TYPE_ORDER);
         } catch (ObjectNotFoundException e) {
             xLogger.warn("Exception while getting shipment tags", e);
         } catch (ServiceException e) {
@@ -62,6 +62,7 @@ import com.logistimo.orders.service.impl.DemandService;
 import com.logistimo.orders.service.impl.OrderManagementServiceImpl;
 import com.logistimo.pagination.QueryParams;
 import com.logistimo.pagination.Results;
+import com.logistimo.pagination.SeekKey;
 import com.logistimo.reports.ReportsConstants;
 import com.logistimo.reports.entity.slices.IMonthSlice;
 import com.logistimo.reports.entity.slices.ISlice;
@@ -86,6 +87,7 @@ import org.json.JSONObject;
 import java.net.URLDecoder;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
@@ -329,9 +331,13 @@ public class BulkExportMgr {
               .withPdos(pdos), false);
     } else if (TYPE_TRANSACTIONS.equals(type)) {
       ITransDao transDao = StaticApplicationContext.getBean(ITransDao.class);
-      return transDao.buildTransactionsQuery(from, to, domainId, kioskId, materialId,
+      QueryParams qp = transDao.buildTransactionsQuery(from, to, domainId, kioskId, materialId,
           trnType != null ? Collections.singletonList(trnType) : null, lkIdParam, eTags, mTag,
           kioskIds, batchIdStr, hasAtd, reason, null, false);
+      // Page by (T, KEY) instead of an offset, exports can run into millions of rows
+      qp.seekKey =
+          new SeekKey(Arrays.asList("T", "`KEY`"), Arrays.asList("timestamp", "key"), true);
+      return qp;
     } else if (TYPE_ORDERS.equals(type)) {
       return StaticApplicationContext.getBean(GetFilteredOrdersQueryAction.class).invoke(
           new OrderFilters()
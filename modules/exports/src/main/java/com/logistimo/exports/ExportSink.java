@@ -0,0 +1,93 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.exports;
+
+import com.logistimo.services.storage.StorageUtil;
+import com.logistimo.services.utils.ConfigUtil;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Buffered, optionally gzip compressed, writer over a single storage output stream. Export rows
+ * are appended as they are generated instead of being collected into a String and written to
+ * storage one chunk at a time.
+ * <p>
+ * Appending to an existing gzip file adds a new gzip member, which standard readers treat as one
+ * continuous stream.
+ */
+public class ExportSink implements Appendable, Closeable {
+
+  public static final String GZIP_EXTENSION = ".gz";
+
+  private static final int BUFFER_SIZE = ConfigUtil.getInt("export.sink.buffer.size", 65536);
+
+  private final Writer writer;
+
+  public ExportSink(StorageUtil storageUtil, String bucketName, String filename, boolean append,
+                    boolean gzip) throws IOException {
+    OutputStream out = storageUtil.getOutputStream(bucketName, filename, append);
+    if (gzip) {
+      try {
+        out = new GZIPOutputStream(out, BUFFER_SIZE);
+      } catch (IOException e) {
+        out.close();
+        throw e;
+      }
+    }
+    writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+  }
+
+  @Override
+  public ExportSink append(CharSequence csq) throws IOException {
+    writer.append(csq);
+    return this;
+  }
+
+  @Override
+  public ExportSink append(CharSequence csq, int start, int end) throws IOException {
+    writer.append(csq, start, end);
+    return this;
+  }
+
+  @Override
+  public ExportSink append(char c) throws IOException {
+    writer.append(c);
+    return this;
+  }
+
+  /**
+   * Flushes the buffered rows and closes the underlying storage stream.
+   */
+  @Override
+  public void close() throws IOException {
+    writer.close();
+  }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.exports.handlers;
+
+import com.logistimo.context.StaticApplicationContext;
+import com.logistimo.dao.JDOUtils;
+import com.logistimo.entities.entity.IKiosk;
+import com.logistimo.entities.service.EntitiesService;
+import com.logistimo.entities.service.EntitiesServiceImpl;
+import com.logistimo.inventory.entity.IInvntry;
+import com.logistimo.inventory.entity.IInvntryBatch;
+import com.logistimo.inventory.entity.ITransaction;
+import com.logistimo.inventory.models.InvntryWithBatchInfo;
+import com.logistimo.logger.XLog;
+import com.logistimo.materials.entity.IMaterial;
+import com.logistimo.materials.service.MaterialCatalogService;
+import com.logistimo.materials.service.impl.MaterialCatalogServiceImpl;
+import com.logistimo.mnltransactions.entity.IMnlTransaction;
+import com.logistimo.orders.entity.IDemandItem;
+import com.logistimo.orders.entity.IOrder;
+import com.logistimo.services.ObjectNotFoundException;
+import com.logistimo.services.ServiceException;
+import com.logistimo.services.impl.PMF;
+import com.logistimo.users.entity.IUserAccount;
+import com.logistimo.users.service.UsersService;
+import com.logistimo.users.service.impl.UsersServiceImpl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.jdo.PersistenceManager;
+import javax.jdo.Query;
+
+/**
+ * Export scoped cache of the kiosks, materials and users referenced by exported rows.
+ * {@link #prefetch(Collection)} loads the ids referenced by a chunk of exportables with one
+ * IN query per dimension, so handlers resolve dimensions from memory instead of issuing a
+ * lookup per row. Each dimension is held in a bounded LRU for the life of the export.
+ * <p>
+ * Not thread safe; one instance is used by a single export at a time.
+ */
+public class ExportDimensions {
+
+  private static final XLog xLogger = XLog.getLog(ExportDimensions.class);
+
+  private final Map<Long, IKiosk> kiosks;
+  private final Map<Long, IMaterial> materials;
+  private final Map<String, IUserAccount> users;
+
+  /**
+   * @param maxSize maximum number of entries held per dimension, 0 disables caching
+   */
+  public ExportDimensions(int maxSize) {
+    kiosks = new LRU<>(maxSize);
+    materials = new LRU<>(maxSize);
+    users = new LRU<>(maxSize);
+  }
+
+  /**
+   * Loads the kiosks, materials and users referenced by {@code exportables} that are not
+   * already cached. Unsupported exportable types are ignored.
+   */
+  public void prefetch(Collection<?> exportables) {
+    if (exportables == null || exportables.isEmpty()) {
+      return;
+    }
+    Set<Long> kioskIds = new LinkedHashSet<>();
+    Set<Long> materialIds = new LinkedHashSet<>();
+    Set<String> userIds = new LinkedHashSet<>();
+    for (Object o : exportables) {
+      collectIds(o, kioskIds, materialIds, userIds);
+    }
+    kioskIds.removeAll(kiosks.keySet());
+    materialIds.removeAll(materials.keySet());
+    userIds.removeAll(users.keySet());
+    try {
+      if (!kioskIds.isEmpty()) {
+        for (IKiosk k : getObjectsByIds(IKiosk.class, "kioskId", kioskIds)) {
+          kiosks.put(k.getKioskId(), k);
+        }
+      }
+      if (!materialIds.isEmpty()) {
+        for (IMaterial m : getObjectsByIds(IMaterial.class, "materialId", materialIds)) {
+          materials.put(m.getMaterialId(), m);
+        }
+      }
+      if (!userIds.isEmpty()) {
+        UsersService usersService = StaticApplicationContext.getBean(UsersServiceImpl.class);
+        List<IUserAccount> list = usersService.getUsersByIds(new ArrayList<>(userIds));
+        if (list != null) {
+          for (IUserAccount u : list) {
+            users.put(u.getUserId(), u);
+          }
+        }
+      }
+    } catch (Exception e) {
+      // Rows fall back to individual lookups
+      xLogger.warn("{0} when prefetching export dimensions: {1}", e.getClass().getName(),
+          e.getMessage(), e);
+    }
+  }
+
+  public IKiosk getKiosk(Long kioskId) throws ServiceException {
+    if (kioskId == null) {
+      return null;
+    }
+    IKiosk kiosk = kiosks.get(kioskId);
+    if (kiosk == null) {
+      EntitiesService as = StaticApplicationContext.getBean(EntitiesServiceImpl.class);
+      kiosk = as.getKiosk(kioskId, false);
+      if (kiosk != null) {
+        kiosks.put(kioskId, kiosk);
+      }
+    }
+    return kiosk;
+  }
+
+  public IMaterial getMaterial(Long materialId) throws ServiceException {
+    IMaterial material = materials.get(materialId);
+    if (material == null) {
+      MaterialCatalogService mcs = StaticApplicationContext.getBean(
+          MaterialCatalogServiceImpl.class);
+      material = mcs.getMaterial(materialId);
+      materials.put(materialId, material);
+    }
+    return material;
+  }
+
+  public IUserAccount getUser(String userId) throws ObjectNotFoundException {
+    IUserAccount user = users.get(userId);
+    if (user == null) {
+      UsersService usersService = StaticApplicationContext.getBean(UsersServiceImpl.class);
+      user = usersService.getUserAccount(userId);
+      users.put(userId, user);
+    }
+    return user;
+  }
+
+  private static void collectIds(Object o, Set<Long> kioskIds, Set<Long> materialIds,
+                                 Set<String> userIds) {
+    if (o instanceof ITransaction) {
+      ITransaction t = (ITransaction) o;
+      add(kioskIds, t.getKioskId(), t.getLinkedKioskId());
+      add(materialIds, t.getMaterialId());
+      add(userIds, t.getSourceUserId());
+    } else if (o instanceof IInvntry) {
+      IInvntry i = (IInvntry) o;
+      add(kioskIds, i.getKioskId());
+      add(materialIds, i.getMaterialId());
+      add(userIds, i.getUpdatedBy());
+    } else if (o instanceof InvntryWithBatchInfo) {
+      InvntryWithBatchInfo i = (InvntryWithBatchInfo) o;
+      add(kioskIds, i.getKioskId());
+      add(materialIds, i.getMaterialId());
+      add(userIds, i.getUpdatedBy());
+    } else if (o instanceof IInvntryBatch) {
+      IInvntryBatch b = (IInvntryBatch) o;
+      add(kioskIds, b.getKioskId());
+      add(materialIds, b.getMaterialId());
+    } else if (o instanceof IOrder) {
+      IOrder order = (IOrder) o;
+      add(kioskIds, order.getKioskId(), order.getServicingKiosk());
+      add(userIds, order.getUserId(), order.getUpdatedBy());
+      if (order.getItems() != null) {
+        for (IDemandItem item : order.getItems()) {
+          add(materialIds, item.getMaterialId());
+        }
+      }
+    } else if (o instanceof IMnlTransaction) {
+      IMnlTransaction t = (IMnlTransaction) o;
+      add(kioskIds, t.getKioskId(), t.getVendorId());
+      add(materialIds, t.getMaterialId());
+    }
+  }
+
+  @SafeVarargs
+  private static <T> void add(Set<T> ids, T... values) {
+    for (T value : values) {
+      if (value != null) {
+        ids.add(value);
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> List<T> getObjectsByIds(Class<T> clazz, String idField,
+                                             Collection<?> ids) {
+    PersistenceManager pm = PMF.get().getPersistenceManager();
+    Query q = pm.newQuery(JDOUtils.getImplClass(clazz));
+    try {
+      q.setFilter("idsParam.contains(" + idField + ")");
+      q.declareParameters("java.util.Collection idsParam");
+      return (List<T>) pm.detachCopyAll((List<T>) q.execute(ids));
+    } finally {
+      q.closeAll();
+      pm.close();
+    }
+  }
+
+  private static class LRU<K, V> extends LinkedHashMap<K, V> {
+
+    private final int maxSize;
+
+    LRU(int maxSize) {
+      super(16, 0.75f, true);
+      this.maxSize = maxSize;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+      return size() > maxSize;
+    }
+  }
+}
@@ -54,6 +54,27 @@ import java.util.ResourceBundle;
  */
 public class ExportHandlerUtil {
 
+  /**
+   * Returns the handler for {@code o}, resolving kiosks, materials and users through
+   * {@code dimensions} for the handlers that look them up.
+   */
+  public static IExportHandler getInstance(Object o, ExportDimensions dimensions) {
+    if (o instanceof IInvntry) {
+      return new InvntryExportHandler((IInvntry) o, dimensions);
+    } else if (o instanceof IOrder) {
+      return new OrderExportHandler((IOrder) o, dimensions);
+    } else if (o instanceof InvntryWithBatchInfo) {
+      return new InvntryWithBatchInfoExportHandler((InvntryWithBatchInfo) o, dimensions);
+    } else if (o instanceof ITransaction) {
+      return new TransactionExportHandler((ITransaction) o, dimensions);
+    } else if (o instanceof IMnlTransaction) {
+      return new MnlTransExportHandler((IMnlTransaction) o, dimensions);
+    } else if (o instanceof IInvntryBatch) {
+      return new InvntryBatchExportHandler((IInvntryBatch) o, dimensions);
+    }
+    return getInstance(o);
+  }
+
   public static IExportHandler getInstance(Object o){
     if(o instanceof IUserAccount){
       return new UserExportHandler((IUserAccount) o);
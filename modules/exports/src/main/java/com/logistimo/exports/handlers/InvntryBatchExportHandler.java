@@ -27,16 +27,12 @@ import com.logistimo.config.models.DomainConfig;
 import com.logistimo.constants.Constants;
 import com.logistimo.context.StaticApplicationContext;
 import com.logistimo.entities.entity.IKiosk;
-import com.logistimo.entities.service.EntitiesService;
-import com.logistimo.entities.service.EntitiesServiceImpl;
 import com.logistimo.inventory.entity.IInvntry;
 import com.logistimo.inventory.entity.IInvntryBatch;
 import com.logistimo.inventory.service.InventoryManagementService;
 import com.logistimo.inventory.service.impl.InventoryManagementServiceImpl;
 import com.logistimo.logger.XLog;
 import com.logistimo.materials.entity.IMaterial;
-import com.logistimo.materials.service.MaterialCatalogService;
-import com.logistimo.materials.service.impl.MaterialCatalogServiceImpl;
 import com.logistimo.services.Resources;
 import com.logistimo.tags.TagUtil;
 import com.logistimo.utils.BigUtil;
@@ -54,9 +50,15 @@ public class InvntryBatchExportHandler implements IExportHandler {
 
   private static final XLog xLogger = XLog.getLog(InvntryExportHandler.class);
   private IInvntryBatch invntryBatch;
+  private final ExportDimensions dimensions;
 
   public InvntryBatchExportHandler(IInvntryBatch invntryBatch){
+    this(invntryBatch, new ExportDimensions(0));
+  }
+
+  public InvntryBatchExportHandler(IInvntryBatch invntryBatch, ExportDimensions dimensions) {
     this.invntryBatch = invntryBatch;
+    this.dimensions = dimensions;
   }
 
   @Override
@@ -87,16 +89,13 @@ public class InvntryBatchExportHandler implements IExportHandler {
     xLogger.fine("Entering toCSV. locale: {0}, timezone: {1}", locale, timezone);
     try {
       // Get Services
-      EntitiesService as = StaticApplicationContext.getBean(EntitiesServiceImpl.class);
-      MaterialCatalogService mcs = StaticApplicationContext.getBean(
-          MaterialCatalogServiceImpl.class);
       InventoryManagementService ims =
           StaticApplicationContext.getBean(InventoryManagementServiceImpl.class);
       String csv = null;
       List<String> ktgs = invntryBatch.getTags(TagUtil.TYPE_ENTITY);
       List<String> mtgs = invntryBatch.getTags(TagUtil.TYPE_MATERIAL);
-      IKiosk k = as.getKiosk(invntryBatch.getKioskId(), false);
-      IMaterial m = mcs.getMaterial(invntryBatch.getMaterialId());
+      IKiosk k = dimensions.getKiosk(invntryBatch.getKioskId());
+      IMaterial m = dimensions.getMaterial(invntryBatch.getMaterialId());
       if (k != null && m != null && k.isBatchMgmtEnabled() && m.isBatchEnabled()) {
         IInvntry i = ims.getInventory(invntryBatch.getKioskId(), invntryBatch.getMaterialId());
         if (i != null) {
@@ -29,8 +29,6 @@ import com.logistimo.constants.CharacterConstants;
 import com.logistimo.constants.Constants;
 import com.logistimo.context.StaticApplicationContext;
 import com.logistimo.entities.entity.IKiosk;
-import com.logistimo.entities.service.EntitiesService;
-import com.logistimo.entities.service.EntitiesServiceImpl;
 import com.logistimo.events.entity.Event;
 import com.logistimo.events.entity.IEvent;
 import com.logistimo.inventory.dao.IInvntryDao;
@@ -40,12 +38,9 @@ import com.logistimo.inventory.service.InventoryManagementService;
 import com.logistimo.inventory.service.impl.InventoryManagementServiceImpl;
 import com.logistimo.logger.XLog;
 import com.logistimo.materials.entity.IMaterial;
-import com.logistimo.materials.service.MaterialCatalogService;
-import com.logistimo.materials.service.impl.MaterialCatalogServiceImpl;
 import com.logistimo.services.Resources;
 import com.logistimo.tags.TagUtil;
 import com.logistimo.users.entity.IUserAccount;
-import com.logistimo.users.service.impl.UsersServiceImpl;
 import com.logistimo.utils.BigUtil;
 import com.logistimo.utils.LocalDateUtil;
 import com.logistimo.utils.NumberUtil;
@@ -65,9 +60,15 @@ public class InvntryExportHandler implements IExportHandler {
     private static final XLog xLogger = XLog.getLog(InvntryExportHandler.class);
 
     private IInvntry invntry;
+    private final ExportDimensions dimensions;
 
     public InvntryExportHandler(IInvntry invntry) {
+        this(invntry, new ExportDimensions(0));
+    }
+
+    public InvntryExportHandler(IInvntry invntry, ExportDimensions dimensions) {
         this.invntry = invntry;
+        this.dimensions = dimensions;
     }
 
     @Override
@@ -75,19 +76,15 @@ public class InvntryExportHandler implements IExportHandler {
         xLogger.fine("Entering toCSV. locale: {0}, timezone: {1}", locale, timezone);
         try {
             // Get services
-            EntitiesService as = StaticApplicationContext.getBean(EntitiesServiceImpl.class);
-            UsersServiceImpl us = StaticApplicationContext.getBean(UsersServiceImpl.class);
-            MaterialCatalogService mcs = StaticApplicationContext.getBean(
-                MaterialCatalogServiceImpl.class);
             InventoryManagementService ims =
                 StaticApplicationContext.getBean(InventoryManagementServiceImpl.class);
 
-            IKiosk k = as.getKiosk(invntry.getKioskId(), false);
-            IMaterial m = mcs.getMaterial(invntry.getMaterialId());
+            IKiosk k = dimensions.getKiosk(invntry.getKioskId());
+            IMaterial m = dimensions.getMaterial(invntry.getMaterialId());
             String ubFullName = null, ubCustomId = null;
             if (invntry.getUpdatedBy() != null) {
                 try {
-                    IUserAccount ubUser = us.getUserAccount(invntry.getUpdatedBy());
+                    IUserAccount ubUser = dimensions.getUser(invntry.getUpdatedBy());
                     ubFullName = ubUser.getFullName();
                     ubCustomId = ubUser.getCustomId();
                 } catch (Exception e) {
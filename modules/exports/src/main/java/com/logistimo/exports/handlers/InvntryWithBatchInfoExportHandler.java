@@ -28,22 +28,15 @@ import com.logistimo.config.models.InventoryConfig;
 import com.logistimo.config.utils.DomainConfigUtil;
 import com.logistimo.constants.CharacterConstants;
 import com.logistimo.constants.Constants;
-import com.logistimo.context.StaticApplicationContext;
 import com.logistimo.entities.entity.IKiosk;
-import com.logistimo.entities.service.EntitiesService;
-import com.logistimo.entities.service.EntitiesServiceImpl;
 import com.logistimo.events.entity.Event;
 import com.logistimo.events.entity.IEvent;
 import com.logistimo.inventory.models.InvntryWithBatchInfo;
 import com.logistimo.logger.XLog;
 import com.logistimo.materials.entity.IMaterial;
-import com.logistimo.materials.service.MaterialCatalogService;
-import com.logistimo.materials.service.impl.MaterialCatalogServiceImpl;
 import com.logistimo.services.Resources;
 import com.logistimo.tags.TagUtil;
 import com.logistimo.users.entity.IUserAccount;
-import com.logistimo.users.service.UsersService;
-import com.logistimo.users.service.impl.UsersServiceImpl;
 import com.logistimo.utils.BigUtil;
 import com.logistimo.utils.LocalDateUtil;
 import com.logistimo.utils.NumberUtil;
@@ -64,9 +57,16 @@ public class InvntryWithBatchInfoExportHandler implements IExportHandler {
 
 
   public InvntryWithBatchInfo invntryWithBatchInfo;
+  private final ExportDimensions dimensions;
 
   public InvntryWithBatchInfoExportHandler(InvntryWithBatchInfo invntryWithBatchInfo){
+    this(invntryWithBatchInfo, new ExportDimensions(0));
+  }
+
+  public InvntryWithBatchInfoExportHandler(InvntryWithBatchInfo invntryWithBatchInfo,
+                                           ExportDimensions dimensions) {
     this.invntryWithBatchInfo = invntryWithBatchInfo;
+    this.dimensions = dimensions;
   }
 
   @Override
@@ -169,19 +169,14 @@ public class InvntryWithBatchInfoExportHandler implements IExportHandler {
   @Override
   public String toCSV(Locale locale, String timezone, DomainConfig dc, String type) {
     try {
-      // Get services
-      EntitiesService as = StaticApplicationContext.getBean(EntitiesServiceImpl.class);
-      MaterialCatalogService mcs = StaticApplicationContext.getBean(
-          MaterialCatalogServiceImpl.class);
-      UsersService us = StaticApplicationContext.getBean(UsersServiceImpl.class);
-      IKiosk k = as.getKiosk(invntryWithBatchInfo.getKioskId(), false);
-      IMaterial m = mcs.getMaterial(invntryWithBatchInfo.getMaterialId());
+      IKiosk k = dimensions.getKiosk(invntryWithBatchInfo.getKioskId());
+      IMaterial m = dimensions.getMaterial(invntryWithBatchInfo.getMaterialId());
 
       String ubFullName = null, ubCustomId = null;
       if (invntryWithBatchInfo.getUpdatedBy() != null) {
         try {
 
-          IUserAccount ubUser = us.getUserAccount(invntryWithBatchInfo.getUpdatedBy());
+          IUserAccount ubUser = dimensions.getUser(invntryWithBatchInfo.getUpdatedBy());
           ubFullName = ubUser.getFullName();
           ubCustomId = ubUser.getCustomId();
         } catch (Exception e) {
@@ -25,14 +25,9 @@ package com.logistimo.exports.handlers;
 
 import com.logistimo.config.models.DomainConfig;
 import com.logistimo.constants.Constants;
-import com.logistimo.context.StaticApplicationContext;
 import com.logistimo.entities.entity.IKiosk;
-import com.logistimo.entities.service.EntitiesService;
-import com.logistimo.entities.service.EntitiesServiceImpl;
 import com.logistimo.logger.XLog;
 import com.logistimo.materials.entity.IMaterial;
-import com.logistimo.materials.service.MaterialCatalogService;
-import com.logistimo.materials.service.impl.MaterialCatalogServiceImpl;
 import com.logistimo.mnltransactions.entity.IMnlTransaction;
 import com.logistimo.services.Resources;
 import com.logistimo.utils.LocalDateUtil;
@@ -52,8 +47,15 @@ public class MnlTransExportHandler implements IExportHandler {
   private static final XLog xLogger = XLog.getLog(MnlTransExportHandler.class);
 
 
+  private final ExportDimensions dimensions;
+
   public MnlTransExportHandler(IMnlTransaction mnlTransaction){
+    this(mnlTransaction, new ExportDimensions(0));
+  }
+
+  public MnlTransExportHandler(IMnlTransaction mnlTransaction, ExportDimensions dimensions) {
     this.mnlTransaction = mnlTransaction;
+    this.dimensions = dimensions;
   }
   @Override
   public String getCSVHeader(Locale locale, DomainConfig dc, String type) {
@@ -93,11 +95,8 @@ public class MnlTransExportHandler implements IExportHandler {
   @Override
   public String toCSV(Locale locale, String timezone, DomainConfig dc, String type) {
     try {
-      EntitiesService as = StaticApplicationContext.getBean(EntitiesServiceImpl.class);
-      MaterialCatalogService mcs = StaticApplicationContext.getBean(
-          MaterialCatalogServiceImpl.class);
-      IKiosk k = as.getKiosk(mnlTransaction.getKioskId(), false);
-      IMaterial m = mcs.getMaterial(mnlTransaction.getMaterialId());
+      IKiosk k = dimensions.getKiosk(mnlTransaction.getKioskId());
+      IMaterial m = dimensions.getMaterial(mnlTransaction.getMaterialId());
       String csv = "\"" + k.getName() + "\",\"" + m.getName() + "\"," +
           mnlTransaction.getOpeningStock() + "," +
           (mnlTransaction.getReportingPeriod() != null ?
@@ -115,8 +114,8 @@ public class MnlTransExportHandler implements IExportHandler {
           mnlTransaction.getFulfilledQuantity() + "," +
           (mnlTransaction.getTags() != null && !mnlTransaction.getTags().isEmpty() ? "\"" +
               StringUtil.getCSV(mnlTransaction.getTags()) + "\"" : "") + "," +
-          (mnlTransaction.getVendorId() != null ? "\"" + as.getKiosk(mnlTransaction.getVendorId(),
-              false).getName() + "\"" : "");
+          (mnlTransaction.getVendorId() != null ? "\"" + dimensions.getKiosk(
+              mnlTransaction.getVendorId()).getName() + "\"" : "");
       // Add entity/material tags
       List<String> ktag = k.getTags();
       List<String> mtag = m.getTags();
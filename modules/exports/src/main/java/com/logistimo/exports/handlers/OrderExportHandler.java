@@ -26,14 +26,9 @@ package com.logistimo.exports.handlers;
 import com.logistimo.config.models.DomainConfig;
 import com.logistimo.constants.CharacterConstants;
 import com.logistimo.constants.Constants;
-import com.logistimo.context.StaticApplicationContext;
 import com.logistimo.entities.entity.IKiosk;
-import com.logistimo.entities.service.EntitiesService;
-import com.logistimo.entities.service.EntitiesServiceImpl;
 import com.logistimo.logger.XLog;
 import com.logistimo.materials.entity.IMaterial;
-import com.logistimo.materials.service.MaterialCatalogService;
-import com.logistimo.materials.service.impl.MaterialCatalogServiceImpl;
 import com.logistimo.orders.OrderUtils;
 import com.logistimo.orders.entity.DemandItem;
 import com.logistimo.orders.entity.IDemandItem;
@@ -43,8 +38,6 @@ import com.logistimo.services.Resources;
 import com.logistimo.services.ServiceException;
 import com.logistimo.tags.TagUtil;
 import com.logistimo.users.entity.IUserAccount;
-import com.logistimo.users.service.UsersService;
-import com.logistimo.users.service.impl.UsersServiceImpl;
 import com.logistimo.utils.BigUtil;
 import com.logistimo.utils.GeoUtil;
 import com.logistimo.utils.LocalDateUtil;
@@ -66,22 +59,23 @@ public class OrderExportHandler implements IExportHandler {
   private static final XLog xLogger = XLog.getLog(OrderExportHandler.class);
 
   IOrder order;
+  private final ExportDimensions dimensions;
 
   public OrderExportHandler(IOrder order){
+    this(order, new ExportDimensions(0));
+  }
+
+  public OrderExportHandler(IOrder order, ExportDimensions dimensions) {
     this.order = order;
+    this.dimensions = dimensions;
   }
 
   public String toCSV(Locale locale, String timezone, DomainConfig dc, String type) {
     try {
-      // Get services
-      EntitiesService as = StaticApplicationContext.getBean(EntitiesServiceImpl.class);
-      UsersService usersService = StaticApplicationContext.getBean(UsersServiceImpl.class);
-      MaterialCatalogService mcs = StaticApplicationContext.getBean(
-          MaterialCatalogServiceImpl.class);
-      IKiosk c = as.getKiosk(order.getKioskId(), false);
+      IKiosk c = dimensions.getKiosk(order.getKioskId());
       IKiosk v = null;
       try {
-        v = as.getKiosk(order.getServicingKiosk(), false);
+        v = dimensions.getKiosk(order.getServicingKiosk());
       } catch (ServiceException se) {
         xLogger.warn(
             "ServiceException ({0}) when getting kiosk for skId {1} while getting csv for order {2}: {3}",
@@ -95,7 +89,7 @@ public class OrderExportHandler implements IExportHandler {
       StringBuilder timeSb = getTimeSb();
       StringBuilder locationSb = getLocationSb(c, locale);
       StringBuilder tagSb = getTagSb();
-      StringBuilder crUpSb = getCreatedUpdatedSb(usersService, timezone);
+      StringBuilder crUpSb = getCreatedUpdatedSb(timezone);
 
       // Iterate over items and get the itemSb
       StringBuilder itemSb = new StringBuilder();
@@ -103,7 +97,7 @@ public class OrderExportHandler implements IExportHandler {
         Iterator<DemandItem> it = (Iterator<DemandItem>) order.getItems().iterator();
         while (it.hasNext()) {
           IDemandItem item = it.next();
-          itemSb = getItemSb(mcs, dc, item);
+          itemSb = getItemSb(dc, item);
           csv.append(orderDetSb).append(CharacterConstants.COMMA)
               .append(itemSb).append(CharacterConstants.COMMA)
               .append(orPrSb != null ? orPrSb.toString() + CharacterConstants.COMMA
@@ -214,11 +208,11 @@ public class OrderExportHandler implements IExportHandler {
     return orderDetailsSb;
   }
 
-  private StringBuilder getItemSb(MaterialCatalogService mcs, DomainConfig dc, IDemandItem item)
+  private StringBuilder getItemSb(DomainConfig dc, IDemandItem item)
       throws ServiceException {
     StringBuilder itemSb = new StringBuilder();
 
-    IMaterial m = mcs.getMaterial(item.getMaterialId());
+    IMaterial m = dimensions.getMaterial(item.getMaterialId());
     itemSb.append(m.getMaterialId() != null ? m.getMaterialId() : CharacterConstants.EMPTY)
         .append(CharacterConstants.COMMA)
         .append(m.getCustomId() != null ? StringEscapeUtils.escapeCsv(m.getCustomId())
@@ -311,11 +305,11 @@ public class OrderExportHandler implements IExportHandler {
     return tagSb;
   }
 
-  private StringBuilder getCreatedUpdatedSb(UsersService as, String timezone) {
+  private StringBuilder getCreatedUpdatedSb(String timezone) {
     String cbFullName = null, cbCustomId = null;
     if (order.getUserId() != null) {
       try {
-        IUserAccount u = as.getUserAccount(order.getUserId());
+        IUserAccount u = dimensions.getUser(order.getUserId());
         cbFullName = u.getFullName();
         cbCustomId = u.getCustomId();
       } catch (ObjectNotFoundException e) {
@@ -327,7 +321,7 @@ public class OrderExportHandler implements IExportHandler {
     String subFullName = null, subCustomId = null;
     if (order.getUpdatedBy() != null) {
       try {
-        IUserAccount u = as.getUserAccount(order.getUpdatedBy());
+        IUserAccount u = dimensions.getUser(order.getUpdatedBy());
         subFullName = u.getFullName();
         subCustomId = u.getCustomId();
       } catch (ObjectNotFoundException e) {
@@ -27,19 +27,12 @@ import com.logistimo.config.models.DomainConfig;
 import com.logistimo.constants.CharacterConstants;
 import com.logistimo.constants.Constants;
 import com.logistimo.constants.SourceConstants;
-import com.logistimo.context.StaticApplicationContext;
 import com.logistimo.entities.entity.IKiosk;
-import com.logistimo.entities.service.EntitiesService;
-import com.logistimo.entities.service.EntitiesServiceImpl;
 import com.logistimo.inventory.entity.ITransaction;
 import com.logistimo.logger.XLog;
 import com.logistimo.materials.entity.IMaterial;
-import com.logistimo.materials.service.MaterialCatalogService;
-import com.logistimo.materials.service.impl.MaterialCatalogServiceImpl;
 import com.logistimo.services.Resources;
 import com.logistimo.users.entity.IUserAccount;
-import com.logistimo.users.service.UsersService;
-import com.logistimo.users.service.impl.UsersServiceImpl;
 import com.logistimo.utils.BigUtil;
 import com.logistimo.utils.GeoUtil;
 import com.logistimo.utils.LocalDateUtil;
@@ -61,9 +54,15 @@ public class TransactionExportHandler implements IExportHandler {
 
 
   private final ITransaction transaction;
+  private final ExportDimensions dimensions;
 
   public TransactionExportHandler(ITransaction transaction){
+    this(transaction, new ExportDimensions(0));
+  }
+
+  public TransactionExportHandler(ITransaction transaction, ExportDimensions dimensions) {
     this.transaction = transaction;
+    this.dimensions = dimensions;
   }
 
   // Get the CSV header - Modified to suit export only.
@@ -150,20 +149,15 @@ public class TransactionExportHandler implements IExportHandler {
   public String toCSV(Locale locale, String timezone, DomainConfig dc, String type) {
     ResourceBundle messages = Resources.get().getBundle("Messages", locale);
     try {
-      // Get services
-      EntitiesService as = StaticApplicationContext.getBean(EntitiesServiceImpl.class);
-      UsersService usersService = StaticApplicationContext.getBean(UsersServiceImpl.class);
-      MaterialCatalogService mcs = StaticApplicationContext.getBean(
-          MaterialCatalogServiceImpl.class);
-      IKiosk k = as.getKiosk(transaction.getKioskId(), false);
+      IKiosk k = dimensions.getKiosk(transaction.getKioskId());
       List<String> ktgs = k.getTags();
-      IMaterial m = mcs.getMaterial(transaction.getMaterialId());
+      IMaterial m = dimensions.getMaterial(transaction.getMaterialId());
       List<String> mtgs = m.getTags();
       IUserAccount u;
       String cbFullName = null, cbCustomId = null;
       if (transaction.getSourceUserId() != null) {
         try {
-          u = usersService.getUserAccount(transaction.getSourceUserId()); // required for user ID
+          u = dimensions.getUser(transaction.getSourceUserId()); // required for user ID
           cbFullName = u.getFullName();
           cbCustomId = u.getCustomId();
         } catch (Exception e) {
@@ -200,7 +194,7 @@ public class TransactionExportHandler implements IExportHandler {
       String lkName = null, lkCustomId = null;
       if (transaction.getLinkedKioskId() != null) {
         try {
-          lk = as.getKiosk(transaction.getLinkedKioskId(), false);
+          lk = dimensions.getKiosk(transaction.getLinkedKioskId());
           lkName = lk.getName();
           lkCustomId = lk.getCustomId();
         } catch (Exception e) {
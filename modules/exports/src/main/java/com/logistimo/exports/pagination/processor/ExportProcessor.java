@@ -32,6 +32,8 @@ import com.logistimo.domains.service.DomainsService;
 import com.logistimo.domains.service.impl.DomainsServiceImpl;
 import com.logistimo.exports.BulkExportMgr;
 import com.logistimo.exports.BulkExportMgr.ExportParams;
+import com.logistimo.exports.ExportSink;
+import com.logistimo.exports.handlers.ExportDimensions;
 import com.logistimo.exports.handlers.ExportHandlerUtil;
 import com.logistimo.logger.XLog;
 import com.logistimo.pagination.Results;
@@ -49,10 +51,14 @@ import com.logistimo.services.utils.ConfigUtil;
 import com.logistimo.utils.JobUtil;
 import com.logistimo.utils.LocalDateUtil;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.ResourceBundle;
 
 import javax.jdo.PersistenceManager;
@@ -68,6 +74,11 @@ public class ExportProcessor extends InstrumentedProcessor {
   public static final String SEPARATOR = "_";
   private static final XLog xLogger = XLog.getLog(ExportProcessor.class);
   private static final boolean isGAE = ConfigUtil.isGAE();
+  private static final int PREFETCH_SIZE = ConfigUtil.getInt("export.prefetch.size", 500);
+  private static final int DIMENSIONS_CACHE_SIZE =
+      ConfigUtil.getInt("export.dimensions.cache.size", 10000);
+  private static final String ROWS_PER_SEC = "rowsPerSec";
+  private static final boolean GZIP = ConfigUtil.getBoolean("export.gzip", false);
 
   @SuppressWarnings("unchecked")
   private static List customizeExportables(ExportParams exportParams, Results results) {
@@ -106,96 +117,67 @@ public class ExportProcessor extends InstrumentedProcessor {
     return exportables;
   }
 
-  // Store data in Google Cloud Storage, and return the name of the file in GCS, which contains the exported data.
+  // Export rate of this call, recorded in the job metadata along with the rows completed
+  private static Map<String, String> getProgress(int rows, long startTime) {
+    long elapsed = Math.max(System.currentTimeMillis() - startTime, 1);
+    return Collections.singletonMap(ROWS_PER_SEC, String.valueOf(rows * 1000L / elapsed));
+  }
+
+  // Open the storage file that holds the exported data. A new file is created and named for
+  // the first page, later pages append to the file referenced by gcsFilename.
   // NOTE: We don't finalize the blob file here (defer it to the finalize operation)
-  private static void storeExportedData(Long domainId, String data, ExportParams exportParams) {
-    xLogger.fine("Entered storeExportedData");
-    ResourceBundle messages;
+  private static ExportSink openSink(Long domainId, ExportParams exportParams)
+      throws IOException {
+    xLogger.fine("exportParams.gcsFilename = {0}", exportParams.gcsFilename);
+    StorageUtil storageUtil = AppFactory.get().getStorageUtil();
+    if (exportParams.gcsFilename != null) {
+      // Just append to the existing file in storage
+      return new ExportSink(storageUtil, DATAEXPORT_BUCKETNAME, exportParams.gcsFilename, true,
+          exportParams.gcsFilename.endsWith(ExportSink.GZIP_EXTENSION));
+    }
     String domainName = "";
-    DomainsService ds;
     try {
-      ds = StaticApplicationContext.getBean(DomainsServiceImpl.class);
+      DomainsService ds = StaticApplicationContext.getBean(DomainsServiceImpl.class);
       IDomain d = ds.getDomain(domainId);
       domainName = d.getName();
     } catch (Exception e) {
       xLogger.warn("Domain Name is null " + domainId + e);
-
     }
-
-    if (data == null || data.isEmpty()) {
-      return;
+    ResourceBundle messages = Resources.get().getBundle("Messages", Locale.ENGLISH);
+    // Change the type only if exportParams.type is ReportsConstants.TYPE_STOCKEVENT. This is done so that the user gets an email with
+    // the title Abnormal Stock instead of Stock Event. Also the csv file is called abnormalstock_<date>.csv instead of stev_<date>.csv
+    String type = exportParams.type;
+    if (ReportsConstants.TYPE_STOCKEVENT.equals(exportParams.type)) {
+      type = BulkExportMgr.TYPE_ABNORMALSTOCK;
     }
-    xLogger.fine("exportParams.gcsFilename = {0}", exportParams.gcsFilename);
-
-    if (exportParams.gcsFilename == null) {
-      messages = Resources.get().getBundle("Messages", Locale.ENGLISH);
-      // Change the type only if exportParams.type is ReportsConstants.TYPE_STOCKEVENT. This is done so that the user gets an email with
-      // the title Abnormal Stock instead of Stock Event. Also the csv file is called abnormalstock_<date>.csv instead of stev_<date>.csv
-      String type = exportParams.type;
-      if (ReportsConstants.TYPE_STOCKEVENT.equals(exportParams.type)) {
-        type = BulkExportMgr.TYPE_ABNORMALSTOCK;
-      }
-      // Get the filename, which is the name of the file that has the exported data, that will be sent as attachment.
-      // String filename = LocalDateUtil.getNameWithDate( exportParams.type, new Date(), exportParams.locale, exportParams.timezone ) + ".csv";
-      String filename;
-      if (exportParams.type.equals("powerdata")) {
-        type =
-            "Temperature_powerdata_device_" + exportParams.assetId + "_sensor_"
-                + exportParams.sensorName;
-      }
-      filename =
-          LocalDateUtil.getNameWithDate(
-              "kiosks".equals(type) ? messages.getString("kiosks.lowercase") : type, new Date(),
-              exportParams.locale, exportParams.timezone) + ".csv";
-      // Prepend the filename with domainId string. This is done to maintain unique export file names across domains in Google Cloud Storage.
-      String
-          gcsFilename =
-          storeFileInGCS(data, (domainName + SEPARATOR + filename), false, exportParams);
-      // Update export params - filename and gcsFilename
-      exportParams.filename = filename;
-
-      if (gcsFilename != null) {
-        exportParams.gcsFilename = gcsFilename;
-      } else {
-        xLogger.warn(
-            "Invalid GCSFilename (NULL) returned when trying to store exported data file in domain {0}",
-            domainId);
-      }
-    } else { // Just append to the existing file in Google Cloud Storage(referenced by gcsFilename)
-      storeFileInGCS(data, exportParams.gcsFilename, true, exportParams);
+    // Get the filename, which is the name of the file that has the exported data, that will be sent as attachment.
+    if (exportParams.type.equals("powerdata")) {
+      type =
+          "Temperature_powerdata_device_" + exportParams.assetId + "_sensor_"
+              + exportParams.sensorName;
     }
-    xLogger.fine("Exiting storeExportedData");
-  }
-
-  // Store the data in Google Cloud Storage. filename is the name of the GCS file.
-  // appendMode true indicates that an existing GCS file is updated.
-  // appendMode false indicates that the GCS file is newly created.
-  private static String storeFileInGCS(String data, String filename, boolean appendMode,
-                                       ExportParams exportParams) {
-    xLogger.fine("Entering storeFileInGCS");
-    if (data == null || data.isEmpty() || filename == null || filename.isEmpty()) {
-      return null;
+    String filename =
+        LocalDateUtil.getNameWithDate(
+            "kiosks".equals(type) ? messages.getString("kiosks.lowercase") : type, new Date(),
+            exportParams.locale, exportParams.timezone) + ".csv";
+    if (GZIP) {
+      filename += ExportSink.GZIP_EXTENSION;
     }
-    // Update the JobStatus table
-    JobUtil.setNumberOfRecordsCompleted(exportParams.jobId, exportParams.size);
+    // Prepend the filename with domainId string. This is done to maintain unique export file names across domains in Google Cloud Storage.
+    String gcsFilename = domainName + SEPARATOR + filename;
+    ExportSink sink = new ExportSink(storageUtil, DATAEXPORT_BUCKETNAME, gcsFilename, false, GZIP);
+    // Update export params - filename and gcsFilename
+    exportParams.filename = filename;
+    exportParams.gcsFilename = gcsFilename;
+    return sink;
+  }
 
-    StorageUtil storageUtil = AppFactory.get().getStorageUtil();
-    // If appendMode is true, append the data to the file in GCS
+  private static void closeQuietly(ExportSink sink) {
     try {
-      if (appendMode) {
-        storageUtil.append(DATAEXPORT_BUCKETNAME, filename, data);
-      } else {
-        // Create the file in GCS and write data to it.
-        storageUtil.write(DATAEXPORT_BUCKETNAME, filename, data);
-      }
-    } catch (Exception e) {
-      xLogger.severe(
-          "{0} when " + (appendMode ? "appending" : "writing") + " to GCS file {1}. Message: {2}",
-          e.getClass().getName(), filename, e.getMessage(), e);
-      JobUtil.setJobFailed(exportParams.jobId, e.getMessage());
+      sink.close();
+    } catch (IOException e) {
+      xLogger.warn("Exception while closing export file", e);
     }
-    xLogger.fine("Exiting storeFileInGCS");
-    return filename;
   }
 
   @Override
@@ -226,51 +208,74 @@ public class ExportProcessor extends InstrumentedProcessor {
           exportParams.size);
 
       long startTime = System.currentTimeMillis();
+      int startSize = exportParams.size;
       // Get domain config.
       DomainConfig dc = DomainConfig.getInstance(domainId);
-      // Get the CSV for this result set
-      StringBuilder csv = new StringBuilder();
-      if (exportParams.gcsFilename == null) {
-        // Since exportables can be null or empty if type == inventorybatch, do null check before getting the CSV header
-        csv.append(ExportHandlerUtil.getInstance(exportables.get(0))
-            .getCSVHeader(exportParams.locale, dc, exportParams.subType));
-      }
-      for (Object exportable : exportables) {
-        String
-            line =
-            ExportHandlerUtil.getInstance(exportable).toCSV(exportParams.locale,
-                exportParams.timezone, dc, exportParams.subType);
-        // Add csv line
-        if (line != null && !line.isEmpty()) {
-          csv.append("\n");
-          if ("powerdata".equals(exportParams.type)) {
-            csv.append(exportParams.assetId).append(CharacterConstants.COMMA)
-                .append(exportParams.asseTyNm).append(CharacterConstants.COMMA)
-                .append(exportParams.sensorName).append(CharacterConstants.COMMA);
+      boolean newFile = exportParams.gcsFilename == null;
+      ExportSink sink = null;
+      try {
+        // Kiosks, materials and users referenced by the rows are bulk loaded a chunk at a time
+        ExportDimensions dimensions = new ExportDimensions(DIMENSIONS_CACHE_SIZE);
+        List<Object> chunk = new ArrayList<>(PREFETCH_SIZE);
+        Iterator<?> it = exportables.iterator();
+        while (it.hasNext()) {
+          chunk.clear();
+          while (it.hasNext() && chunk.size() < PREFETCH_SIZE) {
+            chunk.add(it.next());
+          }
+          if (sink == null) {
+            // The file is created only when there is data to export
+            sink = openSink(domainId, exportParams);
+            if (newFile) {
+              sink.append(ExportHandlerUtil.getInstance(chunk.get(0))
+                  .getCSVHeader(exportParams.locale, dc, exportParams.subType));
+            }
+          }
+          dimensions.prefetch(chunk);
+          for (Object exportable : chunk) {
+            String
+                line =
+                ExportHandlerUtil.getInstance(exportable, dimensions).toCSV(exportParams.locale,
+                    exportParams.timezone, dc, exportParams.subType);
+            // Add csv line
+            if (line != null && !line.isEmpty()) {
+              sink.append("\n");
+              if ("powerdata".equals(exportParams.type)) {
+                sink.append(exportParams.assetId).append(CharacterConstants.COMMA)
+                    .append(exportParams.asseTyNm).append(CharacterConstants.COMMA)
+                    .append(exportParams.sensorName).append(CharacterConstants.COMMA);
+              }
+              sink.append(line);
+              exportParams.size++;
+            }
+            if (!isGAE && exportParams.size % 1000 == 0) {
+              xLogger.info("Exporting data in domain {0}...{1} done so far. TimeTaken: {2}",
+                  domainId, exportParams.size, System.currentTimeMillis() - startTime);
+              // Update the JobStatus table
+              JobUtil.setNumberOfRecordsCompleted(exportParams.jobId, exportParams.size,
+                  getProgress(exportParams.size - startSize, startTime));
+            }
           }
-          csv.append(line);
-          exportParams.size++;
         }
-        if (!isGAE && exportParams.size % 1000 == 0) {
-          xLogger.info("Exporting data in domain {0}...{1} done so far. TimeTaken: {2}", domainId,
-              exportParams.size, System.currentTimeMillis() - startTime);
-          // Store data, and update gcsFileName, if necessary
-          storeExportedData(domainId, csv.toString(), exportParams);
-          xLogger
-              .info("Data saved to HDFS for domain {0}...{1} done so far. TimeTaken:{2}", domainId,
-                  exportParams.size, System.currentTimeMillis() - startTime);
-          csv.setLength(0);
-        }/*
-                if (exportParams.size == 5) {
-                    throw new ProcessingException("Simulating an Export failure case" );
-                }*/
+        if (sink != null) {
+          sink.close();
+        }
+      } catch (IOException e) {
+        xLogger.severe("{0} when writing to export file {1}. Message: {2}",
+            e.getClass().getName(), exportParams.gcsFilename, e.getMessage(), e);
+        throw new ProcessingException(e);
+      } finally {
+        if (sink != null) {
+          closeQuietly(sink);
+        }
       }
       if (!isGAE) {
         xLogger.info("Exporting data in domain {0} completed. Total rows {1}. TotalTimeTaken:{2}",
             domainId, exportParams.size, System.currentTimeMillis() - startTime);
       }
-      // Store data, and update gcsFileName, if necessary
-      storeExportedData(domainId, csv.toString(), exportParams);
+      // Update the JobStatus table
+      JobUtil.setNumberOfRecordsCompleted(exportParams.jobId, exportParams.size,
+          getProgress(exportParams.size - startSize, startTime));
       xLogger.fine("Exiting ExportProcessor.process");
       // Return updated export params.
       try {
@@ -0,0 +1,85 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.exports;
+
+import com.logistimo.services.storage.StorageUtil;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ExportSinkTest {
+
+  private static final String BUCKET = "dataexport";
+  private static final String FILENAME = "transactions.csv";
+
+  @Test
+  public void testWritesThroughSingleStream() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    StorageUtil storageUtil = mock(StorageUtil.class);
+    when(storageUtil.getOutputStream(BUCKET, FILENAME, false)).thenReturn(out);
+
+    try (ExportSink sink = new ExportSink(storageUtil, BUCKET, FILENAME, false, false)) {
+      sink.append("header");
+      for (int i = 0; i < 3; i++) {
+        sink.append('\n').append("row" + i);
+      }
+    }
+    verify(storageUtil, times(1)).getOutputStream(BUCKET, FILENAME, false);
+    assertEquals("header\nrow0\nrow1\nrow2", new String(out.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testAppendedGzipMembersReadAsOneStream() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    StorageUtil storageUtil = mock(StorageUtil.class);
+    when(storageUtil.getOutputStream(BUCKET, FILENAME, false)).thenReturn(out);
+    when(storageUtil.getOutputStream(BUCKET, FILENAME, true)).thenReturn(out);
+
+    try (ExportSink sink = new ExportSink(storageUtil, BUCKET, FILENAME, false, true)) {
+      sink.append("header\nrow0");
+    }
+    try (ExportSink sink = new ExportSink(storageUtil, BUCKET, FILENAME, true, true)) {
+      sink.append("\nrow1");
+    }
+    GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()));
+    ByteArrayOutputStream unzipped = new ByteArrayOutputStream();
+    byte[] buffer = new byte[1024];
+    int n;
+    while ((n = in.read(buffer)) > 0) {
+      unzipped.write(buffer, 0, n);
+    }
+    assertEquals("header\nrow0\nrow1", new String(unzipped.toByteArray(), StandardCharsets.UTF_8));
+  }
+}
@@ -62,6 +62,7 @@ import org.json.JSONObject;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.security.MessageDigest;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -106,14 +107,26 @@ public class TransactionUtil {
 
   public static boolean deduplicateBySaveTimePartial(String saveTime, String userId,
                                                      String kioskId, String partialId) {
-    // Global checking without partial ID - skip write when partial id is available
-    return
-        deduplicateBySaveTimePartial(saveTime, userId, kioskId, null,
-            partialId != null)
-            ||
-            (partialId != null && deduplicateBySaveTimePartial(saveTime, userId,
-                kioskId,
-                partialId, false)); //Check with partial ID
+    if (partialId == null) {
+      return deduplicateBySaveTimePartial(saveTime, userId, kioskId, null, false);
+    }
+    // Global checking without partial ID and check with partial ID in a single round trip,
+    // only the key with partial ID is written
+    try {
+      MemcacheService cache = AppFactory.get().getMemcacheService();
+      if (cache != null) {
+        String globalKey = getChecksumKey(saveTime, userId, kioskId, null);
+        String partialKey = getChecksumKey(saveTime, userId, kioskId, partialId);
+        if (!cache.getMulti(Arrays.asList(globalKey, partialKey)).isEmpty()) {
+          return true;
+        }
+        cache.put(partialKey, TransactionUtil.IN_PROGRESS, DEDUPLICATION_DURATION_NEW);
+      }
+    } catch (Exception e) {
+      xLogger
+          .warn("{0} when deduplicating transactions: {1}", e.getClass().getName(), e.getMessage());
+    }
+    return false;
   }
 
   public static boolean deduplicateBySaveTimePartial(String saveTime, String userId,
@@ -122,13 +135,7 @@ public class TransactionUtil {
     try {
       MemcacheService cache = AppFactory.get().getMemcacheService();
       
-      String
-          cacheKey =
-          TRANSACTION_CHECKSUM_KEY_PREFIX + userId + CharacterConstants.DOT + kioskId
-              + CharacterConstants.DOT + saveTime;
-      if (partialId != null) {
-        cacheKey += CharacterConstants.DOT + partialId;
-      }
+      String cacheKey = getChecksumKey(saveTime, userId, kioskId, partialId);
       if (cache != null) {
         // Get last checksum
         if (cache.get(cacheKey) != null) {
@@ -145,6 +152,18 @@ public class TransactionUtil {
     return false;
   }
 
+  private static String getChecksumKey(String saveTime, String userId, String kioskId,
+                                       String partialId) {
+    String
+        cacheKey =
+        TRANSACTION_CHECKSUM_KEY_PREFIX + userId + CharacterConstants.DOT + kioskId
+            + CharacterConstants.DOT + saveTime;
+    if (partialId != null) {
+      cacheKey += CharacterConstants.DOT + partialId;
+    }
+    return cacheKey;
+  }
+
   // Get a map from JSON string
   @SuppressWarnings("rawtypes")
   public static Map<String, String> getMap(String jsonString) {
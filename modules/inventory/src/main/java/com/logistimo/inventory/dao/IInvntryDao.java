@@ -35,6 +35,7 @@ import com.logistimo.pagination.QueryParams;
 import com.logistimo.pagination.Results;
 import com.logistimo.services.ServiceException;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
@@ -76,6 +77,11 @@ public interface IInvntryDao {
 
   IInvntry findId(Long kioskId, Long materialId, PersistenceManager persistenceManager);
 
+  /**
+   * Find inventories of a kiosk for all the given materials in a single query.
+   */
+  List<IInvntry> findIds(Long kioskId, Collection<Long> materialIds, PersistenceManager pm);
+
   IInvntry findShortId(Long kioskId, Long shortId, PersistenceManager persistenceManager);
 
 
@@ -116,6 +122,12 @@ public interface IInvntryDao {
 
   IInvntryBatch findInvBatch(Long kioskId, Long materialId, String batchId, PersistenceManager pm);
 
+  /**
+   * Find all batches of a kiosk for the given materials in a single query.
+   */
+  List<IInvntryBatch> findInvBatches(Long kioskId, Collection<Long> materialIds,
+                                     PersistenceManager pm);
+
   /**
    * Get the last stock event
    */
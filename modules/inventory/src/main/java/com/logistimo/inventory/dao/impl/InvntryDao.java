@@ -53,6 +53,7 @@ import org.springframework.stereotype.Repository;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -131,6 +132,20 @@ public class InvntryDao implements IInvntryDao {
     }
   }
 
+  @SuppressWarnings("unchecked")
+  public List<IInvntry> findIds(Long kioskId, Collection<Long> materialIds,
+                                PersistenceManager pm) {
+    Query q = pm.newQuery(Invntry.class);
+    try {
+      q.setFilter("kId == kIdParam && mIdsParam.contains(mId)");
+      q.declareParameters("Long kIdParam, java.util.Collection mIdsParam");
+      List<IInvntry> results = (List<IInvntry>) q.execute(kioskId, materialIds);
+      return (List<IInvntry>) pm.detachCopyAll(results);
+    } finally {
+      q.closeAll();
+    }
+  }
+
   public IInvntry findShortId(Long kioskId, Long shortId, PersistenceManager pm) {
     Query q = pm.newQuery(Invntry.class);
     try {
@@ -274,6 +289,20 @@ public class InvntryDao implements IInvntryDao {
     }
   }
 
+  @SuppressWarnings("unchecked")
+  public List<IInvntryBatch> findInvBatches(Long kioskId, Collection<Long> materialIds,
+                                            PersistenceManager pm) {
+    Query q = pm.newQuery(JDOUtils.getImplClass(IInvntryBatch.class));
+    try {
+      q.setFilter("kId == kIdParam && mIdsParam.contains(mId)");
+      q.declareParameters("Long kIdParam, java.util.Collection mIdsParam");
+      List<IInvntryBatch> results = (List<IInvntryBatch>) q.execute(kioskId, materialIds);
+      return (List<IInvntryBatch>) pm.detachCopyAll(results);
+    } finally {
+      q.closeAll();
+    }
+  }
+
   public IInvntryEvntLog getLastStockEvent(IInvntry inv, PersistenceManager pm) {
     Long key = inv.getLastStockEvent();
     if (key == null) {
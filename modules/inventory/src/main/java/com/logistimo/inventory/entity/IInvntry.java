@@ -189,6 +189,10 @@ public interface IInvntry extends IOverlappedDomain {
 
   void setPSTimestamp(Date tPS);
 
+  Date getConsumptionRateTimestamp();
+
+  void setConsumptionRateTimestamp(Date crT);
+
   Date getDQTimestamp();
 
   void setDQTimestamp(Date tDQ);
@@ -134,6 +134,8 @@ public class Invntry implements IInvntry {
   @Persistent
   private Date tPS; // last updated time for P and/or S
   @Persistent
+  private Date crT; // time up to which crD includes transactions
+  @Persistent
   private Date tDQ; // last updated time for D and/or Q
   @Persistent
   @Extension(vendorName = "datanucleus", key = "gae.unindexed", value = "true")
@@ -643,6 +645,16 @@ public class Invntry implements IInvntry {
     this.tPS = tPS;
   }
 
+  @Override
+  public Date getConsumptionRateTimestamp() {
+    return crT;
+  }
+
+  @Override
+  public void setConsumptionRateTimestamp(Date crT) {
+    this.crT = crT;
+  }
+
   @Override
   public Date getDQTimestamp() {
     return tDQ;
@@ -789,6 +801,7 @@ public class Invntry implements IInvntry {
     setAvailableStock(BigDecimal.ZERO);
     setTimestamp(new Date());
     setPSTimestamp(null);
+    setConsumptionRateTimestamp(null);
     setDQTimestamp(null);
     setUpdatedBy(SecurityUtils.getUsername());
   }
@@ -0,0 +1,107 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.inventory.models;
+
+import com.logistimo.constants.CharacterConstants;
+import com.logistimo.inventory.entity.IInvntry;
+import com.logistimo.tags.dao.ITagDao;
+import com.logistimo.tags.entity.ITag;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lookups shared by the transactions of an inventory update. Inventories supplied by the caller
+ * are indexed by kiosk and material, and resolved tags are remembered, so the context can be
+ * reused across calls of the same upload. Not thread safe.
+ */
+public class InventoryContext {
+
+  private final Map<String, IInvntry> inventories = new HashMap<>();
+  private final Map<String, ITag> tags = new HashMap<>();
+
+  public InventoryContext() {
+  }
+
+  public InventoryContext(Collection<IInvntry> invntryList) {
+    addInventories(invntryList);
+  }
+
+  public void addInventories(Collection<IInvntry> invntryList) {
+    if (invntryList != null) {
+      for (IInvntry invntry : invntryList) {
+        inventories.putIfAbsent(getKey(invntry.getKioskId(), invntry.getMaterialId()), invntry);
+      }
+    }
+  }
+
+  /**
+   * Drops the supplied inventories, so that they are read again. Resolved tags are kept.
+   */
+  public void clearInventories() {
+    inventories.clear();
+  }
+
+  /**
+   * @return the supplied inventory of the material in the kiosk, or null
+   */
+  public IInvntry getInventory(Long kioskId, Long materialId) {
+    return inventories.get(getKey(kioskId, materialId));
+  }
+
+  /**
+   * Resolves tag names of the given type, looking up the names not resolved before in one call.
+   */
+  public List<ITag> getTags(List<String> tagNames, int type, ITagDao tagDao) {
+    if (tagNames == null) {
+      return null;
+    }
+    List<String> misses = new ArrayList<>(tagNames.size());
+    for (String tagName : tagNames) {
+      if (!tags.containsKey(type + CharacterConstants.COLON + tagName)) {
+        misses.add(tagName);
+      }
+    }
+    if (!misses.isEmpty()) {
+      List<ITag> found = tagDao.getTagsByNames(misses, type);
+      for (int i = 0; i < misses.size(); i++) {
+        if (found.get(i) != null) {
+          tags.put(type + CharacterConstants.COLON + misses.get(i), found.get(i));
+        }
+      }
+    }
+    List<ITag> resolved = new ArrayList<>(tagNames.size());
+    for (String tagName : tagNames) {
+      resolved.add(tags.get(type + CharacterConstants.COLON + tagName));
+    }
+    return resolved;
+  }
+
+  private static String getKey(Long kioskId, Long materialId) {
+    return kioskId + CharacterConstants.COLON + materialId;
+  }
+}
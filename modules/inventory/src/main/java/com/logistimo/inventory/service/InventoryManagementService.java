@@ -33,6 +33,7 @@ import com.logistimo.inventory.entity.IInvntryBatch;
 import com.logistimo.inventory.entity.IInvntryEvntLog;
 import com.logistimo.inventory.entity.ITransaction;
 import com.logistimo.inventory.models.CreateTransactionsReturnModel;
+import com.logistimo.inventory.models.InventoryContext;
 import com.logistimo.inventory.models.InventoryFilters;
 import com.logistimo.inventory.models.ResponseDetailModel;
 import com.logistimo.models.shipments.ShipmentItemBatchModel;
@@ -42,6 +43,7 @@ import com.logistimo.services.DuplicationException;
 import com.logistimo.services.ServiceException;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -145,6 +147,13 @@ public interface InventoryManagementService {
   Results<IInvntryBatch> getBatches(Long materialId, Long kioskId, PageParams pageParams)
       throws ServiceException;
 
+  /**
+   * Get the valid or non-zero stock batches of the given materials at a kiosk in one query,
+   * grouped by material id and ordered by batch expiry
+   */
+  Map<Long, List<IInvntryBatch>> getValidOrNonZeroBatches(Long kioskId,
+                                                          Collection<Long> materialIds);
+
   /**
    * Add a new inventory items to the data store.
    *
@@ -328,6 +337,17 @@ public interface InventoryManagementService {
                                                             boolean skipPred, PersistenceManager pm)
       throws ServiceException, DuplicationException;
 
+  /**
+   * Same as the above, with lookups shared through the context. Callers updating transactions in
+   * several calls, like bulk uploads, can pass the same context to each of them.
+   */
+  CreateTransactionsReturnModel updateInventoryTransactions(Long domainId,
+                                                            List<ITransaction> inventoryTransactions,
+                                                            boolean skipVal,
+                                                            boolean skipPred, PersistenceManager pm,
+                                                            InventoryContext context)
+      throws ServiceException, DuplicationException;
+
   /**
    * Update a single inventory transaction
    */
@@ -342,6 +362,10 @@ public interface InventoryManagementService {
                                           boolean skipPred)
       throws ServiceException, DuplicationException;
 
+  ITransaction updateInventoryTransaction(Long domainId, ITransaction inventoryTransaction,
+                                          InventoryContext context)
+      throws ServiceException, DuplicationException;
+
   ITransaction updateInventoryTransaction(Long domainId, ITransaction inventoryTransaction,
                                           boolean skipPred, boolean skipVal, PersistenceManager pm)
       throws ServiceException, DuplicationException;
@@ -64,6 +64,7 @@ import com.logistimo.inventory.entity.IInvntryLog;
 import com.logistimo.inventory.entity.ITransaction;
 import com.logistimo.inventory.exceptions.InventoryAllocationException;
 import com.logistimo.inventory.models.CreateTransactionsReturnModel;
+import com.logistimo.inventory.models.InventoryContext;
 import com.logistimo.inventory.models.InventoryFilters;
 import com.logistimo.inventory.models.ResponseDetailModel;
 import com.logistimo.inventory.service.InventoryManagementService;
@@ -105,6 +106,7 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
@@ -680,6 +682,35 @@ public class InventoryManagementServiceImpl implements InventoryManagementServic
     return new Results<>(results, cursor);
   }
 
+  @SuppressWarnings("unchecked")
+  public Map<Long, List<IInvntryBatch>> getValidOrNonZeroBatches(Long kioskId,
+                                                                 Collection<Long> materialIds) {
+    Map<Long, List<IInvntryBatch>> batches = new HashMap<>();
+    if (materialIds == null || materialIds.isEmpty()) {
+      return batches;
+    }
+    PersistenceManager pm = PMF.get().getPersistenceManager();
+    Query q = pm.newQuery("SELECT FROM " + JDOUtils.getImplClass(IInvntryBatch.class).getName()
+        + " WHERE kId == kIdParam && mIdsParam.contains(mId) && (vld == vldParam || q > 0)"
+        + " PARAMETERS Long kIdParam, java.util.Collection mIdsParam, Boolean vldParam"
+        + " ORDER BY bexp ASC");
+    try {
+      List<IInvntryBatch> results =
+          (List<IInvntryBatch>) q.execute(kioskId, materialIds, Boolean.TRUE);
+      for (IInvntryBatch batch : (List<IInvntryBatch>) pm.detachCopyAll(results)) {
+        batches.computeIfAbsent(batch.getMaterialId(), k -> new ArrayList<>()).add(batch);
+      }
+    } finally {
+      try {
+        q.closeAll();
+      } catch (Exception ignored) {
+        xLogger.warn("Exception while closing query", ignored);
+      }
+      pm.close();
+    }
+    return batches;
+  }
+
   /**
    * Get valid batches for a given inventory item - this includes active batches with non-zero stock
    */
@@ -1368,7 +1399,6 @@ public class InventoryManagementServiceImpl implements InventoryManagementServic
   }
 
   @Override
-  @SuppressWarnings({"unchecked", "rawtypes"})
   public CreateTransactionsReturnModel updateInventoryTransactions(Long domainId,
                                                                    List<ITransaction> inventoryTransactions,
                                                                    List<IInvntry> invntryList,
@@ -1376,7 +1406,23 @@ public class InventoryManagementServiceImpl implements InventoryManagementServic
                                                                    boolean skipPred,
                                                                    PersistenceManager pm)
       throws ServiceException, DuplicationException {
+    return updateInventoryTransactions(domainId, inventoryTransactions, skipVal, skipPred, pm,
+        new InventoryContext(invntryList));
+  }
+
+  @Override
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public CreateTransactionsReturnModel updateInventoryTransactions(Long domainId,
+                                                                   List<ITransaction> inventoryTransactions,
+                                                                   boolean skipVal,
+                                                                   boolean skipPred,
+                                                                   PersistenceManager pm,
+                                                                   InventoryContext context)
+      throws ServiceException, DuplicationException {
     xLogger.fine("Entering updateInventoryTransactions");
+    if (context == null) {
+      context = new InventoryContext();
+    }
     boolean closePM = pm == null;
     if (CollectionUtils.isEmpty(inventoryTransactions)) {
       throw new ServiceException("Transaction list cannot be empty");
@@ -1424,256 +1470,447 @@ public class InventoryManagementServiceImpl implements InventoryManagementServic
       pm = PMF.get().getPersistenceManager();
     }
 
-    List<ITransaction> errors = new ArrayList<>(1); // holds transactions in error
-    Iterator<ITransaction> it = inventoryTransactions.iterator();
-    List<ITransaction> committedTransList = new ArrayList<>(1);
-    List<IInvntry> toBeOptimized = new ArrayList<>(1);
-    List<IInvntry> toBePredicted = new ArrayList<>(inventoryTransactions.size());
+    TransactionResults results = new TransactionResults(inventoryTransactions.size());
+    List<ITransaction> committedTransList;
     try {
-      while (it.hasNext()) {
-        ITransaction trans = it.next();
-        String lockKey = null;
-        String destLockKey = null;
-        LockUtil.LockStatus lockStatus = null;
-        try {
-          // Get the kiosk and material Ids
-          Long kioskId = trans.getKioskId();
-          Long materialId = trans.getMaterialId();
-          lockKey = Constants.TX + kioskId;
-          if (ITransaction.TYPE_TRANSFER.equals(tType)) {
-            destLockKey = Constants.TX + trans.getLinkedKioskId();
-            lockStatus = LockUtil.doubleLock(lockKey, destLockKey, 25, 200);
-          } else {
-            lockStatus = LockUtil.lock(lockKey, 25, 200);
-          }
-          if (!LockUtil.isLocked(lockStatus)) {
-            trans.setMessage(
-                "Unable to lock inventory to perform transaction. Please retry after sometime");
-            trans.setMsgCode("M004");
-            errors.add(trans);
-            lockKey = destLockKey = null;
-            continue;
-          }
-          // Get the inventory object
-          IInvntry in = null;
-          if (invntryList != null && !invntryList.isEmpty()) {
-            for (IInvntry invntry : invntryList) {
-              if (invntry.getKioskId().equals(kioskId) && invntry.getMaterialId()
-                  .equals(materialId)) {
-                in = invntry;
-                break;
-              }
-            }
-          }
-          if (in == null) {
-            in = getInventory(kioskId, materialId, pm);
-          }
-          // If no inventory configured, then add this transaction to error list
-          if (in == null) {
-            trans.setMessage(backendMessages.getString("error.nomaterialinkiosk"));
-            trans.setMsgCode("M005");
-            errors.add(trans);
-            continue; // continue with the next object in the list
-          }
-          if (trans.getAtd() != null && isAtdNotValid(domainId, trans.getAtd())) {
-            trans.setMessage(backendMessages.getString("error.adt"));
-            trans.setMsgCode("M006");
-            errors.add(trans);
-            continue; // continue with the next object in the list
-          }
-          try {
-            checkHandlinkUnitErrors(trans);
-          } catch (LogiException e) {
-            trans.setMessage(e.getMessage());
-            trans.setMsgCode(e.getCode());
-            errors.add(trans);
-            continue;
-          }
-          if (isReturn) {
-            try {
-              checkReturnsErrors(trans, pm);
-            } catch (LogiException e) {
-              trans.setMessage(e.getMessage());
-              trans.setMsgCode(e.getCode());
-              errors.add(trans);
-              continue;
-            }
-          }
-          // Get the current time
-          Date timestamp = new Date();
-          // Check if stock is being updated for the first time (used during event generation)
-          boolean
-              isStockUpdatedFirstTime =
-              BigUtil.equalsZero(in.getStock()) && in.getTimestamp() != null
-                  && in.getCreatedOn() != null && in.getCreatedOn().equals(in.getTimestamp());
-          // Check if a batch is involved
-          IInvntryBatch invBatch = null;
-          if (trans.hasBatch()) {
-            invBatch = getInventoryBatch(kioskId, materialId, trans.getBatchId(), pm);
-          }
-          // Get the stock-on-hand for this inventory item
-          BigDecimal stockOnHand = in.getAvailableStock();
-          BigDecimal stockOnHandTotal = in.getAvailableStock();
-
-          if (invBatch != null) {
-            stockOnHand = invBatch.getAvailableStock();
-          } else if (trans.hasBatch()) {
-            stockOnHand = BigDecimal.ZERO;
-          }
+      if (closePM && ConfigUtil.getBoolean("inventory.transactions.batch.commit", false)) {
+        // Commit consecutive transactions of a kiosk (or kiosk pair for transfers) together
+        for (List<ITransaction> group : groupByLockKeys(inventoryTransactions, tType)) {
+          commitTransactionGroup(domainId, group, tType, isReturn, skipPred, context,
+              backendMessages, results, pm);
+        }
+      } else {
+        updateEachTransaction(domainId, inventoryTransactions, tType, isReturn, skipPred,
+            context, backendMessages, results, closePM, pm);
+      }
+      committedTransList = (List<ITransaction>) pm.detachCopyAll(results.committed);
+    } finally {
+      // Close PM
+      if (closePM) {
+        pm.close();
+      }
 
-          try {
-            checkTransactionErrors(stockOnHand, trans);
-          } catch (LogiException e) {
-            trans.setMessage(e.getMessage());
-            trans.setMsgCode(e.getCode());
-            errors.add(trans);
-            continue;
-          }
+    }
+    if (!results.toBeOptimized.isEmpty() || !committedTransList.isEmpty()) {
+      // Invoke the post-transaction commit hook, as required
+      doPostTransactionCommitHook(committedTransList, results.toBeOptimized);
+    }
+    if (!results.toBePredicted.isEmpty()) {
+      doPostTransactionPredictions(domainId, results.toBePredicted);
+    }
 
-          BigDecimal linkedKioskStockOnHand = BigDecimal.ZERO;
-          IInvntry linkedKioskInv = null;
-          IInvntryBatch linkedInvBatch = null;
-
-          if (ITransaction.TYPE_TRANSFER.equals(tType)) {
-            linkedKioskInv = getInventory(trans.getLinkedKioskId(), materialId, pm);
-            if (linkedKioskInv == null) {
-              IMaterial m = materialCatalogService.getMaterial(materialId);
-              StringBuilder message = new StringBuilder(m.getName());
-              if (trans.hasBatch()) {
-                message.append("(").append(trans.getBatchId()).append(")");
-              }
-              message.append(" ")
-                  .append(backendMessages.getString("error.doesnotexistindestinationentity"));
-              trans.setMessage(message.toString());
-              trans.setMsgCode("M007");
-              errors.add(trans);
-              continue; // continue with the next object in the list
-            }
-            linkedKioskStockOnHand = linkedKioskInv.getStock();
-            if (trans.hasBatch()) {
-              linkedInvBatch =
-                  getInventoryBatch(trans.getLinkedKioskId(), materialId, trans.getBatchId(), pm);
-            }
-          }
-          if (!trans.useCustomTimestamp()) {
-            trans.setTimestamp(timestamp);
-          }
-          // Update tags for querying purpose
-          List<String> tags = in.getTags(TagUtil.TYPE_MATERIAL);
-          if (tags != null && !tags.isEmpty()) {
-            trans.setTgs(tagDao.getTagsByNames(tags, ITag.MATERIAL_TAG), TagUtil.TYPE_MATERIAL);
-          }
-          tags = in.getTags(TagUtil.TYPE_ENTITY);
-          if (tags != null && !tags.isEmpty()) {
-            trans.setTgs(tagDao.getTagsByNames(tags, ITag.KIOSK_TAG), TagUtil.TYPE_ENTITY);
-          }
-          trans.setDomainId(in.getDomainId());
-          /**** Transactional object creation - trans, inv. update, inv. log creation ***/
-          List objects;
-          try {
-            if (ITransaction.TYPE_TRANSFER.equals(tType)) {
-              objects = createTransactableObjectsForTransfer(trans, in, invBatch, linkedKioskInv,
-                  linkedInvBatch, timestamp, pm);
-            } else {
-              // update stock and get related logs
-              objects = createTransactableObjects(trans, in, invBatch, timestamp, pm);
-            }
-          } catch (Exception e) {
-            trans.setMessage(e.getMessage());
-            errors.add(trans);
-            continue;
-          }
-          /**** Transaction persistence ***/
+    xLogger.fine("Exiting updateInventoryTransactions");
 
-          javax.jdo.Transaction tx = null;
-          try {
-            if (closePM) {
-              tx = pm.currentTransaction();
-              tx.begin();
-            }
-            pm.makePersistentAll(objects);
-            if (objects.get(0) instanceof ITransaction
-                && ((ITransaction) objects.get(0)).getTransactionId() == null) {
-              pm.makePersistentAll(objects);
-            }
-            if (closePM) {
-              tx.commit();
-            }
-            committedTransList.add(trans);
-          } catch (Exception e) {
-            xLogger
-                .warn("Exception {0} when committing transaction {1}: {2}", e.getClass().getName(),
-                    transDao.getKeyAsString(trans), e.getMessage(), e);
-            trans.setMessage("System error occurred while persisting Transactions.");
-            trans.setMsgCode("M004");
-            errors.add(trans);
-            continue; // Go to the next transaction
-          } finally {
-            if (closePM && tx.isActive()) {
-              xLogger.warn("Could not commit...rolling back transaction {0}",
-                  transDao.getKeyAsString(trans));
-              tx.rollback();
-            } else {
-              //Post commit link transfers
-              if (ConfigUtil.isLogi() && ITransaction.TYPE_TRANSFER.equals(tType)) {
-                for (Object object : objects) {
-                  if (object instanceof ITransaction && !((ITransaction) object).getKeyString()
-                      .equals(trans.getKeyString())) {
-                    ITransaction
-                        linkedTransaction =
-                        JDOUtils.getObjectById(ITransaction.class,
-                            ((ITransaction) object).getKeyString(), pm);
-                    transDao.linkTransactions(linkedTransaction, trans);
-                  }
-                }
-              }
-            }
-          }
-          // Check if this item need optimization computation (D&Q) - i.e. if it goes below safety stock
-          BigDecimal safetyStock = in.getSafetyStock();
-          if (BigUtil.notEqualsZero(safetyStock) && BigUtil
-              .lesserThanEquals(in.getStock(), safetyStock)) {
-            toBeOptimized.add(in);
+    return new CreateTransactionsReturnModel(committedTransList, results.errors);
+  }
+
+  /**
+   * Applies and commits the transactions one at a time, each under its own lock.
+   */
+  @SuppressWarnings("rawtypes")
+  void updateEachTransaction(Long domainId, List<ITransaction> transactions,
+                                     String tType, boolean isReturn, boolean skipPred,
+                                     InventoryContext context, ResourceBundle backendMessages,
+                                     TransactionResults results, boolean closePM,
+                                     PersistenceManager pm) {
+    for (ITransaction trans : transactions) {
+      String lockKey = null;
+      String destLockKey = null;
+      LockUtil.LockStatus lockStatus = null;
+      try {
+        // Get the kiosk and material Ids
+        Long kioskId = trans.getKioskId();
+        lockKey = Constants.TX + kioskId;
+        if (ITransaction.TYPE_TRANSFER.equals(tType)) {
+          destLockKey = Constants.TX + trans.getLinkedKioskId();
+          lockStatus = LockUtil.doubleLock(lockKey, destLockKey, 25, 200);
+        } else {
+          lockStatus = LockUtil.lock(lockKey, 25, 200);
+        }
+        if (!LockUtil.isLocked(lockStatus)) {
+          trans.setMessage(
+              "Unable to lock inventory to perform transaction. Please retry after sometime");
+          trans.setMsgCode("M004");
+          results.errors.add(trans);
+          lockKey = destLockKey = null;
+          continue;
+        }
+        PreparedTransaction prepared = prepareTransaction(domainId, trans, tType, isReturn,
+            context, null, backendMessages, results.errors, pm);
+        if (prepared == null) {
+          continue; // continue with the next object in the list
+        }
+        List objects = prepared.objects;
+        /**** Transaction persistence ***/
+
+        javax.jdo.Transaction tx = null;
+        try {
+          if (closePM) {
+            tx = pm.currentTransaction();
+            tx.begin();
           }
-          if (!skipPred) {
-            toBePredicted.add(in);
+          persistTransactableObjects(objects, pm);
+          if (closePM) {
+            tx.commit();
           }
-          // Generate the necessary events
-          generateEvents(trans, in, stockOnHandTotal, linkedKioskInv, linkedKioskStockOnHand,
-              isStockUpdatedFirstTime, domainId);
-        } catch (ServiceException e) {
-          xLogger.warn("ServiceException when processing transaction {0}: {1}",
-              transDao.getKeyAsString(trans), e.getMessage());
-          trans.setMessage(e.getMessage());
+          results.committed.add(trans);
+        } catch (Exception e) {
+          xLogger
+              .warn("Exception {0} when committing transaction {1}: {2}", e.getClass().getName(),
+                  transDao.getKeyAsString(trans), e.getMessage(), e);
+          trans.setMessage("System error occurred while persisting Transactions.");
           trans.setMsgCode("M004");
-          errors.add(trans);
+          results.errors.add(trans);
+          continue; // Go to the next transaction
         } finally {
-          if (destLockKey != null && LockUtil.shouldReleaseLock(lockStatus)) {
-            LockUtil.release(lockKey, destLockKey);
-          } else if (lockKey != null && LockUtil.shouldReleaseLock(lockStatus)) {
-            LockUtil.release(lockKey);
+          if (closePM && tx.isActive()) {
+            xLogger.warn("Could not commit...rolling back transaction {0}",
+                transDao.getKeyAsString(trans));
+            tx.rollback();
+          } else {
+            //Post commit link transfers
+            linkTransferTransactions(trans, objects, tType, pm);
           }
         }
+        onTransactionCommitted(domainId, prepared, skipPred, results);
+      } catch (ServiceException e) {
+        xLogger.warn("ServiceException when processing transaction {0}: {1}",
+            transDao.getKeyAsString(trans), e.getMessage());
+        trans.setMessage(e.getMessage());
+        trans.setMsgCode("M004");
+        results.errors.add(trans);
+      } finally {
+        if (destLockKey != null && LockUtil.shouldReleaseLock(lockStatus)) {
+          LockUtil.release(lockKey, destLockKey);
+        } else if (lockKey != null && LockUtil.shouldReleaseLock(lockStatus)) {
+          LockUtil.release(lockKey);
+        }
       }
-      committedTransList = (List<ITransaction>) pm.detachCopyAll(committedTransList);
-    } finally {
-      // Close PM
-      if (closePM) {
-        pm.close();
+    }
+  }
+
+  /**
+   * Validates the transaction and applies it on the inventory, without persisting it. Validation
+   * failures are added to errors.
+   *
+   * @param prefetch inventories and batches loaded for the transaction's kiosks, or null to look
+   *                 them up
+   * @return the objects to persist with the stock before the transaction, or null when in error
+   */
+  @SuppressWarnings("rawtypes")
+  private PreparedTransaction prepareTransaction(Long domainId, ITransaction trans, String tType,
+                                                 boolean isReturn, InventoryContext context,
+                                                 InventoryPrefetch prefetch,
+                                                 ResourceBundle backendMessages,
+                                                 List<ITransaction> errors,
+                                                 PersistenceManager pm)
+      throws ServiceException {
+    Long kioskId = trans.getKioskId();
+    Long materialId = trans.getMaterialId();
+    // Get the inventory object
+    IInvntry in = context.getInventory(kioskId, materialId);
+    if (in == null) {
+      in = prefetch != null ? prefetch.getInventory(kioskId, materialId)
+          : getInventory(kioskId, materialId, pm);
+    }
+    // If no inventory configured, then add this transaction to error list
+    if (in == null) {
+      trans.setMessage(backendMessages.getString("error.nomaterialinkiosk"));
+      trans.setMsgCode("M005");
+      errors.add(trans);
+      return null;
+    }
+    if (trans.getAtd() != null && isAtdNotValid(domainId, trans.getAtd())) {
+      trans.setMessage(backendMessages.getString("error.adt"));
+      trans.setMsgCode("M006");
+      errors.add(trans);
+      return null;
+    }
+    try {
+      checkHandlinkUnitErrors(trans);
+    } catch (LogiException e) {
+      trans.setMessage(e.getMessage());
+      trans.setMsgCode(e.getCode());
+      errors.add(trans);
+      return null;
+    }
+    if (isReturn) {
+      try {
+        checkReturnsErrors(trans, pm);
+      } catch (LogiException e) {
+        trans.setMessage(e.getMessage());
+        trans.setMsgCode(e.getCode());
+        errors.add(trans);
+        return null;
       }
+    }
+    PreparedTransaction prepared = new PreparedTransaction(trans, in);
+    // Get the current time
+    Date timestamp = new Date();
+    // Check if stock is being updated for the first time (used during event generation)
+    prepared.isStockUpdatedFirstTime =
+        BigUtil.equalsZero(in.getStock()) && in.getTimestamp() != null
+            && in.getCreatedOn() != null && in.getCreatedOn().equals(in.getTimestamp());
+    // Check if a batch is involved
+    IInvntryBatch invBatch = null;
+    if (trans.hasBatch()) {
+      invBatch = prefetch != null ? prefetch.getBatch(kioskId, materialId, trans.getBatchId())
+          : getInventoryBatch(kioskId, materialId, trans.getBatchId(), pm);
+    }
+    // Get the stock-on-hand for this inventory item
+    BigDecimal stockOnHand = in.getAvailableStock();
+    prepared.stockOnHandTotal = in.getAvailableStock();
 
+    if (invBatch != null) {
+      stockOnHand = invBatch.getAvailableStock();
+    } else if (trans.hasBatch()) {
+      stockOnHand = BigDecimal.ZERO;
     }
-    if (!toBeOptimized.isEmpty() || !committedTransList.isEmpty()) {
-      // Invoke the post-transaction commit hook, as required
-      doPostTransactionCommitHook(committedTransList, toBeOptimized);
+
+    try {
+      checkTransactionErrors(stockOnHand, trans);
+    } catch (LogiException e) {
+      trans.setMessage(e.getMessage());
+      trans.setMsgCode(e.getCode());
+      errors.add(trans);
+      return null;
+    }
+
+    IInvntryBatch linkedInvBatch = null;
+    if (ITransaction.TYPE_TRANSFER.equals(tType)) {
+      prepared.linkedKioskInv =
+          prefetch != null ? prefetch.getInventory(trans.getLinkedKioskId(), materialId)
+              : getInventory(trans.getLinkedKioskId(), materialId, pm);
+      if (prepared.linkedKioskInv == null) {
+        IMaterial m = materialCatalogService.getMaterial(materialId);
+        StringBuilder message = new StringBuilder(m.getName());
+        if (trans.hasBatch()) {
+          message.append("(").append(trans.getBatchId()).append(")");
+        }
+        message.append(" ")
+            .append(backendMessages.getString("error.doesnotexistindestinationentity"));
+        trans.setMessage(message.toString());
+        trans.setMsgCode("M007");
+        errors.add(trans);
+        return null;
+      }
+      prepared.linkedKioskStockOnHand = prepared.linkedKioskInv.getStock();
+      if (trans.hasBatch()) {
+        linkedInvBatch = prefetch != null
+            ? prefetch.getBatch(trans.getLinkedKioskId(), materialId, trans.getBatchId())
+            : getInventoryBatch(trans.getLinkedKioskId(), materialId, trans.getBatchId(), pm);
+      }
+    }
+    if (!trans.useCustomTimestamp()) {
+      trans.setTimestamp(timestamp);
+    }
+    // Update tags for querying purpose
+    List<String> tags = in.getTags(TagUtil.TYPE_MATERIAL);
+    if (tags != null && !tags.isEmpty()) {
+      trans.setTgs(context.getTags(tags, ITag.MATERIAL_TAG, tagDao), TagUtil.TYPE_MATERIAL);
     }
-    if (!toBePredicted.isEmpty()) {
-      doPostTransactionPredictions(domainId, toBePredicted);
+    tags = in.getTags(TagUtil.TYPE_ENTITY);
+    if (tags != null && !tags.isEmpty()) {
+      trans.setTgs(context.getTags(tags, ITag.KIOSK_TAG, tagDao), TagUtil.TYPE_ENTITY);
     }
+    trans.setDomainId(in.getDomainId());
+    /**** Transactional object creation - trans, inv. update, inv. log creation ***/
+    try {
+      if (ITransaction.TYPE_TRANSFER.equals(tType)) {
+        prepared.objects =
+            createTransactableObjectsForTransfer(trans, in, invBatch, prepared.linkedKioskInv,
+                linkedInvBatch, timestamp, pm);
+      } else {
+        // update stock and get related logs
+        prepared.objects = createTransactableObjects(trans, in, invBatch, timestamp, pm);
+      }
+    } catch (Exception e) {
+      if (prefetch != null) {
+        // The prefetched inventory may be partially updated, let the caller discard it
+        throw new ServiceException(e);
+      }
+      trans.setMessage(e.getMessage());
+      errors.add(trans);
+      return null;
+    }
+    return prepared;
+  }
 
-    xLogger.fine("Exiting updateInventoryTransactions");
+  @SuppressWarnings("rawtypes")
+  private void persistTransactableObjects(List objects, PersistenceManager pm) {
+    pm.makePersistentAll(objects);
+    if (objects.get(0) instanceof ITransaction
+        && ((ITransaction) objects.get(0)).getTransactionId() == null) {
+      pm.makePersistentAll(objects);
+    }
+  }
+
+  @SuppressWarnings("rawtypes")
+  private void linkTransferTransactions(ITransaction trans, List objects, String tType,
+                                        PersistenceManager pm) {
+    if (ConfigUtil.isLogi() && ITransaction.TYPE_TRANSFER.equals(tType)) {
+      for (Object object : objects) {
+        if (object instanceof ITransaction && !((ITransaction) object).getKeyString()
+            .equals(trans.getKeyString())) {
+          ITransaction
+              linkedTransaction =
+              JDOUtils.getObjectById(ITransaction.class,
+                  ((ITransaction) object).getKeyString(), pm);
+          transDao.linkTransactions(linkedTransaction, trans);
+        }
+      }
+    }
+  }
+
+  private void onTransactionCommitted(Long domainId, PreparedTransaction prepared,
+                                      boolean skipPred, TransactionResults results) {
+    IInvntry in = prepared.in;
+    // Check if this item need optimization computation (D&Q) - i.e. if it goes below safety stock
+    BigDecimal safetyStock = in.getSafetyStock();
+    if (BigUtil.notEqualsZero(safetyStock) && BigUtil
+        .lesserThanEquals(in.getStock(), safetyStock)) {
+      results.toBeOptimized.add(in);
+    }
+    if (!skipPred) {
+      results.toBePredicted.add(in);
+    }
+    // Generate the necessary events
+    generateEvents(prepared.trans, in, prepared.stockOnHandTotal, prepared.linkedKioskInv,
+        prepared.linkedKioskStockOnHand, prepared.isStockUpdatedFirstTime, domainId);
+  }
+
+  /**
+   * Splits the transactions into runs of consecutive transactions on the same kiosk, or the same
+   * kiosk pair for transfers. The runs keep the original order, so every transaction sees the
+   * stock left by the ones before it, as when they are applied one at a time.
+   */
+  static List<List<ITransaction>> groupByLockKeys(List<ITransaction> transactions,
+                                                  String tType) {
+    List<List<ITransaction>> groups = new ArrayList<>();
+    String lastKey = null;
+    for (ITransaction trans : transactions) {
+      String groupKey = String.valueOf(trans.getKioskId());
+      if (ITransaction.TYPE_TRANSFER.equals(tType)) {
+        groupKey += CharacterConstants.COLON + trans.getLinkedKioskId();
+      }
+      if (!groupKey.equals(lastKey)) {
+        groups.add(new ArrayList<>());
+        lastKey = groupKey;
+      }
+      groups.get(groups.size() - 1).add(trans);
+    }
+    return groups;
+  }
 
-    return new CreateTransactionsReturnModel(committedTransList, errors);
+  /**
+   * Applies a group of transactions on the same kiosk (or kiosk pair) under one lock, with the
+   * inventory and batches loaded upfront, and commits them in a single database transaction.
+   * Transactions failing validation are reported individually as usual. If the group can not be
+   * committed, it is applied again one transaction at a time, starting from copies of the
+   * transactions taken before the group was applied.
+   */
+  void commitTransactionGroup(Long domainId, List<ITransaction> group, String tType,
+                              boolean isReturn, boolean skipPred, InventoryContext context,
+                              ResourceBundle backendMessages, TransactionResults results,
+                              PersistenceManager pm) {
+    ITransaction first = group.get(0);
+    String lockKey = Constants.TX + first.getKioskId();
+    String destLockKey = null;
+    LockUtil.LockStatus lockStatus;
+    if (ITransaction.TYPE_TRANSFER.equals(tType)) {
+      destLockKey = Constants.TX + first.getLinkedKioskId();
+      lockStatus = LockUtil.doubleLock(lockKey, destLockKey, 25, 200);
+    } else {
+      lockStatus = LockUtil.lock(lockKey, 25, 200);
+    }
+    if (!LockUtil.isLocked(lockStatus)) {
+      for (ITransaction trans : group) {
+        trans.setMessage(
+            "Unable to lock inventory to perform transaction. Please retry after sometime");
+        trans.setMsgCode("M004");
+        results.errors.add(trans);
+      }
+      return;
+    }
+    // Applying the group changes the transactions, keep them as received for a replay
+    List<ITransaction> originals = new ArrayList<>(group.size());
+    for (ITransaction trans : group) {
+      originals.add(trans.clone());
+    }
+    List<ITransaction> groupErrors = new ArrayList<>(1);
+    List<PreparedTransaction> preparedList = null;
+    try {
+      preparedList = applyTransactionGroup(domainId, group, tType, isReturn, context,
+          backendMessages, groupErrors, pm);
+    } catch (Exception e) {
+      xLogger.warn("Exception {0} when committing {1} transactions of kiosk {2}: {3}",
+          e.getClass().getName(), group.size(), first.getKioskId(), e.getMessage(), e);
+    } finally {
+      if (preparedList == null) {
+        // Inventories supplied by the caller may carry changes of the discarded group, read
+        // them afresh for the replay and for the groups after it
+        context.clearInventories();
+        updateEachTransaction(domainId, originals, tType, isReturn, skipPred, context,
+            backendMessages, results, true, pm);
+      }
+      if (destLockKey != null && LockUtil.shouldReleaseLock(lockStatus)) {
+        LockUtil.release(lockKey, destLockKey);
+      } else if (LockUtil.shouldReleaseLock(lockStatus)) {
+        LockUtil.release(lockKey);
+      }
+    }
+    if (preparedList == null) {
+      return;
+    }
+    results.errors.addAll(groupErrors);
+    for (PreparedTransaction prepared : preparedList) {
+      results.committed.add(prepared.trans);
+      linkTransferTransactions(prepared.trans, prepared.objects, tType, pm);
+      onTransactionCommitted(domainId, prepared, skipPred, results);
+    }
+  }
+
+  /**
+   * Prepares and persists the group in one database transaction, which is rolled back on any
+   * failure.
+   *
+   * @return the transactions applied, in order
+   */
+  List<PreparedTransaction> applyTransactionGroup(Long domainId, List<ITransaction> group,
+                                                  String tType, boolean isReturn,
+                                                  InventoryContext context,
+                                                  ResourceBundle backendMessages,
+                                                  List<ITransaction> groupErrors,
+                                                  PersistenceManager pm)
+      throws ServiceException {
+    ITransaction first = group.get(0);
+    List<PreparedTransaction> preparedList = new ArrayList<>(group.size());
+    javax.jdo.Transaction tx = pm.currentTransaction();
+    try {
+      Set<Long> materialIds = group.stream().map(ITransaction::getMaterialId)
+          .collect(Collectors.toSet());
+      InventoryPrefetch prefetch = new InventoryPrefetch();
+      prefetch.load(first.getKioskId(), materialIds, pm);
+      if (ITransaction.TYPE_TRANSFER.equals(tType)) {
+        prefetch.load(first.getLinkedKioskId(), materialIds, pm);
+      }
+      tx.begin();
+      for (ITransaction trans : group) {
+        PreparedTransaction prepared = prepareTransaction(domainId, trans, tType, isReturn,
+            context, prefetch, backendMessages, groupErrors, pm);
+        if (prepared != null) {
+          persistTransactableObjects(prepared.objects, pm);
+          prefetch.track(prepared.objects);
+          preparedList.add(prepared);
+        }
+      }
+      tx.commit();
+      return preparedList;
+    } finally {
+      if (tx.isActive()) {
+        tx.rollback();
+      }
+    }
   }
 
   private boolean isAtdNotValid(Long domainId, Date actualTransactionDate) {
@@ -1823,6 +2060,24 @@ public class InventoryManagementServiceImpl implements InventoryManagementServic
     }
   }
 
+  public ITransaction updateInventoryTransaction(Long domainId, ITransaction inventoryTransaction,
+                                                 InventoryContext context)
+      throws ServiceException, DuplicationException {
+    if (inventoryTransaction == null) {
+      throw new ServiceException("Invalid parameter passed");
+    }
+
+    List<ITransaction> list = new ArrayList<>(1);
+    list.add(inventoryTransaction);
+    List<ITransaction> errorList = updateInventoryTransactions(domainId, list, false, false, null,
+        context).getErrorTransactions();
+    if (errorList != null && !errorList.isEmpty()) {
+      return errorList.get(0);
+    } else {
+      return null;
+    }
+  }
+
   public ITransaction updateInventoryTransaction(Long domainId, ITransaction inventoryTransaction,
                                                  boolean skipPred, boolean skipVal,
                                                  PersistenceManager pm)
@@ -4115,7 +4370,88 @@ public class InventoryManagementServiceImpl implements InventoryManagementServic
     return PMF.get().getPersistenceManager();
   }
 
+  /**
+   * A validated transaction applied on its inventory, along with the stock before applying it.
+   */
+  static class PreparedTransaction {
+
+    private final ITransaction trans;
+    private final IInvntry in;
+    private IInvntry linkedKioskInv;
+    private BigDecimal stockOnHandTotal;
+    private BigDecimal linkedKioskStockOnHand = BigDecimal.ZERO;
+    private boolean isStockUpdatedFirstTime;
+    @SuppressWarnings("rawtypes")
+    private List objects;
+
+    private PreparedTransaction(ITransaction trans, IInvntry in) {
+      this.trans = trans;
+      this.in = in;
+    }
+  }
+
+  /**
+   * Inventory and batches of a kiosk loaded with one query each, so that every transaction on
+   * the kiosk sees the stock updated by the previous ones.
+   */
+  private class InventoryPrefetch {
+
+    private final Map<String, IInvntry> inventories = new HashMap<>();
+    private final Map<String, IInvntryBatch> batches = new HashMap<>();
+
+    private void load(Long kioskId, Collection<Long> materialIds, PersistenceManager pm) {
+      for (IInvntry invntry : invntryDao.findIds(kioskId, materialIds, pm)) {
+        inventories.put(getKey(invntry.getKioskId(), invntry.getMaterialId()), invntry);
+      }
+      for (IInvntryBatch invBatch : invntryDao.findInvBatches(kioskId, materialIds, pm)) {
+        batches.put(getKey(invBatch.getKioskId(), invBatch.getMaterialId(), invBatch.getBatchId()),
+            invBatch);
+      }
+    }
+
+    private IInvntry getInventory(Long kioskId, Long materialId) {
+      return inventories.get(getKey(kioskId, materialId));
+    }
 
+    private IInvntryBatch getBatch(Long kioskId, Long materialId, String batchId) {
+      return batches.get(getKey(kioskId, materialId, batchId));
+    }
+
+    /**
+     * Keeps the batches created or replaced while applying a transaction for the next ones.
+     */
+    @SuppressWarnings("rawtypes")
+    private void track(List objects) {
+      for (Object object : objects) {
+        if (object instanceof IInvntryBatch) {
+          IInvntryBatch invBatch = (IInvntryBatch) object;
+          batches.put(getKey(invBatch.getKioskId(), invBatch.getMaterialId(),
+              invBatch.getBatchId()), invBatch);
+        }
+      }
+    }
 
+    private String getKey(Long kioskId, Long materialId) {
+      return kioskId + CharacterConstants.COLON + materialId;
+    }
 
+    private String getKey(Long kioskId, Long materialId, String batchId) {
+      return getKey(kioskId, materialId) + CharacterConstants.COLON + batchId.toUpperCase();
+    }
+  }
+
+  /**
+   * Outcome of an inventory transactions update.
+   */
+  static class TransactionResults {
+
+    final List<ITransaction> errors = new ArrayList<>(1); // holds transactions in error
+    final List<ITransaction> committed = new ArrayList<>(1);
+    private final List<IInvntry> toBeOptimized = new ArrayList<>(1);
+    private final List<IInvntry> toBePredicted;
+
+    TransactionResults(int size) {
+      toBePredicted = new ArrayList<>(size);
+    }
+  }
 }
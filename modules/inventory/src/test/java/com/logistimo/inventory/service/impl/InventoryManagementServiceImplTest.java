@@ -25,6 +25,7 @@ package com.logistimo.inventory.service.impl;
 
 import com.logistimo.auth.utils.SecurityUtils;
 import com.logistimo.config.models.ReturnsConfig;
+import com.logistimo.constants.Constants;
 import com.logistimo.dao.JDOUtils;
 import com.logistimo.exception.LogiException;
 import com.logistimo.exception.ValidationException;
@@ -36,12 +37,15 @@ import com.logistimo.inventory.entity.ITransaction;
 import com.logistimo.inventory.entity.InventoryMinMaxLog;
 import com.logistimo.inventory.entity.Invntry;
 import com.logistimo.inventory.entity.Transaction;
+import com.logistimo.inventory.models.InventoryContext;
 import com.logistimo.services.ServiceException;
 import com.logistimo.tags.dao.TagDao;
+import com.logistimo.utils.ThreadLocalUtil;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
@@ -54,6 +58,7 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
@@ -63,15 +68,22 @@ import javax.jdo.Query;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.powermock.api.mockito.PowerMockito.mockStatic;
 
@@ -433,6 +445,106 @@ public class InventoryManagementServiceImplTest {
     inventoryManagementService.fetchMinMaxLogByInterval(null,null,null,null);
   }
 
+  @Test
+  public void testGroupByLockKeysKeepsOrder() {
+    ITransaction ab1 = getTransaction(1L, 2L, ITransaction.TYPE_TRANSFER);
+    ITransaction ab2 = getTransaction(1L, 2L, ITransaction.TYPE_TRANSFER);
+    ITransaction ba = getTransaction(2L, 1L, ITransaction.TYPE_TRANSFER);
+    ITransaction ab3 = getTransaction(1L, 2L, ITransaction.TYPE_TRANSFER);
+    List<List<ITransaction>> groups = InventoryManagementServiceImpl
+        .groupByLockKeys(Arrays.asList(ab1, ab2, ba, ab3), ITransaction.TYPE_TRANSFER);
+    assertEquals(Arrays.asList(Arrays.asList(ab1, ab2), Collections.singletonList(ba),
+        Collections.singletonList(ab3)), groups);
+
+    ITransaction i1 = getTransaction(1L, null, ITransaction.TYPE_ISSUE);
+    ITransaction i2 = getTransaction(2L, null, ITransaction.TYPE_ISSUE);
+    ITransaction i3 = getTransaction(1L, null, ITransaction.TYPE_ISSUE);
+    groups = InventoryManagementServiceImpl
+        .groupByLockKeys(Arrays.asList(i1, i2, i3), ITransaction.TYPE_ISSUE);
+    assertEquals(Arrays.asList(Collections.singletonList(i1), Collections.singletonList(i2),
+        Collections.singletonList(i3)), groups);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testFailedGroupIsReplayedFromCopies() throws ServiceException {
+    InventoryManagementServiceImpl service = spy(new InventoryManagementServiceImpl());
+    ITransaction t1 = getTransaction(1L, null, ITransaction.TYPE_ISSUE);
+    ITransaction t2 = getTransaction(1L, null, ITransaction.TYPE_ISSUE);
+    List<ITransaction> group = Arrays.asList(t1, t2);
+    InventoryContext context = new InventoryContext(Collections.singletonList(
+        getInvntry(1L, 10L, 100L, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO,
+            BigDecimal.ZERO, BigDecimal.ZERO, null, null, null)));
+    // Applying the group changes the transactions before the commit fails
+    doAnswer(invocation -> {
+      for (ITransaction trans : (List<ITransaction>) invocation.getArgument(1)) {
+        trans.setOpeningStock(BigDecimal.TEN);
+        trans.setTimestamp(new Date());
+      }
+      throw new ServiceException("commit failed");
+    }).when(service).applyTransactionGroup(any(), any(), any(), anyBoolean(), any(), any(), any(),
+        any());
+    doNothing().when(service).updateEachTransaction(any(), any(), any(), anyBoolean(),
+        anyBoolean(), any(), any(), any(), anyBoolean(), any());
+    InventoryManagementServiceImpl.TransactionResults results =
+        new InventoryManagementServiceImpl.TransactionResults(group.size());
+
+    ThreadLocalUtil.get().locks.add(Constants.TX + 1L);
+    try {
+      service.commitTransactionGroup(100L, group, ITransaction.TYPE_ISSUE, false, true, context,
+          null, results, pm);
+    } finally {
+      ThreadLocalUtil.get().locks.remove(Constants.TX + 1L);
+    }
+
+    ArgumentCaptor<List> replayed = ArgumentCaptor.forClass(List.class);
+    verify(service).updateEachTransaction(eq(100L), replayed.capture(),
+        eq(ITransaction.TYPE_ISSUE), eq(false), eq(true), eq(context), any(), eq(results),
+        eq(true), eq(pm));
+    List<ITransaction> copies = replayed.getValue();
+    assertEquals(2, copies.size());
+    for (int i = 0; i < copies.size(); i++) {
+      ITransaction copy = copies.get(i);
+      assertNotSame(group.get(i), copy);
+      assertEquals(group.get(i).getKioskId(), copy.getKioskId());
+      assertEquals(group.get(i).getQuantity(), copy.getQuantity());
+      assertEquals(BigDecimal.ZERO, copy.getOpeningStock());
+      assertNull(copy.getTimestamp());
+    }
+    assertNull("Supplied inventories should be read again after a failed group",
+        context.getInventory(1L, 10L));
+    assertTrue(results.committed.isEmpty());
+  }
+
+  @Test
+  public void testCommittedGroupIsNotReplayed() throws ServiceException {
+    InventoryManagementServiceImpl service = spy(new InventoryManagementServiceImpl());
+    ITransaction t1 = getTransaction(1L, null, ITransaction.TYPE_RECEIPT);
+    doReturn(new ArrayList<>()).when(service).applyTransactionGroup(any(), any(), any(),
+        anyBoolean(), any(), any(), any(), any());
+    InventoryContext context = new InventoryContext();
+    ThreadLocalUtil.get().locks.add(Constants.TX + 1L);
+    try {
+      service.commitTransactionGroup(100L, Collections.singletonList(t1),
+          ITransaction.TYPE_RECEIPT, false, true, context, null,
+          new InventoryManagementServiceImpl.TransactionResults(1), pm);
+    } finally {
+      ThreadLocalUtil.get().locks.remove(Constants.TX + 1L);
+    }
+    verify(service, never()).updateEachTransaction(any(), any(), any(), anyBoolean(),
+        anyBoolean(), any(), any(), any(), anyBoolean(), any());
+  }
+
+  private ITransaction getTransaction(Long kioskId, Long linkedKioskId, String type) {
+    ITransaction transaction = new Transaction();
+    transaction.setKioskId(kioskId);
+    transaction.setLinkedKioskId(linkedKioskId);
+    transaction.setMaterialId(10L);
+    transaction.setQuantity(BigDecimal.ONE);
+    transaction.setType(type);
+    return transaction;
+  }
+
   private IInventoryMinMaxLog getInventoryMinMaxLog(Date date) throws ParseException{
     InventoryMinMaxLog inventoryMinMaxLog = new InventoryMinMaxLog();
     inventoryMinMaxLog.setKioskId(1l);
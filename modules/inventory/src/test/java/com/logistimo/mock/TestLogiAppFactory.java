@@ -31,18 +31,22 @@ import com.logistimo.models.ICounter;
 import com.logistimo.reports.dao.IReportsDao;
 import com.logistimo.services.IBackendService;
 import com.logistimo.services.blobstore.BlobstoreService;
+import com.logistimo.services.cache.InMemoryLockService;
+import com.logistimo.services.cache.InMemoryMemcacheService;
+import com.logistimo.services.cache.LockService;
 import com.logistimo.services.cache.MemcacheService;
 import com.logistimo.services.http.URLFetchService;
 import com.logistimo.services.mapred.IMapredService;
 import com.logistimo.services.storage.StorageUtil;
 import com.logistimo.services.taskqueue.ITaskService;
 
-import static org.mockito.Mockito.mock;
-
 /**
  * Created by charan on 14/11/17.
  */
 public class TestLogiAppFactory extends AppFactory {
+
+  private final MemcacheService memcacheService = new InMemoryMemcacheService();
+
   @Override
   public ILogger getLogger(String name) {
     return null;
@@ -65,7 +69,15 @@ public class TestLogiAppFactory extends AppFactory {
 
   @Override
   public MemcacheService getMemcacheService() {
-    return mock(MemcacheService.class);
+    return memcacheService;
+  }
+
+  @Override
+  public LockService getLockService() {
+    if (lockService == null) {
+      lockService = new InMemoryLockService();
+    }
+    return lockService;
   }
 
   @Override
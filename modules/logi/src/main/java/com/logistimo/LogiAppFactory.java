@@ -37,16 +37,20 @@ import com.logistimo.services.IBackendService;
 import com.logistimo.services.LogiBackendService;
 import com.logistimo.services.blobstore.BlobstoreService;
 import com.logistimo.services.blobstore.HDFSBlobStoreService;
+import com.logistimo.services.cache.LockService;
 import com.logistimo.services.cache.MemcacheService;
+import com.logistimo.services.cache.RedisLockService;
 import com.logistimo.services.cache.RedisMemcacheService;
 import com.logistimo.services.http.LogiURLFetchService;
 import com.logistimo.services.http.URLFetchService;
 import com.logistimo.services.mapper.MapredService;
 import com.logistimo.services.mapred.IMapredService;
 import com.logistimo.services.storage.HDFSStorageUtil;
+import com.logistimo.services.storage.LocalStorageUtil;
 import com.logistimo.services.storage.StorageUtil;
 import com.logistimo.services.taskqueue.ITaskService;
 import com.logistimo.services.taskqueue.TaskService;
+import com.logistimo.services.utils.ConfigUtil;
 import com.logistimo.services.utils.LogiCounter;
 
 /**
@@ -73,7 +77,12 @@ public class LogiAppFactory extends AppFactory {
   @Override
   public StorageUtil getStorageUtil() {
     if (storageUtil == null) {
-      storageUtil = new HDFSStorageUtil();
+      if ("local".equals(ConfigUtil.get("storage.type", "hdfs"))) {
+        storageUtil = new LocalStorageUtil(ConfigUtil.get("storage.local.root.path",
+            System.getProperty("java.io.tmpdir") + "/logistimo"));
+      } else {
+        storageUtil = new HDFSStorageUtil();
+      }
     }
     return storageUtil;
   }
@@ -94,6 +103,14 @@ public class LogiAppFactory extends AppFactory {
     return memCacheService;
   }
 
+  @Override
+  public LockService getLockService() {
+    if (lockService == null) {
+      lockService = new RedisLockService((RedisMemcacheService) getMemcacheService());
+    }
+    return lockService;
+  }
+
   @Override
   public BlobstoreService getBlobstoreService() {
     if (blobStoreService == null) {
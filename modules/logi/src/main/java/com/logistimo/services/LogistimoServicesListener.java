@@ -190,7 +190,9 @@ public class LogistimoServicesListener implements ServletContextListener {
       _logger.warn("Exception while closing HDFSBlobstoreService", e);
     }
     try {
-      ((HDFSStorageUtil) AppFactory.get().getStorageUtil()).close();
+      if (AppFactory.get().getStorageUtil() instanceof HDFSStorageUtil) {
+        ((HDFSStorageUtil) AppFactory.get().getStorageUtil()).close();
+      }
     } catch (Exception e) {
       _logger.warn("Exception while closing HDFSStorageUtil", e);
     }
@@ -25,7 +25,6 @@ package com.logistimo.services.blobstore;
 
 
 import com.google.common.io.ByteStreams;
-import com.google.common.io.CountingInputStream;
 
 import com.logistimo.logger.XLog;
 import com.logistimo.services.files.AppEngineFile;
@@ -54,6 +53,7 @@ import java.util.Calendar;
 import java.util.Date;
 import java.util.Properties;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 /**
@@ -122,13 +122,22 @@ public class HDFSBlobStoreService extends CommonBlobStoreService {
   }
 
 
+  /**
+   * Reads up to {@code l} bytes of the blob starting at {@code startIndex}, without reading the
+   * bytes before it. Returns fewer bytes if the blob ends earlier.
+   */
   public byte[] fetchData(String blobKey, long startIndex, long l) {
-    CountingInputStream inputStream = new CountingInputStream(getInputStream(blobKey));
+    FSDataInputStream inputStream = (FSDataInputStream) getInputStream(blobKey);
+    if (inputStream == null) {
+      return new byte[0];
+    }
     byte[] bytes = new byte[(int) l];
+    int total = 0;
     try {
-      int readSize = inputStream.read(bytes, (int) startIndex, (int) l);
-      if (readSize < l) {
-        bytes = ArrayUtils.subarray(bytes, 0, readSize - 1);
+      int read;
+      while (total < l
+          && (read = inputStream.read(startIndex + total, bytes, total, (int) l - total)) > 0) {
+        total += read;
       }
     } catch (IOException e) {
       LOGGER.warn("Failed to read bytes", e);
@@ -139,7 +148,7 @@ public class HDFSBlobStoreService extends CommonBlobStoreService {
         LOGGER.warn("Exception while closing inputStream", ignored);
       }
     }
-    return bytes;
+    return total < l ? ArrayUtils.subarray(bytes, 0, total) : bytes;
   }
 
   public void delete(String blobKeyStr) {
@@ -341,19 +350,130 @@ public class HDFSBlobStoreService extends CommonBlobStoreService {
 
   // Serve a blob over a HTTP response channel
   public void serve(String blobKeyStr, HttpServletResponse resp) throws IOException {
+    serve(blobKeyStr, null, resp);
+  }
+
+  // Stream a blob, or the single byte range requested, over a HTTP response channel
+  @Override
+  public void serve(String blobKeyStr, HttpServletRequest req, HttpServletResponse resp)
+      throws IOException {
     LOGGER.fine("Entering serve");
     BlobInfo bInfo = getBlobInfo(blobKeyStr);
-    if (bInfo != null) {
-      resp.setContentType(bInfo.getContentType());
-      resp.setContentLength((int) bInfo.getSize());
-      byte[] bytes = fetchFull(blobKeyStr);
-      resp.getOutputStream().write(bytes);
-    } else {
+    if (bInfo == null) {
+      resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+      return;
+    }
+    long size = bInfo.getSize();
+    String eTag = getETag(bInfo);
+    resp.setHeader("ETag", eTag);
+    resp.setHeader("Accept-Ranges", "bytes");
+    if (req != null && matches(req.getHeader("If-None-Match"), eTag)) {
+      resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      return;
+    }
+    long start = 0;
+    long end = size - 1;
+    String range = req != null ? req.getHeader("Range") : null;
+    String ifRange = req != null ? req.getHeader("If-Range") : null;
+    if (range != null && (ifRange == null || ifRange.equals(eTag))) {
+      long[] bounds = parseRange(range, size);
+      if (bounds == null) {
+        resp.setHeader("Content-Range", "bytes */" + size);
+        resp.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+        return;
+      }
+      if (bounds.length == 2) {
+        start = bounds[0];
+        end = bounds[1];
+        resp.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        resp.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + size);
+      }
+    }
+    resp.setContentType(bInfo.getContentType());
+    resp.setHeader("Content-Length", String.valueOf(end - start + 1));
+    FSDataInputStream inputStream = (FSDataInputStream) getInputStream(blobKeyStr);
+    if (inputStream == null) {
       resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+      return;
+    }
+    try {
+      if (start > 0) {
+        inputStream.seek(start);
+      }
+      ByteStreams.copy(ByteStreams.limit(inputStream, end - start + 1), resp.getOutputStream());
+    } finally {
+      try {
+        inputStream.close();
+      } catch (IOException e) {
+        LOGGER.warn("Exception while closing inputStream", e);
+      }
     }
     LOGGER.fine("Exiting serve");
   }
 
+  private static String getETag(BlobInfo bInfo) {
+    return "\"" + DigestUtils.md5Hex(bInfo.getBlobKey().getKeyString() + ":" + bInfo.getSize()
+        + ":" + (bInfo.getCreation() != null ? bInfo.getCreation().getTime() : 0)) + "\"";
+  }
+
+  private static boolean matches(String ifNoneMatch, String eTag) {
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    for (String tag : ifNoneMatch.split(",")) {
+      tag = tag.trim();
+      if ("*".equals(tag) || eTag.equals(tag) || ("W/" + eTag).equals(tag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Parses a single byte range. Returns {start, end}, an empty array if the header should be
+   * ignored (malformed, last byte before first byte or multiple ranges), or null if the range cannot
+   * be satisfied. Ignoring the header serves the whole blob (RFC 7233, 2.1 and 3.1).
+   */
+  static long[] parseRange(String range, long size) {
+    if (!range.startsWith("bytes=") || range.indexOf(',') >= 0) {
+      return new long[0];
+    }
+    String spec = range.substring("bytes=".length()).trim();
+    int dash = spec.indexOf('-');
+    if (dash < 0) {
+      return new long[0];
+    }
+    try {
+      long start;
+      long end;
+      if (dash == 0) {
+        // Suffix range, the last n bytes
+        long suffix = Long.parseLong(spec.substring(1));
+        if (suffix <= 0) {
+          return null;
+        }
+        start = Math.max(size - suffix, 0);
+        end = size - 1;
+      } else {
+        start = Long.parseLong(spec.substring(0, dash));
+        end = size - 1;
+        if (dash < spec.length() - 1) {
+          long last = Long.parseLong(spec.substring(dash + 1));
+          if (last < start) {
+            return new long[0];
+          }
+          end = Math.min(last, end);
+        }
+      }
+      if (start >= size || start > end) {
+        return null;
+      }
+      return new long[]{start, end};
+    } catch (NumberFormatException e) {
+      return new long[0];
+    }
+  }
+
   public void close() {
     if (fileSystem != null) {
       try {
@@ -0,0 +1,229 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.services.cache;
+
+import com.codahale.metrics.Meter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.logistimo.logger.XLog;
+import com.logistimo.utils.MetricsUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.regex.Pattern;
+
+/**
+ * In-JVM tier in front of Redis. Only keys starting with one of the configured prefixes are kept
+ * locally, each prefix in its own region with its own size and expiry. Regions are configured as a
+ * CSV of prefix:maxEntries:expirySeconds, e.g. config.:2000:300
+ *
+ * Values are shared by reference between callers, so regions should only be configured for
+ * keys whose cached objects are not modified in place. Local copies are dropped through
+ * invalidation messages published on every write (see RedisMemcacheService); the region expiry
+ * bounds staleness if a message is missed.
+ *
+ * Invalidations bump a generation per key (striped by hash), or all of them for patterns and
+ * clears. A value read from Redis is kept only if no invalidation of its key arrived since the
+ * read started, see {@link #stamp} and {@link #put}.
+ */
+class NearCache {
+
+  static final String KEY_MESSAGE = "K:";
+  static final String PATTERN_MESSAGE = "P:";
+  static final String CLEAR_MESSAGE = "C:";
+
+  private static final XLog LOGGER = XLog.getLog(NearCache.class);
+
+  private static final int GENERATION_STRIPES = 256;
+
+  private final List<Region> regions = new ArrayList<>();
+  private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+  private final AtomicLong epoch = new AtomicLong();
+
+  NearCache(String[] regionConfigs) {
+    for (String regionConfig : regionConfigs) {
+      String[] parts = regionConfig.trim().split(":");
+      if (parts.length != 3) {
+        LOGGER.warn("Ignoring invalid near cache region {0}", regionConfig);
+        continue;
+      }
+      regions.add(new Region(parts[0], Long.parseLong(parts[1]), Long.parseLong(parts[2])));
+    }
+    LOGGER.info("Near cache enabled for {0} regions", regions.size());
+  }
+
+  /**
+   * Glob-style pattern as used by redis KEYS to a java regex. Only * and ? are supported.
+   */
+  static Pattern toRegex(String glob) {
+    StringBuilder regex = new StringBuilder(glob.length() + 8);
+    for (char c : glob.toCharArray()) {
+      switch (c) {
+        case '*':
+          regex.append(".*");
+          break;
+        case '?':
+          regex.append('.');
+          break;
+        default:
+          regex.append(Pattern.quote(String.valueOf(c)));
+      }
+    }
+    return Pattern.compile(regex.toString());
+  }
+
+  boolean isEmpty() {
+    return regions.isEmpty();
+  }
+
+  boolean isCached(String key) {
+    return getRegion(key) != null;
+  }
+
+  Object get(String key) {
+    Region region = getRegion(key);
+    if (region == null) {
+      return null;
+    }
+    Object value = region.cache.getIfPresent(key);
+    if (value != null) {
+      region.hits.mark();
+    } else {
+      region.misses.mark();
+    }
+    return value;
+  }
+
+  /**
+   * Generation of the key, to be taken before reading the value from Redis.
+   */
+  long stamp(String key) {
+    return generations.get(getStripe(key)) + epoch.get();
+  }
+
+  /**
+   * Keeps the value read from Redis, unless the key was invalidated after the stamp was taken.
+   */
+  void put(String key, Object value, long stamp) {
+    Region region = getRegion(key);
+    if (region != null && value != null && stamp(key) == stamp) {
+      region.cache.put(key, value);
+      if (stamp(key) != stamp) {
+        // Invalidated while being put
+        region.cache.invalidate(key);
+      }
+    }
+  }
+
+  void invalidate(String key) {
+    Region region = getRegion(key);
+    if (region != null) {
+      generations.incrementAndGet(getStripe(key));
+      region.cache.invalidate(key);
+    }
+  }
+
+  void invalidatePattern(String glob) {
+    Pattern pattern = toRegex(glob);
+    epoch.incrementAndGet();
+    for (Region region : regions) {
+      for (String key : region.cache.asMap().keySet()) {
+        if (pattern.matcher(key).matches()) {
+          region.cache.invalidate(key);
+        }
+      }
+    }
+  }
+
+  void clear() {
+    epoch.incrementAndGet();
+    for (Region region : regions) {
+      region.cache.invalidateAll();
+    }
+  }
+
+  /**
+   * Applies an invalidation message received from the channel
+   */
+  void onMessage(String message) {
+    if (message.startsWith(KEY_MESSAGE)) {
+      invalidate(message.substring(KEY_MESSAGE.length()));
+    } else if (message.startsWith(PATTERN_MESSAGE)) {
+      invalidatePattern(message.substring(PATTERN_MESSAGE.length()));
+    } else if (message.startsWith(CLEAR_MESSAGE)) {
+      clear();
+    } else {
+      LOGGER.warn("Unknown near cache message {0}", message);
+    }
+  }
+
+  private static int getStripe(String key) {
+    return (key.hashCode() & Integer.MAX_VALUE) % GENERATION_STRIPES;
+  }
+
+  private Region getRegion(String key) {
+    Region match = null;
+    for (Region region : regions) {
+      if (key.startsWith(region.prefix)
+          && (match == null || region.prefix.length() > match.prefix.length())) {
+        match = region;
+      }
+    }
+    return match;
+  }
+
+  private static class Region {
+
+    private final String prefix;
+    private final Cache<String, Object> cache;
+    private final Meter hits;
+    private final Meter misses;
+    private final Meter evictions;
+
+    Region(String prefix, long maxEntries, long expirySeconds) {
+      this.prefix = prefix;
+      String name = "nearcache." + prefix.replaceAll("[^A-Za-z0-9]", "");
+      this.hits = MetricsUtil.getMeter(NearCache.class, name + ".hits");
+      this.misses = MetricsUtil.getMeter(NearCache.class, name + ".misses");
+      this.evictions = MetricsUtil.getMeter(NearCache.class, name + ".evictions");
+      this.cache = CacheBuilder.newBuilder()
+          .maximumSize(maxEntries)
+          .expireAfterWrite(expirySeconds, TimeUnit.SECONDS)
+          .removalListener(new RemovalListener<String, Object>() {
+            @Override
+            public void onRemoval(RemovalNotification<String, Object> notification) {
+              if (notification.wasEvicted()) {
+                evictions.mark();
+              }
+            }
+          })
+          .build();
+    }
+  }
+}
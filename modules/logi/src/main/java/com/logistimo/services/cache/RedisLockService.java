@@ -0,0 +1,236 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.services.cache;
+
+import com.logistimo.logger.XLog;
+import com.logistimo.services.utils.ConfigUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPubSub;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.util.Pool;
+
+/**
+ * Lock service on the redis used for caching. Lock keys hold the fencing token of their owner,
+ * which is taken from a shared counter. Releases are published on lock.channel so waiting threads
+ * on every node retry right away.
+ */
+public class RedisLockService extends AbstractLockService {
+
+  private static final XLog LOGGER = XLog.getLog(RedisLockService.class);
+  private static final String TOKEN_KEY = "lock.token";
+  private static final String KEY_SEPARATOR = ",";
+  private static final String LOCK_SCRIPT =
+      "for i, key in ipairs(KEYS) do"
+          + "  if redis.call('exists', key) == 1 then"
+          + "    local ttl = redis.call('pttl', key)"
+          + "    if ttl < 0 then ttl = 0 end"
+          + "    return -ttl"
+          + "  end"
+          + " end"
+          + " local token = redis.call('incr', '" + TOKEN_KEY + "')"
+          + " for i, key in ipairs(KEYS) do"
+          + "  redis.call('set', key, token, 'PX', ARGV[1])"
+          + " end"
+          + " return token";
+  private static final String UNLOCK_SCRIPT =
+      "local released = 0"
+          + " for i, key in ipairs(KEYS) do"
+          + "  if redis.call('get', key) == ARGV[1] then"
+          + "    redis.call('del', key)"
+          + "    released = released + 1"
+          + "  end"
+          + " end"
+          + " if released > 0 then redis.call('publish', ARGV[2], table.concat(KEYS, ',')) end"
+          + " return released";
+  private static final String FORCE_UNLOCK_SCRIPT =
+      "local released = redis.call('del', unpack(KEYS))"
+          + " if released > 0 then redis.call('publish', ARGV[1], table.concat(KEYS, ',')) end"
+          + " return released";
+  private static final String RENEW_SCRIPT =
+      "local renewed = 0"
+          + " for i, key in ipairs(KEYS) do"
+          + "  if redis.call('get', key) == ARGV[1] then"
+          + "    redis.call('pexpire', key, ARGV[2])"
+          + "    renewed = renewed + 1"
+          + "  end"
+          + " end"
+          + " return renewed";
+
+  private final RedisMemcacheService cache;
+  private final Pool<Jedis> pool;
+  private final String channel;
+  private volatile JedisPubSub releaseListener;
+  private volatile boolean closed;
+
+  public RedisLockService(RedisMemcacheService cache) {
+    this.cache = cache;
+    this.pool = cache.pool;
+    this.channel = ConfigUtil.get("lock.channel", "lock.release");
+    startReleaseListener();
+  }
+
+  @Override
+  protected long tryLock(List<String> keys, long leaseMillis) {
+    Jedis jedis = null;
+    try {
+      jedis = pool.getResource();
+      Long result = (Long) jedis.eval(LOCK_SCRIPT, keys,
+          Collections.singletonList(String.valueOf(leaseMillis)));
+      pool.returnResource(jedis);
+      return result;
+    } catch (Exception e) {
+      LOGGER.warn("Failed to lock {0}", keys, e);
+      pool.returnBrokenResource(jedis);
+    }
+    return 0;
+  }
+
+  @Override
+  protected List<Long> tryLockEach(List<String> keys, long leaseMillis) {
+    List<Long> results = new ArrayList<>(keys.size());
+    Jedis jedis = null;
+    try {
+      jedis = pool.getResource();
+      Pipeline pipeline = jedis.pipelined();
+      List<String> args = Collections.singletonList(String.valueOf(leaseMillis));
+      List<Response<?>> responses = new ArrayList<>(keys.size());
+      for (String key : keys) {
+        responses.add(pipeline.eval(LOCK_SCRIPT, Collections.singletonList(key), args));
+      }
+      pipeline.sync();
+      pool.returnResource(jedis);
+      for (Response<?> response : responses) {
+        results.add((Long) response.get());
+      }
+    } catch (Exception e) {
+      LOGGER.warn("Failed to lock {0}", keys, e);
+      pool.returnBrokenResource(jedis);
+      results.clear();
+      keys.forEach(key -> results.add(0L));
+    }
+    return results;
+  }
+
+  @Override
+  protected boolean unlock(List<String> keys, long token) {
+    Jedis jedis = null;
+    try {
+      jedis = pool.getResource();
+      Long released = (Long) jedis.eval(UNLOCK_SCRIPT, keys,
+          Arrays.asList(String.valueOf(token), channel));
+      pool.returnResource(jedis);
+      return released > 0;
+    } catch (Exception e) {
+      LOGGER.warn("Failed to unlock {0}", keys, e);
+      pool.returnBrokenResource(jedis);
+    }
+    return false;
+  }
+
+  @Override
+  protected boolean forceUnlock(List<String> keys) {
+    Jedis jedis = null;
+    try {
+      jedis = pool.getResource();
+      Long released = (Long) jedis.eval(FORCE_UNLOCK_SCRIPT, keys,
+          Collections.singletonList(channel));
+      pool.returnResource(jedis);
+      return released > 0;
+    } catch (Exception e) {
+      LOGGER.warn("Failed to unlock {0}", keys, e);
+      pool.returnBrokenResource(jedis);
+    }
+    return false;
+  }
+
+  @Override
+  protected boolean renew(List<String> keys, long token, long leaseMillis) {
+    Jedis jedis = null;
+    try {
+      jedis = pool.getResource();
+      Long renewed = (Long) jedis.eval(RENEW_SCRIPT, keys,
+          Arrays.asList(String.valueOf(token), String.valueOf(leaseMillis)));
+      pool.returnResource(jedis);
+      return renewed == keys.size();
+    } catch (Exception e) {
+      pool.returnBrokenResource(jedis);
+      throw e;
+    }
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    JedisPubSub listener = releaseListener;
+    if (listener != null && listener.isSubscribed()) {
+      listener.unsubscribe();
+    }
+    super.close();
+  }
+
+  private void startReleaseListener() {
+    Thread listenerThread = new Thread(() -> {
+      while (!closed) {
+        Jedis jedis = null;
+        try {
+          jedis = cache.getSubscriberConnection();
+          releaseListener = new JedisPubSub() {
+            @Override
+            public void onMessage(String channel, String message) {
+              onReleased(Arrays.asList(message.split(KEY_SEPARATOR)));
+            }
+
+            @Override
+            public void onSubscribe(String channel, int subscribedChannels) {
+              // Releases may have been missed while not subscribed
+              signalAll();
+            }
+          };
+          jedis.subscribe(releaseListener, channel);
+        } catch (Exception e) {
+          LOGGER.warn("Lock release listener disconnected from channel {0}", channel, e);
+          try {
+            Thread.sleep(5000);
+          } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return;
+          }
+        } finally {
+          if (jedis != null) {
+            jedis.close();
+          }
+        }
+      }
+    }, "lock-release-listener");
+    listenerThread.setDaemon(true);
+    listenerThread.start();
+  }
+}
@@ -33,22 +33,26 @@ import com.logistimo.utils.MetricsUtil;
 import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
 import org.springframework.stereotype.Component;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.ObjectInput;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 
+import redis.clients.jedis.HostAndPort;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.JedisPubSub;
 import redis.clients.jedis.JedisSentinelPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
 import redis.clients.jedis.Transaction;
 import redis.clients.jedis.ZParams;
 import redis.clients.util.Pool;
@@ -66,6 +70,44 @@ public class RedisMemcacheService implements MemcacheService {
       DOUBLE_LOCK_SCRIPT =
       "if redis.call('get',KEYS[1]) == false then if redis.call('get',KEYS[2]) == false  then redis.call('setex',KEYS[1],30,ARGV[1]) redis.call('setex',KEYS[2],30,ARGV[2]) return 1 else return 0 end else return 0 end"
           .getBytes();
+  /**
+   * KEYS: shared counter, member counters, dedup keys. ARGV: shared limit, member limit, dedup
+   * expiry, counter expiry, member count. Returns the ordinal of the {@link LimitVerdict} of each
+   * member.
+   */
+  private static final byte[] LIMIT_SCRIPT = ("local n = tonumber(ARGV[5])"
+      + " local shared = tonumber(redis.call('get', KEYS[1]) or '0')"
+      + " local verdicts = {}"
+      + " for i = 1, n do"
+      + "   local member = KEYS[i + 1]"
+      + "   local dedup = KEYS[i + 1 + n]"
+      + "   if tonumber(redis.call('get', member) or '0') >= tonumber(ARGV[2]) then"
+      + "     verdicts[i] = 1"
+      + "   elseif shared >= tonumber(ARGV[1]) then"
+      + "     verdicts[i] = 2"
+      + "   elseif tonumber(ARGV[3]) > 0 and redis.call('exists', dedup) == 1 then"
+      + "     verdicts[i] = 3"
+      + "   else"
+      + "     redis.call('incr', member)"
+      + "     redis.call('expire', member, ARGV[4])"
+      + "     shared = redis.call('incr', KEYS[1])"
+      + "     if tonumber(ARGV[3]) > 0 then redis.call('setex', dedup, ARGV[3], '1') end"
+      + "     verdicts[i] = 0"
+      + "   end"
+      + " end"
+      + " redis.call('expire', KEYS[1], ARGV[4])"
+      + " return verdicts").getBytes();
+  private static final byte[] UNLIMIT_SCRIPT = ("local n = tonumber(ARGV[1])"
+      + " for i = 1, n do"
+      + "   if tonumber(redis.call('get', KEYS[i + 1]) or '0') > 0 then"
+      + "     redis.call('decr', KEYS[i + 1])"
+      + "   end"
+      + "   if tonumber(redis.call('get', KEYS[1]) or '0') > 0 then"
+      + "     redis.call('decr', KEYS[1])"
+      + "   end"
+      + "   redis.call('del', KEYS[i + 1 + n])"
+      + " end"
+      + " return n").getBytes();
   private static final String DELETE_SCRIPT_IN_LUA = "local keys = redis.call('keys', '%s')" +
       "  for i,k in ipairs(keys) do" +
       "    local res = redis.call('del', k)" +
@@ -78,7 +120,12 @@ public class RedisMemcacheService implements MemcacheService {
   private static byte[] MIN_INF = SafeEncoder.encode("-inf");
   private static byte[] MAX_INF = SafeEncoder.encode("+inf");
   private final int expiry;
+  private final CacheCodec codec;
   Pool<Jedis> pool = null;
+  private NearCache nearCache;
+  private String invalidationChannel;
+  private volatile JedisPubSub invalidationListener;
+  private volatile boolean closed;
 
 
   public RedisMemcacheService() {
@@ -95,10 +142,34 @@ public class RedisMemcacheService implements MemcacheService {
               ConfigUtil.getInt("redis.server.port", 6379), 5000, null, 0);
     }
     expiry = ConfigUtil.getInt("cache.expiry", 84400);
+    codec = new VersionedCacheCodec(ConfigUtil.get("cache.codec", VersionedCacheCodec.JAVA),
+        ConfigUtil.getCSVArray("cache.codec.kryo.classes", new String[0]));
+    if (ConfigUtil.getBoolean("cache.near.enabled", false)) {
+      nearCache = new NearCache(ConfigUtil.getCSVArray("cache.near.regions", new String[0]));
+      if (nearCache.isEmpty()) {
+        nearCache = null;
+      }
+    }
+    // Local caches outside this service, like the DataNucleus level 2 cache, share the channel
+    boolean level2Cache =
+        !"none".equalsIgnoreCase(ConfigUtil.get("datanucleus.cache.level2.type", "none"));
+    if (nearCache != null || level2Cache) {
+      invalidationChannel = ConfigUtil.get("cache.near.channel", "cache.invalidate");
+      InvalidationBus.setPublisher(this::publish);
+      startInvalidationListener();
+    }
   }
 
   @Override
   public Object get(String cacheKey) {
+    long stamp = 0;
+    if (nearCache != null) {
+      Object value = nearCache.get(cacheKey);
+      if (value != null) {
+        return value;
+      }
+      stamp = nearCache.stamp(cacheKey);
+    }
     cacheMeter.mark();
     Timer.Context context = timer.time();
     Jedis jedis = null;
@@ -107,6 +178,9 @@ public class RedisMemcacheService implements MemcacheService {
       jedis = pool.getResource();
       value = getObject(jedis.get(cacheKey.getBytes()));
       pool.returnResource(jedis);
+      if (nearCache != null) {
+        nearCache.put(cacheKey, value, stamp);
+      }
     } catch (Exception e) {
       LOGGER.warn("Failed to get key from cache {0}", cacheKey, e);
       pool.returnBrokenResource(jedis);
@@ -116,6 +190,60 @@ public class RedisMemcacheService implements MemcacheService {
     return value;
   }
 
+  @Override
+  public Map<String, Object> getMulti(Collection<String> cacheKeys) {
+    Map<String, Object> values = new HashMap<>(cacheKeys.size());
+    List<String> keys = new ArrayList<>(cacheKeys.size());
+    long[] stamps = new long[cacheKeys.size()];
+    for (String cacheKey : cacheKeys) {
+      Object value = nearCache != null ? nearCache.get(cacheKey) : null;
+      if (value != null) {
+        values.put(cacheKey, value);
+      } else {
+        if (nearCache != null) {
+          stamps[keys.size()] = nearCache.stamp(cacheKey);
+        }
+        keys.add(cacheKey);
+      }
+    }
+    if (keys.isEmpty()) {
+      return values;
+    }
+    cacheMeter.mark();
+    Timer.Context context = timer.time();
+    Jedis jedis = null;
+    List<byte[]> response;
+    try {
+      jedis = pool.getResource();
+      byte[][] keyBytes = new byte[keys.size()][];
+      for (int i = 0; i < keys.size(); i++) {
+        keyBytes[i] = keys.get(i).getBytes();
+      }
+      response = jedis.mget(keyBytes);
+      pool.returnResource(jedis);
+    } catch (Exception e) {
+      LOGGER.warn("Failed to get keys from cache {0}", keys, e);
+      pool.returnBrokenResource(jedis);
+      return values;
+    } finally {
+      context.stop();
+    }
+    for (int i = 0; i < keys.size(); i++) {
+      try {
+        Object value = getObject(response.get(i));
+        if (value != null) {
+          values.put(keys.get(i), value);
+          if (nearCache != null) {
+            nearCache.put(keys.get(i), value, stamps[i]);
+          }
+        }
+      } catch (IOException e) {
+        LOGGER.warn("Failed to get key from cache {0}", keys.get(i), e);
+      }
+    }
+    return values;
+  }
+
   @Override
   public void put(String cacheKey, Object obj) {
     put(cacheKey, obj, expiry);
@@ -128,12 +256,84 @@ public class RedisMemcacheService implements MemcacheService {
       jedis = pool.getResource();
       jedis.setex(cacheKey.getBytes(), expiry, getBytes(obj));
       pool.returnResource(jedis);
+      invalidate(cacheKey);
     } catch (Exception e) {
       LOGGER.warn("Failed to put key in cache {0}", cacheKey, e);
       pool.returnBrokenResource(jedis);
     }
   }
 
+  @Override
+  public void putMulti(Map<String, Object> objects, Map<String, Integer> expiries) {
+    if (objects.isEmpty()) {
+      return;
+    }
+    pipeline(commands -> objects.forEach((cacheKey, obj) -> {
+      Integer keyExpiry = expiries != null ? expiries.get(cacheKey) : null;
+      commands.put(cacheKey, obj, keyExpiry != null ? keyExpiry : expiry);
+    }));
+  }
+
+  @Override
+  public List<Object> pipeline(Consumer<CachePipeline> commands) {
+    RedisPipeline redisPipeline = new RedisPipeline();
+    commands.accept(redisPipeline);
+    List<PipelineCommand> queued = redisPipeline.commands;
+    List<Object> results = new ArrayList<>(queued.size());
+    if (queued.isEmpty()) {
+      return results;
+    }
+    cacheMeter.mark();
+    Timer.Context context = timer.time();
+    Jedis jedis = null;
+    List<Response<?>> responses = new ArrayList<>(queued.size());
+    try {
+      jedis = pool.getResource();
+      Pipeline pipeline = jedis.pipelined();
+      for (PipelineCommand command : queued) {
+        responses.add(command.queue(pipeline));
+      }
+      pipeline.sync();
+      pool.returnResource(jedis);
+    } catch (Exception e) {
+      LOGGER.warn("Failed to execute pipeline of {0} commands", queued.size(), e);
+      pool.returnBrokenResource(jedis);
+      for (PipelineCommand command : queued) {
+        results.add(command.type == CommandType.GET ? null : Boolean.FALSE);
+      }
+      return results;
+    } finally {
+      context.stop();
+    }
+    for (int i = 0; i < queued.size(); i++) {
+      PipelineCommand command = queued.get(i);
+      Object response = responses.get(i).get();
+      switch (command.type) {
+        case GET:
+          try {
+            results.add(getObject((byte[]) response));
+          } catch (IOException e) {
+            LOGGER.warn("Failed to get key from cache {0}", command.key, e);
+            results.add(null);
+          }
+          break;
+        case PUT:
+          results.add(Boolean.TRUE);
+          invalidate(command.key);
+          break;
+        case PUT_IF_NOT_EXIST:
+          results.add(Constants.OK.equals(response));
+          invalidate(command.key);
+          break;
+        case DELETE:
+          results.add((Long) response >= 1);
+          invalidate(command.key);
+          break;
+      }
+    }
+    return results;
+  }
+
   @Override
   public boolean putIfNotExist(String cacheKey, Object obj) {
     Jedis jedis = null;
@@ -150,12 +350,7 @@ public class RedisMemcacheService implements MemcacheService {
   }
 
   private byte[] getBytes(Object obj) throws IOException {
-    ByteArrayOutputStream bos = new ByteArrayOutputStream();
-    ObjectOutputStream outputStream;
-    outputStream = new ObjectOutputStream(bos);
-    outputStream.writeObject(obj);
-    return bos.toByteArray();
-
+    return codec.encode(obj);
   }
 
   @Override
@@ -179,39 +374,80 @@ public class RedisMemcacheService implements MemcacheService {
     return false;
   }
 
-  private Object getObject(byte[] bytes) throws IOException {
-    Object o = null;
-    if (bytes != null) {
-      ByteArrayInputStream bis = new ByteArrayInputStream(bytes);
-      ObjectInput in = null;
-
-      try {
-        in = new ObjectInputStream(bis);
-        o = in.readObject();
-      } catch (ClassNotFoundException e) {
-        LOGGER.warn("Failed to convert object", e);
-        throw new IOException(e);
-      } catch (IOException e) {
-        LOGGER.warn("Failed to convert object", e);
-        throw new IOException(e);
-      } finally {
-        try {
-          bis.close();
-        } catch (IOException ex) {
-          // ignore close exception
-          LOGGER.warn("Exception while trying to close bis", ex);
-        }
-        try {
-          if (in != null) {
-            in.close();
-          }
-        } catch (IOException ex) {
-          // ignore close exception
-          LOGGER.warn("Exception while trying to close in", ex);
-        }
+  @Override
+  public List<LimitVerdict> incrementWithinLimits(String sharedKey, int sharedLimit,
+                                                  List<String> memberKeys, int memberLimit,
+                                                  List<String> dedupKeys, int dedupExpiry,
+                                                  int counterExpiry) {
+    if (memberKeys.isEmpty()) {
+      return new ArrayList<>(0);
+    }
+    cacheMeter.mark();
+    Timer.Context context = timer.time();
+    Jedis jedis = null;
+    try {
+      jedis = pool.getResource();
+      List<byte[]> args = new ArrayList<>(5);
+      args.add(SafeEncoder.encode(String.valueOf(sharedLimit)));
+      args.add(SafeEncoder.encode(String.valueOf(memberLimit)));
+      args.add(SafeEncoder.encode(String.valueOf(dedupExpiry)));
+      args.add(SafeEncoder.encode(String.valueOf(counterExpiry)));
+      args.add(SafeEncoder.encode(String.valueOf(memberKeys.size())));
+      List<Long> response =
+          (List<Long>) jedis.eval(LIMIT_SCRIPT, getLimitKeys(sharedKey, memberKeys, dedupKeys),
+              args);
+      pool.returnResource(jedis);
+      List<LimitVerdict> verdicts = new ArrayList<>(response.size());
+      for (Long verdict : response) {
+        verdicts.add(LimitVerdict.values()[verdict.intValue()]);
       }
+      return verdicts;
+    } catch (Exception e) {
+      LOGGER.warn("Failed to check limits in cache {0}", sharedKey, e);
+      pool.returnBrokenResource(jedis);
+    } finally {
+      context.stop();
+    }
+    return null;
+  }
+
+  @Override
+  public void decrementLimits(String sharedKey, List<String> memberKeys, List<String> dedupKeys) {
+    if (memberKeys.isEmpty()) {
+      return;
+    }
+    Jedis jedis = null;
+    try {
+      jedis = pool.getResource();
+      jedis.eval(UNLIMIT_SCRIPT, getLimitKeys(sharedKey, memberKeys, dedupKeys),
+          Collections.singletonList(SafeEncoder.encode(String.valueOf(memberKeys.size()))));
+      pool.returnResource(jedis);
+    } catch (Exception e) {
+      LOGGER.warn("Failed to revert limits in cache {0}", sharedKey, e);
+      pool.returnBrokenResource(jedis);
+    }
+  }
+
+  private List<byte[]> getLimitKeys(String sharedKey, List<String> memberKeys,
+                                    List<String> dedupKeys) {
+    List<byte[]> keys = new ArrayList<>(1 + memberKeys.size() * 2);
+    keys.add(sharedKey.getBytes());
+    for (String memberKey : memberKeys) {
+      keys.add(memberKey.getBytes());
+    }
+    for (String dedupKey : dedupKeys) {
+      keys.add(dedupKey.getBytes());
+    }
+    return keys;
+  }
+
+  private Object getObject(byte[] bytes) throws IOException {
+    try {
+      return codec.decode(bytes);
+    } catch (IOException e) {
+      LOGGER.warn("Failed to convert object", e);
+      throw e;
     }
-    return o;
   }
 
   @Override
@@ -222,6 +458,7 @@ public class RedisMemcacheService implements MemcacheService {
       jedis = pool.getResource();
       retVal = jedis.del(key);
       pool.returnResource(jedis);
+      invalidate(key);
     } catch (Exception e) {
       LOGGER.warn("Failed to delete key from cache {0}", key, e);
       pool.returnBrokenResource(jedis);
@@ -237,6 +474,10 @@ public class RedisMemcacheService implements MemcacheService {
       jedis = pool.getResource();
       jedis.eval(String.format(DELETE_SCRIPT_IN_LUA, pattern));
       pool.returnResource(jedis);
+      if (nearCache != null) {
+        nearCache.invalidatePattern(pattern);
+        publish(NearCache.PATTERN_MESSAGE + pattern);
+      }
     } catch (Exception e) {
       LOGGER.warn("Failed to delete multiple pattern from cache {0}", pattern, e);
       pool.returnBrokenResource(jedis);
@@ -254,6 +495,9 @@ public class RedisMemcacheService implements MemcacheService {
       }
       trans.exec();
       pool.returnResource(jedis);
+      for (String key : keys) {
+        invalidate(key);
+      }
     } catch (Exception e) {
       LOGGER.warn("Failed to delete key from cache {0}", keys, e);
       pool.returnBrokenResource(jedis);
@@ -264,9 +508,94 @@ public class RedisMemcacheService implements MemcacheService {
 
   @Override
   public void close() {
+    closed = true;
+    JedisPubSub listener = invalidationListener;
+    if (listener != null && listener.isSubscribed()) {
+      listener.unsubscribe();
+    }
     pool.close();
   }
 
+  /**
+   * Drops the local copy of the key and asks other nodes to do the same.
+   */
+  private void invalidate(String key) {
+    if (nearCache != null && nearCache.isCached(key)) {
+      nearCache.invalidate(key);
+      publish(NearCache.KEY_MESSAGE + key);
+    }
+  }
+
+  private void publish(String message) {
+    Jedis jedis = null;
+    try {
+      jedis = pool.getResource();
+      jedis.publish(invalidationChannel, message);
+      pool.returnResource(jedis);
+    } catch (Exception e) {
+      LOGGER.warn("Failed to publish cache invalidation {0}", message, e);
+      pool.returnBrokenResource(jedis);
+    }
+  }
+
+  private void startInvalidationListener() {
+    Thread listenerThread = new Thread(() -> {
+      while (!closed) {
+        Jedis jedis = null;
+        try {
+          jedis = getSubscriberConnection();
+          invalidationListener = new JedisPubSub() {
+            @Override
+            public void onMessage(String channel, String message) {
+              if (!InvalidationBus.dispatch(message) && nearCache != null) {
+                nearCache.onMessage(message);
+              }
+            }
+
+            @Override
+            public void onSubscribe(String channel, int subscribedChannels) {
+              // Messages may have been missed while not subscribed
+              clearLocalCaches();
+            }
+          };
+          jedis.subscribe(invalidationListener, invalidationChannel);
+        } catch (Exception e) {
+          LOGGER.warn("Cache invalidation listener disconnected from channel {0}",
+              invalidationChannel, e);
+          clearLocalCaches();
+          try {
+            Thread.sleep(5000);
+          } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return;
+          }
+        } finally {
+          if (jedis != null) {
+            jedis.close();
+          }
+        }
+      }
+    }, "cache-invalidation-listener");
+    listenerThread.setDaemon(true);
+    listenerThread.start();
+  }
+
+  private void clearLocalCaches() {
+    if (nearCache != null) {
+      nearCache.clear();
+    }
+    InvalidationBus.reset();
+  }
+
+  Jedis getSubscriberConnection() {
+    if (pool instanceof JedisSentinelPool) {
+      HostAndPort master = ((JedisSentinelPool) pool).getCurrentHostMaster();
+      return new Jedis(master.getHost(), master.getPort(), 0);
+    }
+    return new Jedis(ConfigUtil.get("redis.server", "localhost"),
+        ConfigUtil.getInt("redis.server.port", 6379), 0);
+  }
+
   @Override
   public boolean check() {
     Jedis jedis = null;
@@ -335,4 +664,62 @@ public class RedisMemcacheService implements MemcacheService {
       throw e;
     }
   }
+
+  private class RedisPipeline implements CachePipeline {
+
+    private final List<PipelineCommand> commands = new ArrayList<>();
+
+    @Override
+    public void get(String cacheKey) {
+      commands.add(new PipelineCommand(CommandType.GET, cacheKey, null, 0));
+    }
+
+    @Override
+    public void put(String cacheKey, Object obj, int expiry) {
+      commands.add(new PipelineCommand(CommandType.PUT, cacheKey, obj, expiry));
+    }
+
+    @Override
+    public void putIfNotExist(String cacheKey, Object obj, int expiry) {
+      commands
+          .add(new PipelineCommand(CommandType.PUT_IF_NOT_EXIST, cacheKey, obj, expiry));
+    }
+
+    @Override
+    public void delete(String cacheKey) {
+      commands.add(new PipelineCommand(CommandType.DELETE, cacheKey, null, 0));
+    }
+  }
+
+  private class PipelineCommand {
+
+    private final CommandType type;
+    private final String key;
+    private final Object obj;
+    private final int expiry;
+
+    PipelineCommand(CommandType type, String key, Object obj, int expiry) {
+      this.type = type;
+      this.key = key;
+      this.obj = obj;
+      this.expiry = expiry;
+    }
+
+    Response<?> queue(Pipeline pipeline) throws IOException {
+      switch (type) {
+        case GET:
+          return pipeline.get(key.getBytes());
+        case PUT:
+          return pipeline.setex(key.getBytes(), expiry, getBytes(obj));
+        case PUT_IF_NOT_EXIST:
+          return pipeline.set(key.getBytes(), getBytes(obj), NX, EX, expiry);
+        default:
+          return pipeline.del(key.getBytes());
+      }
+    }
+  }
+
+  private enum CommandType {
+    GET, PUT, PUT_IF_NOT_EXIST, DELETE
+  }
 }
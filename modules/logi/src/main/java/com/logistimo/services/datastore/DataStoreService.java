@@ -40,5 +40,24 @@ public abstract class DataStoreService {
 
   public abstract EntityCursor readAll(String entityType) throws SQLException;
 
+  /**
+   * Reads the entities whose numeric primary key is at least {@code fromKey} and below
+   * {@code toKey}, no upper bound if {@code toKey} is null
+   */
+  public abstract EntityCursor readRange(String entityType, long fromKey, Long toKey)
+      throws SQLException;
+
+  /**
+   * @return smallest and largest primary key, null if the primary key is not numeric or there are
+   * no entities
+   */
+  public abstract long[] getKeyRange(String entityType) throws SQLException;
+
+  /**
+   * Releases the connection held by this service
+   */
+  public void close() {
+  }
+
   public abstract void delete(Map<String, List<String>> entities);
 }
@@ -201,6 +201,60 @@ public class MySQLDataStoreService extends DataStoreService {
     return entityCursor;
   }
 
+  @Override
+  public EntityCursor readRange(String entityType, long fromKey, Long toKey)
+      throws SQLException {
+    checkAndInitConnection();
+    List<String> columns = getColumns(entityType);
+    String primaryKey = getPrimaryKey(entityType);
+    String keyColumn = CharacterConstants.ACUTE + primaryKey + CharacterConstants.ACUTE;
+    StringBuilder query = new StringBuilder(QueryConstants.SELECT_STAR_FROM)
+        .append(CharacterConstants.ACUTE).append(entityType).append(CharacterConstants.ACUTE)
+        .append(" WHERE ").append(keyColumn).append(" >= ?");
+    if (toKey != null) {
+      query.append(" AND ").append(keyColumn).append(" < ?");
+    }
+    // This statement will be closed by calling close in EntityCursor
+    PreparedStatement statement = getConnection(entityType).prepareStatement(query.toString());
+    statement.setFetchSize(20);
+    statement.setLong(1, fromKey);
+    if (toKey != null) {
+      statement.setLong(2, toKey);
+    }
+    ResultSet resultSet = statement.executeQuery();
+    return new EntityCursor(statement, resultSet, columns, primaryKey, entityType);
+  }
+
+  @Override
+  public long[] getKeyRange(String entityType) throws SQLException {
+    checkAndInitConnection();
+    String primaryKey = getPrimaryKey(entityType);
+    if (primaryKey == null) {
+      return null;
+    }
+    String keyColumn = CharacterConstants.ACUTE + primaryKey + CharacterConstants.ACUTE;
+    try (Statement statement = getConnection(entityType).createStatement();
+         ResultSet resultSet = statement.executeQuery(
+             "SELECT MIN(" + keyColumn + "), MAX(" + keyColumn + ") FROM "
+                 + CharacterConstants.ACUTE + entityType + CharacterConstants.ACUTE)) {
+      if (resultSet.next() && resultSet.getObject(1) instanceof Number) {
+        return new long[]{resultSet.getLong(1), resultSet.getLong(2)};
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public void close() {
+    try {
+      if (conn != null && !conn.isClosed()) {
+        conn.close();
+      }
+    } catch (SQLException e) {
+      logger.warn("Error while closing connection", e);
+    }
+  }
+
   @Override
   public void delete(Map<String, List<String>> entities) {
     if (classNames == null) {
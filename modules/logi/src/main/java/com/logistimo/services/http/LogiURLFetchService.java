@@ -23,14 +23,11 @@
 
 package com.logistimo.services.http;
 
-import org.apache.commons.httpclient.DefaultHttpMethodRetryHandler;
-import org.apache.commons.httpclient.Header;
-import org.apache.commons.httpclient.HttpClient;
-import org.apache.commons.httpclient.HttpMethod;
-import org.apache.commons.httpclient.methods.ByteArrayRequestEntity;
-import org.apache.commons.httpclient.methods.GetMethod;
-import org.apache.commons.httpclient.methods.PostMethod;
-import org.apache.commons.httpclient.params.HttpMethodParams;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
 
 import java.io.IOException;
 import java.net.URL;
@@ -43,55 +40,40 @@ public class LogiURLFetchService implements URLFetchService {
   @Override
   public HttpResponse post(URL urlObj, byte[] payload, String userName, String password,
                            int timeout) {
-    HttpClient client = new HttpClient();
-    PostMethod method = new PostMethod(urlObj.toString());
-    method.setRequestEntity(new ByteArrayRequestEntity(payload));
-    method.setRequestHeader("Content-type", "application/json");
-    client.getParams().setParameter(HttpMethodParams.RETRY_HANDLER,
-        new DefaultHttpMethodRetryHandler());
-    client.getParams().setSoTimeout(1000 * timeout);
-    client.getParams().setConnectionManagerTimeout(1000 * timeout);
-    if (userName != null && password != null) {
-      setBasicAuthorization(method, userName, password);
-    }
+    HttpPost method = new HttpPost(urlObj.toString());
+    method.setEntity(new ByteArrayEntity(payload, ContentType.APPLICATION_JSON));
     try {
-      int response = client.executeMethod(method);
-      return new HttpResponse(response, method.getResponseBody());
+      return execute(method, userName, password, timeout);
     } catch (IOException e) {
       throw new RuntimeException("Failed to process post request URL: " + urlObj, e);
-    } finally {
-      method.releaseConnection();
     }
-
   }
 
   @Override
   public HttpResponse get(URL urlObj, String userName, String password, int timeout) {
-    HttpClient client = new HttpClient();
-    HttpMethod method = new GetMethod(urlObj.toString());
-
-    client.getParams().setParameter(HttpMethodParams.RETRY_HANDLER,
-        new DefaultHttpMethodRetryHandler());
-    client.getParams().setSoTimeout(1000 * timeout);
-    client.getParams().setConnectionManagerTimeout(1000 * timeout);
-    if (userName != null && password != null) {
-      setBasicAuthorization(method, userName, password);
-    }
+    HttpGet method = new HttpGet(urlObj.toString());
     try {
-      int response = client.executeMethod(method);
-      return new HttpResponse(response, method.getResponseBody());
+      return execute(method, userName, password, timeout);
     } catch (IOException e) {
       throw new RuntimeException("Failed to get " + urlObj.toString(), e);
-    } finally {
-      method.releaseConnection();
     }
   }
 
-  private void setBasicAuthorization(HttpMethod method, String userName, String password) {
+  private HttpResponse execute(HttpRequestBase method, String userName, String password,
+                               int timeout) throws IOException {
+    HttpClientPool pool = HttpClientPool.getInstance();
+    method.setConfig(pool.getRequestConfig(1000 * timeout));
+    if (userName != null && password != null) {
+      setBasicAuthorization(method, userName, password);
+    }
+    return pool.execute(method);
+  }
+
+  private void setBasicAuthorization(HttpRequestBase method, String userName, String password) {
     String userpass = userName + ":" + password;
     String
         basicAuth =
         "Basic " + javax.xml.bind.DatatypeConverter.printBase64Binary(userpass.getBytes());
-    method.addRequestHeader(new Header("Authorization", basicAuth));
+    method.addHeader("Authorization", basicAuth);
   }
 }
@@ -25,44 +25,110 @@ package com.logistimo.services.mapper;
 
 import com.logistimo.AppFactory;
 import com.logistimo.logger.XLog;
+import com.logistimo.services.blobstore.BlobInfo;
 import com.logistimo.services.blobstore.BlobstoreRecordKey;
 import com.logistimo.services.blobstore.BlobstoreService;
 import com.logistimo.services.mapred.IMapredService;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
+ * Reads a blob line by line. The key of each line is the byte offset at which it starts.
+ *
  * Created by charan on 29/09/14.
  */
 public class BlobStoreInputFormat extends InputFormat<BlobstoreRecordKey, byte[]> {
 
   private static XLog xLogger = XLog.getLog(BlobStoreInputFormat.class);
 
-  private BufferedReader in;
+  // Smaller blobs are not worth splitting
+  static final long MIN_PARTITION_SIZE = 64 * 1024L;
+
+  private final BlobstoreService blobstoreService;
+  private final long start;
+  private final long end;
+  private BufferedInputStream in;
   private long offset = 0;
 
+  public BlobStoreInputFormat() {
+    this(AppFactory.get().getBlobstoreService(), 0, Long.MAX_VALUE);
+  }
+
+  /**
+   * Reads the lines that start in the byte range [start, end)
+   */
+  BlobStoreInputFormat(BlobstoreService blobstoreService, long start, long end) {
+    this.blobstoreService = blobstoreService;
+    this.start = start;
+    this.end = end;
+  }
+
   @Override
-  protected void init() {
-    BlobstoreService blobstoreService = AppFactory.get().getBlobstoreService();
+  protected void init() throws IOException {
     InputStream
         stream =
         blobstoreService.getInputStream(getConfiguration().get(IMapredService.PARAM_BLOBKEY));
-    in = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
+    in = new BufferedInputStream(stream);
+    if (start > 0) {
+      // The line running into this range belongs to the previous one
+      if (skip(start - 1)) {
+        readLine();
+      } else {
+        offset = end;
+      }
+    }
+  }
+
+  /**
+   * Splits the blob into byte ranges of equal size. Lines belong to the range they start in.
+   */
+  @Override
+  public List<InputFormat<BlobstoreRecordKey, byte[]>> createPartitions(
+      Configuration configuration, int partitions) throws Exception {
+    long size = partitions > 1 ? getBlobSize(configuration) : 0;
+    int count = (int) Math.min(partitions, size / MIN_PARTITION_SIZE);
+    if (count <= 1) {
+      return super.createPartitions(configuration, partitions);
+    }
+    long partitionSize = size / count;
+    List<InputFormat<BlobstoreRecordKey, byte[]>> inputFormats = new ArrayList<>(count);
+    try {
+      for (int i = 0; i < count; i++) {
+        BlobStoreInputFormat inputFormat = new BlobStoreInputFormat(blobstoreService,
+            i * partitionSize,
+            i == count - 1 ? Long.MAX_VALUE : (i + 1) * partitionSize);
+        inputFormats.add(inputFormat);
+        inputFormat.setConfiguration(configuration);
+      }
+    } catch (Exception e) {
+      inputFormats.forEach(InputFormat::close);
+      throw e;
+    }
+    return inputFormats;
+  }
+
+  private long getBlobSize(Configuration configuration) {
+    BlobInfo blobInfo =
+        blobstoreService.getBlobInfo(configuration.get(IMapredService.PARAM_BLOBKEY));
+    return blobInfo != null ? blobInfo.getSize() : 0;
   }
 
   @Override
   public KeyVal<BlobstoreRecordKey, byte[]> readNext() {
     KeyVal<BlobstoreRecordKey, byte[]> retVal = null;
+    if (offset >= end) {
+      return null;
+    }
     try {
-      String line = in.readLine();
-      if (line != null) {
-        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
-        retVal = new KeyVal<>(new BlobstoreRecordKey(offset), bytes);
-        offset += bytes.length;
+      long lineOffset = offset;
+      byte[] bytes = readLine();
+      if (bytes != null) {
+        retVal = new KeyVal<>(new BlobstoreRecordKey(lineOffset), bytes);
       }
     } catch (IOException e) {
       xLogger.severe("Failed to read from Blobstore for key {0}",
@@ -76,6 +142,52 @@ public class BlobStoreInputFormat extends InputFormat<BlobstoreRecordKey, byte[]
     return retVal;
   }
 
+  /**
+   * Reads up to the next line break (\n, \r or \r\n), which is not part of the line.
+   *
+   * @return the line, null at the end of the blob
+   */
+  private byte[] readLine() throws IOException {
+    ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+    int b;
+    while ((b = in.read()) != -1) {
+      offset++;
+      if (b == '\n') {
+        return line.toByteArray();
+      }
+      if (b == '\r') {
+        in.mark(1);
+        if (in.read() == '\n') {
+          offset++;
+        } else {
+          in.reset();
+        }
+        return line.toByteArray();
+      }
+      line.write(b);
+    }
+    return line.size() > 0 ? line.toByteArray() : null;
+  }
+
+  /**
+   * @return false if the blob ends before the given offset
+   */
+  private boolean skip(long bytes) throws IOException {
+    long remaining = bytes;
+    while (remaining > 0) {
+      long skipped = in.skip(remaining);
+      if (skipped <= 0) {
+        if (in.read() == -1) {
+          return false;
+        }
+        skipped = 1;
+      }
+      remaining -= skipped;
+    }
+    offset = bytes;
+    return true;
+  }
+
   @Override
   public void close() {
     try {
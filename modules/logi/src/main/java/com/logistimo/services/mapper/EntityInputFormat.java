@@ -28,6 +28,8 @@ import com.logistimo.services.datastore.DataStoreServiceFactory;
 import com.logistimo.services.mapred.IMapredService;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Created by charan on 29/09/14.
@@ -38,22 +40,71 @@ public class EntityInputFormat extends InputFormat<Key, Entity> {
   private DataStoreService dataStoreService;
   private String entityType;
   private EntityCursor cursor;
+  private Long fromKey;
+  private Long toKey;
 
   public EntityInputFormat() {
 
   }
 
+  private EntityInputFormat(long fromKey, Long toKey) {
+    this.fromKey = fromKey;
+    this.toKey = toKey;
+  }
+
   @Override
   protected void init() throws Exception {
     dataStoreService = DataStoreServiceFactory.getDataStoreService();
     entityType = getConfiguration().get(IMapredService.PARAM_ENTITYKIND);
     try {
-      cursor = dataStoreService.readAll(entityType.toUpperCase());
+      if (fromKey != null) {
+        cursor = dataStoreService.readRange(entityType.toUpperCase(), fromKey, toKey);
+      } else {
+        cursor = dataStoreService.readAll(entityType.toUpperCase());
+      }
     } catch (SQLException e) {
       throw new Exception(e);
     }
   }
 
+  /**
+   * Splits entities with a numeric primary key into key ranges of equal width. The last range has
+   * no upper bound, so that entities added during the job are still read.
+   */
+  @Override
+  public List<InputFormat<Key, Entity>> createPartitions(Configuration configuration,
+                                                         int partitions) throws Exception {
+    long[] keyRange = partitions > 1 ? getKeyRange(configuration) : null;
+    if (keyRange == null || keyRange[1] - keyRange[0] < partitions) {
+      return super.createPartitions(configuration, partitions);
+    }
+    long width = (keyRange[1] - keyRange[0]) / partitions + 1;
+    List<InputFormat<Key, Entity>> inputFormats = new ArrayList<>(partitions);
+    try {
+      for (int i = 0; i < partitions; i++) {
+        long from = i == 0 ? Long.MIN_VALUE : keyRange[0] + i * width;
+        Long to = i == partitions - 1 ? null : keyRange[0] + (i + 1) * width;
+        EntityInputFormat inputFormat = new EntityInputFormat(from, to);
+        inputFormats.add(inputFormat);
+        inputFormat.setConfiguration(configuration);
+      }
+    } catch (Exception e) {
+      inputFormats.forEach(InputFormat::close);
+      throw e;
+    }
+    return inputFormats;
+  }
+
+  private static long[] getKeyRange(Configuration configuration) throws SQLException {
+    DataStoreService dataStoreService = DataStoreServiceFactory.getDataStoreService();
+    try {
+      return dataStoreService
+          .getKeyRange(configuration.get(IMapredService.PARAM_ENTITYKIND).toUpperCase());
+    } finally {
+      dataStoreService.close();
+    }
+  }
+
   @Override
   public KeyVal<Key, Entity> readNext() {
 
@@ -71,5 +122,8 @@ public class EntityInputFormat extends InputFormat<Key, Entity> {
     if (cursor != null) {
       cursor.close();
     }
+    if (dataStoreService != null) {
+      dataStoreService.close();
+    }
   }
 }
@@ -23,6 +23,9 @@
 
 package com.logistimo.services.mapper;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Created by charan on 29/09/14.
  */
@@ -41,6 +44,17 @@ public abstract class InputFormat<K, V> {
     init();
   }
 
+  /**
+   * Configures the input, split into at most {@code partitions} parts that can be read
+   * concurrently. Each part is a configured input format of its own. Input that cannot be split
+   * is returned as a single part.
+   */
+  public List<InputFormat<K, V>> createPartitions(Configuration configuration, int partitions)
+      throws Exception {
+    setConfiguration(configuration);
+    return Collections.singletonList(this);
+  }
+
   public abstract KeyVal<K, V> readNext();
 
   public abstract void close();
@@ -23,6 +23,8 @@
 
 package com.logistimo.services.mapper;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Created by charan on 29/09/14.
  */
@@ -31,6 +33,8 @@ public class Job {
   private final Configuration configuration;
   private final String taskUrl;
   private final String id;
+  private final AtomicLong processedCount = new AtomicLong();
+  private final AtomicLong failedCount = new AtomicLong();
 
 
   public Job(String configName, Configuration configuration, String taskUrl) {
@@ -55,4 +59,23 @@ public class Job {
   public String getTaskUrl() {
     return taskUrl;
   }
+
+  /**
+   * @return number of records mapped so far, across all partitions
+   */
+  public long recordProcessed() {
+    return processedCount.incrementAndGet();
+  }
+
+  public void recordFailed() {
+    failedCount.incrementAndGet();
+  }
+
+  public long getProcessedCount() {
+    return processedCount.get();
+  }
+
+  public long getFailedCount() {
+    return failedCount.get();
+  }
 }
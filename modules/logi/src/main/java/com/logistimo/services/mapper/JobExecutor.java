@@ -28,18 +28,41 @@ import com.logistimo.exception.TaskSchedulingException;
 import com.logistimo.logger.XLog;
 import com.logistimo.services.mapred.IMapredService;
 import com.logistimo.services.taskqueue.TaskService;
+import com.logistimo.services.utils.ConfigUtil;
+import com.logistimo.utils.JobUtil;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by charan on 29/09/14.
+ *
+ * Splits the job input into partitions (up to {@link IMapredService#PARAM_SHARDCOUNT}, bounded by
+ * {@code mapred.workers.max}) and maps each partition on its own worker, with its own mapper
+ * instance and mutation pool. The first failure stops all workers and fails the job.
+ *
+ * Progress and outcome are reported to the job status given by
+ * {@link IMapredService#PARAM_JOBSTATUS_ID}, if any.
  */
 public class JobExecutor {
 
   private static XLog xLogger = XLog.getLog(JobExecutor.class);
 
+  private static final int MAX_WORKERS = ConfigUtil.getInt("mapred.workers.max",
+      Runtime.getRuntime().availableProcessors());
+  // Records mapped between two progress updates of the job status
+  private static final int PROGRESS_INTERVAL = 1000;
+
   private final Job job;
+  private final AtomicBoolean failed = new AtomicBoolean();
 
   public JobExecutor(Job job) {
     this.job = job;
@@ -49,52 +72,155 @@ public class JobExecutor {
   public void execute() {
     Configuration configuration = job.getConfiguration();
     String inputFormatStr = configuration.get("mapreduce.inputformat.class");
-    String mapperClass = configuration.get("mapreduce.map.class");
+    int partitionCount = 0;
+    try {
+      List<InputFormat> partitions = getInputFormat(inputFormatStr)
+          .createPartitions(configuration, getWorkerCount(configuration));
+      partitionCount = partitions.size();
+      if (partitionCount == 1) {
+        runPartition(partitions.get(0));
+      } else {
+        runPartitions(partitions);
+      }
+    } catch (Exception e) {
+      failed.set(true);
+      xLogger.severe("Failed to start job", e);
+    }
+    xLogger.info("Job {0} mapped {1} records in {2} partitions, failed records: {3}, success: {4}",
+        job.getId(), job.getProcessedCount(), partitionCount, job.getFailedCount(), !failed.get());
+    updateJobStatus();
+    finishJobStatus();
+    String callback = configuration.get(IMapredService.PARAM_DONECALLBACK);
+    if (callback != null) {
+      Map<String, String> params = new HashMap<String, String>();
+      params.put(IMapredService.JOBID_PARAM, job.getId());
+      params.put(IMapredService.JOB_STATUS, String.valueOf(!failed.get()));
+      try {
+        AppFactory.get().getTaskService()
+            .schedule("default", callback, params, null, TaskService.METHOD_GET, -1, null,
+                "MAPRED_CONFIRM");
+      } catch (TaskSchedulingException e) {
+        xLogger.severe("Failed to call Done call back ", e);
+      }
+    }
 
+  }
+
+  private void runPartitions(List<InputFormat> partitions) throws InterruptedException {
+    AtomicInteger threadCount = new AtomicInteger();
+    ExecutorService executorService = Executors.newFixedThreadPool(partitions.size(),
+        r -> new Thread(r, "mapred-" + job.getId() + "-" + threadCount.incrementAndGet()));
+    try {
+      List<Future<?>> futures = new ArrayList<>(partitions.size());
+      for (InputFormat partition : partitions) {
+        futures.add(executorService.submit(() -> runPartition(partition)));
+      }
+      for (Future<?> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          failed.set(true);
+          xLogger.severe("Partition of job {0} failed", job.getId(), e.getCause());
+        }
+      }
+    } finally {
+      executorService.shutdownNow();
+    }
+  }
+
+  private void runPartition(InputFormat inputFormat) {
+    Configuration configuration = job.getConfiguration();
     GenericMapper genericMapper = null;
     GenericMapper.Context context = null;
-    InputFormat inputFormat = null;
-    boolean failed = false;
     try {
-      genericMapper = (GenericMapper) Class.forName(mapperClass).newInstance();
+      genericMapper = (GenericMapper) Class.forName(configuration.get("mapreduce.map.class"))
+          .newInstance();
       context = new GenericMapper.Context(configuration);
       genericMapper.taskSetup(context);
-      inputFormat = InputFormatFactory.getInputFormat(inputFormatStr);
-      inputFormat.setConfiguration(configuration);
       KeyVal keyVal;
-      while ((keyVal = inputFormat.readNext()) != null) {
-        genericMapper.map(keyVal.getKey(), keyVal.getValue(), context);
+      while (!failed.get() && (keyVal = inputFormat.readNext()) != null) {
+        try {
+          genericMapper.map(keyVal.getKey(), keyVal.getValue(), context);
+        } catch (Exception e) {
+          job.recordFailed();
+          throw e;
+        }
+        if (job.recordProcessed() % PROGRESS_INTERVAL == 0) {
+          updateJobStatus();
+        }
       }
-
     } catch (Exception e) {
-      failed = true;
-      xLogger.severe("Failed to start job", e);
+      failed.set(true);
+      xLogger.severe("Failed to run job {0}", job.getId(), e);
     } finally {
       if (genericMapper != null) {
         try {
           genericMapper.taskCleanup(context);
         } catch (Exception e) {
-          e.printStackTrace();
-        }
-        if (inputFormat != null) {
-          inputFormat.close();
+          xLogger.warn("Failed to clean up mapper for job {0}", job.getId(), e);
         }
       }
+      inputFormat.close();
     }
-    String callback = configuration.get(IMapredService.PARAM_DONECALLBACK);
-    if (callback != null) {
-      Map<String, String> params = new HashMap<String, String>();
-      params.put(IMapredService.JOBID_PARAM, job.getId());
-      params.put(IMapredService.JOB_STATUS, String.valueOf(!failed));
-      job.getConfiguration().get("domainId");
+  }
+
+  private synchronized void updateJobStatus() {
+    Long jobStatusId = getJobStatusId();
+    if (jobStatusId == null) {
+      return;
+    }
+    Map<String, String> metadata = new HashMap<>(1);
+    metadata.put("failed", String.valueOf(job.getFailedCount()));
+    recordProgress(jobStatusId, (int) job.getProcessedCount(), metadata);
+  }
+
+  private void finishJobStatus() {
+    Long jobStatusId = getJobStatusId();
+    if (jobStatusId != null) {
+      recordFinished(jobStatusId, !failed.get());
+    }
+  }
+
+  private Long getJobStatusId() {
+    String jobStatusId = job.getConfiguration().get(IMapredService.PARAM_JOBSTATUS_ID);
+    if (jobStatusId == null || jobStatusId.isEmpty()) {
+      return null;
+    }
+    try {
+      return Long.valueOf(jobStatusId);
+    } catch (NumberFormatException e) {
+      xLogger.warn("Invalid job status id {0} for job {1}", jobStatusId, job.getId());
+      return null;
+    }
+  }
+
+  InputFormat getInputFormat(String inputFormatStr) {
+    return InputFormatFactory.getInputFormat(inputFormatStr);
+  }
+
+  void recordProgress(Long jobStatusId, int processedCount, Map<String, String> metadata) {
+    JobUtil.setNumberOfRecordsCompleted(jobStatusId, processedCount, metadata);
+  }
+
+  void recordFinished(Long jobStatusId, boolean success) {
+    if (success) {
+      JobUtil.setJobCompleted(jobStatusId);
+    } else {
+      JobUtil.setJobFailed(jobStatusId, "Job " + job.getId() + " failed after "
+          + job.getProcessedCount() + " records");
+    }
+  }
+
+  private static int getWorkerCount(Configuration configuration) {
+    int requested = 1;
+    String shardCount = configuration.get(IMapredService.PARAM_SHARDCOUNT);
+    if (shardCount != null && !shardCount.trim().isEmpty()) {
       try {
-        AppFactory.get().getTaskService()
-            .schedule("default", callback, params, null, TaskService.METHOD_GET, -1, null,
-                "MAPRED_CONFIRM");
-      } catch (TaskSchedulingException e) {
-        xLogger.severe("Failed to call Done call back ", e);
+        requested = Integer.parseInt(shardCount.trim());
+      } catch (NumberFormatException e) {
+        xLogger.warn("Invalid shard count {0}, running a single worker", shardCount);
       }
     }
-
+    return Math.max(1, Math.min(requested, MAX_WORKERS));
   }
 }
@@ -58,7 +58,11 @@ public class SimpleTask implements Task, Runnable {
     long startTime = System.currentTimeMillis();
     try {
       TaskUtil.getTaskLogger().moveToInProgress(taskOptions.getTaskId());
-      if (taskOptions.getMethod() == ITaskService.METHOD_GET) {
+      ITaskHandler handler = getHandler();
+      if (handler != null) {
+        handler.handle(taskOptions.getParams(), taskOptions.getHeaders(),
+            taskOptions.getPayload(), taskOptions.getContentType());
+      } else if (taskOptions.getMethod() == ITaskService.METHOD_GET) {
         HttpUtil.getMulti(taskOptions.getUrl(), taskOptions.getParams(), taskOptions.getHeaders(),
             taskOptions.getPayload(), taskOptions.getContentType());
       } else {
@@ -72,4 +76,9 @@ public class SimpleTask implements Task, Runnable {
       logger.severe("Failed to execute task {0}", e.getMessage(), e);
     }
   }
+
+  private ITaskHandler getHandler() {
+    TaskHandlerRegistry registry = TaskHandlerRegistry.getInstance();
+    return registry != null ? registry.getHandler(taskOptions.getUrl()) : null;
+  }
 }
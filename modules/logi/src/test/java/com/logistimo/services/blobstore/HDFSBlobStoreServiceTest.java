@@ -0,0 +1,178 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.services.blobstore;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.mockito.ArgumentCaptor;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Date;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+public class HDFSBlobStoreServiceTest {
+
+  private static final String BLOB_KEY = "blob";
+  private static final String CONTENT = "0123456789";
+
+  private java.nio.file.Path file;
+  private HDFSBlobStoreService blobStoreService;
+
+  @BeforeClass
+  public void setUp() throws IOException {
+    file = Files.createTempFile("blob", ".txt");
+    Files.write(file, CONTENT.getBytes(StandardCharsets.UTF_8));
+    FileSystem fileSystem = FileSystem.getLocal(new Configuration());
+    // Skips the constructor, which connects to HDFS
+    blobStoreService = mock(HDFSBlobStoreService.class, CALLS_REAL_METHODS);
+    doReturn(new BlobInfo(new BlobKey(BLOB_KEY), "text/plain", new Date(0), "blob.txt",
+        CONTENT.length())).when(blobStoreService).getBlobInfo(BLOB_KEY);
+    doAnswer(invocation -> fileSystem.open(new Path(file.toUri())))
+        .when(blobStoreService).getInputStream(BLOB_KEY);
+  }
+
+  @AfterClass
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  @Test
+  public void testParseRange() {
+    assertEquals(HDFSBlobStoreService.parseRange("bytes=0-4", 10), new long[]{0, 4});
+    assertEquals(HDFSBlobStoreService.parseRange("bytes=5-", 10), new long[]{5, 9});
+    assertEquals(HDFSBlobStoreService.parseRange("bytes=2-100", 10), new long[]{2, 9});
+    assertEquals(HDFSBlobStoreService.parseRange("bytes=-3", 10), new long[]{7, 9});
+    assertEquals(HDFSBlobStoreService.parseRange("bytes=-20", 10), new long[]{0, 9});
+    // Ignored
+    assertEquals(HDFSBlobStoreService.parseRange("bytes=5-2", 10).length, 0);
+    assertEquals(HDFSBlobStoreService.parseRange("bytes=0-1,3-4", 10).length, 0);
+    assertEquals(HDFSBlobStoreService.parseRange("items=0-1", 10).length, 0);
+    assertEquals(HDFSBlobStoreService.parseRange("bytes=a-b", 10).length, 0);
+    // Not satisfiable
+    assertNull(HDFSBlobStoreService.parseRange("bytes=10-", 10));
+    assertNull(HDFSBlobStoreService.parseRange("bytes=-0", 10));
+  }
+
+  @Test
+  public void testServesWholeBlob() throws IOException {
+    HttpServletResponse resp = mock(HttpServletResponse.class);
+    assertEquals(serve(request(null, null, null), resp), CONTENT);
+    verify(resp, never()).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+    verify(resp).setHeader("Content-Length", "10");
+  }
+
+  @Test
+  public void testServesRange() throws IOException {
+    HttpServletResponse resp = mock(HttpServletResponse.class);
+    assertEquals(serve(request("bytes=2-4", null, null), resp), "234");
+    verify(resp).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+    verify(resp).setHeader("Content-Range", "bytes 2-4/10");
+    verify(resp).setHeader("Content-Length", "3");
+  }
+
+  @Test
+  public void testIgnoresInvalidRange() throws IOException {
+    HttpServletResponse resp = mock(HttpServletResponse.class);
+    assertEquals(serve(request("bytes=5-2", null, null), resp), CONTENT);
+    verify(resp, never()).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+    verify(resp, never()).sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+  }
+
+  @Test
+  public void testRejectsUnsatisfiableRange() throws IOException {
+    HttpServletResponse resp = mock(HttpServletResponse.class);
+    assertEquals(serve(request("bytes=10-", null, null), resp), "");
+    verify(resp).setHeader("Content-Range", "bytes */10");
+    verify(resp).sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+  }
+
+  @Test
+  public void testConditionalRequests() throws IOException {
+    String eTag = getETag();
+
+    HttpServletResponse resp = mock(HttpServletResponse.class);
+    assertEquals(serve(request(null, "\"other\", " + eTag, null), resp), "");
+    verify(resp).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+
+    resp = mock(HttpServletResponse.class);
+    assertEquals(serve(request(null, "\"other\"", null), resp), CONTENT);
+
+    // The range only applies while the blob is unchanged
+    resp = mock(HttpServletResponse.class);
+    assertEquals(serve(request("bytes=2-4", null, eTag), resp), "234");
+
+    resp = mock(HttpServletResponse.class);
+    assertEquals(serve(request("bytes=2-4", null, "\"other\""), resp), CONTENT);
+    verify(resp, never()).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+  }
+
+  private String getETag() throws IOException {
+    HttpServletResponse resp = mock(HttpServletResponse.class);
+    serve(request(null, null, null), resp);
+    ArgumentCaptor<String> eTag = ArgumentCaptor.forClass(String.class);
+    verify(resp).setHeader(eq("ETag"), eTag.capture());
+    return eTag.getValue();
+  }
+
+  private String serve(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    when(resp.getOutputStream()).thenReturn(new ServletOutputStream() {
+      @Override
+      public void write(int b) {
+        out.write(b);
+      }
+    });
+    blobStoreService.serve(BLOB_KEY, req, resp);
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  private static HttpServletRequest request(String range, String ifNoneMatch, String ifRange) {
+    HttpServletRequest req = mock(HttpServletRequest.class);
+    when(req.getHeader("Range")).thenReturn(range);
+    when(req.getHeader("If-None-Match")).thenReturn(ifNoneMatch);
+    when(req.getHeader("If-Range")).thenReturn(ifRange);
+    return req;
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.services.cache;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+public class NearCacheTest {
+
+  @Test
+  public void testKeepsValueWithoutInvalidation() {
+    NearCache nearCache = new NearCache(new String[]{"config.:10:300"});
+    long stamp = nearCache.stamp("config.1");
+    nearCache.put("config.1", "v1", stamp);
+    assertEquals(nearCache.get("config.1"), "v1");
+    nearCache.put("other.1", "v1", nearCache.stamp("other.1"));
+    assertNull(nearCache.get("other.1"));
+  }
+
+  @Test
+  public void testDropsValueReadBeforeInvalidation() {
+    NearCache nearCache = new NearCache(new String[]{"config.:10:300"});
+    long stamp = nearCache.stamp("config.1");
+    // The key is written elsewhere and invalidated while the old value is read from Redis
+    nearCache.onMessage(NearCache.KEY_MESSAGE + "config.1");
+    nearCache.put("config.1", "stale", stamp);
+    assertNull(nearCache.get("config.1"));
+    nearCache.put("config.1", "v2", nearCache.stamp("config.1"));
+    assertEquals(nearCache.get("config.1"), "v2");
+  }
+
+  @Test
+  public void testDropsValueReadBeforePatternOrClear() {
+    NearCache nearCache = new NearCache(new String[]{"config.:10:300"});
+    long stamp = nearCache.stamp("config.1");
+    nearCache.onMessage(NearCache.PATTERN_MESSAGE + "config.*");
+    nearCache.put("config.1", "stale", stamp);
+    assertNull(nearCache.get("config.1"));
+
+    stamp = nearCache.stamp("config.1");
+    nearCache.clear();
+    nearCache.put("config.1", "stale", stamp);
+    assertNull(nearCache.get("config.1"));
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.services.mapper;
+
+import com.logistimo.services.blobstore.BlobInfo;
+import com.logistimo.services.blobstore.BlobstoreRecordKey;
+import com.logistimo.services.blobstore.BlobstoreService;
+import com.logistimo.services.mapred.IMapredService;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+
+public class BlobStoreInputFormatTest {
+
+  private static final String BLOB_KEY = "blob";
+  // \n, \r\n and \r breaks, an empty line and a final line without a line break
+  private static final String CONTENT = "ab\ncd\r\nef\rg\n\nhij";
+
+  @Test
+  public void testReadsAllLinesWithOffsets() throws Exception {
+    BlobstoreService blobstoreService = mockBlobstore(CONTENT);
+    assertEquals(read(blobstoreService, 0, Long.MAX_VALUE),
+        Arrays.asList("0:ab", "3:cd", "7:ef", "10:g", "12:", "13:hij"));
+  }
+
+  @Test
+  public void testEveryLineReadOnceForAnyBoundary() throws Exception {
+    BlobstoreService blobstoreService = mockBlobstore(CONTENT);
+    List<String> expected = read(blobstoreService, 0, Long.MAX_VALUE);
+    // Covers boundaries at, before and after every \n, inside \r\n and inside the final line
+    for (int cut = 1; cut <= CONTENT.length() + 1; cut++) {
+      List<String> lines = read(blobstoreService, 0, cut);
+      lines.addAll(read(blobstoreService, cut, Long.MAX_VALUE));
+      assertEquals(lines, expected, "boundary at " + cut);
+    }
+    for (int first = 1; first < CONTENT.length(); first++) {
+      for (int second = first; second <= CONTENT.length(); second++) {
+        List<String> lines = read(blobstoreService, 0, first);
+        lines.addAll(read(blobstoreService, first, second));
+        lines.addAll(read(blobstoreService, second, Long.MAX_VALUE));
+        assertEquals(lines, expected, "boundaries at " + first + ", " + second);
+      }
+    }
+  }
+
+  @Test
+  public void testSmallBlobIsNotPartitioned() throws Exception {
+    BlobstoreService blobstoreService = mockBlobstore(CONTENT);
+    BlobStoreInputFormat inputFormat = new BlobStoreInputFormat(blobstoreService, 0,
+        Long.MAX_VALUE);
+    List<InputFormat<BlobstoreRecordKey, byte[]>> partitions =
+        inputFormat.createPartitions(configuration(), 8);
+    assertEquals(partitions.size(), 1);
+    assertSame(partitions.get(0), inputFormat);
+    assertEquals(readAll(partitions), read(blobstoreService, 0, Long.MAX_VALUE));
+  }
+
+  @Test
+  public void testPartitionsReadEveryLineOnce() throws Exception {
+    StringBuilder content = new StringBuilder();
+    int line = 0;
+    while (content.length() < 3 * BlobStoreInputFormat.MIN_PARTITION_SIZE + 100) {
+      content.append("line ").append(line).append(line % 3 == 0 ? "\r\n" : "\n");
+      line++;
+    }
+    content.append("last");
+    BlobstoreService blobstoreService = mockBlobstore(content.toString());
+    List<InputFormat<BlobstoreRecordKey, byte[]>> partitions =
+        new BlobStoreInputFormat(blobstoreService, 0, Long.MAX_VALUE)
+            .createPartitions(configuration(), 8);
+    assertEquals(partitions.size(), 3);
+    List<String> lines = readAll(partitions);
+    assertEquals(lines.size(), line + 1);
+    assertEquals(lines, read(blobstoreService, 0, Long.MAX_VALUE));
+  }
+
+  private static BlobstoreService mockBlobstore(String content) {
+    byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+    BlobstoreService blobstoreService = mock(BlobstoreService.class);
+    when(blobstoreService.getInputStream(BLOB_KEY))
+        .thenAnswer(invocation -> new ByteArrayInputStream(bytes));
+    when(blobstoreService.getBlobInfo(BLOB_KEY))
+        .thenReturn(new BlobInfo(null, "text/plain", null, BLOB_KEY, bytes.length));
+    return blobstoreService;
+  }
+
+  private static Configuration configuration() {
+    Configuration configuration = new Configuration();
+    configuration.set(IMapredService.PARAM_BLOBKEY, BLOB_KEY);
+    return configuration;
+  }
+
+  private static List<String> read(BlobstoreService blobstoreService, long start, long end)
+      throws Exception {
+    BlobStoreInputFormat inputFormat = new BlobStoreInputFormat(blobstoreService, start, end);
+    inputFormat.setConfiguration(configuration());
+    return readAll(Collections.singletonList(inputFormat));
+  }
+
+  private static List<String> readAll(List<InputFormat<BlobstoreRecordKey, byte[]>> partitions) {
+    List<String> lines = new ArrayList<>();
+    for (InputFormat<BlobstoreRecordKey, byte[]> partition : partitions) {
+      KeyVal<BlobstoreRecordKey, byte[]> keyVal;
+      while ((keyVal = partition.readNext()) != null) {
+        lines.add(keyVal.getKey().getOffset() + ":"
+            + new String(keyVal.getValue(), StandardCharsets.UTF_8));
+      }
+      partition.close();
+    }
+    return lines;
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.services.mapper;
+
+import com.logistimo.services.mapred.IMapredService;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class JobExecutorTest {
+
+  private static final int PARTITIONS = 3;
+  private static final int RECORDS_PER_PARTITION = 5;
+
+  private static final Queue<String> mapped = new ConcurrentLinkedQueue<>();
+
+  @BeforeMethod
+  public void setUp() {
+    mapped.clear();
+  }
+
+  @Test
+  public void testMapsAllPartitions() {
+    RecordingExecutor executor = new RecordingExecutor(createJob(null));
+    executor.execute();
+
+    assertEquals(mapped.size(), PARTITIONS * RECORDS_PER_PARTITION);
+    assertEquals(new HashSet<>(mapped).size(), PARTITIONS * RECORDS_PER_PARTITION);
+    assertEquals(executor.job.getProcessedCount(), PARTITIONS * RECORDS_PER_PARTITION);
+    assertEquals(executor.job.getFailedCount(), 0);
+    assertEquals(executor.lastProcessed, PARTITIONS * RECORDS_PER_PARTITION);
+    assertEquals(executor.lastMetadata.get("failed"), "0");
+    assertEquals(executor.finished, Boolean.TRUE);
+  }
+
+  @Test
+  public void testFailedRecordFailsJob() {
+    RecordingExecutor executor = new RecordingExecutor(createJob("1-0"));
+    executor.execute();
+
+    assertFalse(mapped.contains("1-0"));
+    assertTrue(executor.job.getProcessedCount() < PARTITIONS * RECORDS_PER_PARTITION);
+    assertEquals(executor.job.getFailedCount(), 1);
+    assertEquals(executor.lastProcessed, executor.job.getProcessedCount());
+    assertEquals(executor.lastMetadata.get("failed"), "1");
+    assertEquals(executor.finished, Boolean.FALSE);
+  }
+
+  private static Job createJob(String failingKey) {
+    Map<String, String> params = new HashMap<>();
+    params.put("mapreduce.map.class", RecordingMapper.class.getName());
+    params.put(IMapredService.PARAM_SHARDCOUNT, String.valueOf(PARTITIONS));
+    params.put(IMapredService.PARAM_JOBSTATUS_ID, "7");
+    if (failingKey != null) {
+      params.put("test.failing.key", failingKey);
+    }
+    return new Job("JobExecutorTest", new Configuration(params), null);
+  }
+
+  private static class RecordingExecutor extends JobExecutor {
+
+    private final Job job;
+    private long lastProcessed;
+    private Map<String, String> lastMetadata;
+    private Boolean finished;
+
+    RecordingExecutor(Job job) {
+      super(job);
+      this.job = job;
+    }
+
+    @Override
+    InputFormat getInputFormat(String inputFormatStr) {
+      return new PartitionedInputFormat();
+    }
+
+    @Override
+    void recordProgress(Long jobStatusId, int processedCount, Map<String, String> metadata) {
+      assertEquals(jobStatusId, Long.valueOf(7));
+      lastProcessed = processedCount;
+      lastMetadata = metadata;
+    }
+
+    @Override
+    void recordFinished(Long jobStatusId, boolean success) {
+      assertEquals(jobStatusId, Long.valueOf(7));
+      finished = success;
+    }
+  }
+
+  public static class RecordingMapper extends GenericMapper<String, String, String, String> {
+
+    @Override
+    public void map(String key, String value, Context context) {
+      if (key.equals(context.getConfiguration().get("test.failing.key"))) {
+        throw new IllegalStateException("Failed to map " + key);
+      }
+      mapped.add(key);
+    }
+  }
+
+  private static class PartitionedInputFormat extends InputFormat<String, String> {
+
+    private final List<String> keys = new ArrayList<>();
+    private int next;
+
+    @Override
+    protected void init() {
+    }
+
+    @Override
+    public List<InputFormat<String, String>> createPartitions(Configuration configuration,
+                                                              int partitions) throws Exception {
+      List<InputFormat<String, String>> parts = new ArrayList<>(PARTITIONS);
+      for (int p = 0; p < PARTITIONS; p++) {
+        PartitionedInputFormat part = new PartitionedInputFormat();
+        for (int r = 0; r < RECORDS_PER_PARTITION; r++) {
+          part.keys.add(p + "-" + r);
+        }
+        part.setConfiguration(configuration);
+        parts.add(part);
+      }
+      return parts;
+    }
+
+    @Override
+    public KeyVal<String, String> readNext() {
+      if (next == keys.size()) {
+        return null;
+      }
+      String key = keys.get(next++);
+      return new KeyVal<>(key, key);
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
@@ -32,7 +32,9 @@ import com.logistimo.pagination.PageParams;
 import com.logistimo.pagination.Results;
 import com.logistimo.services.ServiceException;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author juhee
@@ -79,4 +81,14 @@ public interface MaterialCatalogService {
   List<Long> getAllMaterialIds(Long domainId);
 
   List<IMaterialManufacturers> getMaterialManufacturers(Long materialId) throws ServiceException;
+
+  /**
+   * Get the given materials in one query; ids that do not exist are skipped
+   */
+  List<IMaterial> getMaterials(Collection<Long> materialIds);
+
+  /**
+   * Get the manufacturers of the given materials in one query, grouped by material id
+   */
+  Map<Long, List<IMaterialManufacturers>> getMaterialManufacturers(Collection<Long> materialIds);
 }
@@ -28,6 +28,7 @@ package com.logistimo.materials.service.impl;
 
 import com.logistimo.AppFactory;
 import com.logistimo.auth.utils.SecurityUtils;
+import com.logistimo.constants.CharacterConstants;
 import com.logistimo.dao.JDOUtils;
 import com.logistimo.domains.utils.DomainsUtil;
 import com.logistimo.domains.utils.EntityRemover;
@@ -56,9 +57,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.ResourceBundle;
 
 import javax.jdo.JDOObjectNotFoundException;
@@ -531,6 +535,54 @@ public class MaterialCatalogServiceImpl implements MaterialCatalogService {
     }
   }
 
+  @SuppressWarnings("unchecked")
+  public List<IMaterial> getMaterials(Collection<Long> materialIds) {
+    if (materialIds == null || materialIds.isEmpty()) {
+      return new ArrayList<>();
+    }
+    PersistenceManager pm = getPM();
+    Query q = pm.newQuery(JDOUtils.getImplClass(IMaterial.class));
+    q.setFilter("mIdsParam.contains(materialId)");
+    q.declareParameters("java.util.Collection mIdsParam");
+    try {
+      return (List<IMaterial>) pm.detachCopyAll((List<IMaterial>) q.execute(materialIds));
+    } finally {
+      q.closeAll();
+      pm.close();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  public Map<Long, List<IMaterialManufacturers>> getMaterialManufacturers(
+      Collection<Long> materialIds) {
+    Map<Long, List<IMaterialManufacturers>> manufacturers = new HashMap<>();
+    if (materialIds == null || materialIds.isEmpty()) {
+      return manufacturers;
+    }
+    StringBuilder query =
+        new StringBuilder("SELECT * FROM MATERIALMANUFACTURERS WHERE MATERIAL_ID IN (");
+    for (int i = 0; i < materialIds.size(); i++) {
+      query.append(CharacterConstants.QUESTION).append(CharacterConstants.COMMA);
+    }
+    query.setLength(query.length() - 1);
+    query.append(CharacterConstants.C_BRACKET);
+    PersistenceManager pm = getPM();
+    Query q = pm.newQuery("javax.jdo.query.SQL", query.toString());
+    q.setClass(JDOUtils.getImplClass(IMaterialManufacturers.class));
+    try {
+      List<IMaterialManufacturers> results =
+          (List<IMaterialManufacturers>) q.executeWithArray(materialIds.toArray());
+      for (IMaterialManufacturers mfr
+          : (List<IMaterialManufacturers>) pm.detachCopyAll(results)) {
+        manufacturers.computeIfAbsent(mfr.getMaterialId(), k -> new ArrayList<>()).add(mfr);
+      }
+    } finally {
+      q.closeAll();
+      pm.close();
+    }
+    return manufacturers;
+  }
+
   public PersistenceManager getPM() {
     return PMF.get().getPersistenceManager();
   }
@@ -29,10 +29,13 @@ package com.logistimo.inventory.optimization.service.impl;
 import com.logistimo.config.models.DomainConfig;
 import com.logistimo.inventory.entity.IInvntry;
 import com.logistimo.inventory.optimization.service.InventoryOptimizerService;
+import com.logistimo.inventory.predictions.service.PredictionService;
 import com.logistimo.services.ServiceException;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
@@ -46,13 +49,28 @@ import javax.jdo.PersistenceManager;
 @Service
 public class InventoryOptimizerServiceVanillaImpl implements InventoryOptimizerService {
 
+  private PredictionService predictionService;
+
+  @Autowired
+  public void setPredictionService(PredictionService predictionService) {
+    this.predictionService = predictionService;
+  }
+
   /**
-   * Optimize for the list of inventories specified
+   * Optimize for the list of inventories specified. The periodic P and S run recomputes the
+   * consumption rates from history, other runs only fold in the transactions since the last one.
    */
   public void optimize(Long domainId, List<IInvntry> inventories, DomainConfig dc,
                        boolean isPAndSRequired, boolean isDAndQRequired, Locale locale,
                        PersistenceManager pm) throws ServiceException {
-    // TODO: Default implementation
+    if (!isPAndSRequired && !isDAndQRequired) {
+      return;
+    }
+    List<Long> invIds = new ArrayList<>(inventories.size());
+    for (IInvntry inv : inventories) {
+      invIds.add(inv.getKey());
+    }
+    predictionService.updateInventoryPredictions(invIds, isPAndSRequired);
   }
 
 
@@ -0,0 +1,52 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.orders.dao;
+
+import com.logistimo.orders.entity.IOrder;
+import com.logistimo.orders.models.LeadTimeStats;
+
+/**
+ * Lead time statistics of fulfilled orders, by kiosk, vendor and material
+ */
+public interface ILeadTimeStatsDao {
+
+  /**
+   * Adds a just fulfilled order to the statistics of each of its materials, for its vendor and for
+   * all vendors
+   *
+   * @param capacity most orders to keep per kiosk, vendor and material
+   */
+  void addFulfilledOrder(IOrder order, int capacity);
+
+  /**
+   * Get the statistics of a kiosk and material, loading them from the order history when not yet
+   * known
+   *
+   * @param vendorId          vendor of the orders, null for all vendors
+   * @param maxHistoricalDays age limit of the orders to load
+   * @param maxOrders         most orders to load
+   */
+  LeadTimeStats getStats(Long kioskId, Long vendorId, Long materialId, int maxHistoricalDays,
+                         int maxOrders);
+}
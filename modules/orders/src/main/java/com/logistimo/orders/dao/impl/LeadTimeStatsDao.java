@@ -0,0 +1,199 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.orders.dao.impl;
+
+import com.logistimo.AppFactory;
+import com.logistimo.constants.Constants;
+import com.logistimo.logger.XLog;
+import com.logistimo.orders.dao.ILeadTimeStatsDao;
+import com.logistimo.orders.entity.IDemandItem;
+import com.logistimo.orders.entity.IOrder;
+import com.logistimo.orders.models.LeadTimeStats;
+import com.logistimo.services.cache.MemcacheService;
+import com.logistimo.services.impl.PMF;
+import com.logistimo.utils.LockUtil;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.jdo.PersistenceManager;
+import javax.jdo.Query;
+
+/**
+ * Keeps the statistics in the cache, one entry per kiosk, vendor and material. An entry is loaded
+ * from the order history once, on first read, and then only has fulfilled orders added to it. Both
+ * happen under a lock per entry. When an entry cannot be updated, it is dropped and loaded again on
+ * next read. An entry is loaded again when read with another history window or number of orders,
+ * and expires a fixed time after it was loaded, however often orders are added to it.
+ *
+ * Orders are added after their status change is committed, when the order service manages the
+ * transaction. When the caller manages it, an entry loaded between the status change and the
+ * caller's commit misses that order until it expires.
+ */
+@Component
+public class LeadTimeStatsDao implements ILeadTimeStatsDao {
+
+  private static final XLog xLogger = XLog.getLog(LeadTimeStatsDao.class);
+
+  private static final String KEY_PREFIX = "LTS.";
+  private static final String ALL_VENDORS = "*";
+  private static final int LOCK_RETRY_COUNT = 5;
+  private static final int EXPIRY_SECONDS = 24 * 60 * 60;
+
+  @Override
+  public void addFulfilledOrder(IOrder order, int capacity) {
+    if (order.getItems() == null || order.getStatusUpdatedOn() == null) {
+      return;
+    }
+    long fulfilledOn = order.getStatusUpdatedOn().getTime();
+    Long deliveryLeadTime = toTime(order.getDeliveryLeadTime());
+    Long processingTime = toTime(order.getProcessingTime());
+    Set<String> keys = new LinkedHashSet<>();
+    for (IDemandItem item : order.getItems()) {
+      if (order.getServicingKiosk() != null) {
+        keys.add(getKey(order.getKioskId(), order.getServicingKiosk(), item.getMaterialId()));
+      }
+      keys.add(getKey(order.getKioskId(), null, item.getMaterialId()));
+    }
+    MemcacheService cache = AppFactory.get().getMemcacheService();
+    for (String key : keys) {
+      LockUtil.LockStatus lockStatus = LockUtil.lock(key, LOCK_RETRY_COUNT);
+      try {
+        if (!LockUtil.isLocked(lockStatus)) {
+          cache.delete(key);
+          continue;
+        }
+        LeadTimeStats stats = (LeadTimeStats) cache.get(key);
+        if (stats != null) {
+          int expiry = getRemainingExpiry(stats);
+          if (expiry > 0) {
+            stats.add(order.getOrderId(), fulfilledOn, deliveryLeadTime, processingTime,
+                capacity);
+            cache.put(key, stats, expiry);
+          } else {
+            cache.delete(key);
+          }
+        }
+      } catch (Exception e) {
+        xLogger.warn("Failed to add order {0} to lead time stats {1}", order.getOrderId(), key, e);
+        cache.delete(key);
+      } finally {
+        if (LockUtil.shouldReleaseLock(lockStatus) && !LockUtil.release(key)) {
+          xLogger.warn("Unable to release lock for key {0}", key);
+        }
+      }
+    }
+  }
+
+  @Override
+  public LeadTimeStats getStats(Long kioskId, Long vendorId, Long materialId,
+                                int maxHistoricalDays, int maxOrders) {
+    String key = getKey(kioskId, vendorId, materialId);
+    MemcacheService cache = AppFactory.get().getMemcacheService();
+    LeadTimeStats stats = (LeadTimeStats) cache.get(key);
+    if (stats != null && stats.isLoadedWith(maxHistoricalDays, maxOrders)) {
+      return stats;
+    }
+    // Load under the lock addFulfilledOrder takes, so that an order fulfilled meanwhile is either
+    // committed before the load reads it, or added to the entry once it is cached
+    LockUtil.LockStatus lockStatus = LockUtil.lock(key, LOCK_RETRY_COUNT);
+    try {
+      if (LockUtil.isLocked(lockStatus)) {
+        stats = (LeadTimeStats) cache.get(key);
+        if (stats == null || !stats.isLoadedWith(maxHistoricalDays, maxOrders)) {
+          stats = load(kioskId, vendorId, materialId, maxHistoricalDays, maxOrders);
+          cache.put(key, stats, EXPIRY_SECONDS);
+        }
+      } else {
+        // Not cached, an order fulfilled meanwhile could be missed until the entry expires
+        stats = load(kioskId, vendorId, materialId, maxHistoricalDays, maxOrders);
+      }
+    } finally {
+      if (LockUtil.shouldReleaseLock(lockStatus) && !LockUtil.release(key)) {
+        xLogger.warn("Unable to release lock for key {0}", key);
+      }
+    }
+    return stats;
+  }
+
+  private LeadTimeStats load(Long kioskId, Long vendorId, Long materialId, int maxHistoricalDays,
+                             int maxOrders) {
+    LeadTimeStats stats =
+        new LeadTimeStats(maxHistoricalDays, maxOrders, System.currentTimeMillis());
+    List<String> parameters = new ArrayList<>(7);
+    StringBuilder sqlQuery =
+        new StringBuilder("SELECT ID, UON, DLT, PT FROM `ORDER` WHERE KID = ?");
+    parameters.add(String.valueOf(kioskId));
+    if (vendorId != null) {
+      sqlQuery.append(" AND SKID = ?");
+      parameters.add(String.valueOf(vendorId));
+    }
+    sqlQuery.append(" AND ST = ?");
+    parameters.add(IOrder.FULFILLED);
+    sqlQuery.append(" AND ID IN (SELECT DISTINCT OID FROM DEMANDITEM WHERE KID = ? AND MID = ?)");
+    parameters.add(String.valueOf(kioskId));
+    parameters.add(String.valueOf(materialId));
+    sqlQuery.append(" AND UON >= (DATE_SUB(NOW(),INTERVAL ? DAY)) ORDER BY UON DESC LIMIT 0,?");
+    parameters.add(String.valueOf(maxHistoricalDays));
+    parameters.add(String.valueOf(maxOrders));
+    PersistenceManager pm = PMF.get().getPersistenceManager();
+    Query query = pm.newQuery(Constants.JAVAX_JDO_QUERY_SQL, sqlQuery.toString());
+    try {
+      List results = (List) query.executeWithArray(parameters.toArray());
+      for (Object result : results) {
+        Object[] row = (Object[]) result;
+        stats.add(((Number) row[0]).longValue(), ((Date) row[1]).getTime(), toTime(row[2]),
+            toTime(row[3]), maxOrders);
+      }
+    } finally {
+      query.closeAll();
+      pm.close();
+    }
+    return stats;
+  }
+
+  private static int getRemainingExpiry(LeadTimeStats stats) {
+    long elapsedSeconds = (System.currentTimeMillis() - stats.getLoadedOn()) / 1000;
+    return (int) Math.max(0, EXPIRY_SECONDS - elapsedSeconds);
+  }
+
+  /**
+   * Orders return a missing time as 0, so a time of 0 is taken as missing wherever the order comes
+   * from, and left out of its average. Unlike the AVG query this replaced, rows stored with an
+   * explicit 0 therefore do not lower the average.
+   */
+  private static Long toTime(Object value) {
+    return value != null && ((Number) value).longValue() > 0 ? ((Number) value).longValue() : null;
+  }
+
+  private static String getKey(Long kioskId, Long vendorId, Long materialId) {
+    return KEY_PREFIX + kioskId + "." + (vendorId != null ? vendorId : ALL_VENDORS) + "."
+        + materialId;
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.orders.models;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recently fulfilled orders of a kiosk and material, newest first, with their delivery lead time
+ * and processing time in millis. Each order is held once. Bounded to the most orders a lead time average may use.
+ * Remembers the history window and number of orders it was loaded with, and when.
+ */
+public class LeadTimeStats implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final List<Sample> samples = new ArrayList<>();
+  private final int maxHistoricalDays;
+  private final int maxOrders;
+  private final long loadedOn;
+
+  public LeadTimeStats(int maxHistoricalDays, int maxOrders, long loadedOn) {
+    this.maxHistoricalDays = maxHistoricalDays;
+    this.maxOrders = maxOrders;
+    this.loadedOn = loadedOn;
+  }
+
+  /**
+   * @return true if loaded from the order history with the given window and number of orders
+   */
+  public boolean isLoadedWith(int maxHistoricalDays, int maxOrders) {
+    return this.maxHistoricalDays == maxHistoricalDays && this.maxOrders == maxOrders;
+  }
+
+  public long getLoadedOn() {
+    return loadedOn;
+  }
+
+  /**
+   * Adds a fulfilled order, unless it is already part of the statistics
+   */
+  public void add(Long orderId, long fulfilledOn, Long deliveryLeadTime, Long processingTime,
+                  int capacity) {
+    for (Sample sample : samples) {
+      if (sample.orderId.equals(orderId)) {
+        return;
+      }
+    }
+    int index = 0;
+    while (index < samples.size() && samples.get(index).fulfilledOn > fulfilledOn) {
+      index++;
+    }
+    samples.add(index, new Sample(orderId, fulfilledOn, deliveryLeadTime, processingTime));
+    while (samples.size() > capacity) {
+      samples.remove(samples.size() - 1);
+    }
+  }
+
+  public int size() {
+    return samples.size();
+  }
+
+  /**
+   * Average delivery lead time, plus average processing time unless excluded, of the newest
+   * {@code maxOrders} orders fulfilled since the given time. Orders without a delivery lead time or
+   * processing time are counted, but left out of the respective average.
+   *
+   * @return the average lead time in millis, null if there are fewer than {@code minOrders} orders
+   */
+  public BigDecimal getAverage(long since, int minOrders, int maxOrders,
+                               boolean excludeProcessingTime) {
+    int count = 0;
+    Average deliveryLeadTime = new Average();
+    Average processingTime = new Average();
+    for (Sample sample : samples) {
+      if (count == maxOrders || sample.fulfilledOn < since) {
+        break;
+      }
+      count++;
+      deliveryLeadTime.add(sample.deliveryLeadTime);
+      processingTime.add(sample.processingTime);
+    }
+    if (count < minOrders) {
+      return null;
+    }
+    BigDecimal average = deliveryLeadTime.get();
+    if (!excludeProcessingTime) {
+      average = average.add(processingTime.get());
+    }
+    return average;
+  }
+
+  private static class Sample implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long orderId;
+    private final long fulfilledOn;
+    private final Long deliveryLeadTime;
+    private final Long processingTime;
+
+    Sample(Long orderId, long fulfilledOn, Long deliveryLeadTime, Long processingTime) {
+      this.orderId = orderId;
+      this.fulfilledOn = fulfilledOn;
+      this.deliveryLeadTime = deliveryLeadTime;
+      this.processingTime = processingTime;
+    }
+  }
+
+  private static class Average {
+
+    private long sum;
+    private int count;
+
+    void add(Long value) {
+      if (value != null) {
+        sum += value;
+        count++;
+      }
+    }
+
+    BigDecimal get() {
+      return count == 0 ? BigDecimal.ZERO
+          : BigDecimal.valueOf(sum).divide(BigDecimal.valueOf(count), 4, RoundingMode.HALF_UP);
+    }
+  }
+}
@@ -263,6 +263,17 @@ public interface OrderManagementService {
   BigDecimal getLeadTime(Long kid, Long mid, float orderPeriodicityInConfig,
       LeadTimeAvgConfig leadTimeAvgConfig, float leadTimeDefaultInConfig) throws ServiceException;
 
+  /**
+   * Get the average lead time of an inventory item from its lead time statistics, which are kept
+   * up to date as orders are fulfilled
+   *
+   * @param inv - inventory item
+   * @param vendorId - vendor of the orders to consider, null for all vendors
+   * @return - lead time for the inventory item
+   */
+  BigDecimal getLeadTime(IInvntry inv, Long vendorId, float orderPeriodicityInConfig,
+      LeadTimeAvgConfig leadTimeAvgConfig, float leadTimeDefaultInConfig);
+
   void updateOrderMetadata(Long orderId, String updatedBy, PersistenceManager pm, String salesRefId,
                            Date estimatedArrivalDate, Boolean updateOrderFields);
 
@@ -38,7 +38,6 @@ import com.logistimo.conversations.service.ConversationService;
 import com.logistimo.dao.JDOUtils;
 import com.logistimo.domains.utils.DomainsUtil;
 import com.logistimo.entities.entity.IKiosk;
-import com.logistimo.entities.entity.IKioskLink;
 import com.logistimo.entities.service.EntitiesService;
 import com.logistimo.events.entity.IEvent;
 import com.logistimo.events.models.CustomOptions;
@@ -66,11 +65,13 @@ import com.logistimo.orders.actions.GenerateOrderInvoiceAction;
 import com.logistimo.orders.actions.GetFilteredOrdersAction;
 import com.logistimo.orders.actions.GetOrderOverallStatusAction;
 import com.logistimo.orders.approvals.actions.OrderVisibilityAction;
+import com.logistimo.orders.dao.ILeadTimeStatsDao;
 import com.logistimo.orders.dao.IOrderDao;
 import com.logistimo.orders.dao.OrderUpdateStatus;
 import com.logistimo.orders.entity.IDemandItem;
 import com.logistimo.orders.entity.IOrder;
 import com.logistimo.orders.entity.Order;
+import com.logistimo.orders.models.LeadTimeStats;
 import com.logistimo.orders.models.OrderFilters;
 import com.logistimo.orders.models.PDFResponseModel;
 import com.logistimo.orders.models.UpdateOrderTransactionsModel;
@@ -136,6 +137,7 @@ public class OrderManagementServiceImpl implements OrderManagementService {
 
   private ITagDao tagDao;
   private IOrderDao orderDao;
+  private ILeadTimeStatsDao leadTimeStatsDao;
   private IHandlingUnitService handlingUnitService;
   private ConversationService conversationService;
   private IShipmentService shipmentService;
@@ -162,6 +164,11 @@ public class OrderManagementServiceImpl implements OrderManagementService {
     this.orderDao = orderDao;
   }
 
+  @Autowired
+  public void setLeadTimeStatsDao(ILeadTimeStatsDao leadTimeStatsDao) {
+    this.leadTimeStatsDao = leadTimeStatsDao;
+  }
+
   @Autowired
   public void setHandlingUnitService(IHandlingUnitService handlingUnitService) {
     this.handlingUnitService = handlingUnitService;
@@ -492,6 +499,9 @@ public class OrderManagementServiceImpl implements OrderManagementService {
       }
     }
 
+    if (IOrder.FULFILLED.equals(newStatus)) {
+      addToLeadTimeStats(uo.order);
+    }
     // Schedule a status change notification
     // NOTE: Do this after pm is closed so that the order status is persisted
     generateEvent(domainId, IEvent.STATUS_CHANGE, uo.order, null, userIdsToBeNotified);
@@ -1875,11 +1885,20 @@ public class OrderManagementServiceImpl implements OrderManagementService {
   public BigDecimal getLeadTime(Long kid, Long mid, float orderPeriodicityInConfig,
       LeadTimeAvgConfig leadTimeAvgConfig, float leadTimeDefaultInConfig)
       throws ServiceException {
-    BigDecimal avgLeadTime = BigDecimal.ZERO;
     if (kid == null || mid == null) {
       xLogger.warn("Either Kiosk ID or material ID is null, kid: {0}, mid: {1}", kid, mid);
-      return avgLeadTime;
+      return BigDecimal.ZERO;
     }
+    IInvntry inv = inventoryManagementService.getInventory(kid, mid);
+    return getLeadTime(inv, null, orderPeriodicityInConfig, leadTimeAvgConfig,
+        leadTimeDefaultInConfig);
+  }
+
+  @Override
+  public BigDecimal getLeadTime(IInvntry inv, Long vendorId, float orderPeriodicityInConfig,
+                                LeadTimeAvgConfig leadTimeAvgConfig,
+                                float leadTimeDefaultInConfig) {
+    BigDecimal avgLeadTime = BigDecimal.ZERO;
     float maxOrderPeriods = LeadTimeAvgConfig.MAX_ORDER_PERIODS_DEFAULT;
     int minNumberOfOrders = LeadTimeAvgConfig.MINIMUM_NUMBER_OF_ORDERS_DEFAULT;
     int maxNumberOfOrders = LeadTimeAvgConfig.MAXIMUM_NUMBER_OF_ORDERS_DEFAULT;
@@ -1890,13 +1909,6 @@ public class OrderManagementServiceImpl implements OrderManagementService {
       minNumberOfOrders = leadTimeAvgConfig.getMinNumOfOrders();
       excludeProcessingTime = leadTimeAvgConfig.getExcludeOrderProcTime();
     }
-
-    Results results = entitiesService.getLinkedKiosks(kid, IKioskLink.TYPE_VENDOR, null, null);
-    boolean kskHasMoreThanOneVnd = false;
-    if (results.getResults().size() > 1) {
-      kskHasMoreThanOneVnd = true;
-    }
-    IInvntry inv = inventoryManagementService.getInventory(kid, mid);
     BigDecimal orderPeriodicity = inv.getOrderPeriodicity();
     if (BigUtil.equalsZero(orderPeriodicity)) {
       orderPeriodicity = BigDecimal.valueOf(orderPeriodicityInConfig);
@@ -1904,57 +1916,35 @@ public class OrderManagementServiceImpl implements OrderManagementService {
     int
         maxHistoricalPeriod =
         orderPeriodicity.multiply(BigDecimal.valueOf(maxOrderPeriods)).intValue();
-    List<String> parameters = new ArrayList<>(1);
-    StringBuilder sqlQuery = new StringBuilder("SELECT AVG(DLT_ALIAS)");
-    if (!excludeProcessingTime) {
-      sqlQuery.append(" + AVG(PT_ALIAS)");
-    }
-    sqlQuery.append(", COUNT(1) FROM (");
-    sqlQuery.append("SELECT DLT DLT_ALIAS");
-    if (!excludeProcessingTime) {
-      sqlQuery.append(", PT PT_ALIAS");
-    }
-    sqlQuery.append(" FROM `ORDER` WHERE ");
-    if (kskHasMoreThanOneVnd) {
-      sqlQuery.append("ID IN (SELECT DISTINCT OID FROM DEMANDITEM WHERE KID = ?");
-      parameters.add(String.valueOf(kid));
-      sqlQuery.append(" AND MID = ?)");
-      parameters.add(String.valueOf(mid));
-    } else {
-      sqlQuery.append("KID = ?");
-      parameters.add(String.valueOf(kid));
-    }
-    sqlQuery.append(" AND ST = ?");
-    parameters.add(IOrder.FULFILLED);
-
-    sqlQuery.append(" AND UON >= (DATE_SUB(NOW(),INTERVAL ?")
-        .append(" DAY))").append(" ORDER BY UON DESC LIMIT 0,?");
-    parameters.add(String.valueOf(maxHistoricalPeriod));
-    parameters.add(String.valueOf(maxNumberOfOrders));
-    sqlQuery.append(") ALIAS");
-    PersistenceManager pm = PMF.get().getPersistenceManager();
-    Query query = pm.newQuery(Constants.JAVAX_JDO_QUERY_SQL, sqlQuery.toString());
     try {
-      List queryResults = (List) query.executeWithArray(parameters.toArray());
-      if (queryResults != null && !queryResults.isEmpty()) {
-        for (Object queryResult : queryResults) {
-          Object[] resultsArray = (Object[]) queryResult;
-          avgLeadTime = (BigDecimal) resultsArray[0];
-          long numberOfOrders = (long) resultsArray[1];
-          if (numberOfOrders < minNumberOfOrders) {
-            avgLeadTime = BigDecimal.valueOf(leadTimeDefaultInConfig);
-          }
-        }
+      LeadTimeStats stats = leadTimeStatsDao.getStats(inv.getKioskId(), vendorId,
+          inv.getMaterialId(), maxHistoricalPeriod, maxNumberOfOrders);
+      long since =
+          System.currentTimeMillis() - maxHistoricalPeriod * LocalDateUtil.MILLISECS_PER_DAY;
+      avgLeadTime = stats.getAverage(since, minNumberOfOrders, maxNumberOfOrders,
+          excludeProcessingTime);
+      if (avgLeadTime == null) {
+        avgLeadTime = BigDecimal.valueOf(leadTimeDefaultInConfig);
       }
     } catch (Exception e) {
-      xLogger.warn("Error while calculating average lead time for kid: {0}, mid: {1}", kid, mid, e);
-    } finally {
-      query.closeAll();
-      pm.close();
+      xLogger.warn("Error while calculating average lead time for kid: {0}, mid: {1}",
+          inv.getKioskId(), inv.getMaterialId(), e);
     }
     return avgLeadTime;
   }
 
+  private void addToLeadTimeStats(IOrder order) {
+    try {
+      LeadTimeAvgConfig leadTimeAvgConfig =
+          DomainConfig.getInstance(order.getDomainId()).getOptimizerConfig().getLeadTimeAvgCfg();
+      leadTimeStatsDao.addFulfilledOrder(order, leadTimeAvgConfig != null
+          ? leadTimeAvgConfig.getMaxNumOfOrders()
+          : LeadTimeAvgConfig.MAXIMUM_NUMBER_OF_ORDERS_DEFAULT);
+    } catch (Exception e) {
+      xLogger.warn("Failed to update lead time stats for order {0}", order.getOrderId(), e);
+    }
+  }
+
   @Override
   public void updateOrderMetadata(Long orderId, String updatedBy, PersistenceManager pm) {
     updateOrderMetadata(orderId, updatedBy, pm, null, null, false);
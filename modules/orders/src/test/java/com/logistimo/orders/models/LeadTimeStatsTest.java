@@ -0,0 +1,78 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.orders.models;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LeadTimeStatsTest {
+
+  @Test
+  public void testAverageOfNewestOrdersWithinPeriod() {
+    LeadTimeStats stats = new LeadTimeStats(30, 30, 0);
+    stats.add(1L, 100, 10L, 2L, 3);
+    stats.add(2L, 300, 30L, 4L, 3);
+    stats.add(3L, 200, 20L, null, 3);
+    stats.add(4L, 400, 40L, 6L, 3);
+    assertEquals(3, stats.size());
+    // Newest two: 400 and 300
+    assertEquals(new BigDecimal("35.0000"), stats.getAverage(0, 1, 2, true));
+    assertEquals(new BigDecimal("40.0000"), stats.getAverage(0, 1, 2, false));
+    // Orders without a processing time are counted, but not averaged
+    assertEquals(new BigDecimal("35.0000"), stats.getAverage(200, 3, 3, false));
+  }
+
+  @Test
+  public void testOrderAddedOnce() {
+    LeadTimeStats stats = new LeadTimeStats(30, 30, 0);
+    stats.add(1L, 100, 10L, 2L, 30);
+    stats.add(1L, 100, 10L, 2L, 30);
+    stats.add(2L, 200, 20L, 2L, 30);
+    assertEquals(2, stats.size());
+    assertEquals(new BigDecimal("15.0000"), stats.getAverage(0, 1, 30, true));
+  }
+
+  @Test
+  public void testTooFewOrders() {
+    LeadTimeStats stats = new LeadTimeStats(30, 30, 0);
+    stats.add(1L, 100, 10L, 2L, 30);
+    stats.add(2L, 200, 20L, 2L, 30);
+    assertNull(stats.getAverage(150, 2, 30, false));
+    assertEquals(new BigDecimal("17.0000"), stats.getAverage(100, 2, 30, false));
+  }
+
+  @Test
+  public void testLoadedWith() {
+    LeadTimeStats stats = new LeadTimeStats(90, 10, 0);
+    assertTrue(stats.isLoadedWith(90, 10));
+    assertFalse(stats.isLoadedWith(60, 10));
+    assertFalse(stats.isLoadedWith(90, 20));
+  }
+}
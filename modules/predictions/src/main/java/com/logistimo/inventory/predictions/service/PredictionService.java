@@ -23,10 +23,23 @@
 
 package com.logistimo.inventory.predictions.service;
 
+import java.util.List;
+
 /**
  * Created by charan on 08/03/17.
  */
 public interface PredictionService {
   void updateInventoryPredictions(String invId);
   void updateOrderPredictions(String orderId);
+
+  /**
+   * Updates the daily consumption rate and predicted days of stock of the given inventories and
+   * logs the changed ones in a single batch.
+   *
+   * @param invIds    Inventory ids
+   * @param recompute true to recompute the consumption rate from the transactions of the max.
+   *                  historical period (backfill), false to fold in only the transactions since
+   *                  the last update
+   */
+  void updateInventoryPredictions(List<Long> invIds, boolean recompute);
 }
@@ -23,21 +23,261 @@
 
 package com.logistimo.inventory.predictions.service.impl;
 
+import com.logistimo.config.models.DomainConfig;
+import com.logistimo.config.models.InventoryConfig;
+import com.logistimo.config.models.OptimizerConfig;
+import com.logistimo.dao.JDOUtils;
+import com.logistimo.inventory.entity.IInvntry;
+import com.logistimo.inventory.entity.ITransaction;
+import com.logistimo.inventory.predictions.entity.IInventoryPredictionsLog;
 import com.logistimo.inventory.predictions.service.PredictionService;
+import com.logistimo.inventory.predictions.utils.PredictiveUtil;
+import com.logistimo.inventory.predictions.utils.RollingConsumptionRate;
+import com.logistimo.inventory.service.InventoryManagementService;
+import com.logistimo.logger.XLog;
+import com.logistimo.orders.entity.IDemandItem;
+import com.logistimo.services.impl.PMF;
+import com.logistimo.utils.BigUtil;
+import com.logistimo.utils.StringUtil;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.jdo.PersistenceManager;
+import javax.jdo.Query;
 
 /**
  * Created by charan on 08/03/17.
+ *
+ * Maintains the daily consumption rate ({@code crD}) of each inventory as a rolling rate that is
+ * resumed from its last value and time ({@code crT}), folding in only the transactions committed
+ * since then. Predicted days of stock are refreshed from it and changes are logged to
+ * {@link IInventoryPredictionsLog}.
  */
+@Service
 public class PredictionServiceImpl implements PredictionService {
 
+  private static final XLog xLogger = XLog.getLog(PredictionServiceImpl.class);
+
+  private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+  // Transactions of the last few seconds may not be visible yet, the next update picks them up
+  private static final long SETTLE_MILLIS = 10000;
+
+  private InventoryManagementService inventoryManagementService;
+
+  @Autowired
+  public void setInventoryManagementService(
+      InventoryManagementService inventoryManagementService) {
+    this.inventoryManagementService = inventoryManagementService;
+  }
+
   @Override
   public void updateInventoryPredictions(String invId) {
-    //TODO : Implement vanilla predictions
+    updateInventoryPredictions(Collections.singletonList(Long.valueOf(invId)), false);
   }
 
   @Override
+  @SuppressWarnings("unchecked")
   public void updateOrderPredictions(String orderId) {
-    //TODO: Implement predictions
+    // Receipts expected from the order change the predicted days of stock of the customer
+    List<Long> invIds;
+    PersistenceManager pm = PMF.get().getPersistenceManager();
+    Query q = pm.newQuery(JDOUtils.getImplClass(IDemandItem.class));
+    Query iq = null;
+    try {
+      q.setFilter("oid == oidParam");
+      q.declareParameters("Long oidParam");
+      q.setResult("kId, mId");
+      List<Object[]> rows = (List<Object[]>) q.execute(Long.valueOf(orderId));
+      if (rows == null || rows.isEmpty()) {
+        return;
+      }
+      Set<Long> materialIds = new HashSet<>(rows.size());
+      for (Object[] row : rows) {
+        materialIds.add((Long) row[1]);
+      }
+      iq = pm.newQuery(JDOUtils.getImplClass(IInvntry.class));
+      iq.setFilter("kId == kIdParam && mIdsParam.contains(mId)");
+      iq.declareParameters("Long kIdParam, java.util.Collection mIdsParam");
+      iq.setResult("key");
+      invIds = new ArrayList<>((List<Long>) iq.execute(rows.get(0)[0], materialIds));
+    } finally {
+      q.closeAll();
+      if (iq != null) {
+        iq.closeAll();
+      }
+      pm.close();
+    }
+    updateInventoryPredictions(invIds, false);
+  }
+
+  @Override
+  public void updateInventoryPredictions(List<Long> invIds, boolean recompute) {
+    if (invIds == null || invIds.isEmpty()) {
+      return;
+    }
+    Date asOf = new Date(System.currentTimeMillis() - SETTLE_MILLIS);
+    PersistenceManager pm = PMF.get().getPersistenceManager();
+    try {
+      List<IInventoryPredictionsLog> logs = new ArrayList<>(invIds.size());
+      for (IInvntry inv : getInventories(invIds, pm)) {
+        try {
+          IInventoryPredictionsLog log = updatePredictions(inv, asOf, recompute, pm);
+          if (log != null) {
+            logs.add(log);
+          }
+        } catch (Exception e) {
+          xLogger.warn("Error while updating predictions for inventory {0}", inv.getKey(), e);
+        }
+      }
+      if (!logs.isEmpty()) {
+        pm.makePersistentAll(logs);
+      }
+      xLogger.fine("Updated predictions of {0} of {1} inventories, recompute: {2}", logs.size(),
+          invIds.size(), recompute);
+    } finally {
+      pm.close();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<IInvntry> getInventories(Collection<Long> invIds, PersistenceManager pm) {
+    Query q = pm.newQuery(JDOUtils.getImplClass(IInvntry.class));
+    q.setFilter("invIdsParam.contains(key)");
+    q.declareParameters("java.util.Collection invIdsParam");
+    try {
+      return new ArrayList<>((List<IInvntry>) q.execute(invIds));
+    } finally {
+      q.closeAll();
+    }
+  }
+
+  /**
+   * Updates the consumption rate and predicted days of stock of an inventory
+   *
+   * @return log of the update, null if the predictions did not change
+   */
+  private IInventoryPredictionsLog updatePredictions(IInvntry inv, Date asOf, boolean recompute,
+                                                     PersistenceManager pm) throws Exception {
+    DomainConfig dc = DomainConfig.getInstance(inv.getDomainId());
+    InventoryConfig ic = dc.getInventoryConfig();
+    if (!ic.isCREnabled()) {
+      return null;
+    }
+    BigDecimal prevCr = inv.getConsumptionRateDaily();
+    BigDecimal prevPdos = inv.getPredictedDaysOfStock();
+    BigDecimal cr;
+    if (InventoryConfig.CR_AUTOMATIC == ic.getConsumptionRate()) {
+      cr = updateConsumptionRate(inv, dc.getOptimizerConfig(), asOf, recompute, pm);
+    } else {
+      cr = inventoryManagementService.getDailyConsumptionRate(inv, ic.getConsumptionRate(),
+          ic.getManualCRFreq());
+    }
+    BigDecimal pdos = PredictiveUtil.getPredictedDaysOfStock(inv.getStock(), cr,
+        ic.showPredictions() ? PredictiveUtil.getOrderStkPredictions(inv) : null);
+    inv.setPredictedDaysOfStock(pdos);
+    if (BigUtil.equals(prevCr, inv.getConsumptionRateDaily()) && BigUtil.equals(prevPdos, pdos)) {
+      return null;
+    }
+    IInventoryPredictionsLog log = JDOUtils.createInstance(IInventoryPredictionsLog.class);
+    log.setInventoryKey(inv.getKey());
+    log.setMaterialId(inv.getMaterialId());
+    log.setKioskId(inv.getKioskId());
+    log.setCreatedTime(new Date());
+    log.setConsumptionRate(cr);
+    log.setPredictedDaysOfStock(pdos);
+    log.setOrderPeriodicity(inv.getOrderPeriodicity());
+    return log;
+  }
+
+  /**
+   * Resumes the rolling consumption rate from its last value and folds in the transactions since
+   * then; or, to recompute, starts afresh from the max. historical period. The time constant of
+   * the rate is the max. historical period, which the rate thereby averages over.
+   */
+  private BigDecimal updateConsumptionRate(IInvntry inv, OptimizerConfig oc, Date asOf,
+                                           boolean recompute, PersistenceManager pm) {
+    float window = oc.getMaxHistoricalPeriod();
+    Date since = inv.getConsumptionRateTimestamp();
+    RollingConsumptionRate crate;
+    if (recompute || since == null) {
+      since = new Date(asOf.getTime() - (long) (window * MILLIS_PER_DAY));
+      Date start = inv.getCreatedOn() != null && inv.getCreatedOn().after(since)
+          ? inv.getCreatedOn() : since;
+      crate = RollingConsumptionRate.start(start, window, oc.getMinHistoricalPeriod());
+    } else if (since.before(asOf)) {
+      crate = RollingConsumptionRate.resume(inv.getConsumptionRateDaily(), since,
+          inv.getCreatedOn(), window, oc.getMinHistoricalPeriod());
+    } else {
+      return inv.getConsumptionRateDaily();
+    }
+    foldTransactions(crate, inv, since, asOf, oc, pm);
+    crate.advanceTo(asOf);
+    inv.setConsumptionRateDaily(crate.getDailyRate());
+    inv.setConsumptionRateTimestamp(asOf);
+    return inv.getConsumptionRateDaily();
+  }
+
+  /**
+   * Folds the consumption of transactions in ({@code since}, {@code until}] into the rate: issues,
+   * discards unless excluded, less incoming returns. Transactions with excluded reasons are skipped.
+   */
+  @SuppressWarnings("unchecked")
+  private void foldTransactions(RollingConsumptionRate crate, IInvntry inv, Date since,
+                                Date until, OptimizerConfig oc, PersistenceManager pm) {
+    List<String> types = new ArrayList<>(3);
+    types.add(ITransaction.TYPE_ISSUE);
+    types.add(ITransaction.TYPE_RETURNS_INCOMING);
+    if (!oc.isExcludeDiscards()) {
+      types.add(ITransaction.TYPE_WASTAGE);
+    }
+    Set<String> excludeReasons = getReasons(oc.getExcludeReasons());
+    Set<String> excludeRetIncReasons = getReasons(oc.getExcludeReturnIncomingReasons());
+    Query q = pm.newQuery(JDOUtils.getImplClass(ITransaction.class));
+    try {
+      q.setFilter("kId == kIdParam && mId == mIdParam && t > sinceParam && t <= untilParam"
+          + " && typesParam.contains(type)");
+      q.declareParameters("Long kIdParam, Long mIdParam, java.util.Date sinceParam,"
+          + " java.util.Date untilParam, java.util.Collection typesParam");
+      q.setResult("type, q, t, rs");
+      q.setOrdering("t asc");
+      Map<String, Object> params = new HashMap<>(5);
+      params.put("kIdParam", inv.getKioskId());
+      params.put("mIdParam", inv.getMaterialId());
+      params.put("sinceParam", since);
+      params.put("untilParam", until);
+      params.put("typesParam", types);
+      List<Object[]> rows = (List<Object[]>) q.executeWithMap(params);
+      for (Object[] row : rows) {
+        BigDecimal quantity = BigUtil.getZeroIfNull((BigDecimal) row[1]);
+        String reason = (String) row[3];
+        if (ITransaction.TYPE_RETURNS_INCOMING.equals(row[0])) {
+          if (!excludeRetIncReasons.contains(reason)) {
+            crate.consume(quantity.negate(), (Date) row[2]);
+          }
+        } else if (!excludeReasons.contains(reason)) {
+          crate.consume(quantity, (Date) row[2]);
+        }
+      }
+    } finally {
+      q.closeAll();
+    }
+  }
+
+  private static Set<String> getReasons(String csv) {
+    List<String> reasons = StringUtil.getList(csv);
+    return reasons != null ? new HashSet<>(reasons) : Collections.emptySet();
   }
 
 }
@@ -24,6 +24,7 @@
 package com.logistimo.inventory.predictions.utils;
 
 import com.logistimo.context.StaticApplicationContext;
+import com.logistimo.dao.JDOUtils;
 import com.logistimo.inventory.entity.IInvntry;
 import com.logistimo.orders.entity.IDemandItem;
 import com.logistimo.orders.entity.IOrder;
@@ -31,6 +32,7 @@ import com.logistimo.orders.service.OrderManagementService;
 import com.logistimo.orders.service.impl.OrderManagementServiceImpl;
 import com.logistimo.services.ObjectNotFoundException;
 import com.logistimo.services.ServiceException;
+import com.logistimo.services.impl.PMF;
 import com.logistimo.services.utils.ConfigUtil;
 import com.logistimo.utils.BigUtil;
 import com.logistimo.utils.LocalDateUtil;
@@ -38,13 +40,20 @@ import com.logistimo.utils.LocalDateUtil;
 import java.math.BigDecimal;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.jdo.PersistenceManager;
+import javax.jdo.Query;
 
 /**
  * Util for calculation predicted number of days based on available orders for a given inventory.
@@ -62,24 +71,23 @@ public class PredictiveUtil {
    * Fetches all demand items for given inventory with status {@code IOrder.COMPLETED and IOrder.CONFIRMED}
    *
    * @param inv Inventory
-   * @return Map [date - DemandItem ]
+   * @return Demand items
    */
-  private static Map<String, IDemandItem> getDemandItems(IInvntry inv)
-      throws ServiceException, ObjectNotFoundException, ParseException {
+  private static List<IDemandItem> getDemandItems(IInvntry inv) throws ServiceException {
     OrderManagementService oms = StaticApplicationContext.getBean(OrderManagementServiceImpl.class);
     List<String> status = Arrays.asList(IOrder.COMPLETED, IOrder.CONFIRMED);
     List<IDemandItem>
         demandItems =
         oms.getDemandItemByStatus(inv.getKioskId(), inv.getMaterialId(), status);
-    Map<String, IDemandItem> demandMap = new HashMap<>();
+    List<IDemandItem> items = new ArrayList<>();
     if (demandItems != null) {
       for (IDemandItem dm : demandItems) {
         if (dm.getStatus().equals(IOrder.COMPLETED) || dm.getStatus().equals(IOrder.CONFIRMED)) {
-          demandMap.put(getStatusUpdate(dm), dm);
+          items.add(dm);
         }
       }
     }
-    return demandMap;
+    return items;
   }
 
   /**
@@ -90,28 +98,83 @@ public class PredictiveUtil {
    */
   public static Map<String, BigDecimal> getOrderStkPredictions(IInvntry inv)
       throws ServiceException, ObjectNotFoundException, ParseException {
-    Map<String, IDemandItem> demandItems = getDemandItems(inv);
+    List<IDemandItem> demandItems = getDemandItems(inv);
+    Map<Long, Date> statusUpdates = getStatusUpdates(demandItems);
     Map<String, BigDecimal> orders = new HashMap<>(demandItems.size());
     SimpleDateFormat sdf = new SimpleDateFormat(SDF_PATTERN);
-    for (String s : demandItems.keySet()) {
-      Calendar resDate = getPredictiveDate(demandItems.get(s).getStatus(), sdf.parse(s));
-      orders.put(sdf.format(resDate.getTime()), demandItems.get(s).getQuantity());
+    for (IDemandItem dm : demandItems) {
+      Date statusUpdatedOn = statusUpdates.get(dm.getOrderId());
+      if (statusUpdatedOn == null) {
+        continue;
+      }
+      Calendar resDate = getPredictiveDate(dm.getStatus(), statusUpdatedOn);
+      orders.merge(sdf.format(resDate.getTime()), dm.getQuantity(), BigDecimal::add);
     }
     return orders;
   }
 
   /**
-   * Gets the last status updated date if available, else returns created date.
+   * Predicts the days of stock from the current stock and the orders expected to be received
+   * before it runs out.
    *
-   * @param dm Demand Item
-   * @return status update date
+   * @param stock  Current stock
+   * @param cr     Daily consumption rate
+   * @param orders Expected receipts, as returned by {@link #getOrderStkPredictions(IInvntry)}
+   * @return Predicted days of stock, null when there is no consumption
    */
-  private static String getStatusUpdate(IDemandItem dm)
-      throws ServiceException, ObjectNotFoundException {
-    OrderManagementService oms = StaticApplicationContext.getBean(OrderManagementServiceImpl.class);
-    IOrder order = oms.getOrder(dm.getOrderId());
-    return new SimpleDateFormat(SDF_PATTERN).format(
-        order.getStatusUpdatedOn() != null ? order.getStatusUpdatedOn() : order.getCreatedOn());
+  public static BigDecimal getPredictedDaysOfStock(BigDecimal stock, BigDecimal cr,
+                                                   Map<String, BigDecimal> orders)
+      throws ParseException {
+    if (!BigUtil.greaterThanZero(cr)) {
+      return null;
+    }
+    BigDecimal days = BigUtil.getZeroIfNull(stock).divide(cr, 3, BigDecimal.ROUND_HALF_UP);
+    if (orders != null && !orders.isEmpty()) {
+      SimpleDateFormat sdf = new SimpleDateFormat(SDF_PATTERN);
+      // Receipts extend the stock only if they arrive before it runs out, so go in date order
+      for (String date : new TreeSet<>(orders.keySet())) {
+        Calendar resDate = new GregorianCalendar();
+        resDate.setTime(sdf.parse(date));
+        if (isDateValid(resDate, days, cr)) {
+          days = days.add(orders.get(date).divide(cr, 3, BigDecimal.ROUND_HALF_UP));
+        }
+      }
+    }
+    return days;
+  }
+
+  /**
+   * Gets the last status updated date if available, else the created date, of the orders of the
+   * given demand items in one query.
+   *
+   * @param demandItems Demand items
+   * @return Map [ Order Id - status update date ]
+   */
+  @SuppressWarnings("unchecked")
+  private static Map<Long, Date> getStatusUpdates(List<IDemandItem> demandItems) {
+    Map<Long, Date> statusUpdates = new HashMap<>(demandItems.size());
+    if (demandItems.isEmpty()) {
+      return statusUpdates;
+    }
+    Set<Long> orderIds = new HashSet<>(demandItems.size());
+    for (IDemandItem dm : demandItems) {
+      orderIds.add(dm.getOrderId());
+    }
+    PersistenceManager pm = PMF.get().getPersistenceManager();
+    Query q = pm.newQuery(JDOUtils.getImplClass(IOrder.class));
+    try {
+      q.setFilter("oIdsParam.contains(id)");
+      q.declareParameters("java.util.Collection oIdsParam");
+      q.setResult("id, stOn, cOn");
+      List<Object[]> rows = (List<Object[]>) q.execute(orderIds);
+      for (Object[] row : rows) {
+        statusUpdates.put((Long) row[0], row[1] != null ? (Date) row[1] : (Date) row[2]);
+      }
+    } finally {
+      q.closeAll();
+      pm.close();
+    }
+    return statusUpdates;
   }
 
   /**
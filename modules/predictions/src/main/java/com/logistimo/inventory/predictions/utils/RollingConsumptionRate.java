@@ -0,0 +1,119 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.inventory.predictions.utils;
+
+import com.logistimo.utils.BigUtil;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * Exponentially weighted daily consumption rate, updated in O(1) for every consumption.
+ *
+ * The raw rate decays with a time constant of {@code window} days and every consumed quantity
+ * {@code q} adds {@code q / window} to it, so a steady consumption of {@code c} a day converges to
+ * a rate of {@code c}. Until an inventory has a full window of history, the raw rate is scaled by
+ * {@code 1 / (1 - e^(-age / window))} to make up for the history that does not exist. Only the
+ * published rate and the time it was computed at are needed to resume, no history is rescanned.
+ */
+public class RollingConsumptionRate {
+
+  private static final double MILLIS_PER_DAY = 24 * 60 * 60 * 1000d;
+
+  private final double window; // days
+  private final double minHistory; // days
+  private final Long start; // start of the covered history, null when unknown
+  private double rate; // raw rate, without the warm up correction
+  private long asOf;
+
+  private RollingConsumptionRate(float window, float minHistory, Date start, long asOf) {
+    this.window = Math.max(window, 1);
+    this.minHistory = Math.max(minHistory, 0);
+    this.start = start != null ? start.getTime() : null;
+    this.asOf = asOf;
+  }
+
+  /**
+   * Resumes from a daily rate published earlier
+   *
+   * @param dailyRate rate published as of {@code asOf}
+   * @param start     start of the history covered by the rate, null if unknown
+   * @param window    time constant in days
+   * @param minHistory minimum history in days assumed for the warm up correction
+   */
+  public static RollingConsumptionRate resume(BigDecimal dailyRate, Date asOf, Date start,
+                                              float window, float minHistory) {
+    RollingConsumptionRate crate = new RollingConsumptionRate(window, minHistory, start,
+        asOf.getTime());
+    crate.rate = BigUtil.getZeroIfNull(dailyRate).doubleValue() * crate.warmUp(crate.asOf);
+    return crate;
+  }
+
+  /**
+   * Starts afresh without any consumption as of {@code start}
+   */
+  public static RollingConsumptionRate start(Date start, float window, float minHistory) {
+    return new RollingConsumptionRate(window, minHistory, start, start.getTime());
+  }
+
+  /**
+   * Adds a consumption, negative for reversals such as incoming returns. Consumptions older than
+   * the current rate are counted as of now.
+   */
+  public void consume(BigDecimal quantity, Date time) {
+    advanceTo(time);
+    rate += quantity.doubleValue() / window;
+  }
+
+  /**
+   * Decays the rate up to {@code time}
+   */
+  public void advanceTo(Date time) {
+    long t = time.getTime();
+    if (t > asOf) {
+      rate *= Math.exp(-(t - asOf) / MILLIS_PER_DAY / window);
+      asOf = t;
+    }
+  }
+
+  public Date getAsOf() {
+    return new Date(asOf);
+  }
+
+  /**
+   * @return daily consumption rate as of {@link #getAsOf()}
+   */
+  public BigDecimal getDailyRate() {
+    return BigDecimal.valueOf(Math.max(rate, 0) / warmUp(asOf))
+        .setScale(3, BigDecimal.ROUND_HALF_UP);
+  }
+
+  private double warmUp(long time) {
+    if (start == null) {
+      return 1;
+    }
+    double age = Math.max((time - start) / MILLIS_PER_DAY, minHistory);
+    return age > 0 ? 1 - Math.exp(-age / window) : 1;
+  }
+}
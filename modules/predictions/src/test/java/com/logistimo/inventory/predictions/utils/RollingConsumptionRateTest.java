@@ -0,0 +1,114 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.inventory.predictions.utils;
+
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class RollingConsumptionRateTest {
+
+  private static final long DAY = 24 * 60 * 60 * 1000L;
+  private static final Date START = new Date(1500000000000L);
+
+  @Test
+  public void testSteadyConsumptionConverges() {
+    RollingConsumptionRate crate = RollingConsumptionRate.start(START, 30, 0);
+    for (int day = 1; day <= 300; day++) {
+      crate.consume(BigDecimal.TEN, day(day));
+    }
+    // Half a day after the last consumption the rate is at its average over a day
+    crate.advanceTo(new Date(day(300).getTime() + DAY / 2));
+    assertEquals(crate.getDailyRate().doubleValue(), 10, 0.05);
+  }
+
+  @Test
+  public void testResumeMatchesUninterruptedRun() {
+    RollingConsumptionRate uninterrupted = RollingConsumptionRate.start(START, 30, 7);
+    RollingConsumptionRate interrupted = RollingConsumptionRate.start(START, 30, 7);
+    for (int day = 1; day <= 60; day++) {
+      BigDecimal quantity = BigDecimal.valueOf(day % 7 == 0 ? 50 : day % 3);
+      uninterrupted.consume(quantity, day(day));
+      interrupted.consume(quantity, day(day));
+      if (day % 10 == 0) {
+        // Publish and resume as a later update would, from the rate and its time alone
+        interrupted.advanceTo(day(day));
+        interrupted = RollingConsumptionRate.resume(interrupted.getDailyRate(),
+            interrupted.getAsOf(), START, 30, 7);
+      }
+    }
+    uninterrupted.advanceTo(day(65));
+    interrupted.advanceTo(day(65));
+    assertEquals(interrupted.getAsOf(), uninterrupted.getAsOf());
+    assertEquals(interrupted.getDailyRate().doubleValue(),
+        uninterrupted.getDailyRate().doubleValue(), 0.01);
+  }
+
+  @Test
+  public void testWarmUpCorrection() {
+    RollingConsumptionRate crate = RollingConsumptionRate.start(START, 30, 0);
+    for (int day = 1; day <= 5; day++) {
+      crate.consume(BigDecimal.TEN, day(day));
+    }
+    // Five days of history are not taken as 25 days without consumption
+    assertEquals(crate.getDailyRate().doubleValue(), 10, 1);
+
+    RollingConsumptionRate damped = RollingConsumptionRate.start(START, 30, 30);
+    for (int day = 1; day <= 5; day++) {
+      damped.consume(BigDecimal.TEN, day(day));
+    }
+    // ... unless at least the min. history is assumed
+    assertTrue(damped.getDailyRate().doubleValue() < 5, damped.getDailyRate().toString());
+
+    RollingConsumptionRate aged = RollingConsumptionRate.start(START, 30, 0);
+    aged.consume(BigDecimal.TEN, day(1));
+    aged.advanceTo(day(300));
+    // Consumption long past the window has decayed away
+    assertEquals(aged.getDailyRate().doubleValue(), 0, 0.001);
+  }
+
+  @Test
+  public void testReturnsReduceTheRate() {
+    RollingConsumptionRate consumed = RollingConsumptionRate.start(START, 30, 0);
+    consumed.consume(BigDecimal.valueOf(6), day(10));
+    RollingConsumptionRate returned = RollingConsumptionRate.start(START, 30, 0);
+    returned.consume(BigDecimal.TEN, day(10));
+    returned.consume(BigDecimal.valueOf(-4), day(10));
+    assertEquals(returned.getDailyRate(), consumed.getDailyRate());
+
+    // More returned than consumed is not a negative consumption rate
+    returned.consume(BigDecimal.valueOf(-20), day(11));
+    assertEquals(returned.getDailyRate().signum(), 0);
+    returned.consume(BigDecimal.valueOf(100), day(12));
+    assertTrue(returned.getDailyRate().signum() > 0);
+  }
+
+  private static Date day(int day) {
+    return new Date(START.getTime() + day * DAY);
+  }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.reports.plugins.internal;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import com.logistimo.logger.XLog;
+import com.logistimo.reports.plugins.IExternalServiceClient;
+import com.logistimo.services.cache.MemcacheService;
+import com.logistimo.services.utils.ConfigUtil;
+import com.logistimo.utils.PasswordEncoder;
+
+import java.util.Date;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import javax.ws.rs.core.Response;
+
+/**
+ * Results of Callisto report queries. Aggregates only change when an aggregation run lands, so a
+ * result is cached under its domain, query with sorted filters and the last aggregation time of
+ * its report type; once a new run is seen, queries go to new keys and the old results expire. The
+ * last aggregation time is itself a Callisto query, it is refreshed every
+ * {@code callisto.cache.watermark.seconds}.
+ *
+ * Identical queries made on this node while one is in flight wait for it, instead of each going to
+ * Callisto.
+ */
+public class CallistoResultCache {
+
+  private static final XLog xLogger = XLog.getLog(CallistoResultCache.class);
+
+  // Filters set to null are part of the query
+  private static final Gson GSON = new GsonBuilder().serializeNulls().create();
+  private static final String KEY_PREFIX = "CALLISTO.";
+  private static final String WATERMARK_PREFIX = "WM.";
+  private static final int EXPIRY_SECONDS =
+      ConfigUtil.getInt("callisto.cache.expiry.seconds", 6 * 60 * 60);
+
+  private final MemcacheService memcacheService;
+  private final Function<String, Date> lastAggregatedTime;
+  private final long watermarkMillis;
+  private final ConcurrentMap<String, CompletableFuture<Object>> inFlight =
+      new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Watermark> watermarks = new ConcurrentHashMap<>();
+
+  /**
+   * @param lastAggregatedTime last aggregation time by report type, null if unknown
+   */
+  public CallistoResultCache(MemcacheService memcacheService,
+                             Function<String, Date> lastAggregatedTime) {
+    this(memcacheService, lastAggregatedTime,
+        ConfigUtil.getInt("callisto.cache.watermark.seconds", 60) * 1000L);
+  }
+
+  CallistoResultCache(MemcacheService memcacheService, Function<String, Date> lastAggregatedTime,
+                      long watermarkMillis) {
+    this.memcacheService = memcacheService;
+    this.lastAggregatedTime = lastAggregatedTime;
+    this.watermarkMillis = watermarkMillis;
+  }
+
+  /**
+   * Runs a query on Callisto
+   *
+   * @return the response body
+   * @throws IllegalStateException if Callisto did not respond with 200, so that it is not cached
+   */
+  public static String query(IExternalServiceClient<QueryRequestModel> externalServiceClient,
+                             QueryRequestModel model) {
+    Response response = externalServiceClient.postRequest(model);
+    String result = response.readEntity(String.class);
+    if (response.getStatus() != Response.Status.OK.getStatusCode()) {
+      throw new IllegalStateException(
+          "Callisto query " + model.queryId + " failed with status " + response.getStatus());
+    }
+    return result;
+  }
+
+  /**
+   * Get the result of the query, from the cache or else from Callisto. Results of report types
+   * without a known aggregation time are not cached.
+   *
+   * @param callisto runs the query on Callisto, throws if it did not succeed
+   */
+  public String getResult(Long domainId, String reportType, QueryRequestModel model,
+                          Supplier<String> callisto) {
+    Date watermark = getWatermark(reportType);
+    if (watermark == null) {
+      return coalesce(getQueryKey(domainId, reportType, model), callisto);
+    }
+    String key = KEY_PREFIX + PasswordEncoder.MD5(
+        getQueryKey(domainId, reportType, model) + "|" + watermark.getTime());
+    String result = (String) memcacheService.get(key);
+    if (result != null) {
+      return result;
+    }
+    return coalesce(key, () -> {
+      String loaded = callisto.get();
+      memcacheService.put(key, loaded, EXPIRY_SECONDS);
+      return loaded;
+    });
+  }
+
+  private Date getWatermark(String reportType) {
+    Watermark watermark = watermarks.get(reportType);
+    if (watermark != null && watermark.fetchedAt + watermarkMillis > System.currentTimeMillis()) {
+      return watermark.time;
+    }
+    Date time = null;
+    try {
+      time = coalesce(WATERMARK_PREFIX + reportType, () -> lastAggregatedTime.apply(reportType));
+    } catch (Exception e) {
+      xLogger.warn("Failed to get the last aggregated time of report type {0}", reportType, e);
+    }
+    watermarks.put(reportType, new Watermark(time, System.currentTimeMillis()));
+    return time;
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> T coalesce(String key, Supplier<T> loader) {
+    CompletableFuture<Object> future = new CompletableFuture<>();
+    CompletableFuture<Object> running = inFlight.putIfAbsent(key, future);
+    if (running != null) {
+      try {
+        return (T) running.join();
+      } catch (CompletionException e) {
+        throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+      }
+    }
+    try {
+      T result = loader.get();
+      future.complete(result);
+      return result;
+    } catch (RuntimeException e) {
+      future.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, future);
+    }
+  }
+
+  private static String getQueryKey(Long domainId, String reportType, QueryRequestModel model) {
+    TreeMap<String, String> filters = model.filters != null ? new TreeMap<>(model.filters) : null;
+    return domainId + "|" + reportType + "|" + model.queryId + "|" + model.derivedResultsId + "|"
+        + model.rowHeadings + "|" + model.size + "|" + model.offset + "|" + model.userId + "|"
+        + GSON.toJson(filters);
+  }
+
+  private static class Watermark {
+
+    private final Date time;
+    private final long fetchedAt;
+
+    Watermark(Date time, long fetchedAt) {
+      this.time = time;
+      this.fetchedAt = fetchedAt;
+    }
+  }
+}
@@ -26,6 +26,9 @@ package com.logistimo.reports.plugins.internal;
 import com.logistimo.reports.plugins.IExternalServiceClient;
 import com.logistimo.reports.plugins.config.CallistoServiceClientConfiguration;
 import com.logistimo.reports.plugins.config.IExternalServiceClientConfiguration;
+import com.logistimo.services.utils.ConfigUtil;
+
+import org.glassfish.jersey.client.ClientProperties;
 
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
@@ -39,7 +42,8 @@ public class ExternalServiceClient<T> implements IExternalServiceClient<T> {
   Client client;
 
   public static ExternalServiceClient<QueryRequestModel> getNewCallistoInstance() {
-    return new ExternalServiceClient<>(new CallistoServiceClientConfiguration(), ClientBuilder.newClient());
+    return new ExternalServiceClient<>(new CallistoServiceClientConfiguration(),
+        CallistoClientHolder.CLIENT);
   }
 
   public ExternalServiceClient(IExternalServiceClientConfiguration configuration, Client client) {
@@ -66,4 +70,16 @@ public class ExternalServiceClient<T> implements IExternalServiceClient<T> {
   public Client getClient() {
     return client;
   }
+
+  /**
+   * JAX-RS clients are thread safe and expensive to create, so a single client is shared by all
+   * Callisto queries. Its connections are kept alive and reused across requests.
+   */
+  private static class CallistoClientHolder {
+    private static final Client CLIENT = ClientBuilder.newClient()
+        .property(ClientProperties.CONNECT_TIMEOUT,
+            ConfigUtil.getInt("http.client.connect.timeout", 10000))
+        .property(ClientProperties.READ_TIMEOUT,
+            ConfigUtil.getInt("callisto.client.read.timeout", 30000));
+  }
 }
@@ -42,6 +42,7 @@ import com.logistimo.reports.constants.ReportCompareField;
 import com.logistimo.reports.constants.ReportViewType;
 import com.logistimo.reports.models.ReportMinMaxHistoryFilters;
 import com.logistimo.reports.plugins.IExternalServiceClient;
+import com.logistimo.reports.plugins.internal.CallistoResultCache;
 import com.logistimo.reports.plugins.internal.ExportModel;
 import com.logistimo.reports.plugins.internal.ExternalServiceClient;
 import com.logistimo.reports.plugins.internal.QueryHelper;
@@ -51,6 +52,7 @@ import com.logistimo.reports.plugins.models.TableResponseModel;
 import com.logistimo.reports.utils.ReportsUtil;
 import com.logistimo.security.SecureUserDetails;
 import com.logistimo.services.ServiceException;
+import com.logistimo.services.cache.MemcacheService;
 import com.logistimo.utils.LocalDateUtil;
 
 import org.apache.commons.lang.StringUtils;
@@ -94,6 +96,7 @@ public class ReportPluginService {
   private DomainsService domainsService;
   private AssetManagementService assetManagementService;
   private InventoryManagementService inventoryManagementService;
+  private CallistoResultCache resultCache;
 
   @Autowired
   public void setDomainsService(DomainsService domainsService) {
@@ -105,6 +108,11 @@ public class ReportPluginService {
     this.assetManagementService = assetManagementService;
   }
 
+  @Autowired
+  public void setMemcacheService(MemcacheService memcacheService) {
+    this.resultCache = new CallistoResultCache(memcacheService, this::getLastAggregatedTime);
+  }
+
   @Autowired
   public void setInventoryManagementService(InventoryManagementService inventoryManagementService) {
     this.inventoryManagementService = inventoryManagementService;
@@ -131,9 +139,9 @@ public class ReportPluginService {
       model.filters.put(QueryHelper.TOKEN_COLUMNS, reportBuilder.getColumns(model.filters, ReportViewType.OVERVIEW));
 
       model.queryId = QueryHelper.getQueryID(model.filters, type);
-      Response response = externalServiceClient.postRequest(model);
-      return reportBuilder.buildReportsData(response.readEntity(String.class), compareField,
-          model.filters);
+      String result = resultCache.getResult(domainId, type, model,
+          () -> CallistoResultCache.query(externalServiceClient, model));
+      return reportBuilder.buildReportsData(result, compareField, model.filters);
     } catch (Exception e) {
       xLogger.severe("Error while getting the report data", e);
       return Collections.emptyList();
@@ -153,12 +161,13 @@ public class ReportPluginService {
       }
 
       QueryRequestModel model = constructQueryRequestModel(domainId, jsonObject, viewType);
-      final IReportService reportBuilder =
-          reportServiceCollection.getReportService(jsonObject.getString(JSON_REPORT_TYPE));
+      final String type = jsonObject.getString(JSON_REPORT_TYPE);
+      final IReportService reportBuilder = reportServiceCollection.getReportService(type);
       IExternalServiceClient<QueryRequestModel>
           externalServiceClient = ExternalServiceClient.getNewCallistoInstance();
-      Response response = externalServiceClient.postRequest(model);
-      return reportBuilder.buildReportTableData(response.readEntity(String.class), viewType, model);
+      String result = resultCache.getResult(domainId, type, model,
+          () -> CallistoResultCache.query(externalServiceClient, model));
+      return reportBuilder.buildReportTableData(result, viewType, model);
     } catch (Exception e) {
       xLogger.warn("Error while getting report table data", e);
       return null;
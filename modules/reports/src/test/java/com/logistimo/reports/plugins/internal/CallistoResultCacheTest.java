@@ -0,0 +1,218 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.reports.plugins.internal;
+
+import com.logistimo.services.cache.InMemoryMemcacheService;
+import com.sun.net.httpserver.HttpServer;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * Runs report queries against a stub Callisto server.
+ */
+public class CallistoResultCacheTest {
+
+  private static final Long DOMAIN_ID = 1L;
+  private static final String REPORT_TYPE = "ias";
+
+  private HttpServer server;
+  private Client client;
+  private ExternalServiceClient<QueryRequestModel> callisto;
+  private final AtomicInteger queries = new AtomicInteger();
+  private volatile int status = 200;
+  private volatile CountDownLatch release = new CountDownLatch(0);
+  private final AtomicReference<Date> lastAggregatedTime = new AtomicReference<>();
+  private CallistoResultCache cache;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    queries.set(0);
+    status = 200;
+    lastAggregatedTime.set(new Date(1000));
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.createContext(PostAPICommand.PATH, exchange -> {
+      int query = queries.incrementAndGet();
+      try {
+        release.await(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      byte[] body = ("{\"query\":" + query + "}").getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().add("Content-Type", "application/json");
+      exchange.sendResponseHeaders(status, body.length);
+      try (OutputStream os = exchange.getResponseBody()) {
+        os.write(body);
+      }
+    });
+    server.start();
+    client = ClientBuilder.newClient();
+    String url = "http://localhost:" + server.getAddress().getPort();
+    callisto = new ExternalServiceClient<>(() -> url, client);
+    // Watermarks are fetched on every query, so that a new aggregation run is seen at once
+    cache = new CallistoResultCache(new InMemoryMemcacheService(),
+        type -> lastAggregatedTime.get(), 0);
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    client.close();
+    server.stop(0);
+  }
+
+  @Test
+  public void testResultCachedUntilNextAggregation() {
+    assertEquals(query("ab"), "{\"query\":1}");
+    assertEquals(query("ab"), "{\"query\":1}");
+    assertEquals(query("cd"), "{\"query\":2}");
+    assertEquals(queries.get(), 2);
+
+    lastAggregatedTime.set(new Date(2000));
+    assertEquals(query("ab"), "{\"query\":3}");
+    assertEquals(query("ab"), "{\"query\":3}");
+    assertEquals(queries.get(), 3);
+  }
+
+  @Test
+  public void testFilterOrderDoesNotMatter() {
+    QueryRequestModel model = model("ab");
+    model.filters.put("mtag", "vaccines");
+    QueryRequestModel reordered = model("ab");
+    reordered.filters.clear();
+    reordered.filters.put("mtag", "vaccines");
+    reordered.filters.put("kid", "ab");
+    assertEquals(query(model), query(reordered));
+    assertEquals(queries.get(), 1);
+  }
+
+  @Test
+  public void testConcurrentQueriesCollapse() throws Exception {
+    List<String> results = queryConcurrently(8);
+    assertEquals(queries.get(), 1);
+    for (String result : results) {
+      assertEquals(result, "{\"query\":1}");
+    }
+    assertEquals(query("ab"), "{\"query\":1}");
+    assertEquals(queries.get(), 1);
+  }
+
+  @Test
+  public void testFailedQueryNotCached() {
+    status = 500;
+    try {
+      query("ab");
+      fail("Expected the failed query to fail the request");
+    } catch (IllegalStateException e) {
+      assertTrue(e.getMessage().contains("500"), e.getMessage());
+    }
+    status = 200;
+    assertEquals(query("ab"), "{\"query\":2}");
+    assertEquals(query("ab"), "{\"query\":2}");
+    assertEquals(queries.get(), 2);
+  }
+
+  @Test
+  public void testWithoutWatermarkCoalescedButNotCached() throws Exception {
+    lastAggregatedTime.set(null);
+    List<String> results = queryConcurrently(8);
+    assertEquals(queries.get(), 1);
+    for (String result : results) {
+      assertEquals(result, "{\"query\":1}");
+    }
+    assertEquals(query("ab"), "{\"query\":2}");
+    assertEquals(query("ab"), "{\"query\":3}");
+  }
+
+  private List<String> queryConcurrently(int count) throws Exception {
+    release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(count);
+    try {
+      CountDownLatch started = new CountDownLatch(count);
+      List<Future<String>> futures = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        futures.add(executor.submit(() -> {
+          started.countDown();
+          return query("ab");
+        }));
+      }
+      started.await(10, TimeUnit.SECONDS);
+      long deadline = System.currentTimeMillis() + 10000;
+      while (queries.get() == 0 && !futures.get(0).isDone()
+          && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      // Let the other queries reach the one in flight before Callisto responds
+      Thread.sleep(200);
+      release.countDown();
+      List<String> results = new ArrayList<>(count);
+      for (Future<String> future : futures) {
+        results.add(future.get(10, TimeUnit.SECONDS));
+      }
+      return results;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private String query(String kioskId) {
+    return query(model(kioskId));
+  }
+
+  private String query(QueryRequestModel model) {
+    return cache.getResult(DOMAIN_ID, REPORT_TYPE, model,
+        () -> CallistoResultCache.query(callisto, model));
+  }
+
+  private static QueryRequestModel model(String kioskId) {
+    QueryRequestModel model = new QueryRequestModel();
+    model.queryId = "DID_IAS";
+    model.filters = new HashMap<>();
+    model.filters.put("kid", kioskId);
+    return model;
+  }
+}
@@ -32,7 +32,9 @@ import com.logistimo.tags.entity.Tag;
 import org.springframework.stereotype.Repository;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import javax.jdo.PersistenceManager;
 import javax.jdo.Query;
@@ -45,34 +47,11 @@ public class TagDao implements ITagDao {
 
   private static final XLog xLogger = XLog.getLog(TagDao.class);
 
+  private final TagDictionary tagDictionary = TagDictionary.getInstance();
+
   @Override
   public ITag getTagByName(String name, int type) {
-    PersistenceManager pm = PMF.get().getPersistenceManager();
-    Query query = pm.newQuery(Tag.class);
-    query.setFilter("name == nameParam && type == typeParam");
-    query.declareParameters("String nameParam,Integer typeParam");
-    ITag result = null;
-    try {
-      List<ITag> results = (List<ITag>) query.execute(name, type);
-      if (results != null && results.size() > 0) {
-        result = results.get(0);
-        result = pm.detachCopy(result);
-      } else {
-        ITag tag = new Tag(type, name);
-        tag = pm.makePersistent(tag);
-        return pm.detachCopy(tag);
-      }
-    } catch (Exception e) {
-      xLogger.warn("Error while fetching tag with name {0} and type {1}", name, type, e);
-    } finally {
-      try {
-        query.closeAll();
-      } catch (Exception ignored) {
-        xLogger.warn("Exception while closing query", ignored);
-      }
-      pm.close();
-    }
-    return result;
+    return tagDictionary.getTags(Collections.singletonList(name), type).get(name);
   }
 
   @Override
@@ -80,9 +59,10 @@ public class TagDao implements ITagDao {
     if (tagNames == null) {
       return null;
     }
+    Map<String, ITag> tagsByName = tagDictionary.getTags(tagNames, type);
     List<ITag> tags = new ArrayList<ITag>(tagNames.size());
     for (String tagName : tagNames) {
-      tags.add(getTagByName(tagName, type));
+      tags.add(tagsByName.get(tagName));
     }
     return tags;
   }
@@ -94,6 +74,10 @@ public class TagDao implements ITagDao {
 
   @Override
   public ITag getTagById(long id, int type) {
+    ITag known = tagDictionary.getTag(id, type);
+    if (known != null) {
+      return known;
+    }
     PersistenceManager pm = PMF.get().getPersistenceManager();
     Query query = pm.newQuery(Tag.class);
     query.setFilter("id == idParam && type == typeParam");
@@ -0,0 +1,202 @@
+/*
+ * Copyright © 2018 Logistimo.
+ *
+ * This file is part of Logistimo.
+ *
+ * Logistimo software is a mobile & web platform for supply chain management and remote temperature monitoring in
+ * low-resource settings, made available under the terms of the GNU Affero General Public License (AGPL).
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * You can be released from the requirements of the license by purchasing a commercial license. To know more about
+ * the commercial license, please contact us at opensource@logistimo.com
+ */
+
+package com.logistimo.tags.dao;
+
+import com.logistimo.logger.XLog;
+import com.logistimo.services.impl.PMF;
+import com.logistimo.tags.entity.ITag;
+import com.logistimo.tags.entity.Tag;
+import com.logistimo.utils.LockUtil;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.jdo.PersistenceManager;
+import javax.jdo.Query;
+
+/**
+ * Process wide dictionary of tags, by name and by id. The tag table is small and tags are never
+ * updated or removed, so it is loaded once and only names not seen before go to the database: one
+ * select for all of them, to pick up tags created on other nodes, and one batched insert for the
+ * rest under a lock per tag type. Should the table have duplicate names, the lowest id wins.
+ */
+public class TagDictionary {
+
+  private static final XLog xLogger = XLog.getLog(TagDictionary.class);
+
+  private static final String LOCK_PREFIX = "TAG_CREATE_";
+
+  private static final TagDictionary INSTANCE = new TagDictionary();
+
+  private final ConcurrentMap<Integer, ConcurrentMap<String, ITag>> tagsByName =
+      new ConcurrentHashMap<>();
+  private final ConcurrentMap<Long, ITag> tagsById = new ConcurrentHashMap<>();
+  private volatile boolean loaded;
+
+  TagDictionary() {
+  }
+
+  public static TagDictionary getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Resolves the given names of a tag type, creating the tags that do not exist yet.
+   *
+   * @return Map [ name - tag ], without the names that could not be resolved
+   */
+  public Map<String, ITag> getTags(Collection<String> names, int type) {
+    ensureLoaded();
+    Map<String, ITag> tags = new HashMap<>(names.size());
+    Set<String> misses = lookup(names, type, tags);
+    if (misses.isEmpty()) {
+      return tags;
+    }
+    PersistenceManager pm = PMF.get().getPersistenceManager();
+    try {
+      load(misses, type, pm);
+      misses = lookup(misses, type, tags);
+      if (!misses.isEmpty()) {
+        create(misses, type, pm);
+        lookup(misses, type, tags);
+      }
+    } catch (Exception e) {
+      xLogger.warn("Error while resolving tags {0} of type {1}", misses, type, e);
+    } finally {
+      pm.close();
+    }
+    return tags;
+  }
+
+  /**
+   * @return tag with the given id and type, or null if it is not known
+   */
+  public ITag getTag(long id, int type) {
+    ensureLoaded();
+    ITag tag = tagsById.get(id);
+    return tag != null && tag.getType() == type ? tag : null;
+  }
+
+  private Set<String> lookup(Collection<String> names, int type, Map<String, ITag> tags) {
+    Map<String, ITag> known = getTagsByName(type);
+    Set<String> misses = new LinkedHashSet<>();
+    for (String name : names) {
+      if (name == null) {
+        continue;
+      }
+      ITag tag = known.get(name);
+      if (tag != null) {
+        tags.put(name, tag);
+      } else {
+        misses.add(name);
+      }
+    }
+    return misses;
+  }
+
+  @SuppressWarnings("unchecked")
+  private void create(Set<String> names, int type, PersistenceManager pm) {
+    String lockKey = LOCK_PREFIX + type;
+    LockUtil.LockStatus lockStatus = LockUtil.lock(lockKey);
+    if (!LockUtil.isLocked(lockStatus)) {
+      xLogger.warn("Failed to get lock {0}, creating tags {1} without it", lockKey, names);
+    }
+    try {
+      // Another node may have created them while this one waited for the lock
+      load(names, type, pm);
+      Map<String, ITag> known = getTagsByName(type);
+      List<ITag> newTags = new ArrayList<>(names.size());
+      for (String name : names) {
+        if (!known.containsKey(name)) {
+          newTags.add(new Tag(type, name));
+        }
+      }
+      if (!newTags.isEmpty()) {
+        add((Collection<ITag>) pm.detachCopyAll(pm.makePersistentAll(newTags)));
+      }
+    } finally {
+      if (LockUtil.shouldReleaseLock(lockStatus)) {
+        LockUtil.release(lockKey);
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void ensureLoaded() {
+    if (loaded) {
+      return;
+    }
+    synchronized (this) {
+      if (loaded) {
+        return;
+      }
+      PersistenceManager pm = PMF.get().getPersistenceManager();
+      Query query = pm.newQuery(Tag.class);
+      try {
+        add((Collection<ITag>) pm.detachCopyAll((List<ITag>) query.execute()));
+        loaded = true;
+        xLogger.info("Loaded {0} tags", tagsById.size());
+      } catch (Exception e) {
+        xLogger.warn("Error while loading tags, they will be looked up as needed", e);
+      } finally {
+        query.closeAll();
+        pm.close();
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void load(Collection<String> names, int type, PersistenceManager pm) {
+    Query query = pm.newQuery(Tag.class);
+    query.setFilter("type == typeParam && namesParam.contains(name)");
+    query.declareParameters("Integer typeParam, java.util.Collection namesParam");
+    try {
+      add((Collection<ITag>) pm.detachCopyAll((List<ITag>) query.execute(type, names)));
+    } finally {
+      query.closeAll();
+    }
+  }
+
+  private void add(Collection<ITag> tags) {
+    for (ITag tag : tags) {
+      tagsById.putIfAbsent(tag.getId(), tag);
+      if (tag.getName() == null) {
+        continue;
+      }
+      getTagsByName(tag.getType()).merge(tag.getName(), tag,
+          (known, other) -> known.getId() <= other.getId() ? known : other);
+    }
+  }
+
+  private ConcurrentMap<String, ITag> getTagsByName(int type) {
+    return tagsByName.computeIfAbsent(type, t -> new ConcurrentHashMap<>());
+  }
+}
@@ -1514,6 +1514,11 @@ public class UsersServiceImpl implements UsersService {
   }
 
   private void removeUserFromCache(String userId) {
-    getMemcacheService().delete(Constants.USER_KEY + CharacterConstants.HASH + userId);
+    if (authenticationService != null) {
+      // Also revokes the validated tokens holding the account
+      authenticationService.removeUserFromCache(userId);
+    } else {
+      getMemcacheService().delete(Constants.USER_KEY + CharacterConstants.HASH + userId);
+    }
   }
 }
@@ -6,3 +6,5 @@ ALTER TABLE `SHIPMENT` ADD COLUMN `VERSION` bigint(20);
 UPDATE `ORDER` SET `VERSION` = 0;
 
 UPDATE `SHIPMENT` SET `VERSION` = 0;
+
+ALTER TABLE `INVNTRY` ADD COLUMN `CRT` datetime DEFAULT NULL AFTER `TPS`;
@@ -590,6 +590,7 @@ CREATE TABLE `INVNTRY` (
   `T` datetime DEFAULT NULL,
   `TDQ` datetime DEFAULT NULL,
   `TPS` datetime DEFAULT NULL,
+  `CRT` datetime DEFAULT NULL,
   `TMAX` float DEFAULT NULL,
   `TMIN` float DEFAULT NULL,
   `TX` decimal(16,4) DEFAULT NULL,